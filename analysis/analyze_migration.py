@@ -4,11 +4,13 @@ import matplotlib.pyplot as plt
 import seaborn as sns
 from pathlib import Path
 
+from result_table import read_table
+
 plt.style.use('ggplot')
 sns.set_palette("colorblind")
 
 def load_data(migration_results_dir='../migrations_results'):
-    """Load all CSV files with migration data from migrations_results directory"""
+    """Load all CSV files and columnar tables with migration data from migrations_results directory"""
     data_files = {}
     results_path = Path(migration_results_dir)
 
@@ -30,8 +32,27 @@ def load_data(migration_results_dir='../migrations_results'):
             df = pd.read_csv(file_path, skiprows=2, names=column_names)
             data_files[strategy_name] = df
 
+    # Columnar tables (written with --format=columnar) have the same columns, without the units row
+    for file_path in results_path.glob('migration_*.rtab'):
+        strategy_name = file_path.stem.replace('migration_', '')
+        if 'power' in strategy_name or 'policy' in strategy_name:
+            data_files[strategy_name] = read_table(file_path)
+
     return data_files
 
+def load_events(migration_results_dir='../migrations_results'):
+    """Load the event journals converted to CSV by simulations.EventJournalReader"""
+    events = {}
+    for file_path in Path(migration_results_dir).glob('migration_*_events.csv'):
+        strategy_name = file_path.stem.replace('migration_', '').replace('_events', '')
+        events[strategy_name] = pd.read_csv(file_path)
+
+    return events
+
+def analyze_events(events):
+    """Count the journaled events of each type for each strategy"""
+    return {strategy: df['Event'].value_counts().to_dict() for strategy, df in events.items()}
+
 def analyze_power_consumption(power_data):
     """Analyze power consumption data from different strategies"""
     results = {}
@@ -324,5 +345,11 @@ def main():
         print("\nGenerating comprehensive comparison table...")
         generate_comparison_table(power_results, exec_time_results)
 
+    events = load_events()
+    for strategy, counts in analyze_events(events).items():
+        print(f"\n{strategy} journaled events:")
+        for event, count in counts.items():
+            print(f"  {event}: {count}")
+
 if __name__ == "__main__":
     main()
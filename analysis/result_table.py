@@ -0,0 +1,95 @@
+"""Read the columnar result tables (.rtab) written by simulations.ResultTable.
+
+Uncompressed columns are memory-mapped as numpy arrays without copying them, deflated ones are
+inflated chunk by chunk, and category columns become pandas Categoricals. The layout is described
+in the "Columnar Results" section of the README.
+"""
+import mmap
+import struct
+import zlib
+
+import numpy as np
+import pandas as pd
+
+MAGIC = 0x42415452
+VERSION = 1
+HEADER_SIZE = 8
+TRAILER_SIZE = 16
+COMPRESSIONS = ['none', 'deflate']
+# Type ordinals of ResultTable.Type: INT32, INT64, FLOAT64 and CATEGORY (INT32 codes)
+TYPES = ['<i4', '<i8', '<f8', '<i4']
+CATEGORY = 3
+
+
+class _Footer:
+    """Decodes the little-endian values of a footer one after another"""
+
+    def __init__(self, data):
+        self.data = data
+        self.position = 0
+
+    def unpack(self, fmt):
+        values = struct.unpack_from('<' + fmt, self.data, self.position)
+        self.position += struct.calcsize('<' + fmt)
+        return values if len(values) > 1 else values[0]
+
+    def string(self):
+        length = self.unpack('i')
+        value = bytes(self.data[self.position:self.position + length]).decode('utf-8')
+        self.position += length
+        return value
+
+
+def read_schema(path):
+    """Read the footer of a table: its name, rows, compression and the chunks of each column"""
+    with open(path, 'rb') as f:
+        magic, version = struct.unpack('<ii', f.read(HEADER_SIZE))
+        if magic != MAGIC:
+            raise ValueError(f'{path} is not a result table')
+        if version > VERSION:
+            raise ValueError(f'{path} was written by a newer version')
+
+        f.seek(-TRAILER_SIZE, 2)
+        footer_offset, footer_length, magic = struct.unpack('<qii', f.read(TRAILER_SIZE))
+        if magic != MAGIC:
+            raise ValueError(f'{path} is truncated')
+        f.seek(footer_offset)
+        footer = _Footer(f.read(footer_length))
+
+    schema = {'name': footer.string(), 'rows': footer.unpack('q'),
+              'compression': COMPRESSIONS[footer.unpack('b')], 'columns': []}
+    for _ in range(footer.unpack('i')):
+        column = {'name': footer.string(), 'unit': footer.string(), 'type': footer.unpack('b')}
+        column['chunks'] = [footer.unpack('qii') for _ in range(footer.unpack('i'))]
+        column['dictionary'] = [footer.string() for _ in range(footer.unpack('i'))]
+        schema['columns'].append(column)
+
+    return schema
+
+
+def _read_column(path, data, schema, column):
+    dtype = TYPES[column['type']]
+    if not column['chunks']:
+        return np.empty(0, dtype=dtype)
+    if schema['compression'] == 'none':
+        # The chunks of a column are contiguous, so the column is a single array
+        return np.memmap(path, dtype=dtype, mode='r', offset=column['chunks'][0][0], shape=(schema['rows'],))
+
+    return np.concatenate([np.frombuffer(zlib.decompress(data[offset:offset + length]), dtype=dtype)
+                           for offset, length, _ in column['chunks']])
+
+
+def read_table(path, columns=None):
+    """Load a table (or some of its columns) into a DataFrame"""
+    schema = read_schema(path)
+    values = {}
+    with open(path, 'rb') as f, mmap.mmap(f.fileno(), 0, access=mmap.ACCESS_READ) as data:
+        for column in schema['columns']:
+            if columns is not None and column['name'] not in columns:
+                continue
+            array = _read_column(path, data, schema, column)
+            if column['type'] == CATEGORY:
+                array = pd.Categorical.from_codes(array, categories=column['dictionary'])
+            values[column['name']] = array
+
+    return pd.DataFrame(values, copy=False)
@@ -3,6 +3,10 @@
 # Compile all Java files in the simulations folder and copy dependencies
 mvn -B compile dependency:copy-dependencies
 
-# Run each simulation
-java -cp "target/classes:target/dependency/*" simulations.MigrationBestFitPolicy
-java -cp "target/classes:target/dependency/*" simulations.MigrationFirstFitPolicy
\ No newline at end of file
+# Run each simulation (pass --quiet to turn off console output)
+java -cp "target/classes:target/dependency/*" simulations.MigrationBestFitPolicy "$@"
+java -cp "target/classes:target/dependency/*" simulations.MigrationFirstFitPolicy "$@"
+
+# Convert the event journals to CSV for the analysis scripts
+java -cp "target/classes:target/dependency/*" simulations.EventJournalReader migrations_results/migration_best_fit_events.journal
+java -cp "target/classes:target/dependency/*" simulations.EventJournalReader migrations_results/migration_first_fit_events.journal
@@ -0,0 +1,20 @@
+package simulations;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler enabled, so every result also reports the allocation rate.
+ * Accepts the regular JMH command line options, e.g. {@code java -jar target/benchmarks.jar TickBenchmark -f 1}.
+ */
+public final class Benchmarks {
+  private Benchmarks() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final CommandLineOptions commandLine = new CommandLineOptions(args);
+    new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,92 @@
+package simulations;
+
+import org.cloudsimplus.builders.tables.CsvTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of exporting the power consumption and VM statistics of a finished simulation to CSV and to
+ * {@link ResultTable columnar tables}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+  @Param({"1", "10"})
+  public int scale;
+
+  private SimulationFixture fixture;
+  private CsvTable powerCsv;
+  private File vmStatsFile;
+  private Path tableDir;
+  private PrintStream console;
+
+  @Setup
+  public void setUp() throws IOException {
+    fixture = new SimulationFixture("best-fit-indexed", scale, false);
+    fixture.simulation.start();
+    fixture.energyMeter.finish();
+
+    powerCsv = new CsvTable();
+    powerCsv.setPrintStream(new PrintStream(OutputStream.nullOutputStream()));
+    vmStatsFile = File.createTempFile("vm_stats", ".csv");
+    tableDir = Files.createTempDirectory("tables");
+
+    // The VM statistics exports report the exported file on the console
+    console = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    System.setOut(console);
+    vmStatsFile.delete();
+    try (var files = Files.list(tableDir)) {
+      for (Path file : files.toList()) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(tableDir);
+  }
+
+  @Benchmark
+  public void exportPowerConsumptionToCsv() {
+    Shared.exportPowerConsumptionToCsv(fixture.energyMeter, powerCsv, "Best Fit");
+  }
+
+  @Benchmark
+  public void exportVmStatsToCsv() throws IOException {
+    Shared.exportVmStatsToCsv(fixture.vmList, vmStatsFile.getPath());
+  }
+
+  @Benchmark
+  public void exportPowerConsumptionToTable() {
+    Shared.exportPowerConsumptionToTable(fixture.energyMeter, tableDir.resolve("power.rtab"), ResultTable.Compression.NONE);
+  }
+
+  @Benchmark
+  public void exportVmStatsToTable() {
+    Shared.exportVmStatsToTable(fixture.vmList, tableDir.resolve("vm_stats.rtab"), ResultTable.Compression.NONE);
+  }
+}
@@ -0,0 +1,59 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end runtime of the first-fit and best-fit scenarios, with the host and VM counts
+ * of {@link Shared.Config} multiplied by {@code scale}. Every run takes its simulation graph from the same
+ * {@link ScenarioEngine}, as the points of a sweep do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScenarioBenchmark {
+  @Param({"first-fit-indexed", "best-fit-indexed"})
+  public String policy;
+
+  @Param({"1", "5", "10"})
+  public int scale;
+
+  private ScenarioEngine engine;
+  private MigrationSweep.Point point;
+
+  @Setup
+  public void setUp() {
+    final Scenario base = Scenario.fromConfig();
+    engine = new ScenarioEngine(base.withSize(base.getHostCount() * scale, base.getVmCount() * scale));
+    point = new MigrationSweep.Point(0, policy, Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION,
+        Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION, Config.Host.SEARCH_RETRY_DELAY,
+        Config.Scheduling.INTERVAL, Config.Scheduling.INTERVAL, Config.Scheduling.ERROR_TOLERANCE, false,
+        VmSelectionPolicyRanked.MIN_UTILIZATION);
+  }
+
+  @Benchmark
+  public MigrationSweep.Result run() {
+    final MigrationSweep.Result result = MigrationSweep.runPoint(engine, point, null);
+    if (!result.status().equals("OK")) {
+      throw new IllegalStateException("Simulation " + result.status());
+    }
+
+    return result;
+  }
+}
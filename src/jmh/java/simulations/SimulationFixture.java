@@ -0,0 +1,56 @@
+package simulations;
+
+import ch.qos.logback.classic.Level;
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.util.Log;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.List;
+
+/**
+ * A simulation built like a {@link MigrationSweep} point, but not started, so benchmarks can drive it.
+ */
+final class SimulationFixture {
+  final CloudSimPlus simulation;
+  final List<Host> hostList;
+  final List<Vm> vmList;
+  final List<Cloudlet> cloudletList;
+  final VmAllocationPolicyMigrationStaticThreshold allocationPolicy;
+  final DatacenterBrokerSimple broker;
+  final EnergyMeter energyMeter;
+
+  /**
+   * @param endless if true, cloudlets have no fixed length and run until the simulation is terminated
+   */
+  SimulationFixture(final String policy, final int scale, final boolean endless) {
+    Log.setLevel(Level.OFF);
+    final Scenario base = Scenario.fromConfig();
+    final Scenario scenario = base.withSize(base.getHostCount() * scale, base.getVmCount() * scale);
+
+    simulation = new CloudSimPlus();
+    hostList = scenario.createHosts();
+    allocationPolicy = MigrationSweep.POLICIES.get(policy).apply(Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION);
+    allocationPolicy.setUnderUtilizationThreshold(Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION);
+    new DatacenterInstrumented(simulation, hostList, allocationPolicy)
+        .setSchedulingInterval(Config.Scheduling.INTERVAL)
+        .setHostSearchRetryDelay(Config.Host.SEARCH_RETRY_DELAY);
+
+    broker = new DatacenterBrokerSimple(simulation);
+    vmList = scenario.createVms();
+    vmList.forEach(Vm::enableUtilizationStats);
+    broker.submitVmList(vmList);
+    cloudletList = scenario.createCloudlets(vmList, broker);
+    if (endless) {
+      cloudletList.forEach(cloudlet -> cloudlet.setLength(-1));
+    }
+    broker.submitCloudletList(cloudletList);
+
+    energyMeter = new EnergyMeter(simulation, hostList);
+  }
+}
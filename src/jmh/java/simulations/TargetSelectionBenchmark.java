@@ -0,0 +1,50 @@
+package simulations;
+
+import org.cloudsimplus.vms.Vm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding a migration target host for a VM in a datacenter where every VM is already placed,
+ * for the stock and the indexed policies (including the power-aware one).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TargetSelectionBenchmark {
+  @Param({"first-fit", "first-fit-indexed", "best-fit", "best-fit-indexed", "min-power"})
+  public String policy;
+
+  @Param({"1", "10"})
+  public int scale;
+
+  private SimulationFixture fixture;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    fixture = new SimulationFixture(policy, scale, true);
+    fixture.simulation.startSync();
+    fixture.simulation.runFor(1);
+  }
+
+  @Benchmark
+  public Object findHostForVm() {
+    final Vm vm = fixture.vmList.get(next++ % fixture.vmList.size());
+    return fixture.allocationPolicy.findHostForVm(vm);
+  }
+}
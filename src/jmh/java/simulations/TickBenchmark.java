@@ -0,0 +1,57 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one scheduling interval (cloudlet processing, host updates, energy sampling and the migration check)
+ * in a running datacenter. Cloudlets never finish, so every invocation advances a steady-state simulation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickBenchmark {
+  @Param({"first-fit-indexed", "best-fit-indexed"})
+  public String policy;
+
+  @Param({"1", "10"})
+  public int scale;
+
+  private SimulationFixture fixture;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    fixture = new SimulationFixture(policy, scale, true);
+    fixture.simulation.startSync();
+    // Skips VM placement and the initial migrations
+    fixture.simulation.runFor(30);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    fixture.simulation.terminate();
+  }
+
+  @Benchmark
+  public double tick() {
+    return fixture.simulation.runFor(Config.Scheduling.INTERVAL);
+  }
+}
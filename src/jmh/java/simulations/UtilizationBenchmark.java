@@ -0,0 +1,61 @@
+package simulations;
+
+import org.cloudsimplus.utilizationmodels.UtilizationModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the CPU utilization of every cloudlet once per tick, with one
+ * {@code UtilizationModelDynamic} per cloudlet or with the views of a {@link UtilizationEngine}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilizationBenchmark {
+  @Param({"dynamic", "engine"})
+  public String model;
+
+  @Param({"100000"})
+  public int cloudlets;
+
+  private UtilizationModel[] models;
+  private double time;
+
+  @Setup
+  public void setUp() {
+    final Scenario scenario = Scenario.fromConfig().withSize(1, cloudlets);
+    final UtilizationEngine engine = new UtilizationEngine(cloudlets);
+    models = new UtilizationModel[cloudlets];
+    for (int i = 0; i < cloudlets; i++) {
+      final int profile = scenario.getVmProfile(i);
+      models[i] = model.equals("engine")
+          ? scenario.createCpuUtilizationModel(engine, profile)
+          : scenario.createCpuUtilizationModel(profile);
+    }
+  }
+
+  @Benchmark
+  public double tick() {
+    time++;
+    double total = 0;
+    for (UtilizationModel utilizationModel : models) {
+      total += utilizationModel.getUtilization(time);
+    }
+
+    return total;
+  }
+}
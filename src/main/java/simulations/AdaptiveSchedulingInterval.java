@@ -0,0 +1,229 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigration;
+import org.cloudsimplus.datacenters.Datacenter;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes the scheduling interval of a {@link Datacenter} while the simulation runs, so quiescent
+ * periods are crossed with few updates.
+ *
+ * <p>After every host update, the CPU utilization of each host is extrapolated linearly from its last
+ * update, and the next interval is the time it would take any host to move by the error tolerance or
+ * to reach an over or under utilization threshold. Hosts that are migrating VMs, or that change
+ * within the tolerance of a threshold, keep the interval at the minimum. The interval at most
+ * doubles from one update to the next, and it's always a whole multiple of the minimum interval, so
+ * updates stay aligned to the fixed schedule. Cloudlet completions and migrations are still processed
+ * at the time they happen, since they have their own events, and retries of the migration search
+ * still happen after the datacenter's host search retry delay.</p>
+ */
+public class AdaptiveSchedulingInterval {
+  private final Datacenter datacenter;
+  private final List<Host> hostList;
+  private final Map<Host, Integer> positions;
+  private final double minInterval;
+  private final double maxInterval;
+  private final double tolerance;
+
+  private final double[] lastTime;
+  private final double[] lastUtilization;
+  private final double[] previousTime;
+  private final double[] previousUtilization;
+  private final int[] migrations;
+  private double updateTime = -1;
+  private double lastDetection = -Double.MAX_VALUE;
+  private boolean searchPending;
+  private double previousInterval;
+  private double nextInterval;
+  private double startTime = -1;
+  private long updates;
+  private long shrinks;
+
+  public AdaptiveSchedulingInterval(final Datacenter datacenter, final double minInterval,
+      final double maxInterval, final double tolerance) {
+    if (minInterval <= 0 || maxInterval < minInterval) {
+      throw new IllegalArgumentException("The minimum interval must be greater than 0 and not greater than the maximum one.");
+    }
+    if (tolerance <= 0 || tolerance >= 1) {
+      throw new IllegalArgumentException("The error tolerance must be greater than 0 and lower than 1.");
+    }
+
+    this.datacenter = datacenter;
+    this.hostList = datacenter.getHostList();
+    this.positions = new HashMap<>(hostList.size() * 2);
+    this.minInterval = minInterval;
+    this.maxInterval = Math.floor(maxInterval / minInterval) * minInterval;
+    this.tolerance = tolerance;
+    this.lastTime = new double[hostList.size()];
+    this.lastUtilization = new double[hostList.size()];
+    this.previousTime = new double[hostList.size()];
+    this.previousUtilization = new double[hostList.size()];
+    this.migrations = new int[hostList.size()];
+    Arrays.fill(lastTime, -1);
+    Arrays.fill(previousTime, -1);
+
+    for (int i = 0; i < hostList.size(); i++) {
+      positions.put(hostList.get(i), i);
+      hostList.get(i).addOnUpdateProcessingListener(this::onUpdateProcessing);
+    }
+    this.previousInterval = minInterval;
+    this.nextInterval = minInterval;
+    datacenter.setSchedulingInterval(minInterval);
+  }
+
+  /**
+   * Creates a controller with the intervals and error tolerance in {@link Config.Scheduling}.
+   */
+  public static AdaptiveSchedulingInterval fromConfig(final Datacenter datacenter) {
+    return new AdaptiveSchedulingInterval(datacenter, Config.Scheduling.INTERVAL,
+        Config.Scheduling.MAX_INTERVAL, Config.Scheduling.ERROR_TOLERANCE);
+  }
+
+  public double getSchedulingInterval() {
+    return nextInterval;
+  }
+
+  /**
+   * Gets the number of distinct times the datacenter updated its hosts.
+   */
+  public long getUpdates() {
+    return updates;
+  }
+
+  /**
+   * Gets the number of updates a fixed minimum interval would need up to the current simulation time.
+   */
+  public long getFixedIntervalUpdates() {
+    final double elapsed = datacenter.getSimulation().clock() - Math.max(startTime, 0);
+    return (long) Math.floor(elapsed / minInterval) + 1;
+  }
+
+  public long getSavedUpdates() {
+    return Math.max(0, getFixedIntervalUpdates() - updates);
+  }
+
+  /**
+   * Gets the number of times the interval was brought down because a host was close to a threshold,
+   * changing too fast or migrating VMs.
+   */
+  public long getShrinks() {
+    return shrinks;
+  }
+
+  public void printReport() {
+    final long fixed = getFixedIntervalUpdates();
+    System.out.printf(
+        "Adaptive scheduling interval (%.0f to %.0f s, %.1f%% tolerance): %d datacenter updates instead of %d, "
+            + "%d saved (%.1f%%), interval reduced %d times%n",
+        minInterval, maxInterval, tolerance * 100, updates, fixed, getSavedUpdates(),
+        fixed == 0 ? 0 : getSavedUpdates() * 100.0 / fixed, shrinks);
+  }
+
+  private void onUpdateProcessing(final HostUpdatesVmsProcessingEventInfo info) {
+    final Host host = info.getHost();
+    final Integer position = positions.get(host);
+    if (position == null) {
+      return;
+    }
+
+    final double time = host.getSimulation().clock();
+    if (time != updateTime) {
+      if (startTime < 0) {
+        startTime = time;
+      }
+      if (updateTime >= 0) {
+        checkMigrationSearch(updateTime);
+      }
+      if (nextInterval < previousInterval) {
+        shrinks++;
+      }
+      updates++;
+      updateTime = time;
+      previousInterval = nextInterval;
+      nextInterval = Math.min(maxInterval, previousInterval * 2);
+    }
+
+    double interval = allowedInterval(position, host, time);
+    if (searchPending) {
+      interval = Math.min(interval, lastDetection + datacenter.getHostSearchRetryDelay() - time);
+    }
+    if (interval < nextInterval) {
+      nextInterval = Math.max(minInterval, Math.floor(interval / minInterval) * minInterval);
+    }
+    datacenter.setSchedulingInterval(nextInterval);
+  }
+
+  /**
+   * Follows the datacenter's retries of the migration search: when a search finds under or overloaded
+   * hosts, the next one only happens after the host search retry delay, so the interval is kept from
+   * skipping over that time.
+   */
+  private void checkMigrationSearch(final double previousUpdate) {
+    if (!(datacenter.getVmAllocationPolicy() instanceof VmAllocationPolicyMigration policy)) {
+      return;
+    }
+
+    if (previousUpdate - lastDetection >= datacenter.getHostSearchRetryDelay() && policy.isUnderOrOverloaded()) {
+      lastDetection = previousUpdate;
+    }
+    searchPending = policy.isUnderOrOverloaded();
+  }
+
+  private double allowedInterval(final int position, final Host host, final double time) {
+    // A host can be updated more than once at the same time (e.g. when a migration finishes)
+    final double utilization = host.getCpuPercentUtilization();
+    if (time > lastTime[position]) {
+      previousTime[position] = lastTime[position];
+      previousUtilization[position] = lastUtilization[position];
+    }
+    lastTime[position] = time;
+    lastUtilization[position] = utilization;
+
+    if (host.getVmList().isEmpty()) {
+      return maxInterval;
+    }
+    // The utilization of both hosts changes while VMs are migrating between them. CloudSim Plus
+    // leaves migrated VMs in the source host's migrating out set, so they must be still in migration.
+    final int migrating = host.getVmsMigratingIn().size()
+        + (int) host.getVmsMigratingOut().stream().filter(Vm::isInMigration).count();
+    if (migrating > 0 || migrating != migrations[position]) {
+      migrations[position] = migrating;
+      return minInterval;
+    }
+
+    if (previousTime[position] < 0) {
+      return minInterval;
+    }
+
+    final double rate = Math.abs(utilization - previousUtilization[position]) / (time - previousTime[position]);
+    if (rate == 0) {
+      return maxInterval;
+    }
+
+    final double distance = Math.min(
+        Math.abs(utilization - overUtilizationThreshold(host)),
+        Math.abs(utilization - underUtilizationThreshold()));
+    return distance <= tolerance ? minInterval : Math.min(distance, tolerance) / rate;
+  }
+
+  private double overUtilizationThreshold(final Host host) {
+    return datacenter.getVmAllocationPolicy() instanceof VmAllocationPolicyMigration policy
+        ? policy.getOverUtilizationThreshold(host)
+        : Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION;
+  }
+
+  private double underUtilizationThreshold() {
+    return datacenter.getVmAllocationPolicy() instanceof VmAllocationPolicyMigration policy
+        ? policy.getUnderUtilizationThreshold()
+        : Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION;
+  }
+}
@@ -0,0 +1,395 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.hosts.Host;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes the row of each cloudlet to a CSV file as soon as it finishes, instead of building a table
+ * of the broker's finished cloudlets when the simulation ends. Rows have the columns (and the two header
+ * lines) of the CSV written by {@code CloudletsTableBuilder}, and are encoded into a buffer that's written
+ * to a {@link FileChannel} when it's full.
+ *
+ * <p>Rows are written in the order cloudlets finish, unless they're sorted by host, VM and cloudlet id.
+ * Sorted rows are kept in memory up to {@link Config.Cloudlet#RESULT_RUN_SIZE} at a time, each full run is
+ * sorted and spilled to a temporary file, and the runs are merged into the CSV file when the sink is
+ * closed. The host of a row is the one the cloudlet finished on.</p>
+ *
+ * <p>When the file has the {@link ResultTable#EXTENSION}, rows are written to a columnar {@link ResultTable}
+ * named "cloudlets" instead, with the columns of the CSV file (without their padding) and times at full
+ * precision.</p>
+ */
+public class CloudletResultSink implements AutoCloseable {
+  public static final String HEADER = "Cloudlet, Status,DC,Host,Host PEs ,VM,   VM PEs,CloudletLen,FinishedLen,CloudletPEs,StartTime,FinishTime,ExecTime";
+  public static final String UNITS = "ID,,ID,ID,CPU cores,ID,CPU cores,MI,MI,CPU cores,Seconds,Seconds,Seconds";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final Comparator<Row> ROW_ORDER = Comparator.comparingLong(Row::host)
+      .thenComparingLong(Row::vm)
+      .thenComparingLong(Row::cloudlet);
+
+  private record Row(long cloudlet, Cloudlet.Status status, long datacenter, long host, long hostPes, long vm,
+      long vmPes, long length, long finishedLength, long pes, double startTime, double finishTime, double execTime) {
+    String line() {
+      return String.format("%d,%s,%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f",
+          cloudlet, status.name(), datacenter, host, hostPes, vm, vmPes, length, finishedLength,
+          pes, startTime, finishTime, execTime);
+    }
+
+    void write(final DataOutputStream out) throws IOException {
+      out.writeLong(cloudlet);
+      out.writeByte(status.ordinal());
+      out.writeLong(datacenter);
+      out.writeLong(host);
+      out.writeLong(hostPes);
+      out.writeLong(vm);
+      out.writeLong(vmPes);
+      out.writeLong(length);
+      out.writeLong(finishedLength);
+      out.writeLong(pes);
+      out.writeDouble(startTime);
+      out.writeDouble(finishTime);
+      out.writeDouble(execTime);
+    }
+
+    static Row read(final DataInputStream in) throws IOException {
+      return new Row(in.readLong(), Cloudlet.Status.values()[in.readByte()], in.readLong(), in.readLong(),
+          in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+          in.readDouble(), in.readDouble(), in.readDouble());
+    }
+  }
+
+  private final Path file;
+  /* The CSV file, or null when rows are written to the table */
+  private final FileChannel channel;
+  private final ResultTable table;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final boolean sorted;
+  private final int runSize;
+  private final List<Row> run;
+  private final List<Path> spilledRuns = new ArrayList<>();
+  private long rows;
+  private double makespan;
+
+  public CloudletResultSink(final Path file, final boolean sorted) {
+    this(file, sorted, Config.Cloudlet.RESULT_RUN_SIZE);
+  }
+
+  public CloudletResultSink(final Path file, final boolean sorted, final int runSize) {
+    this(file, sorted, runSize, ResultTable.Compression.NONE);
+  }
+
+  /**
+   * @param compression the compression of the table, when the file has the {@link ResultTable#EXTENSION}
+   */
+  public CloudletResultSink(final Path file, final boolean sorted, final int runSize,
+      final ResultTable.Compression compression) {
+    if (runSize < 1) {
+      throw new IllegalArgumentException("The run size must be at least 1.");
+    }
+
+    this.file = file;
+    this.sorted = sorted;
+    this.runSize = runSize;
+    this.run = sorted ? new ArrayList<>(Math.min(runSize, 1024)) : null;
+    try {
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+      if (file.toString().endsWith(ResultTable.EXTENSION)) {
+        this.channel = null;
+        this.table = new ResultTable(file, "cloudlets", compression);
+        final String[] names = HEADER.split(",");
+        final String[] units = UNITS.split(",", -1);
+        for (int i = 0; i < names.length; i++) {
+          final String name = names[i].trim();
+          table.addColumn(name, name.equals("Status") ? ResultTable.Type.CATEGORY
+              : units[i].equals("Seconds") ? ResultTable.Type.FLOAT64 : ResultTable.Type.INT64, units[i]);
+        }
+        return;
+      }
+
+      this.table = null;
+      this.channel = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      write(HEADER);
+      write(UNITS);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error opening cloudlet results " + file, e);
+    }
+  }
+
+  /**
+   * Writes the row of each cloudlet of a list when it finishes. When {@code dropFinished} is true,
+   * each cloudlet is then replaced by {@link Cloudlet#NULL} in the list, so the list doesn't keep
+   * finished cloudlets in memory (a {@link SimulationCheckpoint} takes it as finished).
+   *
+   * @see DatacenterBrokerStreaming#setRetainFinishedCloudlets(boolean)
+   */
+  public void attach(final List<Cloudlet> cloudletList, final boolean dropFinished) {
+    for (int i = 0; i < cloudletList.size(); i++) {
+      final int index = i;
+      cloudletList.get(i).addOnFinishListener(info -> {
+        accept(info.getCloudlet());
+        if (dropFinished) {
+          cloudletList.set(index, Cloudlet.NULL);
+        }
+      });
+    }
+  }
+
+  public void accept(final Cloudlet cloudlet) {
+    final Host host = cloudlet.getVm().getHost();
+    // Finish listeners are notified right before the cloudlet scheduler sets the final status,
+    // so a cloudlet that ran its whole length is reported as the successful one it's about to be
+    final Cloudlet.Status status = cloudlet.getFinishedLengthSoFar() == cloudlet.getLength()
+        ? Cloudlet.Status.SUCCESS : cloudlet.getStatus();
+    final Row row = new Row(cloudlet.getId(), status, host.getDatacenter().getId(), host.getId(),
+        host.getWorkingPesNumber(), cloudlet.getVm().getId(), cloudlet.getVm().getPesNumber(),
+        cloudlet.getLength(), cloudlet.getFinishedLengthSoFar(), cloudlet.getPesNumber(),
+        cloudlet.getStartTime(), cloudlet.getFinishTime(), cloudlet.getTotalExecutionTime());
+    rows++;
+    makespan = Math.max(makespan, cloudlet.getFinishTime());
+
+    try {
+      if (!sorted) {
+        write(row);
+        return;
+      }
+
+      run.add(row);
+      if (run.size() >= runSize) {
+        spill();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing cloudlet results " + file, e);
+    }
+  }
+
+  /**
+   * Gets the number of cloudlets written (or to be written, when rows are sorted).
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * Gets the latest finish time of the cloudlets written.
+   */
+  public double getMakespan() {
+    return makespan;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  private void spill() throws IOException {
+    run.sort(ROW_ORDER);
+    final Path runFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".run");
+    spilledRuns.add(runFile);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), BUFFER_SIZE))) {
+      for (Row row : run) {
+        row.write(out);
+      }
+    }
+    run.clear();
+  }
+
+  /**
+   * Reads the rows of a spilled run, one at a time.
+   */
+  private static final class RunReader implements AutoCloseable {
+    private final DataInputStream in;
+    private Row current;
+
+    RunReader(final Path runFile) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), BUFFER_SIZE));
+      advance();
+    }
+
+    boolean advance() throws IOException {
+      try {
+        current = Row.read(in);
+        return true;
+      } catch (EOFException e) {
+        current = null;
+        return false;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Merges the sorted runs into the CSV file, always taking the least row among the ones at the head of each run.
+   */
+  private void merge() throws IOException {
+    final List<RunReader> readers = new ArrayList<>(spilledRuns.size());
+    try {
+      final PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, spilledRuns.size()),
+          Comparator.comparing((RunReader reader) -> reader.current, ROW_ORDER));
+      for (Path runFile : spilledRuns) {
+        final RunReader reader = new RunReader(runFile);
+        readers.add(reader);
+        if (reader.current != null) {
+          heads.add(reader);
+        }
+      }
+
+      while (!heads.isEmpty()) {
+        final RunReader reader = heads.poll();
+        write(reader.current);
+        if (reader.advance()) {
+          heads.add(reader);
+        }
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  private void write(final Row row) throws IOException {
+    if (table == null) {
+      write(row.line());
+      return;
+    }
+
+    table.putLong(0, row.cloudlet()).putCategory(1, row.status().name()).putLong(2, row.datacenter())
+        .putLong(3, row.host()).putLong(4, row.hostPes()).putLong(5, row.vm()).putLong(6, row.vmPes())
+        .putLong(7, row.length()).putLong(8, row.finishedLength()).putLong(9, row.pes())
+        .putDouble(10, row.startTime()).putDouble(11, row.finishTime()).putDouble(12, row.execTime())
+        .endRow();
+  }
+
+  private void write(final String line) throws IOException {
+    final byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > buffer.remaining()) {
+      flush();
+    }
+    buffer.put(bytes);
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes the rows not written yet, merging the sorted runs if there are any, and closes the file.
+   */
+  @Override
+  public void close() {
+    final SimulationEvents.CsvExport event = new SimulationEvents.CsvExport();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+    try (channel) {
+      if (sorted) {
+        if (spilledRuns.isEmpty()) {
+          run.sort(ROW_ORDER);
+          for (Row row : run) {
+            write(row);
+          }
+          run.clear();
+        } else {
+          if (!run.isEmpty()) {
+            spill();
+          }
+          merge();
+        }
+      }
+      if (table != null) {
+        table.close();
+      } else {
+        flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing cloudlet results " + file, e);
+    } finally {
+      for (Path runFile : spilledRuns) {
+        try {
+          Files.deleteIfExists(runFile);
+        } catch (IOException e) {
+          runFile.toFile().deleteOnExit();
+        }
+      }
+      spilledRuns.clear();
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.table = "cloudlets";
+      event.rows = (int) rows;
+      event.commit();
+    }
+    MetricsRegistry.global().stopTimer("csv.export", start);
+  }
+
+  /**
+   * Options of the cloudlet results of a runner: {@code --results=<file>}, {@code --sort-results}
+   * and {@code --drop-finished}.
+   */
+  public record Options(Path file, boolean sorted, boolean dropFinished) {
+    /**
+     * Parses the cloudlet result options, removing them from the argument list.
+     */
+    public static Options parse(final List<String> args, final String defaultFile) {
+      Path file = Path.of(defaultFile);
+      boolean sorted = false;
+      boolean dropFinished = false;
+      for (var iterator = args.iterator(); iterator.hasNext(); ) {
+        final String arg = iterator.next();
+        if (arg.startsWith("--results=")) {
+          file = Path.of(arg.substring("--results=".length()));
+        } else if (arg.equals("--sort-results")) {
+          sorted = true;
+        } else if (arg.equals("--drop-finished")) {
+          dropFinished = true;
+        } else {
+          continue;
+        }
+        iterator.remove();
+      }
+
+      return new Options(file, sorted, dropFinished);
+    }
+
+    public CloudletResultSink open() {
+      return open(ResultTable.Compression.NONE);
+    }
+
+    /**
+     * Opens the sink, with the given compression when the file is a {@link ResultTable}.
+     */
+    public CloudletResultSink open(final ResultTable.Compression compression) {
+      return new CloudletResultSink(file, sorted, Config.Cloudlet.RESULT_RUN_SIZE, compression);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package simulations;
+
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.vms.VmAbstract;
+
+import java.util.List;
+
+/**
+ * Broker that can forget cloudlets once they finish and return to it, so a run with many cloudlets
+ * doesn't keep all of them until the end. Their results must then be collected as they finish,
+ * by a {@link CloudletResultSink}, since {@link #getCloudletFinishedList()} stays empty.
+ *
+ * <p>The broker adds a returning cloudlet to a private finished list that's only exposed as a copy,
+ * so a cloudlet it forgets is handled here instead, doing what the broker does through the public API:
+ * the VM gets the cloudlet PEs back and is destroyed once idle. Waiting VMs are then requested again through
+ * a creation retry. The submitted and created lists are pruned once half of their cloudlets have finished,
+ * so a cloudlet is copied a bounded number of times.</p>
+ */
+public class DatacenterBrokerStreaming extends DatacenterBrokerSimple {
+  private boolean retainFinishedCloudlets = true;
+  private long releasedCloudlets;
+  private int releasedSincePruning;
+
+  public DatacenterBrokerStreaming(final CloudSimPlus simulation) {
+    super(simulation);
+  }
+
+  /**
+   * Sets whether finished cloudlets are kept by the broker (the default) or forgotten when they return to it.
+   */
+  public DatacenterBrokerStreaming setRetainFinishedCloudlets(final boolean retainFinishedCloudlets) {
+    this.retainFinishedCloudlets = retainFinishedCloudlets;
+    return this;
+  }
+
+  public boolean isRetainFinishedCloudlets() {
+    return retainFinishedCloudlets;
+  }
+
+  /**
+   * Gets the number of finished cloudlets the broker has forgotten.
+   */
+  public long getReleasedCloudlets() {
+    return releasedCloudlets;
+  }
+
+  @Override
+  public void processEvent(final SimEvent evt) {
+    if (!retainFinishedCloudlets && evt.getTag() == CloudSimTag.CLOUDLET_RETURN) {
+      release((Cloudlet) evt.getData());
+      return;
+    }
+
+    super.processEvent(evt);
+  }
+
+  private void release(final Cloudlet cloudlet) {
+    final Vm vm = cloudlet.getVm();
+    ((VmAbstract) vm).addExpectedFreePesNumber(cloudlet.getPesNumber());
+    LOGGER.info("{}: {}: {} finished in {} and returned to broker.", getSimulation().clockStr(), getName(), cloudlet, vm);
+    if (vm.getCloudletScheduler().isEmpty()) {
+      requestIdleVmDestruction(vm);
+    } else {
+      final List<Vm> vms = getVmExecList();
+      for (int i = vms.size() - 1; i >= 0; i--) {
+        requestIdleVmDestruction(vms.get(i));
+      }
+      if (!getCloudletWaitingList().isEmpty()) {
+        schedule(0, CloudSimTag.VM_CREATE_RETRY);
+      }
+    }
+
+    vm.getCloudletScheduler().getCloudletFinishedList()
+        .removeIf(execution -> execution.getCloudlet() == cloudlet);
+    releasedCloudlets++;
+
+    if (++releasedSincePruning * 2 >= getCloudletCreatedList().size()) {
+      getCloudletSubmittedList().removeIf(Cloudlet::isFinished);
+      getCloudletCreatedList().removeIf(Cloudlet::isFinished);
+      releasedSincePruning = 0;
+    }
+  }
+}
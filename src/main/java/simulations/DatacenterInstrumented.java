@@ -0,0 +1,169 @@
+package simulations;
+
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.Simulation;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.datacenters.DatacenterSimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Datacenter that records each update of its hosts (a tick) as a {@link SimulationEvents.Tick}
+ * event and in the {@code tick} histogram of the {@link MetricsRegistry#global() global metrics registry}.
+ *
+ * <p>If it has a {@link MigrationGuard}, migrations requested by the allocation policy that it vetoes are dropped.
+ * If it has a {@link MigrationScheduler}, the others are handed to it, which decides when their transfers start
+ * and how long they take. If it has a {@link HostPowerController}, sleeping target hosts are woken up, and
+ * without a scheduler, migrations to them wait until they're active.</p>
+ */
+public class DatacenterInstrumented extends DatacenterSimple {
+  private MigrationScheduler migrationScheduler;
+  private MigrationGuard migrationGuard;
+  private HostPowerController powerController;
+  private final Map<Vm, Host> waitingForTargets = new LinkedHashMap<>();
+
+  public DatacenterInstrumented(final Simulation simulation, final List<? extends Host> hostList,
+      final VmAllocationPolicy vmAllocationPolicy) {
+    super(simulation, hostList, vmAllocationPolicy);
+  }
+
+  public MigrationScheduler getMigrationScheduler() {
+    return migrationScheduler;
+  }
+
+  /**
+   * Sets the scheduler of the migrations, or null to start them when they're requested, as {@link DatacenterSimple} does.
+   */
+  public DatacenterInstrumented setMigrationScheduler(final MigrationScheduler migrationScheduler) {
+    this.migrationScheduler = migrationScheduler;
+    return this;
+  }
+
+  public MigrationGuard getMigrationGuard() {
+    return migrationGuard;
+  }
+
+  /**
+   * Sets the guard that may veto the migrations requested by the allocation policy, or null to allow all of them.
+   */
+  public DatacenterInstrumented setMigrationGuard(final MigrationGuard migrationGuard) {
+    this.migrationGuard = migrationGuard;
+    return this;
+  }
+
+  public HostPowerController getPowerController() {
+    return powerController;
+  }
+
+  /**
+   * Sets the controller of the host power states, or null to keep all hosts awake.
+   */
+  public DatacenterInstrumented setPowerController(final HostPowerController powerController) {
+    this.powerController = powerController;
+    return this;
+  }
+
+  @Override
+  public void requestVmMigration(final Vm sourceVm, final Host targetHost) {
+    final Host sourceHost = sourceVm.getHost();
+    if (migrationGuard != null && !migrationGuard.allow(sourceVm, sourceHost, targetHost)) {
+      return;
+    }
+
+    final boolean migrating = targetHost.getVmsMigratingIn().contains(sourceVm);
+    if (powerController != null) {
+      powerController.wake(targetHost);
+    }
+    if (migrationScheduler == null && targetHost.isActive()) {
+      super.requestVmMigration(sourceVm, targetHost);
+    } else if (migrationScheduler == null) {
+      if (targetHost.addMigratingInVm(sourceVm)) {
+        sourceHost.addVmMigratingOut(sourceVm);
+        waitingForTargets.put(sourceVm, targetHost);
+      }
+    } else if (targetHost.addMigratingInVm(sourceVm)) {
+      sourceHost.addVmMigratingOut(sourceVm);
+      migrationScheduler.enqueue(sourceVm, sourceHost, targetHost);
+    }
+
+    if (migrationGuard != null && !migrating && targetHost.getVmsMigratingIn().contains(sourceVm)) {
+      migrationGuard.migrationStarted(sourceVm, sourceHost, targetHost);
+    }
+  }
+
+  /**
+   * Starts the migrations that waited for their target host to wake up, when there's no {@link MigrationScheduler}.
+   * Their reservations are released first, since the datacenter makes them again.
+   */
+  public void startWaitingMigrations() {
+    for (Iterator<Map.Entry<Vm, Host>> iterator = waitingForTargets.entrySet().iterator(); iterator.hasNext(); ) {
+      final Map.Entry<Vm, Host> entry = iterator.next();
+      final Vm vm = entry.getKey();
+      final Host targetHost = entry.getValue();
+      if (vm.isCreated() && !targetHost.isActive()) {
+        continue;
+      }
+
+      iterator.remove();
+      targetHost.removeMigratingInVm(vm);
+      vm.getHost().removeVmMigratingOut(vm);
+      if (vm.isCreated()) {
+        super.requestVmMigration(vm, targetHost);
+      }
+    }
+  }
+
+  /**
+   * Restarts a migration of a resumed simulation, whose target host has already been reserved.
+   *
+   * @param end the time the migration finishes, or NaN if it was waiting for its transfer to start
+   */
+  public void resumeVmMigration(final Vm vm, final Host targetHost, final double end) {
+    if (migrationScheduler != null) {
+      migrationScheduler.resume(vm, vm.getHost(), targetHost, end);
+      return;
+    }
+
+    final double delay = Double.isNaN(end) ? 0 : Math.max(0, end - getSimulation().clock());
+    send(this, delay, CloudSimTag.VM_MIGRATE, new TreeMap.SimpleEntry<>(vm, targetHost));
+  }
+
+  @Override
+  protected boolean finishVmMigration(final SimEvent evt, final boolean ack) {
+    final boolean finished = super.finishVmMigration(evt, ack);
+    if (evt.getData() instanceof Map.Entry<?, ?> entry && entry.getKey() instanceof Vm vm) {
+      if (migrationGuard != null) {
+        migrationGuard.migrationFinished(vm);
+      }
+      if (migrationScheduler != null) {
+        migrationScheduler.finish(vm);
+      }
+    }
+
+    return finished;
+  }
+
+  @Override
+  protected double updateHostsProcessing() {
+    final SimulationEvents.Tick event = new SimulationEvents.Tick();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+    final double nextSimulationDelay = super.updateHostsProcessing();
+    event.end();
+    MetricsRegistry.global().stopTimer("tick", start);
+    if (event.shouldCommit()) {
+      event.simulationTime = getSimulation().clock();
+      event.hosts = getHostList().size();
+      event.commit();
+    }
+
+    return nextSimulationDelay;
+  }
+}
@@ -0,0 +1,506 @@
+package simulations;
+
+import org.cloudsimplus.core.Simulation;
+import org.cloudsimplus.datacenters.Datacenter;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.EventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Integrates the instantaneous power of every host over each simulation clock tick (trapezoidal rule),
+ * so energy is exact for any power model and doesn't depend on {@link Host#enableUtilizationStats()}.
+ * Inactive hosts draw the power of their sleeping state if their datacenter has a {@link HostPowerController}.
+ *
+ * <p>State is O(1) per host and kept in primitive arrays indexed by the host position in the list
+ * given to the constructor (which is the host id for a single datacenter). Optionally, it records
+ * a rolling time series of the average and peak power per server class at a fixed resolution,
+ * keeping only the last windows that fit in the configured capacity.</p>
+ */
+public class EnergyMeter {
+  private final Simulation simulation;
+  private final List<Host> hostList;
+
+  private final long[] serverClasses;
+  private final int[] classOf;
+  private final List<Datacenter> datacenters;
+  private final int[] datacenterOf;
+
+  private final double[] lastPower;
+  private final double[] energyWattSeconds;
+  private final double[] utilizationSeconds;
+  private final double[] overloadSeconds;
+  private final boolean[] lastOverloaded;
+  private final double[] classPower;
+  private final double[] lastClassPower;
+  private double lastTime;
+  private double startTime = -1;
+
+  private double resolution;
+  private int capacity;
+  private long windowIndex;
+  private double[] windowEnergy;
+  private double windowPeak;
+  private long windowsRecorded;
+  private double[] seriesTime;
+  private double[] seriesAveragePower;
+  private double[] seriesPeakPower;
+
+  public EnergyMeter(final Simulation simulation, final List<Host> hostList) {
+    this.simulation = simulation;
+    this.hostList = new ArrayList<>(hostList);
+
+    final int size = hostList.size();
+    this.lastPower = new double[size];
+    this.energyWattSeconds = new double[size];
+    this.utilizationSeconds = new double[size];
+    this.overloadSeconds = new double[size];
+    this.lastOverloaded = new boolean[size];
+
+    final TreeSet<Long> classes = new TreeSet<>();
+    hostList.forEach(host -> classes.add(host.getPesNumber()));
+    this.serverClasses = classes.stream().mapToLong(Long::longValue).toArray();
+    this.classOf = new int[size];
+    this.datacenters = new ArrayList<>();
+    this.datacenterOf = new int[size];
+    for (int i = 0; i < size; i++) {
+      final Host host = hostList.get(i);
+      classOf[i] = classes.headSet(host.getPesNumber()).size();
+      final Datacenter datacenter = host.getDatacenter();
+      if (!datacenters.contains(datacenter)) {
+        datacenters.add(datacenter);
+      }
+      datacenterOf[i] = datacenters.indexOf(datacenter);
+    }
+
+    this.classPower = new double[serverClasses.length];
+    this.lastClassPower = new double[serverClasses.length];
+    simulation.addOnClockTickListener(this::onClockTick);
+  }
+
+  /**
+   * Records the average and peak power per server class for every {@code resolution} seconds of simulation,
+   * keeping the last {@code capacity} windows.
+   */
+  public EnergyMeter enablePowerTimeSeries(final double resolution, final int capacity) {
+    if (resolution <= 0 || capacity <= 0) {
+      throw new IllegalArgumentException("Power time series resolution and capacity must be greater than 0.");
+    }
+
+    this.resolution = resolution;
+    this.capacity = capacity;
+    this.windowEnergy = new double[serverClasses.length];
+    this.seriesTime = new double[capacity];
+    this.seriesAveragePower = new double[capacity * serverClasses.length];
+    this.seriesPeakPower = new double[capacity];
+    return this;
+  }
+
+  private void onClockTick(final EventInfo info) {
+    // The hosts must be sampled in the power state the controller gives them at this tick
+    for (Datacenter datacenter : datacenters) {
+      if (datacenter instanceof DatacenterInstrumented instrumented && instrumented.getPowerController() != null) {
+        instrumented.getPowerController().update(info.getTime());
+      }
+    }
+
+    sample(info.getTime());
+  }
+
+  /**
+   * Integrates the power up to the current simulation time.
+   * Must be called after the simulation finishes, since the last clock tick isn't notified.
+   */
+  public void finish() {
+    sample(simulation.clock());
+    if (resolution > 0 && windowEnergy != null) {
+      closeWindow(Math.min(simulation.clock(), (windowIndex + 1) * resolution));
+    }
+  }
+
+  private void sample(final double time) {
+    if (startTime >= 0 && time <= lastTime) {
+      return;
+    }
+
+    Arrays.fill(classPower, 0);
+    double totalPower = 0;
+    for (int i = 0; i < lastPower.length; i++) {
+      final Host host = hostList.get(i);
+      final double demand = getCpuDemand(host, time);
+      final double utilization = Math.min(1, demand);
+      // VMs placed on a waking host run their cloudlets while it wakes up, so it draws the power of their load
+      final boolean running = host.isActive() || !host.getVmList().isEmpty();
+      final double power = running ? host.getPowerModel().getPower(utilization) : getInactivePower(i, host);
+      if (startTime >= 0) {
+        final double elapsed = time - lastTime;
+        energyWattSeconds[i] += (lastPower[i] + power) / 2 * elapsed;
+        utilizationSeconds[i] += utilization * elapsed;
+        if (lastOverloaded[i]) {
+          overloadSeconds[i] += elapsed;
+        }
+      }
+
+      lastPower[i] = power;
+      lastOverloaded[i] = running && demand >= 1;
+      classPower[classOf[i]] += power;
+      totalPower += power;
+    }
+
+    if (startTime < 0) {
+      startTime = time;
+      windowIndex = resolution > 0 ? (long) (time / resolution) : 0;
+    } else if (resolution > 0) {
+      addToSeries(lastTime, time);
+    }
+
+    windowPeak = Math.max(windowPeak, totalPower);
+    System.arraycopy(classPower, 0, lastClassPower, 0, classPower.length);
+    lastTime = time;
+  }
+
+  /**
+   * Gets the power of a host that isn't active and has no VMs, which is drawn while it sleeps or wakes up
+   * when its datacenter has a {@link HostPowerController}, and 0 otherwise.
+   */
+  private double getInactivePower(final int position, final Host host) {
+    return datacenters.get(datacenterOf[position]) instanceof DatacenterInstrumented datacenter
+        && datacenter.getPowerController() != null ? datacenter.getPowerController().getInactivePower(host) : 0;
+  }
+
+  /**
+   * Gets the CPU MIPS the VMs of a host use at a given time, as a fraction of the host capacity
+   * that may be greater than 1.
+   */
+  private static double getCpuDemand(final Host host, final double time) {
+    double mips = 0;
+    for (Vm vm : host.getVmList()) {
+      mips += vm.getTotalCpuMipsUtilization(time);
+    }
+
+    return Math.max(0, mips / host.getTotalMipsCapacity());
+  }
+
+  private void addToSeries(final double from, final double to) {
+    double start = from;
+    while (start < to) {
+      final double windowEnd = (windowIndex + 1) * resolution;
+      final double end = Math.min(to, windowEnd);
+      double startPower = 0;
+      double endPower = 0;
+      for (int k = 0; k < classPower.length; k++) {
+        final double p0 = interpolate(lastClassPower[k], classPower[k], from, to, start);
+        final double p1 = interpolate(lastClassPower[k], classPower[k], from, to, end);
+        windowEnergy[k] += (p0 + p1) / 2 * (end - start);
+        startPower += p0;
+        endPower += p1;
+      }
+
+      // The power is linear between samples, so the peak of a window a tick spans is at one of its bounds
+      windowPeak = Math.max(windowPeak, Math.max(startPower, endPower));
+
+      if (end < windowEnd) {
+        break;
+      }
+
+      closeWindow(windowEnd);
+      start = end;
+    }
+  }
+
+  private static double interpolate(final double p0, final double p1, final double t0, final double t1, final double t) {
+    return t1 == t0 ? p1 : p0 + (p1 - p0) * (t - t0) / (t1 - t0);
+  }
+
+  private void closeWindow(final double windowEnd) {
+    final double windowStart = windowIndex * resolution;
+    final double length = windowEnd - Math.max(windowStart, startTime);
+    if (length > 0) {
+      final int slot = (int) (windowsRecorded++ % capacity);
+      seriesTime[slot] = windowStart;
+      seriesPeakPower[slot] = windowPeak;
+      for (int k = 0; k < windowEnergy.length; k++) {
+        seriesAveragePower[slot * windowEnergy.length + k] = windowEnergy[k] / length;
+      }
+    }
+
+    Arrays.fill(windowEnergy, 0);
+    windowPeak = 0;
+    windowIndex++;
+  }
+
+  /**
+   * Writes the accumulators of this meter (and its power time series, if enabled),
+   * so a simulation resumed from a {@link SimulationCheckpoint} continues from them.
+   */
+  public void writeState(final DataOutput out) throws IOException {
+    out.writeInt(lastPower.length);
+    out.writeDouble(startTime);
+    out.writeDouble(lastTime);
+    for (int i = 0; i < lastPower.length; i++) {
+      out.writeDouble(lastPower[i]);
+      out.writeDouble(energyWattSeconds[i]);
+      out.writeDouble(utilizationSeconds[i]);
+      out.writeDouble(overloadSeconds[i]);
+      out.writeBoolean(lastOverloaded[i]);
+    }
+
+    out.writeInt(lastClassPower.length);
+    for (double power : lastClassPower) {
+      out.writeDouble(power);
+    }
+
+    out.writeBoolean(windowEnergy != null);
+    if (windowEnergy == null) {
+      return;
+    }
+
+    out.writeDouble(resolution);
+    out.writeInt(capacity);
+    out.writeLong(windowIndex);
+    out.writeDouble(windowPeak);
+    out.writeLong(windowsRecorded);
+    for (double energy : windowEnergy) {
+      out.writeDouble(energy);
+    }
+    for (int slot = 0; slot < capacity; slot++) {
+      out.writeDouble(seriesTime[slot]);
+      out.writeDouble(seriesPeakPower[slot]);
+      for (int k = 0; k < windowEnergy.length; k++) {
+        out.writeDouble(seriesAveragePower[slot * windowEnergy.length + k]);
+      }
+    }
+  }
+
+  /**
+   * Reads the state written by {@link #writeState(DataOutput)} for the same hosts. Clock ticks up to the time
+   * of that state are then ignored. The power time series is only restored if it's enabled here with the
+   * same resolution and capacity, and starts over otherwise.
+   */
+  public void readState(final DataInput in) throws IOException {
+    final int hosts = in.readInt();
+    if (hosts != lastPower.length) {
+      throw new IllegalArgumentException("The energy meter state has " + hosts + " hosts, but this meter has " + lastPower.length + ".");
+    }
+
+    startTime = in.readDouble();
+    lastTime = in.readDouble();
+    for (int i = 0; i < hosts; i++) {
+      lastPower[i] = in.readDouble();
+      energyWattSeconds[i] = in.readDouble();
+      utilizationSeconds[i] = in.readDouble();
+      overloadSeconds[i] = in.readDouble();
+      lastOverloaded[i] = in.readBoolean();
+    }
+
+    final int classes = in.readInt();
+    if (classes != lastClassPower.length) {
+      throw new IllegalArgumentException("The energy meter state has " + classes + " server classes, but this meter has " + lastClassPower.length + ".");
+    }
+    for (int k = 0; k < classes; k++) {
+      lastClassPower[k] = in.readDouble();
+    }
+
+    if (!in.readBoolean()) {
+      restartSeries();
+      return;
+    }
+
+    final double savedResolution = in.readDouble();
+    final int savedCapacity = in.readInt();
+    final long savedWindowIndex = in.readLong();
+    final double savedWindowPeak = in.readDouble();
+    final long savedWindowsRecorded = in.readLong();
+    final boolean matches = windowEnergy != null && savedResolution == resolution && savedCapacity == capacity;
+    for (int k = 0; k < classes; k++) {
+      final double energy = in.readDouble();
+      if (matches) {
+        windowEnergy[k] = energy;
+      }
+    }
+    for (int slot = 0; slot < savedCapacity; slot++) {
+      final double time = in.readDouble();
+      final double peak = in.readDouble();
+      if (matches) {
+        seriesTime[slot] = time;
+        seriesPeakPower[slot] = peak;
+      }
+      for (int k = 0; k < classes; k++) {
+        final double power = in.readDouble();
+        if (matches) {
+          seriesAveragePower[slot * classes + k] = power;
+        }
+      }
+    }
+
+    if (matches) {
+      windowIndex = savedWindowIndex;
+      windowPeak = savedWindowPeak;
+      windowsRecorded = savedWindowsRecorded;
+    } else {
+      restartSeries();
+    }
+  }
+
+  private void restartSeries() {
+    if (resolution > 0) {
+      windowIndex = (long) (lastTime / resolution);
+    }
+  }
+
+  public List<Host> getHostList() {
+    return hostList;
+  }
+
+  public long[] getServerClasses() {
+    return serverClasses.clone();
+  }
+
+  public List<Datacenter> getDatacenters() {
+    return datacenters;
+  }
+
+  public double getElapsedTime() {
+    return startTime < 0 ? 0 : lastTime - startTime;
+  }
+
+  public double getHostEnergyWattHour(final int position) {
+    return energyWattSeconds[position] / 3600.0;
+  }
+
+  public double getHostMeanPower(final int position) {
+    final double elapsed = getElapsedTime();
+    return elapsed > 0 ? energyWattSeconds[position] / elapsed : lastPower[position];
+  }
+
+  public double getHostMeanCpuUtilization(final int position) {
+    final double elapsed = getElapsedTime();
+    return elapsed > 0 ? utilizationSeconds[position] / elapsed : 0;
+  }
+
+  /**
+   * Gets for how long a host was active with its whole CPU capacity in use, which is
+   * when its VMs may not get the MIPS they request (SLA violation time).
+   */
+  public double getHostOverloadSeconds(final int position) {
+    return overloadSeconds[position];
+  }
+
+  public double getTotalOverloadSeconds() {
+    double seconds = 0;
+    for (double hostSeconds : overloadSeconds) {
+      seconds += hostSeconds;
+    }
+
+    return seconds;
+  }
+
+  public double getServerClassEnergyWattHour(final int classIndex) {
+    double energy = 0;
+    for (int i = 0; i < classOf.length; i++) {
+      if (classOf[i] == classIndex) {
+        energy += energyWattSeconds[i];
+      }
+    }
+
+    return energy / 3600.0;
+  }
+
+  public double getDatacenterEnergyWattHour(final Datacenter datacenter) {
+    final int index = datacenters.indexOf(datacenter);
+    double energy = 0;
+    for (int i = 0; i < datacenterOf.length; i++) {
+      if (datacenterOf[i] == index) {
+        energy += energyWattSeconds[i];
+      }
+    }
+
+    return energy / 3600.0;
+  }
+
+  public double getTotalEnergyWattHour() {
+    double energy = 0;
+    for (double hostEnergy : energyWattSeconds) {
+      energy += hostEnergy;
+    }
+
+    return energy / 3600.0;
+  }
+
+  public void exportPowerTimeSeriesToCsv(final PrintStream out) {
+    if (seriesTime == null) {
+      throw new IllegalStateException("Power time series is not enabled. Call enablePowerTimeSeries() first.");
+    }
+
+    final SimulationEvents.CsvExport event = new SimulationEvents.CsvExport();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+
+    out.print("Time(s)");
+    for (long pes : serverClasses) {
+      out.printf(",AvgPower%dPEs(W)", pes);
+    }
+    out.println(",AvgPowerTotal(W),PeakPowerTotal(W)");
+
+    final long first = Math.max(0, windowsRecorded - capacity);
+    for (long w = first; w < windowsRecorded; w++) {
+      final int slot = (int) (w % capacity);
+      out.printf("%.2f", seriesTime[slot]);
+      double total = 0;
+      for (int k = 0; k < serverClasses.length; k++) {
+        final double power = seriesAveragePower[slot * serverClasses.length + k];
+        out.printf(",%.2f", power);
+        total += power;
+      }
+      out.printf(",%.2f,%.2f%n", total, seriesPeakPower[slot]);
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.table = "power-series";
+      event.rows = (int) (windowsRecorded - first);
+      event.commit();
+    }
+    MetricsRegistry.global().stopTimer("csv.export", start);
+  }
+
+  /**
+   * Exports the power time series of {@link #exportPowerTimeSeriesToCsv} to a columnar table, with a row per window
+   * and the same column names.
+   */
+  public void exportPowerTimeSeriesToTable(final Path file, final ResultTable.Compression compression) {
+    if (seriesTime == null) {
+      throw new IllegalStateException("Power time series is not enabled. Call enablePowerTimeSeries() first.");
+    }
+
+    try (ResultTable table = new ResultTable(file, "power-series", compression)) {
+      table.addColumn("Time(s)", ResultTable.Type.FLOAT64, "s");
+      for (long pes : serverClasses) {
+        table.addColumn("AvgPower" + pes + "PEs(W)", ResultTable.Type.FLOAT64, "W");
+      }
+      table.addColumn("AvgPowerTotal(W)", ResultTable.Type.FLOAT64, "W")
+          .addColumn("PeakPowerTotal(W)", ResultTable.Type.FLOAT64, "W");
+
+      for (long w = Math.max(0, windowsRecorded - capacity); w < windowsRecorded; w++) {
+        final int slot = (int) (w % capacity);
+        table.putDouble(0, seriesTime[slot]);
+        double total = 0;
+        for (int k = 0; k < serverClasses.length; k++) {
+          final double power = seriesAveragePower[slot * serverClasses.length + k];
+          table.putDouble(k + 1, power);
+          total += power;
+        }
+        table.putDouble(serverClasses.length + 1, total).putDouble(serverClasses.length + 2, seriesPeakPower[slot]).endRow();
+      }
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Binary journal of the simulation events that used to be printed to the console from inside
+ * simulation listeners (VM creation, host allocation snapshots, overload detection and migrations).
+ *
+ * <p>Events are encoded as length-prefixed records into a buffer owned by the simulation thread.
+ * Full buffers are handed to a background thread that writes them to a {@link FileChannel},
+ * so the simulation never blocks on I/O unless all buffers are waiting to be written.
+ * {@link EventJournalReader} converts a journal file to CSV.</p>
+ *
+ * <p>The journal also owns the console switch: when it's quiet, callers must not print anything.</p>
+ */
+public class EventJournal implements AutoCloseable {
+  public static final int MAGIC = 0x45564A31; // "EVJ1"
+
+  /** Size of a record after its length prefix: type, time, VM, host, target host, MIPS and capacity. */
+  public static final int RECORD_SIZE = 1 + Double.BYTES + 3 * Long.BYTES + 2 * Double.BYTES;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int BUFFERS = 4;
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+  public enum Type {
+    VM_CREATED, VM_ALLOCATION, HOST_ALLOCATION, HOST_OVERLOADED, MIGRATION_STARTED, MIGRATION_FINISHED
+  }
+
+  private final boolean quiet;
+  private final FileChannel channel;
+  private final BlockingQueue<ByteBuffer> freeBuffers;
+  private final BlockingQueue<ByteBuffer> fullBuffers;
+  private final Thread writer;
+  private volatile IOException writeError;
+  private ByteBuffer buffer;
+  private long records;
+
+  /**
+   * Creates a journal that writes to the given file, or only holds the console switch when the file is null.
+   */
+  public EventJournal(final Path file, final boolean quiet) {
+    this.quiet = quiet;
+    if (file == null) {
+      this.channel = null;
+      this.freeBuffers = null;
+      this.fullBuffers = null;
+      this.writer = null;
+      return;
+    }
+
+    try {
+      this.channel = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error opening event journal " + file, e);
+    }
+
+    this.freeBuffers = new ArrayBlockingQueue<>(BUFFERS);
+    this.fullBuffers = new ArrayBlockingQueue<>(BUFFERS + 1);
+    for (int i = 1; i < BUFFERS; i++) {
+      freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+
+    this.writer = new Thread(this::writeBuffers, "event-journal-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public boolean isQuiet() {
+    return quiet;
+  }
+
+  public boolean isEnabled() {
+    return channel != null;
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  public void vmCreated(final double time, final Vm vm) {
+    append(Type.VM_CREATED, time, vm.getId(), vm.getHost().getId(), -1,
+        vm.getHost().getVmScheduler().getAllocatedMips(vm).totalMips(), vm.getTotalMipsCapacity());
+  }
+
+  public void vmAllocation(final double time, final Vm vm, final Host host) {
+    append(Type.VM_ALLOCATION, time, vm.getId(), host.getId(), -1,
+        host.getVmScheduler().getAllocatedMips(vm).totalMips(), vm.getTotalMipsCapacity());
+  }
+
+  public void hostAllocation(final double time, final Host host) {
+    append(Type.HOST_ALLOCATION, time, -1, host.getId(), -1,
+        host.getTotalAllocatedMips(), host.getTotalMipsCapacity());
+  }
+
+  public void hostOverloaded(final double time, final Host host) {
+    append(Type.HOST_OVERLOADED, time, -1, host.getId(), -1,
+        host.getCpuMipsUtilization(), host.getTotalMipsCapacity());
+  }
+
+  public void migrationStarted(final double time, final Vm vm, final Host source, final Host target) {
+    append(Type.MIGRATION_STARTED, time, vm.getId(), source.getId(), target.getId(),
+        target.getVmScheduler().getAllocatedMips(vm).totalMips(), vm.getTotalMipsCapacity());
+  }
+
+  public void migrationFinished(final double time, final Vm vm, final Host target) {
+    append(Type.MIGRATION_FINISHED, time, vm.getId(), target.getId(), -1,
+        target.getTotalAllocatedMips(), target.getTotalMipsCapacity());
+  }
+
+  private void append(final Type type, final double time, final long vm, final long host, final long target,
+      final double mips, final double capacity) {
+    if (channel == null) {
+      return;
+    }
+
+    if (buffer.remaining() < Integer.BYTES + RECORD_SIZE) {
+      handOff();
+      buffer = takeFreeBuffer();
+    }
+
+    buffer.putInt(RECORD_SIZE)
+        .put((byte) type.ordinal())
+        .putDouble(time)
+        .putLong(vm)
+        .putLong(host)
+        .putLong(target)
+        .putDouble(mips)
+        .putDouble(capacity);
+    records++;
+  }
+
+  private void handOff() {
+    buffer.flip();
+    fullBuffers.add(buffer);
+    buffer = null;
+  }
+
+  private ByteBuffer takeFreeBuffer() {
+    try {
+      return freeBuffers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the event journal writer", e);
+    }
+  }
+
+  private void writeBuffers() {
+    try {
+      for (ByteBuffer full = fullBuffers.take(); full != END; full = fullBuffers.take()) {
+        try {
+          while (full.hasRemaining() && writeError == null) {
+            channel.write(full);
+          }
+        } catch (IOException e) {
+          writeError = e;
+        }
+
+        full.clear();
+        freeBuffers.add(full);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes the pending records and waits for the writer thread to finish.
+   */
+  @Override
+  public void close() {
+    if (channel == null || buffer == null) {
+      return;
+    }
+
+    handOff();
+    fullBuffers.add(END);
+    try {
+      writer.join();
+      channel.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      writeError = writeError == null ? e : writeError;
+    }
+
+    if (writeError != null) {
+      throw new UncheckedIOException("Error writing event journal", writeError);
+    }
+  }
+}
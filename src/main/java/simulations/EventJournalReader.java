@@ -0,0 +1,88 @@
+package simulations;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Converts an {@link EventJournal} file to CSV, so it can be loaded by the scripts in the {@code analysis} directory.
+ *
+ * <p>Usage: {@code EventJournalReader <journal file> [<csv file>]}. When the CSV file is omitted,
+ * it's written next to the journal with the {@code .csv} extension.</p>
+ */
+public final class EventJournalReader {
+  public static final String HEADER = "Time,Event,VmId,HostId,TargetHostId,Mips,TotalMips";
+
+  private EventJournalReader() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: EventJournalReader <journal file> [<csv file>]");
+      System.exit(1);
+    }
+
+    final Path journal = Path.of(args[0]);
+    final Path csv = args.length > 1 ? Path.of(args[1]) : Path.of(args[0].replaceFirst("\\.[^./]*$", "") + ".csv");
+    try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+      final long records = toCsv(journal, out);
+      System.out.printf("%d events written to %s%n", records, csv);
+    }
+  }
+
+  /**
+   * Writes every record of a journal file as a CSV row.
+   *
+   * @return the number of records converted
+   */
+  public static long toCsv(final Path journal, final Writer out) throws IOException {
+    final EventJournal.Type[] types = EventJournal.Type.values();
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    long records = 0;
+
+    out.write(HEADER);
+    out.write('\n');
+    try (FileChannel channel = FileChannel.open(journal)) {
+      boolean header = true;
+      while (true) {
+        final int read = channel.read(buffer);
+        buffer.flip();
+        if (header) {
+          if (buffer.remaining() < Integer.BYTES || buffer.getInt() != EventJournal.MAGIC) {
+            throw new IOException(journal + " is not an event journal");
+          }
+          header = false;
+        }
+
+        while (buffer.remaining() >= Integer.BYTES && buffer.remaining() >= Integer.BYTES + buffer.getInt(buffer.position())) {
+          final int length = buffer.getInt();
+          final int end = buffer.position() + length;
+          final EventJournal.Type type = types[buffer.get()];
+          out.write(String.format(Locale.ROOT, "%.2f,%s,%d,%d,%d,%.2f,%.2f\n",
+              buffer.getDouble(), type, buffer.getLong(), buffer.getLong(), buffer.getLong(),
+              buffer.getDouble(), buffer.getDouble()));
+          // Skips fields added by newer journal versions
+          buffer.position(end);
+          records++;
+        }
+
+        buffer.compact();
+        if (read < 0) {
+          if (buffer.position() > 0) {
+            throw new IOException(journal + " ends with a truncated record");
+          }
+          break;
+        }
+      }
+    }
+
+    return records;
+  }
+}
@@ -0,0 +1,121 @@
+package simulations;
+
+import org.cloudsimplus.builders.tables.HostHistoryTableBuilder;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostStateHistoryEntry;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-memory replacement for {@link Host#setStateHistoryEnabled(boolean)}.
+ * It records the state of a chosen set of hosts into per-host primitive ring buffers,
+ * keeping only the last {@code capacity} samples taken every {@code stride} host updates,
+ * so memory stays flat no matter how long the simulation runs.
+ */
+public class HostHistoryRecorder {
+  private final int capacity;
+  private final int stride;
+  private final Map<Host, Integer> slots;
+
+  private final double[] time;
+  private final double[] allocatedMips;
+  private final double[] requestedMips;
+  private final boolean[] active;
+  private final long[] recorded;
+  private final long[] updates;
+
+  public HostHistoryRecorder(final Collection<? extends Host> hosts, final int capacity, final int stride) {
+    if (capacity <= 0 || stride <= 0) {
+      throw new IllegalArgumentException("History capacity and stride must be greater than 0.");
+    }
+
+    this.capacity = capacity;
+    this.stride = stride;
+    this.slots = new HashMap<>(hosts.size() * 2);
+    this.time = new double[hosts.size() * capacity];
+    this.allocatedMips = new double[hosts.size() * capacity];
+    this.requestedMips = new double[hosts.size() * capacity];
+    this.active = new boolean[hosts.size() * capacity];
+    this.recorded = new long[hosts.size()];
+    this.updates = new long[hosts.size()];
+
+    for (Host host : hosts) {
+      slots.put(host, slots.size());
+      host.addOnUpdateProcessingListener(this::onUpdateProcessing);
+    }
+  }
+
+  public boolean isRecording(final Host host) {
+    return slots.containsKey(host);
+  }
+
+  private void onUpdateProcessing(final HostUpdatesVmsProcessingEventInfo info) {
+    final Host host = info.getHost();
+    final int slot = slots.get(host);
+    final double now = host.getSimulation().clock();
+
+    final int base = slot * capacity;
+    final long count = recorded[slot];
+    int index;
+    if (count > 0 && time[base + (int) ((count - 1) % capacity)] == now) {
+      // Multiple updates at the same time replace the last sample, as the host's own history does
+      index = (int) ((count - 1) % capacity);
+    } else {
+      if (updates[slot]++ % stride != 0) {
+        return;
+      }
+      index = (int) (count % capacity);
+      recorded[slot]++;
+    }
+
+    double requested = 0;
+    for (Vm vm : host.getVmList()) {
+      requested += vm.getTotalCpuMipsRequested();
+    }
+
+    time[base + index] = now;
+    allocatedMips[base + index] = host.getCpuMipsUtilization();
+    requestedMips[base + index] = requested;
+    active[base + index] = host.isActive();
+  }
+
+  /**
+   * Gets the recorded history of a host, from the oldest to the newest sample still in the buffer.
+   */
+  public List<HostStateHistoryEntry> getHistory(final Host host) {
+    final Integer slot = slots.get(host);
+    if (slot == null) {
+      throw new IllegalArgumentException(host + " is not being recorded.");
+    }
+
+    final long count = recorded[slot];
+    final List<HostStateHistoryEntry> history = new ArrayList<>((int) Math.min(count, capacity));
+    final int base = slot * capacity;
+    for (long i = Math.max(0, count - capacity); i < count; i++) {
+      final int index = base + (int) (i % capacity);
+      history.add(new HostStateHistoryEntry(time[index], allocatedMips[index], requestedMips[index], active[index]));
+    }
+
+    return history;
+  }
+
+  /**
+   * Builds a {@link HostHistoryTableBuilder} that prints the recorded history instead of the host's own.
+   */
+  public HostHistoryTableBuilder newTableBuilder(final Host host) {
+    return new RecordedHostHistoryTableBuilder(host, getHistory(host));
+  }
+
+  private static final class RecordedHostHistoryTableBuilder extends HostHistoryTableBuilder {
+    private RecordedHostHistoryTableBuilder(final Host host, final List<HostStateHistoryEntry> history) {
+      super(host);
+      setObjectList(history);
+    }
+  }
+}
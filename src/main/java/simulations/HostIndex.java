@@ -0,0 +1,268 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Live index of the hosts of a datacenter, bucketed by server class (number of PEs) and
+ * keeping the free MIPS, RAM and BW of each host in a max segment tree per bucket.
+ *
+ * <p>The index only prunes hosts that cannot pass {@link Host#isSuitableForVm(Vm)}, so callers
+ * still get candidates in host list order and apply their own predicate on them. Entries are
+ * refreshed lazily: hosts are marked dirty when VMs are allocated to or removed from them, and
+ * all of them when the simulation time changes, since the MIPS allocated to VMs follow their requests.
+ * Pinned hosts (whose state is being changed temporarily) are never pruned.</p>
+ */
+public class HostIndex {
+  private static final double MIPS_TOLERANCE = 1e-6;
+
+  private final List<Host> hostList;
+  private final Map<Host, Integer> positions;
+  private final Bucket[] buckets;
+  private final Bucket[] bucketOf;
+  private final int[] leafOf;
+  private final BitSet dirty;
+  private final BitSet pinned;
+  private double time = -1;
+  private long modifications;
+
+  public HostIndex(final List<Host> hostList) {
+    this.hostList = new ArrayList<>(hostList);
+    this.positions = new HashMap<>(hostList.size() * 2);
+    this.bucketOf = new Bucket[hostList.size()];
+    this.leafOf = new int[hostList.size()];
+    this.dirty = new BitSet(hostList.size());
+    this.pinned = new BitSet(hostList.size());
+
+    final TreeMap<Long, List<Integer>> classes = new TreeMap<>();
+    for (int i = 0; i < this.hostList.size(); i++) {
+      final Host host = this.hostList.get(i);
+      positions.put(host, i);
+      classes.computeIfAbsent(host.getPesNumber(), pes -> new ArrayList<>()).add(i);
+    }
+
+    this.buckets = new Bucket[classes.size()];
+    int b = 0;
+    for (Map.Entry<Long, List<Integer>> entry : classes.entrySet()) {
+      final Bucket bucket = new Bucket(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+      for (int leaf = 0; leaf < bucket.positions.length; leaf++) {
+        bucketOf[bucket.positions[leaf]] = bucket;
+        leafOf[bucket.positions[leaf]] = leaf;
+        refresh(bucket.positions[leaf]);
+      }
+      buckets[b++] = bucket;
+    }
+  }
+
+  public int size() {
+    return hostList.size();
+  }
+
+  public Host getHost(final int position) {
+    return hostList.get(position);
+  }
+
+  public int getPosition(final Host host) {
+    return positions.getOrDefault(host, -1);
+  }
+
+  public long[] getServerClasses() {
+    return Arrays.stream(buckets).mapToLong(bucket -> bucket.pes).toArray();
+  }
+
+  /**
+   * Marks every host dirty the first time the index is used at a new simulation time.
+   */
+  public void refreshAt(final double time) {
+    if (time != this.time) {
+      this.time = time;
+      dirty.set(0, hostList.size());
+      modifications++;
+    }
+  }
+
+  public void markDirty(final Host host) {
+    final int position = getPosition(host);
+    if (position >= 0) {
+      dirty.set(position);
+      modifications++;
+    }
+  }
+
+  /**
+   * Gets the number of times hosts were marked dirty, pinned or unpinned, or all of them at a new time,
+   * so callers can tell if candidates they got before may have changed.
+   */
+  public long getModifications() {
+    return modifications;
+  }
+
+  /**
+   * Pins a host so it's always returned as a candidate until {@link #unpinAll()} is called.
+   * Used while the allocation policy temporarily creates and destroys VMs on hosts.
+   */
+  public void pin(final Host host) {
+    final int position = getPosition(host);
+    if (position >= 0 && !pinned.get(position)) {
+      pinned.set(position);
+      modifications++;
+      bucketOf[position].update(leafOf[position], Double.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+  }
+
+  public void unpinAll() {
+    for (int i = pinned.nextSetBit(0); i >= 0; i = pinned.nextSetBit(i + 1)) {
+      dirty.set(i);
+      modifications++;
+    }
+    pinned.clear();
+  }
+
+  /**
+   * Gets the position of the first host at or after the given position that may be suitable for the VM.
+   *
+   * @return the host position or -1 if there is no such host
+   */
+  public int nextCandidate(final Vm vm, final int fromPosition) {
+    flush();
+
+    final double mips = vm.getCurrentRequestedMips().totalMips() - MIPS_TOLERANCE;
+    final long ram = vm.getRam().getCapacity();
+    final long bw = vm.getBw().getCapacity();
+    int next = -1;
+    for (Bucket bucket : buckets) {
+      if (bucket.pes < vm.getPesNumber()) {
+        continue;
+      }
+
+      final int position = bucket.next(fromPosition, mips, ram, bw);
+      if (position >= 0 && (next < 0 || position < next)) {
+        next = position;
+      }
+    }
+
+    return next;
+  }
+
+  /**
+   * Sets the positions of all the hosts that may be suitable for the VM, in a single pass over each server class.
+   */
+  public void getCandidates(final Vm vm, final BitSet candidates) {
+    flush();
+
+    final double mips = vm.getCurrentRequestedMips().totalMips() - MIPS_TOLERANCE;
+    final long ram = vm.getRam().getCapacity();
+    final long bw = vm.getBw().getCapacity();
+    for (Bucket bucket : buckets) {
+      if (bucket.pes >= vm.getPesNumber()) {
+        bucket.collect(1, 0, bucket.leaves - 1, mips, ram, bw, candidates);
+      }
+    }
+  }
+
+  private void flush() {
+    for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+      if (!pinned.get(i)) {
+        refresh(i);
+      }
+    }
+    dirty.clear();
+  }
+
+  private void refresh(final int position) {
+    final Host host = hostList.get(position);
+    bucketOf[position].update(leafOf[position], host.getTotalAvailableMips(),
+        host.getRam().getAvailableResource(), host.getBw().getAvailableResource());
+  }
+
+  private static final class Bucket {
+    private final long pes;
+    private final int[] positions;
+    private final int leaves;
+    private final double[] maxMips;
+    private final long[] maxRam;
+    private final long[] maxBw;
+
+    private Bucket(final long pes, final int[] positions) {
+      this.pes = pes;
+      this.positions = positions;
+      int leaves = 1;
+      while (leaves < positions.length) {
+        leaves <<= 1;
+      }
+      this.leaves = leaves;
+      this.maxMips = new double[2 * leaves];
+      this.maxRam = new long[2 * leaves];
+      this.maxBw = new long[2 * leaves];
+      Arrays.fill(maxMips, -1);
+      Arrays.fill(maxRam, -1);
+      Arrays.fill(maxBw, -1);
+    }
+
+    private void update(final int leaf, final double mips, final long ram, final long bw) {
+      int node = leaf + leaves;
+      maxMips[node] = mips;
+      maxRam[node] = ram;
+      maxBw[node] = bw;
+      for (node >>= 1; node > 0; node >>= 1) {
+        maxMips[node] = Math.max(maxMips[2 * node], maxMips[2 * node + 1]);
+        maxRam[node] = Math.max(maxRam[2 * node], maxRam[2 * node + 1]);
+        maxBw[node] = Math.max(maxBw[2 * node], maxBw[2 * node + 1]);
+      }
+    }
+
+    private boolean fits(final int node, final double mips, final long ram, final long bw) {
+      return maxMips[node] >= mips && maxRam[node] >= ram && maxBw[node] >= bw;
+    }
+
+    private int next(final int fromPosition, final double mips, final long ram, final long bw) {
+      int from = Arrays.binarySearch(positions, fromPosition);
+      if (from < 0) {
+        from = -from - 1;
+      }
+      if (from >= positions.length) {
+        return -1;
+      }
+
+      final int leaf = find(1, 0, leaves - 1, from, mips, ram, bw);
+      return leaf < 0 ? -1 : positions[leaf];
+    }
+
+    private void collect(final int node, final int lo, final int hi, final double mips, final long ram,
+        final long bw, final BitSet candidates) {
+      if (!fits(node, mips, ram, bw)) {
+        return;
+      }
+      if (lo == hi) {
+        candidates.set(positions[lo]);
+        return;
+      }
+
+      final int mid = (lo + hi) >>> 1;
+      collect(2 * node, lo, mid, mips, ram, bw, candidates);
+      collect(2 * node + 1, mid + 1, hi, mips, ram, bw, candidates);
+    }
+
+    private int find(final int node, final int lo, final int hi, final int from,
+        final double mips, final long ram, final long bw) {
+      if (hi < from || !fits(node, mips, ram, bw)) {
+        return -1;
+      }
+      if (lo == hi) {
+        return lo;
+      }
+
+      final int mid = (lo + hi) >>> 1;
+      final int left = find(2 * node, lo, mid, from, mips, ram, bw);
+      return left >= 0 ? left : find(2 * node + 1, mid + 1, hi, from, mips, ram, bw);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Keeps each host of a datacenter in a utilization band, using the same over and under utilization
+ * rules as the CloudSim Plus migration policies, so that overloaded and underloaded hosts can be
+ * found without scanning the whole host list.
+ *
+ * <p>A host is re-evaluated when it updates the processing of its VMs (which is when their utilization
+ * changes) or when it's {@link #markDirty(Host) marked dirty} because VMs were placed on or removed from
+ * it. Hosts without VMs are skipped until that happens. Every band change is reported to the
+ * {@link BandChangeListener}s, and the hosts in each band are kept in bit sets that the queries walk.</p>
+ */
+public class HostLoadDetector {
+  public enum Band {
+    /** The host has no VMs. */
+    IDLE,
+    /** The requested CPU is below the under utilization threshold. */
+    UNDERLOADED,
+    NORMAL,
+    /** The CPU utilization is above the over utilization threshold. */
+    OVERLOADED
+  }
+
+  @FunctionalInterface
+  public interface BandChangeListener {
+    void update(double time, Host host, Band previous, Band current);
+  }
+
+  private static final Band[] BANDS = Band.values();
+
+  private final List<Host> hostList;
+  private final Map<Host, Integer> positions;
+  private final byte[] bands;
+  private final BitSet[] members = new BitSet[BANDS.length];
+  private final BitSet dirty;
+  private final List<BandChangeListener> listeners = new ArrayList<>();
+
+  private double overUtilizationThreshold;
+  private double underUtilizationThreshold;
+  private ToDoubleFunction<Host> hostOverUtilizationThreshold;
+  private long evaluations;
+
+  public HostLoadDetector(final List<Host> hostList, final double overUtilizationThreshold,
+      final double underUtilizationThreshold) {
+    this.hostList = new ArrayList<>(hostList);
+    this.positions = new HashMap<>(hostList.size() * 2);
+    this.bands = new byte[hostList.size()];
+    this.dirty = new BitSet(hostList.size());
+    this.overUtilizationThreshold = overUtilizationThreshold;
+    this.underUtilizationThreshold = underUtilizationThreshold;
+    for (int i = 0; i < members.length; i++) {
+      members[i] = new BitSet(hostList.size());
+    }
+
+    for (int i = 0; i < this.hostList.size(); i++) {
+      final Host host = this.hostList.get(i);
+      positions.put(host, i);
+      members[Band.IDLE.ordinal()].set(i);
+      host.addOnUpdateProcessingListener(this::onUpdateProcessing);
+    }
+    dirty.set(0, this.hostList.size());
+  }
+
+  public int size() {
+    return hostList.size();
+  }
+
+  /**
+   * Changes the thresholds, re-evaluating every host on the next query if any of them changed.
+   */
+  public void setThresholds(final double overUtilizationThreshold, final double underUtilizationThreshold) {
+    if (overUtilizationThreshold != this.overUtilizationThreshold
+        || underUtilizationThreshold != this.underUtilizationThreshold) {
+      this.overUtilizationThreshold = overUtilizationThreshold;
+      this.underUtilizationThreshold = underUtilizationThreshold;
+      dirty.set(0, hostList.size());
+    }
+  }
+
+  /**
+   * Uses a different over utilization threshold for each host (such as a dynamic one computed from
+   * the host's utilization history) instead of the one given by {@link #setThresholds(double, double)}.
+   * The function is called when a host is evaluated, so it must already take into account the
+   * utilization that triggered the evaluation.
+   */
+  public void setHostOverUtilizationThreshold(final ToDoubleFunction<Host> hostOverUtilizationThreshold) {
+    this.hostOverUtilizationThreshold = hostOverUtilizationThreshold;
+    dirty.set(0, hostList.size());
+  }
+
+  public HostLoadDetector addOnBandChangeListener(final BandChangeListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  public void markDirty(final Host host) {
+    final Integer position = positions.get(host);
+    if (position != null) {
+      dirty.set(position);
+    }
+  }
+
+  public Band getBand(final Host host) {
+    flush();
+    final Integer position = positions.get(host);
+    return position == null ? Band.IDLE : BANDS[bands[position]];
+  }
+
+  public int count(final Band band) {
+    flush();
+    return members[band.ordinal()].cardinality();
+  }
+
+  public List<Host> getHosts(final Band band) {
+    flush();
+    final BitSet set = members[band.ordinal()];
+    final List<Host> hosts = new ArrayList<>(set.cardinality());
+    for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+      hosts.add(hostList.get(i));
+    }
+
+    return hosts;
+  }
+
+  /**
+   * Gets the overloaded hosts that the migration policy can take VMs from,
+   * i.e. the ones that don't already have VMs migrating out.
+   */
+  public Set<Host> getOverloadedCandidates() {
+    flush();
+    final BitSet set = members[Band.OVERLOADED.ordinal()];
+    final Set<Host> hosts = new LinkedHashSet<>();
+    for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+      final Host host = hostList.get(i);
+      if (host.getVmsMigratingOut().isEmpty()) {
+        hosts.add(host);
+      }
+    }
+
+    return hosts;
+  }
+
+  /**
+   * Checks if there is any underloaded host the migration policy can consolidate,
+   * i.e. an active one with no VMs migrating in and some VM that isn't migrating out.
+   */
+  public boolean hasUnderloadedCandidates() {
+    flush();
+    final BitSet set = members[Band.UNDERLOADED.ordinal()];
+    for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+      final Host host = hostList.get(i);
+      if (host.isActive() && host.getVmsMigratingIn().isEmpty()
+          && host.getVmList().stream().anyMatch(vm -> !vm.isInMigration())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Gets the number of host evaluations performed so far.
+   */
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  private double getOverUtilizationThreshold(final Host host) {
+    return hostOverUtilizationThreshold == null
+        ? overUtilizationThreshold
+        : hostOverUtilizationThreshold.applyAsDouble(host);
+  }
+
+  private void onUpdateProcessing(final HostUpdatesVmsProcessingEventInfo info) {
+    final Host host = info.getHost();
+    final Integer position = positions.get(host);
+    if (position != null && (bands[position] != Band.IDLE.ordinal() || dirty.get(position))) {
+      evaluate(position, host.getSimulation().clock());
+    }
+  }
+
+  private void flush() {
+    for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+      final Host host = hostList.get(i);
+      evaluate(i, host.getSimulation() == null ? 0 : host.getSimulation().clock());
+    }
+  }
+
+  private void evaluate(final int position, final double time) {
+    dirty.clear(position);
+    evaluations++;
+    final Host host = hostList.get(position);
+    final boolean idle = host.getVmList().isEmpty();
+    final double utilization = idle ? 0 : host.getCpuPercentUtilization();
+    final double threshold = idle ? 0 : getOverUtilizationThreshold(host);
+    final Band band;
+    if (idle) {
+      band = Band.IDLE;
+    } else if (utilization > threshold) {
+      band = Band.OVERLOADED;
+    } else if (host.getCpuPercentRequested() < underUtilizationThreshold) {
+      band = Band.UNDERLOADED;
+    } else {
+      band = Band.NORMAL;
+    }
+
+    final Band previous = BANDS[bands[position]];
+    if (band == previous) {
+      return;
+    }
+
+    members[previous.ordinal()].clear(position);
+    members[band.ordinal()].set(position);
+    bands[position] = (byte) band.ordinal();
+    if (band == Band.OVERLOADED) {
+      MetricsRegistry.global().increment("hosts.overloaded");
+      final SimulationEvents.HostOverloaded event = new SimulationEvents.HostOverloaded();
+      if (event.shouldCommit()) {
+        event.simulationTime = time;
+        event.hostId = host.getId();
+        event.cpuUtilization = utilization;
+        event.threshold = threshold;
+        event.commit();
+      }
+    }
+    for (BandChangeListener listener : listeners) {
+      listener.update(time, host, previous, band);
+    }
+  }
+}
@@ -0,0 +1,349 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.EventInfo;
+import org.cloudsimplus.listeners.HostEventInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Manages the power state of the hosts of a {@link DatacenterInstrumented}. A host is active while it has VMs
+ * (or VMs migrating in) and idle when it's awake without any. Idle hosts are put to sleep after the idle timeout,
+ * and sleeping ones are switched off after the sleep timeout, each state drawing a fraction of the host's idle power.
+ *
+ * <p>Each server class keeps a reserve of idle (or waking) hosts, a fraction of its active hosts, so demand finds
+ * awake hosts: the idle hosts beyond the reserve go to sleep, from the last one in host list order, and when the
+ * reserve runs short sleeping hosts are woken ahead of demand, from the first one, preferring those asleep over
+ * those switched off. A host wakes up after the latency of the state it was in, drawing its idle power meanwhile;
+ * hosts are also woken when VMs are placed or migrate to them. VMs placed on a waking host are created at once
+ * and run their cloudlets during the wake-up, so the {@link EnergyMeter} charges that host through its power model.
+ * Sleeping hosts are inactive CloudSim Plus hosts, so migration policies don't consolidate them, and the indexed
+ * policies only pick them when no awake host fits.</p>
+ */
+public class HostPowerController {
+  public enum State {
+    ACTIVE, IDLE, SLEEP, OFF
+  }
+
+  private final DatacenterInstrumented datacenter;
+  private final List<Host> hostList;
+  private final Map<Host, Integer> positions = new IdentityHashMap<>();
+  private final long[] serverClasses;
+  private final int[] classOf;
+  private final double[] idlePower;
+
+  private final double sleepPowerFraction;
+  private final double offPowerFraction;
+  private final double sleepWakeLatency;
+  private final double offWakeLatency;
+  private final double idleTimeout;
+  private final double sleepTimeout;
+  private final double reserveFraction;
+  private final int reserveMin;
+
+  /* SLEEP or OFF while a host is inactive (and waking up from that state), null while it's awake */
+  private final State[] asleep;
+  private final boolean[] waking;
+  /* When a host became idle, or NaN */
+  private final double[] idleSince;
+  private final double[] asleepSince;
+  private final int[] spare;
+  private final int[] busy;
+  /* The last clock tick handled, since the EnergyMeter may handle it first */
+  private double lastTick = -1;
+
+  private long sleeps;
+  private long powerOffs;
+  private long wakes;
+  private double sleepSeconds;
+  private double offSeconds;
+  private double wakeSeconds;
+  private double savedWattSeconds;
+
+  /**
+   * @param sleepPowerFraction the power drawn by a sleeping host, as a fraction of its idle power
+   * @param offPowerFraction the power drawn by a switched off host, as a fraction of its idle power
+   * @param sleepWakeLatency the seconds a sleeping host takes to wake up
+   * @param offWakeLatency the seconds a switched off host takes to boot
+   * @param idleTimeout the seconds a host stays idle before it may be put to sleep
+   * @param sleepTimeout the seconds a host sleeps before it's switched off
+   * @param reserveFraction the idle hosts kept awake per server class, as a fraction of its active hosts
+   * @param reserveMin the fewest idle hosts kept awake per server class
+   */
+  public HostPowerController(final DatacenterInstrumented datacenter, final double sleepPowerFraction,
+      final double offPowerFraction, final double sleepWakeLatency, final double offWakeLatency,
+      final double idleTimeout, final double sleepTimeout, final double reserveFraction, final int reserveMin) {
+    if (sleepPowerFraction < 0 || sleepPowerFraction > 1 || offPowerFraction < 0 || offPowerFraction > 1) {
+      throw new IllegalArgumentException("The power of sleeping and switched off hosts must be between 0 and 1 of their idle power.");
+    }
+    if (sleepWakeLatency < 0 || offWakeLatency < 0 || idleTimeout < 0 || sleepTimeout < 0) {
+      throw new IllegalArgumentException("The wake-up latencies and timeouts must not be negative.");
+    }
+    if (reserveFraction < 0 || reserveMin < 0) {
+      throw new IllegalArgumentException("The reserve of idle hosts must not be negative.");
+    }
+
+    this.datacenter = datacenter;
+    this.hostList = new ArrayList<>(datacenter.getHostList());
+    this.sleepPowerFraction = sleepPowerFraction;
+    this.offPowerFraction = offPowerFraction;
+    this.sleepWakeLatency = sleepWakeLatency;
+    this.offWakeLatency = offWakeLatency;
+    this.idleTimeout = idleTimeout;
+    this.sleepTimeout = sleepTimeout;
+    this.reserveFraction = reserveFraction;
+    this.reserveMin = reserveMin;
+
+    final int size = hostList.size();
+    final TreeSet<Long> classes = new TreeSet<>();
+    hostList.forEach(host -> classes.add(host.getPesNumber()));
+    this.serverClasses = classes.stream().mapToLong(Long::longValue).toArray();
+    this.classOf = new int[size];
+    this.idlePower = new double[size];
+    this.asleep = new State[size];
+    this.waking = new boolean[size];
+    this.idleSince = new double[size];
+    this.asleepSince = new double[size];
+    Arrays.fill(idleSince, Double.NaN);
+    for (int position = 0; position < size; position++) {
+      final Host host = hostList.get(position);
+      positions.put(host, position);
+      classOf[position] = classes.headSet(host.getPesNumber()).size();
+      idlePower[position] = host.getPowerModel().getPower(0);
+      host.addOnStartupListener(this::onStartup);
+    }
+    this.spare = new int[serverClasses.length];
+    this.busy = new int[serverClasses.length];
+
+    datacenter.getSimulation().addOnClockTickListener(this::onClockTick);
+    datacenter.setPowerController(this);
+  }
+
+  public static HostPowerController fromConfig(final DatacenterInstrumented datacenter) {
+    return new HostPowerController(datacenter, Config.Power.SLEEP_POWER_FRACTION, Config.Power.OFF_POWER_FRACTION,
+        Config.Power.SLEEP_WAKE_LATENCY, Config.Power.OFF_WAKE_LATENCY, Config.Power.IDLE_TIMEOUT,
+        Config.Power.SLEEP_TIMEOUT, Config.Power.RESERVE_FRACTION, Config.Power.RESERVE_MIN);
+  }
+
+  private void onClockTick(final EventInfo info) {
+    update(info.getTime());
+  }
+
+  /**
+   * Changes the power state of the hosts at a clock tick, once per tick. The simulation notifies its clock tick
+   * listeners in no fixed order, so the {@link EnergyMeter} calls it before it samples the hosts.
+   */
+  public void update(final double now) {
+    if (now <= lastTick) {
+      return;
+    }
+
+    lastTick = now;
+    Arrays.fill(spare, 0);
+    Arrays.fill(busy, 0);
+    for (int position = 0; position < asleep.length; position++) {
+      if (waking[position]) {
+        spare[classOf[position]]++;
+      } else if (asleep[position] == State.SLEEP && now - asleepSince[position] >= sleepTimeout) {
+        switchOff(position, now);
+      } else if (asleep[position] == null && isEmpty(hostList.get(position))) {
+        if (Double.isNaN(idleSince[position])) {
+          idleSince[position] = now;
+        }
+        spare[classOf[position]]++;
+      } else if (asleep[position] == null && hostList.get(position).isActive()) {
+        idleSince[position] = Double.NaN;
+        busy[classOf[position]]++;
+      }
+    }
+
+    for (int k = 0; k < spare.length; k++) {
+      // Turned into the number of hosts to wake up (when negative) or that may go to sleep
+      spare[k] -= Math.max(reserveMin, (int) Math.ceil(reserveFraction * busy[k]));
+    }
+    for (int position = asleep.length - 1; position >= 0; position--) {
+      final int k = classOf[position];
+      if (spare[k] > 0 && asleep[position] == null && !waking[position] && now - idleSince[position] >= idleTimeout) {
+        sleep(position, now);
+        spare[k]--;
+      }
+    }
+    for (State state : List.of(State.SLEEP, State.OFF)) {
+      for (int position = 0; position < asleep.length; position++) {
+        final int k = classOf[position];
+        if (spare[k] < 0 && asleep[position] == state && !waking[position]) {
+          wake(hostList.get(position));
+          spare[k]++;
+        }
+      }
+    }
+  }
+
+  private static boolean isEmpty(final Host host) {
+    return host.isActive() && host.getVmList().isEmpty() && host.getVmsMigratingIn().isEmpty();
+  }
+
+  private void sleep(final int position, final double now) {
+    final Host host = hostList.get(position);
+    host.setActive(false);
+    if (host.isActive()) {
+      return;
+    }
+
+    asleep[position] = State.SLEEP;
+    asleepSince[position] = now;
+    idleSince[position] = Double.NaN;
+    sleeps++;
+    MetricsRegistry.global().increment("hosts.sleeps");
+  }
+
+  private void switchOff(final int position, final double now) {
+    closeAsleepTime(position, now);
+    asleep[position] = State.OFF;
+    asleepSince[position] = now;
+    powerOffs++;
+  }
+
+  private void closeAsleepTime(final int position, final double now) {
+    final double elapsed = now - asleepSince[position];
+    if (asleep[position] == State.SLEEP) {
+      sleepSeconds += elapsed;
+      savedWattSeconds += idlePower[position] * (1 - sleepPowerFraction) * elapsed;
+    } else {
+      offSeconds += elapsed;
+      savedWattSeconds += idlePower[position] * (1 - offPowerFraction) * elapsed;
+    }
+  }
+
+  /**
+   * Wakes up a host if it's sleeping or switched off. It becomes active after the latency of its state.
+   */
+  public void wake(final Host host) {
+    final Integer position = positions.get(host);
+    if (position == null || asleep[position] == null || waking[position]) {
+      return;
+    }
+
+    final double now = datacenter.getSimulation().clock();
+    closeAsleepTime(position, now);
+    final double latency = asleep[position] == State.SLEEP ? sleepWakeLatency : offWakeLatency;
+    waking[position] = true;
+    wakes++;
+    wakeSeconds += latency;
+    MetricsRegistry.global().increment("hosts.wakes");
+    // Kept until the host is up, so the power model accounts for it
+    host.setStartupDelay(latency);
+    host.setActive(true);
+    if (host.isActive()) {
+      awake(host, position);
+    }
+  }
+
+  private void onStartup(final HostEventInfo info) {
+    final Integer position = positions.get(info.getHost());
+    if (position != null && waking[position]) {
+      awake(info.getHost(), position);
+    }
+  }
+
+  private void awake(final Host host, final int position) {
+    host.setStartupDelay(0);
+    asleep[position] = null;
+    waking[position] = false;
+    idleSince[position] = datacenter.getSimulation().clock();
+    // Migrations to the host waited for it to wake up
+    if (datacenter.getMigrationScheduler() != null) {
+      datacenter.getMigrationScheduler().dispatch();
+    } else {
+      datacenter.startWaitingMigrations();
+    }
+  }
+
+  public State getState(final Host host) {
+    final Integer position = positions.get(host);
+    if (position != null && asleep[position] != null) {
+      return asleep[position];
+    }
+
+    return host.getVmList().isEmpty() && host.getVmsMigratingIn().isEmpty() ? State.IDLE : State.ACTIVE;
+  }
+
+  /**
+   * Checks if a host is awake, or will be without waiting for any wake-up.
+   */
+  public boolean isAwake(final Host host) {
+    final Integer position = positions.get(host);
+    return position == null || asleep[position] == null;
+  }
+
+  /**
+   * Gets the power (W) drawn by an inactive host without VMs: the power of its sleeping or switched off state,
+   * its idle power while it wakes up, or 0 if it isn't managed by this controller.
+   */
+  public double getInactivePower(final Host host) {
+    final Integer position = positions.get(host);
+    if (position == null || asleep[position] == null) {
+      return 0;
+    }
+    if (waking[position]) {
+      return idlePower[position];
+    }
+
+    return idlePower[position] * (asleep[position] == State.SLEEP ? sleepPowerFraction : offPowerFraction);
+  }
+
+  public long getSleeps() {
+    return sleeps;
+  }
+
+  public long getWakes() {
+    return wakes;
+  }
+
+  /**
+   * Gets the energy (Wh) hosts didn't draw while sleeping or switched off, compared with staying idle,
+   * up to the current simulation time.
+   */
+  public double getSavedEnergyWattHour() {
+    final double now = datacenter.getSimulation().clock();
+    double saved = savedWattSeconds;
+    for (int position = 0; position < asleep.length; position++) {
+      if (asleep[position] != null && !waking[position]) {
+        final double fraction = asleep[position] == State.SLEEP ? sleepPowerFraction : offPowerFraction;
+        saved += idlePower[position] * (1 - fraction) * (now - asleepSince[position]);
+      }
+    }
+
+    return saved / 3600.0;
+  }
+
+  public void printReport() {
+    final double now = datacenter.getSimulation().clock();
+    double sleeping = sleepSeconds;
+    double off = offSeconds;
+    final int[] states = new int[State.values().length];
+    for (int position = 0; position < asleep.length; position++) {
+      states[getState(hostList.get(position)).ordinal()]++;
+      if (asleep[position] == State.SLEEP && !waking[position]) {
+        sleeping += now - asleepSince[position];
+      } else if (asleep[position] == State.OFF && !waking[position]) {
+        off += now - asleepSince[position];
+      }
+    }
+
+    System.out.printf(
+        "Host power controller (%.0f s idle timeout, %.0f s sleep timeout, %.0f%% reserve per server class): "
+            + "%d sleeps, %d power-offs, %d wake-ups (%.2f s mean latency), %.2f host-hours asleep and %.2f off, "
+            + "%.2f Wh saved compared with idle hosts; now %d active, %d idle, %d asleep and %d off%n",
+        idleTimeout, sleepTimeout, reserveFraction * 100, sleeps, powerOffs, wakes, wakes == 0 ? 0 : wakeSeconds / wakes,
+        sleeping / 3600, off / 3600, getSavedEnergyWattHour(), states[State.ACTIVE.ordinal()],
+        states[State.IDLE.ordinal()], states[State.SLEEP.ordinal()], states[State.OFF.ordinal()]);
+  }
+}
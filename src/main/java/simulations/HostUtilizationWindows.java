@@ -0,0 +1,286 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding windows with the last {@code capacity} CPU utilization samples of each host, taken on every
+ * host update, with the statistics the dynamic threshold policies need kept up to date as samples
+ * come and go, so they never go over the whole history.
+ *
+ * <p>Samples live in per-host primitive ring buffers. The sums for the least squares line of
+ * utilization over time are slid in O(1) (and rebuilt once every {@code capacity} samples so rounding
+ * errors don't pile up), and a sorted copy of each window is kept by binary search insertion and removal,
+ * so the median, quartiles and median absolute deviation take at most one pass over a window.</p>
+ */
+public class HostUtilizationWindows {
+  private final int capacity;
+  private final Map<Host, Integer> slots;
+
+  private final double[] time;
+  private final double[] utilization;
+  private final double[] sorted;
+  private final int[] size;
+  private final long[] recorded;
+  private final long[] versions;
+
+  /* Least squares sums, with times relative to the origin of each host */
+  private final double[] origin;
+  private final double[] sumTime;
+  private final double[] sumTimeSquared;
+  private final double[] sumUtilization;
+  private final double[] sumTimeUtilization;
+  private final int[] slides;
+
+  public HostUtilizationWindows(final Collection<? extends Host> hosts, final int capacity) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("The window capacity must be at least 2.");
+    }
+
+    this.capacity = capacity;
+    this.slots = new HashMap<>(hosts.size() * 2);
+    this.time = new double[hosts.size() * capacity];
+    this.utilization = new double[hosts.size() * capacity];
+    this.sorted = new double[hosts.size() * capacity];
+    this.size = new int[hosts.size()];
+    this.recorded = new long[hosts.size()];
+    this.versions = new long[hosts.size()];
+    this.origin = new double[hosts.size()];
+    this.sumTime = new double[hosts.size()];
+    this.sumTimeSquared = new double[hosts.size()];
+    this.sumUtilization = new double[hosts.size()];
+    this.sumTimeUtilization = new double[hosts.size()];
+    this.slides = new int[hosts.size()];
+
+    for (Host host : hosts) {
+      slots.put(host, slots.size());
+      host.addOnUpdateProcessingListener(this::onUpdateProcessing);
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the position of a host in the arrays of this object, or -1 if it has no window.
+   */
+  public int getSlot(final Host host) {
+    final Integer slot = slots.get(host);
+    return slot == null ? -1 : slot;
+  }
+
+  /**
+   * Gets the number of samples in the window of a host.
+   */
+  public int size(final int slot) {
+    return size[slot];
+  }
+
+  /**
+   * Gets a number that changes every time the window of a host changes,
+   * so values computed from it can be cached.
+   */
+  public long getVersion(final int slot) {
+    return versions[slot];
+  }
+
+  public double getLastUtilization(final int slot) {
+    return size[slot] == 0 ? 0 : utilization[slot * capacity + last(slot)];
+  }
+
+  public double getLastTime(final int slot) {
+    return size[slot] == 0 ? -1 : time[slot * capacity + last(slot)];
+  }
+
+  private void onUpdateProcessing(final HostUpdatesVmsProcessingEventInfo info) {
+    final Host host = info.getHost();
+    final int slot = slots.get(host);
+    add(slot, host.getSimulation().clock(), host.getCpuPercentUtilization());
+  }
+
+  /**
+   * Adds a sample to the window of a host, removing the oldest one if it's full.
+   * A sample at the same time as the last one replaces it, as the host's own history does.
+   */
+  public void add(final int slot, final double now, final double value) {
+    final int base = slot * capacity;
+    versions[slot]++;
+    if (size[slot] > 0 && time[base + last(slot)] == now) {
+      final int index = base + last(slot);
+      final double previous = utilization[index];
+      utilization[index] = value;
+      removeSorted(slot, previous);
+      insertSorted(slot, value);
+      sumUtilization[slot] += value - previous;
+      sumTimeUtilization[slot] += (now - origin[slot]) * (value - previous);
+      return;
+    }
+
+    if (size[slot] == 0) {
+      origin[slot] = now;
+    }
+
+    final int index = base + (int) (recorded[slot] % capacity);
+    if (size[slot] == capacity) {
+      final double t = time[index] - origin[slot];
+      final double u = utilization[index];
+      removeSorted(slot, u);
+      sumTime[slot] -= t;
+      sumTimeSquared[slot] -= t * t;
+      sumUtilization[slot] -= u;
+      sumTimeUtilization[slot] -= t * u;
+    } else {
+      size[slot]++;
+    }
+
+    time[index] = now;
+    utilization[index] = value;
+    recorded[slot]++;
+    insertSorted(slot, value);
+
+    if (++slides[slot] >= capacity) {
+      rebuildSums(slot);
+    } else {
+      final double t = now - origin[slot];
+      sumTime[slot] += t;
+      sumTimeSquared[slot] += t * t;
+      sumUtilization[slot] += value;
+      sumTimeUtilization[slot] += t * value;
+    }
+  }
+
+  /**
+   * Predicts the utilization of a host at a given time from the least squares line of its window.
+   */
+  public double predict(final int slot, final double at) {
+    final int n = size[slot];
+    if (n == 0) {
+      return 0;
+    }
+
+    final double denominator = n * sumTimeSquared[slot] - sumTime[slot] * sumTime[slot];
+    final double slope = n < 2 || denominator <= 0 ? 0
+        : (n * sumTimeUtilization[slot] - sumTime[slot] * sumUtilization[slot]) / denominator;
+    final double intercept = (sumUtilization[slot] - slope * sumTime[slot]) / n;
+    return intercept + slope * (at - origin[slot]);
+  }
+
+  /**
+   * Gets the mean time between the samples in the window of a host.
+   */
+  public double getMeanSampleInterval(final int slot) {
+    final int n = size[slot];
+    if (n < 2) {
+      return 0;
+    }
+
+    final double first = time[slot * capacity + (int) ((recorded[slot] - n) % capacity)];
+    return (getLastTime(slot) - first) / (n - 1);
+  }
+
+  public double median(final int slot) {
+    return quantile(slot, 0.5);
+  }
+
+  /**
+   * Gets a quantile of the window of a host, interpolating linearly between the closest samples.
+   */
+  public double quantile(final int slot, final double p) {
+    final int n = size[slot];
+    if (n == 0) {
+      return 0;
+    }
+
+    final int base = slot * capacity;
+    final double position = p * (n - 1);
+    final int lower = (int) position;
+    if (lower + 1 >= n) {
+      return sorted[base + n - 1];
+    }
+
+    return sorted[base + lower] + (position - lower) * (sorted[base + lower + 1] - sorted[base + lower]);
+  }
+
+  public double interquartileRange(final int slot) {
+    return quantile(slot, 0.75) - quantile(slot, 0.25);
+  }
+
+  /**
+   * Gets the median of the absolute deviations from the median of the window of a host.
+   * The deviations are walked in ascending order straight from the sorted window, outwards from the median.
+   */
+  public double medianAbsoluteDeviation(final int slot) {
+    final int n = size[slot];
+    if (n == 0) {
+      return 0;
+    }
+
+    final int base = slot * capacity;
+    final double median = median(slot);
+    int right = Arrays.binarySearch(sorted, base, base + n, median);
+    right = right < 0 ? -right - 1 - base : right - base;
+    int left = right - 1;
+
+    final int middle = (n - 1) / 2;
+    double previous = 0;
+    for (int k = 0; ; k++) {
+      final double deviation;
+      if (left < 0 || right < n && sorted[base + right] - median <= median - sorted[base + left]) {
+        deviation = sorted[base + right++] - median;
+      } else {
+        deviation = median - sorted[base + left--];
+      }
+
+      if (k == middle && n % 2 == 1) {
+        return deviation;
+      }
+      if (k == middle + 1) {
+        return (previous + deviation) / 2;
+      }
+      previous = deviation;
+    }
+  }
+
+  private int last(final int slot) {
+    return (int) ((recorded[slot] - 1) % capacity);
+  }
+
+  private void insertSorted(final int slot, final double value) {
+    final int base = slot * capacity;
+    final int n = size[slot] - 1;
+    int position = Arrays.binarySearch(sorted, base, base + n, value);
+    position = position < 0 ? -position - 1 : position;
+    System.arraycopy(sorted, position, sorted, position + 1, base + n - position);
+    sorted[position] = value;
+  }
+
+  private void removeSorted(final int slot, final double value) {
+    final int base = slot * capacity;
+    final int n = size[slot];
+    final int position = Arrays.binarySearch(sorted, base, base + n, value);
+    System.arraycopy(sorted, position + 1, sorted, position, base + n - position - 1);
+  }
+
+  private void rebuildSums(final int slot) {
+    final int base = slot * capacity;
+    final int n = size[slot];
+    final long first = recorded[slot] - n;
+    origin[slot] = time[base + (int) (first % capacity)];
+    sumTime[slot] = sumTimeSquared[slot] = sumUtilization[slot] = sumTimeUtilization[slot] = 0;
+    for (long i = first; i < recorded[slot]; i++) {
+      final int index = base + (int) (i % capacity);
+      final double t = time[index] - origin[slot];
+      sumTime[slot] += t;
+      sumTimeSquared[slot] += t * t;
+      sumUtilization[slot] += utilization[index];
+      sumTimeUtilization[slot] += t * utilization[index];
+    }
+    slides[slot] = 0;
+  }
+}
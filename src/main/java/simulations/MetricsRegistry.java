@@ -0,0 +1,192 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and {@link LatencyHistogram latency histograms} of the simulator internals, looked up by name
+ * and periodically dumped to a CSV file while the simulations run.
+ *
+ * <p>The registry is disabled until {@link #startDumping} is called, and a disabled registry
+ * ignores everything it's given, so instrumented code only pays for reading a flag. Timers are
+ * {@link #startTimer() started} and {@link #stopTimer stopped} around the measured code.</p>
+ */
+public final class MetricsRegistry implements AutoCloseable {
+  private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+  public static final String HEADER = "Metric,Type,Count,Mean(us),P50(us),P90(us),P99(us),P99.9(us),Max(us)";
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+  private volatile boolean enabled;
+  private ScheduledExecutorService dumper;
+  private Path file;
+
+  /**
+   * Gets the registry shared by all simulations of the JVM.
+   */
+  public static MetricsRegistry global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Starts dumping the global registry if the arguments have {@code --metrics=<file>}, every
+   * {@code --metrics-interval=<seconds>} of wall-clock time, removing both options from the arguments.
+   *
+   * @return the global registry, to be closed when the simulation finishes
+   */
+  public static MetricsRegistry configure(final List<String> args) {
+    String metricsFile = null;
+    double interval = Config.Metrics.DUMP_INTERVAL;
+    for (var iterator = args.iterator(); iterator.hasNext(); ) {
+      final String arg = iterator.next();
+      if (arg.startsWith("--metrics=")) {
+        metricsFile = arg.substring("--metrics=".length());
+      } else if (arg.startsWith("--metrics-interval=")) {
+        interval = Double.parseDouble(arg.substring("--metrics-interval=".length()));
+      } else {
+        continue;
+      }
+      iterator.remove();
+    }
+
+    if (metricsFile != null) {
+      GLOBAL.startDumping(Path.of(metricsFile), interval);
+    }
+
+    return GLOBAL;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables the registry and dumps it to a file every {@code intervalSeconds} of wall-clock time,
+   * from a daemon thread, and when it's closed.
+   */
+  public synchronized void startDumping(final Path file, final double intervalSeconds) {
+    if (intervalSeconds <= 0) {
+      throw new IllegalArgumentException("The metrics dump interval must be greater than 0.");
+    }
+
+    stopDumping();
+    this.file = file;
+    this.enabled = true;
+    dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "metrics-dump");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final long period = (long) (intervalSeconds * 1000);
+    dumper.scheduleAtFixedRate(() -> dump(file), period, period, TimeUnit.MILLISECONDS);
+  }
+
+  public void increment(final String counter) {
+    add(counter, 1);
+  }
+
+  public void add(final String counter, final long amount) {
+    if (enabled) {
+      counters.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+    }
+  }
+
+  /**
+   * @return the start time to give to {@link #stopTimer}, or 0 if the registry is disabled
+   */
+  public long startTimer() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the time elapsed since a timer was started in a histogram, and counts it.
+   */
+  public void stopTimer(final String histogram, final long start) {
+    if (start != 0) {
+      record(histogram, System.nanoTime() - start);
+    }
+  }
+
+  public void record(final String histogram, final long nanos) {
+    if (enabled) {
+      histograms.computeIfAbsent(histogram, name -> new LatencyHistogram()).record(nanos);
+    }
+  }
+
+  public long getCount(final String counter) {
+    final LongAdder adder = counters.get(counter);
+    return adder == null ? 0 : adder.sum();
+  }
+
+  public LatencyHistogram getHistogram(final String histogram) {
+    return histograms.get(histogram);
+  }
+
+  /**
+   * Writes every counter and histogram, in name order, to a temporary file that then replaces the given one,
+   * so the file can be read at any time.
+   */
+  public void dump(final Path file) {
+    final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+
+      try (PrintStream out = new PrintStream(Files.newOutputStream(temporary))) {
+        out.println(HEADER);
+        new TreeMap<>(counters).forEach((name, adder) -> out.printf("%s,counter,%d,,,,,,%n", name, adder.sum()));
+        new TreeMap<>(histograms).forEach((name, histogram) -> out.printf("%s,histogram,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+            name, histogram.getCount(), histogram.getMean() / 1000,
+            histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMax() / 1000.0));
+      }
+
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing metrics " + file, e);
+    }
+  }
+
+  /**
+   * Stops the periodic dumps, writing the metrics one last time.
+   */
+  @Override
+  public synchronized void close() {
+    if (dumper != null) {
+      stopDumping();
+      dump(file);
+    }
+  }
+
+  /**
+   * Cancels the periodic dumps and waits for one in progress to finish, so it doesn't race with the next dump.
+   * The dumper isn't interrupted, since that would close the file it's writing.
+   */
+  private void stopDumping() {
+    if (dumper != null) {
+      dumper.shutdown();
+      try {
+        dumper.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      dumper = null;
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package simulations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Same simulation as {@link MigrationBestFitPolicy}, but with a dynamic over utilization threshold
+ * computed for each host by {@link VmAllocationPolicyMigrationDynamicThresholdIndexed}.
+ *
+ * <p>Usage: {@code MigrationDynamicThresholdPolicy [--method=lr|mad|iqr] [--adaptive-interval] [--migration-scheduler]
+ * [--guard] [--selection=min-utilization|min-migration-time|max-correlation|cost] [--spec-power] [--power-states]
+ * [--quiet] [--journal=file|none] [--format=csv|columnar] [--compression=none|deflate]}</p>
+ */
+public final class MigrationDynamicThresholdPolicy {
+  private MigrationDynamicThresholdPolicy() {
+  }
+
+  public static void main(String[] args) {
+    VmAllocationPolicyMigrationDynamicThresholdIndexed.Method method =
+        VmAllocationPolicyMigrationDynamicThresholdIndexed.Method.MEDIAN_ABSOLUTE_DEVIATION;
+    final List<String> runArgs = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--method=")) {
+        method = VmAllocationPolicyMigrationDynamicThresholdIndexed.Method.fromShortName(arg.substring("--method=".length()));
+      } else {
+        runArgs.add(arg);
+      }
+    }
+
+    // The dynamic policies are registered by the short name of their method
+    MigrationRunner.run(new MigrationRunner.Definition(method.getShortName(), "migration_" + method.getShortName(),
+        method.getShortName().toUpperCase(), "MigrationDynamicThresholdPolicy (" + method + ")"), runArgs);
+  }
+}
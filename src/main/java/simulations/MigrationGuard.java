@@ -0,0 +1,215 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigration;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vetoes the migrations requested by the allocation policy of a {@link DatacenterInstrumented} that would
+ * make VMs bounce between hosts. A migration is suppressed when:
+ *
+ * <ul>
+ *   <li>its source host isn't in the overloaded or underloaded state of the hysteresis bands: a host enters
+ *   the overloaded state when its CPU utilization reaches the over utilization threshold plus the band, and leaves
+ *   it when it drops below the threshold (the underloaded state mirrors that around the under threshold);</li>
+ *   <li>its VM arrived at its host by migration less than the minimum residency time ago;</li>
+ *   <li>it would take its VM back to the host it left within the ping-pong window (A→B→A);</li>
+ *   <li>its source or target host already took part in the migration budget within the budget window.</li>
+ * </ul>
+ *
+ * <p>A suppressed migration isn't retried by the guard: the policy finds overloaded and underloaded
+ * hosts again after the datacenter's host search retry delay.</p>
+ */
+public class MigrationGuard {
+  public enum Reason {
+    HYSTERESIS, RESIDENCY, PING_PONG, BUDGET
+  }
+
+  private enum State {
+    NORMAL, OVERLOADED, UNDERLOADED
+  }
+
+  private final DatacenterInstrumented datacenter;
+  private final VmAllocationPolicyMigration policy;
+  private final double band;
+  private final double minResidency;
+  private final double pingPongWindow;
+  private final int hostBudget;
+  private final double budgetWindow;
+
+  private final Map<Host, State> states = new HashMap<>();
+  /* Start times of the recent migrations in or out of each host, oldest first */
+  private final Map<Host, ArrayDeque<Double>> recentMigrations = new HashMap<>();
+  private final Map<Vm, Double> arrivals = new IdentityHashMap<>();
+  private final Map<Vm, Host> departedHosts = new IdentityHashMap<>();
+  private final Map<Vm, Double> departures = new IdentityHashMap<>();
+  private final long[] suppressed = new long[Reason.values().length];
+  private long allowed;
+
+  /**
+   * @param band the width of the hysteresis bands, in CPU utilization (0 to 1)
+   * @param minResidency the seconds a VM stays on the host it migrated to before it can migrate again
+   * @param pingPongWindow the seconds during which a VM can't go back to the host it left
+   * @param hostBudget the most migrations in or out of a host within the budget window
+   */
+  public MigrationGuard(final DatacenterInstrumented datacenter, final VmAllocationPolicyMigration policy,
+      final double band, final double minResidency, final double pingPongWindow, final int hostBudget,
+      final double budgetWindow) {
+    if (band < 0 || minResidency < 0 || pingPongWindow < 0 || budgetWindow < 0) {
+      throw new IllegalArgumentException("The hysteresis band and the guard times must not be negative.");
+    }
+    if (hostBudget < 1) {
+      throw new IllegalArgumentException("The migration budget of a host must be at least 1.");
+    }
+
+    this.datacenter = datacenter;
+    this.policy = policy;
+    this.band = band;
+    this.minResidency = minResidency;
+    this.pingPongWindow = pingPongWindow;
+    this.hostBudget = hostBudget;
+    this.budgetWindow = budgetWindow;
+    final List<Host> hostList = datacenter.getHostList();
+    for (Host host : hostList) {
+      states.put(host, State.NORMAL);
+      host.addOnUpdateProcessingListener(this::onUpdateProcessing);
+    }
+    datacenter.setMigrationGuard(this);
+  }
+
+  public static MigrationGuard fromConfig(final DatacenterInstrumented datacenter, final VmAllocationPolicyMigration policy) {
+    return new MigrationGuard(datacenter, policy, Config.Migration.HYSTERESIS_BAND, Config.Migration.MIN_RESIDENCY,
+        Config.Migration.PING_PONG_WINDOW, Config.Migration.HOST_BUDGET, Config.Migration.BUDGET_WINDOW);
+  }
+
+  private void onUpdateProcessing(final HostUpdatesVmsProcessingEventInfo info) {
+    final Host host = info.getHost();
+    final State state = states.get(host);
+    if (state != null) {
+      states.put(host, nextState(host, state));
+    }
+  }
+
+  private State nextState(final Host host, final State state) {
+    final double utilization = host.getCpuPercentUtilization();
+    final double over = policy.getOverUtilizationThreshold(host);
+    final double under = policy.getUnderUtilizationThreshold();
+    if (utilization >= over + band || state == State.OVERLOADED && utilization >= over) {
+      return State.OVERLOADED;
+    }
+    if (!host.getVmList().isEmpty() && (utilization <= under - band || state == State.UNDERLOADED && utilization <= under)) {
+      return State.UNDERLOADED;
+    }
+
+    return State.NORMAL;
+  }
+
+  /**
+   * Checks if a migration requested by the policy may start.
+   */
+  public boolean allow(final Vm vm, final Host source, final Host target) {
+    final Reason reason = check(vm, source, target, datacenter.getSimulation().clock());
+    if (reason != null) {
+      suppressed[reason.ordinal()]++;
+      MetricsRegistry.global().increment("migrations.suppressed");
+      return false;
+    }
+
+    allowed++;
+    return true;
+  }
+
+  /**
+   * Records a migration the datacenter started (its target host was reserved), against the budget of its hosts.
+   */
+  public void migrationStarted(final Vm vm, final Host source, final Host target) {
+    final double now = datacenter.getSimulation().clock();
+    record(source, now);
+    record(target, now);
+    departedHosts.put(vm, source);
+    departures.put(vm, now);
+  }
+
+  private Reason check(final Vm vm, final Host source, final Host target, final double now) {
+    final State state = states.getOrDefault(source, State.NORMAL);
+    if (state == State.NORMAL) {
+      return Reason.HYSTERESIS;
+    }
+
+    final Double arrival = arrivals.get(vm);
+    if (arrival != null && now - arrival < minResidency) {
+      return Reason.RESIDENCY;
+    }
+
+    final Double departure = departures.get(vm);
+    if (departure != null && departedHosts.get(vm) == target && now - departure < pingPongWindow) {
+      return Reason.PING_PONG;
+    }
+
+    if (countRecent(source, now) >= hostBudget || countRecent(target, now) >= hostBudget) {
+      return Reason.BUDGET;
+    }
+
+    return null;
+  }
+
+  /**
+   * Starts the residency time of a VM on the host it has just migrated to.
+   */
+  public void migrationFinished(final Vm vm) {
+    arrivals.put(vm, datacenter.getSimulation().clock());
+  }
+
+  private void record(final Host host, final double time) {
+    recentMigrations.computeIfAbsent(host, key -> new ArrayDeque<>()).addLast(time);
+  }
+
+  private int countRecent(final Host host, final double now) {
+    final ArrayDeque<Double> times = recentMigrations.get(host);
+    if (times == null) {
+      return 0;
+    }
+
+    while (!times.isEmpty() && now - times.peekFirst() >= budgetWindow) {
+      times.removeFirst();
+    }
+    return times.size();
+  }
+
+  /**
+   * Gets the number of migrations the guard let through, whether the datacenter could start them or not.
+   */
+  public long getAllowed() {
+    return allowed;
+  }
+
+  public long getSuppressed(final Reason reason) {
+    return suppressed[reason.ordinal()];
+  }
+
+  public long getSuppressed() {
+    long total = 0;
+    for (long count : suppressed) {
+      total += count;
+    }
+    return total;
+  }
+
+  public void printReport() {
+    System.out.printf(
+        "Migration guard (%.0f%% hysteresis band, %.0f s residency, %.0f s ping-pong window, %d migrations per host in %.0f s): "
+            + "%d allowed, %d suppressed (%d hysteresis, %d residency, %d ping-pong, %d budget)%n",
+        band * 100, minResidency, pingPongWindow, hostBudget, budgetWindow, allowed, getSuppressed(),
+        getSuppressed(Reason.HYSTERESIS), getSuppressed(Reason.RESIDENCY), getSuppressed(Reason.PING_PONG),
+        getSuppressed(Reason.BUDGET));
+  }
+}
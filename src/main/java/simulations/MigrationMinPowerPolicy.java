@@ -0,0 +1,25 @@
+package simulations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Same simulation as {@link MigrationBestFitPolicy}, but VMs are placed and migrated to the hosts whose power
+ * increases the least, by {@link VmAllocationPolicyMigrationMinPowerIndexed}. With {@code --spec-power}, hosts draw
+ * power along the SPECpower curves of their tiers instead of linearly (with the linear models, every host's power
+ * grows by the same watts per MIPS, so the first host with room wins).
+ *
+ * <p>Usage: {@code MigrationMinPowerPolicy [--spec-power] [--power-states] [--adaptive-interval]
+ * [--migration-scheduler] [--guard] [--selection=min-utilization|min-migration-time|max-correlation|cost]
+ * [--quiet] [--journal=file|none] [--format=csv|columnar] [--compression=none|deflate]}</p>
+ */
+public final class MigrationMinPowerPolicy {
+  private MigrationMinPowerPolicy() {
+  }
+
+  public static void main(String[] args) {
+    MigrationRunner.run(
+        new MigrationRunner.Definition("min-power", "migration_min_power", "Min Power", "MigrationMinPowerPolicy"),
+        new ArrayList<>(List.of(args)));
+  }
+}
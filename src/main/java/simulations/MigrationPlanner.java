@@ -0,0 +1,336 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Scores the target hosts of a migration wave (one search for migrations of an allocation policy)
+ * in parallel, over a snapshot of the host state kept in primitive arrays.
+ *
+ * <p>The snapshot has the free MIPS, RAM and BW, the used and requested CPU and the over utilization
+ * threshold of every host. It's only read by the worker threads: hosts are refreshed on the simulation
+ * thread, at the start of a wave and whenever their VMs change, since CloudSim Plus objects (and the
+ * utilization models behind them) aren't thread safe. A host passes the snapshot checks when it
+ * has room for the VM and isn't over its threshold, which is what the allocation policy checks
+ * before anything else, so the policy still has the final word but only on hosts that can pass.</p>
+ *
+ * <p>Below the parallel threshold, a scoring only goes over the candidates of the {@link HostIndex}
+ * (the hosts with enough PEs and free resources for the VM), refreshing just those, unless most hosts
+ * are candidates. The snapshot of every host is taken for the other scorings.</p>
+ *
+ * <p>Workers return the best host of their range, with ties broken by host position, and ranges are
+ * merged in the same way, so the chosen host doesn't depend on how the work was split and the
+ * plan is the same as a sequential one.</p>
+ */
+public class MigrationPlanner {
+  private static final double MIPS_TOLERANCE = 1e-6;
+  /* Rounding slack on the threshold check, which the policy repeats exactly */
+  private static final double THRESHOLD_TOLERANCE = 1e-9;
+
+  private final List<Host> hostList;
+  private final Map<Host, Integer> positions;
+  private final HostIndex index;
+  private final ToDoubleFunction<Host> overUtilizationThreshold;
+  private final ForkJoinPool pool;
+  private final int parallelThreshold;
+
+  private final long[] pes;
+  private final double[] freeMips;
+  private final long[] freeRam;
+  private final long[] freeBw;
+  private final double[] cpuMipsUtilization;
+  private final double[] cpuPercentRequested;
+  private final double[] threshold;
+  private final BitSet stale;
+  /* The index candidates of the last sequential scoring, kept while the VM and the index don't change */
+  private final BitSet candidates;
+  private Demand candidatesDemand;
+  private long candidatesModifications = -1;
+  private int candidateCount;
+
+  private long refreshes;
+  private long parallelScorings;
+
+  /**
+   * @param index the index of the same hosts, which must be at the same positions
+   * @param overUtilizationThreshold the over utilization threshold of each host
+   * @param parallelThreshold number of hosts from which a scoring is split across the pool
+   */
+  public MigrationPlanner(final List<Host> hostList, final HostIndex index,
+      final ToDoubleFunction<Host> overUtilizationThreshold, final ForkJoinPool pool, final int parallelThreshold) {
+    if (index.size() != hostList.size()) {
+      throw new IllegalArgumentException("The host index must have the " + hostList.size() + " hosts of the planner.");
+    }
+
+    this.hostList = new ArrayList<>(hostList);
+    this.positions = new HashMap<>(hostList.size() * 2);
+    this.index = index;
+    this.overUtilizationThreshold = overUtilizationThreshold;
+    this.pool = pool;
+    this.parallelThreshold = Math.max(1, parallelThreshold);
+
+    final int size = hostList.size();
+    this.pes = new long[size];
+    this.freeMips = new double[size];
+    this.freeRam = new long[size];
+    this.freeBw = new long[size];
+    this.cpuMipsUtilization = new double[size];
+    this.cpuPercentRequested = new double[size];
+    this.threshold = new double[size];
+    this.stale = new BitSet(size);
+    this.candidates = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      positions.put(this.hostList.get(i), i);
+      pes[i] = this.hostList.get(i).getPesNumber();
+    }
+    stale.set(0, size);
+  }
+
+  public int size() {
+    return hostList.size();
+  }
+
+  public Host getHost(final int position) {
+    return hostList.get(position);
+  }
+
+  public int getPosition(final Host host) {
+    return positions.getOrDefault(host, -1);
+  }
+
+  /**
+   * Starts a new wave: every host is refreshed before it's scored again,
+   * since utilization changes with time.
+   */
+  public void beginWave() {
+    stale.set(0, hostList.size());
+  }
+
+  /**
+   * Marks a host to be refreshed before the next scoring, because its VMs changed (or are about to).
+   */
+  public void markStale(final Host host) {
+    final int position = getPosition(host);
+    if (position >= 0) {
+      stale.set(position);
+    }
+  }
+
+  public double getCpuMipsUtilization(final int position) {
+    return cpuMipsUtilization[position];
+  }
+
+  /**
+   * Gets the CPU MIPS requested by the VMs of a host over its capacity, refreshing it first if needed.
+   * Must be called from the simulation thread.
+   */
+  public double getCpuPercentRequested(final Host host) {
+    final int position = getPosition(host);
+    refreshIfStale(position);
+    return cpuPercentRequested[position];
+  }
+
+  /**
+   * Gets the number of host snapshots taken so far.
+   */
+  public long getRefreshes() {
+    return refreshes;
+  }
+
+  /**
+   * Gets the number of scorings split across the pool.
+   */
+  public long getParallelScorings() {
+    return parallelScorings;
+  }
+
+  /**
+   * Gets the position of the host with the highest score that passes the snapshot checks for a VM,
+   * ignoring the rejected ones. Ties go to the lowest position.
+   *
+   * @param score the score of a host position, which must only read this planner's snapshot
+   * @return the host position or -1 if no host passes the checks
+   */
+  public int best(final Vm vm, final Ranking score, final BitSet rejected) {
+    final Demand demand = new Demand(vm, getPosition(vm.getHost()));
+    if (hostList.size() < parallelThreshold) {
+      return bestCandidate(vm, demand, score, rejected);
+    }
+
+    flush();
+    parallelScorings++;
+    return pool.invoke(new BestTask(demand, score, rejected, 0, hostList.size()));
+  }
+
+  /**
+   * Scores the index candidates in position order, which are the only hosts that may pass the snapshot checks,
+   * so the result is the same as a scan of all hosts. The candidates are reused when a VM is scored again
+   * after a rejection. When most hosts are candidates, all of them are scanned instead, which is cheaper.
+   */
+  private int bestCandidate(final Vm vm, final Demand demand, final Ranking ranking, final BitSet rejected) {
+    if (!demand.equals(candidatesDemand) || index.getModifications() != candidatesModifications) {
+      candidates.clear();
+      index.getCandidates(vm, candidates);
+      candidatesDemand = demand;
+      candidatesModifications = index.getModifications();
+      candidateCount = candidates.cardinality();
+    }
+    if (candidateCount * 2 > hostList.size()) {
+      flush();
+      return new BestTask(demand, ranking, rejected, 0, hostList.size()).compute();
+    }
+
+    int best = -1;
+    double bestScore = 0;
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      if (rejected.get(i)) {
+        continue;
+      }
+
+      refreshIfStale(i);
+      if (!passes(demand, i)) {
+        continue;
+      }
+
+      final double score = ranking.score(this, i);
+      if (best < 0 || score > bestScore) {
+        best = i;
+        bestScore = score;
+      }
+    }
+
+    return best;
+  }
+
+  private void refreshIfStale(final int position) {
+    if (stale.get(position)) {
+      refresh(position);
+      stale.clear(position);
+    }
+  }
+
+  private void flush() {
+    for (int i = stale.nextSetBit(0); i >= 0; i = stale.nextSetBit(i + 1)) {
+      refresh(i);
+    }
+    stale.clear();
+  }
+
+  private void refresh(final int position) {
+    final Host host = hostList.get(position);
+    // Summed as the allocation policy does, so comparisons with the thresholds give the same results
+    final double requestedMips = host.getVmList().stream().mapToDouble(Vm::getTotalCpuMipsRequested).sum();
+    freeMips[position] = host.getTotalAvailableMips();
+    freeRam[position] = host.getRam().getAvailableResource();
+    freeBw[position] = host.getBw().getAvailableResource();
+    cpuMipsUtilization[position] = host.getCpuMipsUtilization();
+    cpuPercentRequested[position] = requestedMips / host.getTotalMipsCapacity();
+    threshold[position] = overUtilizationThreshold.applyAsDouble(host);
+    refreshes++;
+  }
+
+  private boolean passes(final Demand demand, final int position) {
+    return position != demand.currentPosition
+        && pes[position] >= demand.pes
+        && freeMips[position] >= demand.mips
+        && freeRam[position] >= demand.ram
+        && freeBw[position] >= demand.bw
+        && cpuPercentRequested[position] <= threshold[position] + THRESHOLD_TOLERANCE;
+  }
+
+  @FunctionalInterface
+  public interface Ranking {
+    double score(MigrationPlanner planner, int position);
+  }
+
+  /** What a VM needs from a target host, read once on the simulation thread. */
+  private static final class Demand {
+    private final long pes;
+    private final double mips;
+    private final long ram;
+    private final long bw;
+    private final int currentPosition;
+
+    private Demand(final Vm vm, final int currentPosition) {
+      this.pes = vm.getPesNumber();
+      this.mips = vm.getCurrentRequestedMips().totalMips() - MIPS_TOLERANCE;
+      this.ram = vm.getRam().getCapacity();
+      this.bw = vm.getBw().getCapacity();
+      this.currentPosition = currentPosition;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      return other instanceof Demand demand && pes == demand.pes && mips == demand.mips && ram == demand.ram
+          && bw == demand.bw && currentPosition == demand.currentPosition;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(pes) * 31 + Double.hashCode(mips);
+    }
+  }
+
+  private final class BestTask extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+
+    private final Demand demand;
+    private final Ranking ranking;
+    private final BitSet rejected;
+    private final int from;
+    private final int to;
+
+    private BestTask(final Demand demand, final Ranking ranking, final BitSet rejected, final int from, final int to) {
+      this.demand = demand;
+      this.ranking = ranking;
+      this.rejected = rejected;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Integer compute() {
+      if (to - from > parallelThreshold) {
+        final int middle = (from + to) >>> 1;
+        final BestTask left = new BestTask(demand, ranking, rejected, from, middle);
+        left.fork();
+        final int right = new BestTask(demand, ranking, rejected, middle, to).compute();
+        return better(left.join(), right);
+      }
+
+      int best = -1;
+      double bestScore = 0;
+      for (int i = from; i < to; i++) {
+        if (rejected.get(i) || !passes(demand, i)) {
+          continue;
+        }
+
+        final double score = ranking.score(MigrationPlanner.this, i);
+        if (best < 0 || score > bestScore) {
+          best = i;
+          bestScore = score;
+        }
+      }
+
+      return best;
+    }
+
+    /* The left result always has the lower position */
+    private int better(final int left, final int right) {
+      if (left < 0 || right < 0) {
+        return left < 0 ? right : left;
+      }
+
+      return ranking.score(MigrationPlanner.this, right) > ranking.score(MigrationPlanner.this, left) ? right : left;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package simulations;
+
+import ch.qos.logback.classic.Level;
+import simulations.Shared.Config;
+
+import org.cloudsimplus.util.Log;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs seeded Monte Carlo replications of a scenario with one policy and reports the mean, standard deviation
+ * and 95% confidence interval of the migrations, migration time, energy (total, per server class and per unit of work),
+ * makespan and time hosts spent at 100% CPU (the SLA overload time).
+ *
+ * <p>Replication {@code i} runs the scenario {@link Scenario#withReplication perturbed} by seed {@code seed + i},
+ * on a bounded thread pool. Results are folded into {@link RunningStatistics} in replication order as soon as
+ * they're available, so at most one result per thread is held, and the replications stop once the confidence
+ * interval of every target metric is within the target width of its mean (after a minimum number of them).
+ * Since results are aggregated in order, the number of replications and the statistics don't depend on
+ * the number of threads.</p>
+ *
+ * <p>Usage: {@code MigrationReplications --policy=best-fit-indexed --min=10 --max=100 --target-width=0.02
+ * --target=energy,makespan --seed=1 --vm-mix-jitter=0.1 --utilization-jitter=0.1 --length-jitter=0.1
+ * --selection=cost --threads=8 --hosts=1000 --vms=1500 --power=spec --power-states=on --migration-scheduler=on
+ * --output=migrations_results/migration_replications.csv}</p>
+ */
+public final class MigrationReplications {
+  public static final String HEADER = "Metric,Replications,Mean,StdDev,CI95Low,CI95High,Min,Max";
+
+  private final Scenario scenario;
+  private final MigrationSweep.Point point;
+  private final long seed;
+  private final double vmMixJitter;
+  private final double utilizationJitter;
+  private final double lengthJitter;
+
+  /* Statistics by metric name, created with the first result since server classes come from it */
+  private final Map<String, RunningStatistics> statistics = new LinkedHashMap<>();
+  private int failed;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    final Map<String, String> options = MigrationSweep.parseOptions(args);
+    final String policy = options.getOrDefault("policy", "best-fit-indexed");
+    if (!MigrationSweep.POLICIES.containsKey(policy)) {
+      throw new IllegalArgumentException("Unknown policy '" + policy + "'. Available: " + MigrationSweep.POLICIES.keySet());
+    }
+
+    Scenario scenario = Scenario.fromConfig();
+    scenario = scenario.withSize(
+        Integer.parseInt(options.getOrDefault("hosts", String.valueOf(scenario.getHostCount()))),
+        Integer.parseInt(options.getOrDefault("vms", String.valueOf(scenario.getVmCount()))));
+    if (options.containsKey("trace")) {
+      scenario = scenario.withTrace(new UtilizationTrace(Path.of(options.get("trace"))));
+    }
+    scenario = scenario.withSpecPower(MigrationSweep.parsePowerModel(options.getOrDefault("power", "linear")))
+        .withPowerStates(MigrationSweep.parseSwitch(options.getOrDefault("power-states", "off")))
+        .withScheduledMigrations(MigrationSweep.parseSwitch(options.getOrDefault("migration-scheduler", "off")));
+
+    final MigrationSweep.Point point = new MigrationSweep.Point(0, policy,
+        Double.parseDouble(options.getOrDefault("over", String.valueOf(Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION))),
+        Double.parseDouble(options.getOrDefault("under", String.valueOf(Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION))),
+        Integer.parseInt(options.getOrDefault("retry-delay", String.valueOf(Config.Host.SEARCH_RETRY_DELAY))),
+        Double.parseDouble(options.getOrDefault("interval", String.valueOf(Config.Scheduling.INTERVAL))),
+        Double.parseDouble(options.getOrDefault("max-interval",
+            options.getOrDefault("interval", String.valueOf(Config.Scheduling.INTERVAL)))),
+        Double.parseDouble(options.getOrDefault("tolerance", String.valueOf(Config.Scheduling.ERROR_TOLERANCE))),
+        MigrationSweep.parseSwitch(options.getOrDefault("guard", "off")),
+        options.getOrDefault("selection", VmSelectionPolicyRanked.MIN_UTILIZATION));
+
+    final MigrationReplications replications = new MigrationReplications(scenario, point,
+        Long.parseLong(options.getOrDefault("seed", "1")),
+        Double.parseDouble(options.getOrDefault("vm-mix-jitter", String.valueOf(Config.Replication.VM_MIX_JITTER))),
+        Double.parseDouble(options.getOrDefault("utilization-jitter", String.valueOf(Config.Replication.UTILIZATION_JITTER))),
+        Double.parseDouble(options.getOrDefault("length-jitter", String.valueOf(Config.Replication.LENGTH_JITTER))));
+    replications.run(
+        Integer.parseInt(options.getOrDefault("min", String.valueOf(Config.Replication.MIN))),
+        Integer.parseInt(options.getOrDefault("max", String.valueOf(Config.Replication.MAX))),
+        Double.parseDouble(options.getOrDefault("target-width", String.valueOf(Config.Replication.TARGET_WIDTH))),
+        Arrays.asList(options.getOrDefault("target", "energy").split(",")),
+        Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+    replications.export(Path.of(options.getOrDefault("output", "migrations_results/migration_replications.csv")));
+  }
+
+  public MigrationReplications(final Scenario scenario, final MigrationSweep.Point point, final long seed,
+      final double vmMixJitter, final double utilizationJitter, final double lengthJitter) {
+    this.scenario = scenario;
+    this.point = point;
+    this.seed = seed;
+    this.vmMixJitter = vmMixJitter;
+    this.utilizationJitter = utilizationJitter;
+    this.lengthJitter = lengthJitter;
+  }
+
+  /**
+   * Runs replications until the target metrics are precise enough or the maximum number of them is reached.
+   *
+   * @param targetWidth the widest confidence interval of a target metric, relative to its mean
+   * @param targets the names of the metrics that must reach the target width
+   *                (migrations, migration-time, energy, energy-&lt;PEs&gt;pes, energy-per-work, makespan or overload)
+   */
+  public void run(final int min, final int max, final double targetWidth, final List<String> targets,
+      final int threads) throws InterruptedException {
+    if (min < 2 || max < min) {
+      throw new IllegalArgumentException("The minimum number of replications must be at least 2 and not above the maximum.");
+    }
+
+    Log.setLevel(Level.OFF);
+    System.out.printf("Running up to %d replications of %s on %d threads (%s)%n", max, point.policy(), threads, scenario);
+    final long start = System.nanoTime();
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+      // Replications still running when the target is reached are abandoned
+      final Thread thread = new Thread(runnable, "replication");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final CompletionService<MigrationSweep.Result> completion = new ExecutorCompletionService<>(executor);
+    // Results that finished before the ones of lower replications
+    final Map<Integer, MigrationSweep.Result> waiting = new HashMap<>();
+    int submitted = 0;
+    int next = 0;
+    boolean precise = false;
+    try {
+      while (!precise && next < max) {
+        for (; submitted < max && submitted - next < Math.max(1, threads); submitted++) {
+          final int replication = submitted;
+          completion.submit(() -> runReplication(replication));
+        }
+
+        final MigrationSweep.Result result = completion.take().get();
+        waiting.put(result.point().index(), result);
+        for (; !precise && waiting.containsKey(next); next++) {
+          add(waiting.remove(next));
+          precise = next + 1 >= min && isPrecise(targets, targetWidth);
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Replication failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    System.out.printf("%s after %d replications (%d failed) in %.2f s%n",
+        precise ? "Target width of " + targets + " reached" : "Maximum number of replications reached",
+        next, failed, (System.nanoTime() - start) / 1e9);
+    print(System.out);
+  }
+
+  private MigrationSweep.Result runReplication(final int replication) {
+    final Scenario replicated = scenario.withReplication(seed + replication, vmMixJitter, utilizationJitter, lengthJitter);
+    final MigrationSweep.Point replicationPoint = new MigrationSweep.Point(replication, point.policy(),
+        point.overThreshold(), point.underThreshold(), point.searchRetryDelay(), point.schedulingInterval(),
+        point.maxInterval(), point.tolerance(), point.guarded(), point.selection());
+    return MigrationSweep.runPoint(replicated, replicationPoint);
+  }
+
+  private void add(final MigrationSweep.Result result) {
+    System.out.printf("Replication %d (seed %d): %d migrations, %.2f Wh, makespan %.2f s, overload %.2f s, %d ms, %s%n",
+        result.point().index(), seed + result.point().index(), result.migrations(), result.energyWattHour(),
+        result.makespan(), result.overloadSeconds(), result.wallTimeMillis(), result.status());
+    if (!result.status().equals("OK")) {
+      failed++;
+      return;
+    }
+
+    statistics.computeIfAbsent("migrations", name -> new RunningStatistics()).add(result.migrations());
+    statistics.computeIfAbsent("migration-time", name -> new RunningStatistics()).add(result.migrationTime());
+    statistics.computeIfAbsent("energy", name -> new RunningStatistics()).add(result.energyWattHour());
+    for (int k = 0; k < result.serverClasses().length; k++) {
+      statistics.computeIfAbsent("energy-" + result.serverClasses()[k] + "pes", name -> new RunningStatistics())
+          .add(result.serverClassEnergyWattHour()[k]);
+    }
+    statistics.computeIfAbsent("energy-per-work", name -> new RunningStatistics()).add(result.energyPerWork());
+    statistics.computeIfAbsent("makespan", name -> new RunningStatistics()).add(result.makespan());
+    statistics.computeIfAbsent("overload", name -> new RunningStatistics()).add(result.overloadSeconds());
+  }
+
+  private boolean isPrecise(final List<String> targets, final double targetWidth) {
+    for (String target : targets) {
+      final RunningStatistics stats = statistics.get(target);
+      if (stats == null || stats.getCount() < 2 || !stats.isPrecise(targetWidth)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public Map<String, RunningStatistics> getStatistics() {
+    return statistics;
+  }
+
+  public void print(final PrintStream out) {
+    out.println(HEADER);
+    statistics.forEach((name, stats) -> {
+      final double halfWidth = stats.getConfidenceHalfWidth();
+      out.printf("%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f%n", name, stats.getCount(), stats.getMean(),
+          stats.getStandardDeviation(), stats.getMean() - halfWidth, stats.getMean() + halfWidth,
+          stats.getMin(), stats.getMax());
+    });
+  }
+
+  public void export(final Path file) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+
+    try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+      print(out);
+    }
+    System.out.println("Replication statistics written to " + file);
+  }
+}
@@ -0,0 +1,383 @@
+package simulations;
+
+import ch.qos.logback.classic.Level;
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.Datacenter;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.builders.tables.CloudletsTableBuilder;
+import org.cloudsimplus.builders.tables.CsvTable;
+import org.cloudsimplus.listeners.DatacenterBrokerEventInfo;
+import org.cloudsimplus.listeners.VmHostEventInfo;
+import org.cloudsimplus.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * The simulation of the scenario of {@link Config} with a policy of the {@link MigrationSweep#POLICIES registry},
+ * that {@link MigrationBestFitPolicy}, {@link MigrationFirstFitPolicy}, {@link MigrationMinPowerPolicy} and
+ * {@link MigrationDynamicThresholdPolicy} run. It writes the power CSVs and the event journal of the policy,
+ * takes checkpoints and reports the migrations and energy consumption.
+ *
+ * <p>Several policies can be run one after another with {@code --policies}. Their simulations are created by a single
+ * {@link ScenarioEngine}, so the scenario is built once, and their results are compared at the end. Each policy
+ * writes its own files, named after it. With {@code --format=columnar}, the cloudlet results and power files are
+ * {@link ResultTable columnar tables} instead of CSV files.</p>
+ *
+ * <p>Usage: {@code MigrationRunner --policies=best-fit,first-fit,min-power,mad [--adaptive-interval]
+ * [--migration-scheduler] [--guard] [--selection=min-utilization|min-migration-time|max-correlation|cost]
+ * [--spec-power] [--power-states] [--quiet] [--journal=none] [--format=csv|columnar] [--compression=none|deflate]}</p>
+ */
+public final class MigrationRunner {
+  private static final String COMPARISON_HEADER =
+      "Policy,Migrations,SimulationTime(s),TotalEnergyConsumption(Wh),OverloadTime(s),WallTime(ms)";
+
+  /**
+   * What a runner is named after: the policy it runs, the prefix of its files in migrations_results,
+   * the label of its power CSV and the title of its messages.
+   */
+  public record Definition(String policy, String name, String label, String title) {
+    public static Definition of(final String policy) {
+      return new Definition(policy, "migration_" + policy.replace('-', '_'), policy, "MigrationRunner (" + policy + ")");
+    }
+  }
+
+  private record Summary(String policy, int migrations, double simulationTime, double energyWattHour,
+      double overloadSeconds, long wallTimeMillis) {
+  }
+
+  private final Definition definition;
+  private final ScenarioEngine engine;
+  private final Scenario scenario;
+  private final List<Vm> vmList;
+  private final List<Cloudlet> cloudletList;
+  private final DatacenterBrokerStreaming broker;
+
+  private final CloudSimPlus simulation;
+  private VmAllocationPolicyMigrationStaticThreshold allocationPolicy;
+  private List<Host> hostList;
+  private AdaptiveSchedulingInterval adaptiveInterval;
+  private MigrationScheduler migrationScheduler;
+  private MigrationGuard migrationGuard;
+  private HostPowerController powerController;
+  private final int[] migrationsNumber = {0};
+  private final EventJournal journal;
+  private final SimulationCheckpoint checkpoint;
+  private final CloudletResultSink.Options resultOptions;
+  private final CloudletResultSink resultSink;
+  private final boolean adaptive;
+  private final boolean guarded;
+  private final VmSelectionPolicyRanked.Criterion selection;
+  private VmSelectionPolicyRanked selectionPolicy;
+  private final Summary summary;
+
+  public static void main(String[] args) {
+    final List<String> runArgs = new ArrayList<>(List.of(args));
+    List<String> policies = List.of("best-fit");
+    for (var iterator = runArgs.iterator(); iterator.hasNext(); ) {
+      final String arg = iterator.next();
+      if (arg.startsWith("--policies=")) {
+        policies = Arrays.asList(arg.substring("--policies=".length()).split(","));
+        iterator.remove();
+      }
+    }
+
+    run(policies.stream().map(Definition::of).toList(), runArgs);
+  }
+
+  /**
+   * Runs the policy of a runner with the runner's arguments.
+   */
+  public static void run(final Definition definition, final List<String> args) {
+    run(List.of(definition), args);
+  }
+
+  private static void run(final List<Definition> definitions, final List<String> args) {
+    if (definitions.size() > 1 && args.stream().anyMatch(arg -> arg.startsWith("--results=")
+        || arg.startsWith("--checkpoint=") || arg.startsWith("--resume")
+        || arg.startsWith("--journal=") && !arg.equals("--journal=none"))) {
+      throw new IllegalArgumentException("Files can't be given for several policies, each one writes its own.");
+    }
+
+    final boolean adaptive = args.remove("--adaptive-interval");
+    final boolean guarded = args.remove("--guard");
+    final ResultTable.Options tableOptions = ResultTable.Options.parse(args);
+    final VmSelectionPolicyRanked.Criterion selection = VmSelectionPolicyRanked.parse(args);
+    final ScenarioEngine engine = new ScenarioEngine(Scenario.fromConfig().withSpecPower(args.remove("--spec-power"))
+        .withPowerStates(args.remove("--power-states")).withScheduledMigrations(args.remove("--migration-scheduler")));
+    final List<Summary> summaries = new ArrayList<>(definitions.size());
+    final MetricsRegistry metrics = MetricsRegistry.configure(args);
+    try {
+      for (Definition definition : definitions) {
+        final List<String> journalArgs = new ArrayList<>(args);
+        final SimulationCheckpoint.Options checkpointOptions =
+            SimulationCheckpoint.Options.parse(journalArgs, "migrations_results/" + definition.name() + ".checkpoint");
+        final CloudletResultSink.Options resultOptions =
+            CloudletResultSink.Options.parse(journalArgs,
+                "migrations_results/" + definition.name() + "_policy" + tableOptions.extension());
+        try (EventJournal journal = Shared.createEventJournal(journalArgs.toArray(String[]::new),
+            "migrations_results/" + definition.name() + "_events.journal")) {
+          summaries.add(new MigrationRunner(definition, engine, journal, checkpointOptions, resultOptions, tableOptions,
+              adaptive, guarded, selection).summary);
+        }
+      }
+    } finally {
+      metrics.close();
+    }
+
+    if (definitions.size() > 1) {
+      System.out.printf("%nPolicy comparison (%s)%n", engine.getScenario());
+      System.out.println(COMPARISON_HEADER);
+      summaries.forEach(summary -> System.out.printf("%s,%d,%.2f,%.2f,%.2f,%d%n", summary.policy(), summary.migrations(),
+          summary.simulationTime(), summary.energyWattHour(), summary.overloadSeconds(), summary.wallTimeMillis()));
+      engine.printReport();
+    }
+  }
+
+  private MigrationRunner(final Definition definition, final ScenarioEngine engine, final EventJournal journal,
+      final SimulationCheckpoint.Options checkpointOptions, final CloudletResultSink.Options resultOptions,
+      final ResultTable.Options tableOptions, final boolean adaptive, final boolean guarded,
+      final VmSelectionPolicyRanked.Criterion selection) {
+    final long start = System.nanoTime();
+    this.definition = definition;
+    this.engine = engine;
+    this.journal = journal;
+    this.scenario = engine.getScenario();
+    this.vmList = new ArrayList<>(scenario.getVmCount());
+    this.cloudletList = new ArrayList<>(scenario.getVmCount());
+    this.checkpoint = checkpointOptions.readResumeCheckpoint();
+    this.resultOptions = resultOptions;
+    this.resultSink = resultOptions.open(tableOptions.compression());
+    this.adaptive = adaptive;
+    this.guarded = guarded;
+    this.selection = selection;
+    Log.setLevel(journal.isQuiet() ? Level.OFF : Level.INFO);
+
+    if (!journal.isQuiet())
+      System.out.println("Starting " + definition.title());
+    simulation = new CloudSimPlus();
+
+    @SuppressWarnings("unused")
+    final Datacenter datacenter0 = createDatacenter();
+    final EnergyMeter energyMeter = new EnergyMeter(simulation, hostList)
+        .enablePowerTimeSeries(Config.Power.SERIES_RESOLUTION, Config.Power.SERIES_CAPACITY);
+    final HostHistoryRecorder historyRecorder = new HostHistoryRecorder(
+        hostList.stream().filter(h -> h.getId() <= 2).toList(),
+        Config.Host.HISTORY_CAPACITY, Config.Host.HISTORY_STRIDE);
+    broker = new DatacenterBrokerStreaming(simulation).setRetainFinishedCloudlets(!resultOptions.dropFinished());
+    createAndSubmitVms(broker);
+    createAndSubmitCloudlets(broker);
+    if (checkpoint != null) {
+      checkpoint.restoreEnergy(energyMeter);
+      migrationsNumber[0] = checkpoint.getMigrations();
+      if (!journal.isQuiet())
+        System.out.printf("Resuming from the checkpoint at %.2f s (%s)%n", checkpoint.getTime(), checkpointOptions.resumeFrom());
+    }
+    SimulationCheckpoint.scheduleEvery(hostList, checkpointOptions.interval(), checkpointOptions.file(),
+        () -> SimulationCheckpoint.capture(simulation, hostList, vmList, cloudletList, energyMeter, migrationsNumber[0]));
+
+    broker.addOnVmsCreatedListener(this::onVmsCreatedListener);
+
+    simulation.start();
+    energyMeter.finish();
+
+    // Sorted results are merged here, from the runs spilled while the simulation ran
+    resultSink.close();
+
+    try {
+        java.io.File resultsDir = new java.io.File("migrations_results");
+        if (!resultsDir.exists()) {
+          resultsDir.mkdirs();
+        }
+
+        final String prefix = "migrations_results/" + definition.name();
+        if (tableOptions.columnar()) {
+          Shared.exportPowerConsumptionToTable(energyMeter, Path.of(prefix + "_power.rtab"), tableOptions.compression());
+          energyMeter.exportPowerTimeSeriesToTable(Path.of(prefix + "_power_series.rtab"), tableOptions.compression());
+        } else {
+          try (PrintStream powerOut = Shared.openCsv(prefix + "_power.csv")) {
+            CsvTable powerCsv = new CsvTable();
+            powerCsv.setPrintStream(powerOut);
+            Shared.exportPowerConsumptionToCsv(energyMeter, powerCsv, definition.label());
+          }
+
+          try (PrintStream seriesOut = Shared.openCsv(prefix + "_power_series.csv")) {
+            energyMeter.exportPowerTimeSeriesToCsv(seriesOut);
+          }
+        }
+
+        if (!journal.isQuiet() && broker.isRetainFinishedCloudlets())
+          new CloudletsTableBuilder(broker.getCloudletFinishedList()).build();
+    } catch (IOException e) {
+        System.err.println("Error writing CSV files: " + e.getMessage());
+    }
+
+    summary = new Summary(definition.policy(), migrationsNumber[0], simulation.clock(),
+        energyMeter.getTotalEnergyWattHour(), energyMeter.getTotalOverloadSeconds(), (System.nanoTime() - start) / 1_000_000);
+    if (!journal.isQuiet()) {
+      printReports(historyRecorder, energyMeter);
+    }
+
+    engine.release(hostList);
+  }
+
+  private void printReports(final HostHistoryRecorder historyRecorder, final EnergyMeter energyMeter) {
+    System.out.printf(
+        "%nHosts CPU usage History (when the allocated MIPS is lower than the requested, it is due to VM migration overhead)%n");
+
+    hostList.stream().filter(historyRecorder::isRecording)
+        .forEach(host -> Shared.printHostStateHistory(historyRecorder, host));
+    System.out.printf("Number of VM migrations: %d%n", migrationsNumber[0]);
+    if (adaptiveInterval != null) {
+      adaptiveInterval.printReport();
+    }
+    if (migrationScheduler != null) {
+      migrationScheduler.printReport();
+    }
+    if (migrationGuard != null) {
+      migrationGuard.printReport();
+    }
+    if (powerController != null) {
+      powerController.printReport();
+    }
+    if (selectionPolicy != null) {
+      selectionPolicy.printReport();
+    }
+
+    Shared.printPowerConsumptionSummary(energyMeter);
+
+    System.out.println(definition.title() + " finished!");
+  }
+
+  private void startMigration(final VmHostEventInfo info) {
+    Shared.startMigration(journal, migrationsNumber, simulation, info);
+  }
+
+  private void finishMigration(final VmHostEventInfo info) {
+    Shared.finishMigration(journal, hostList, info);
+  }
+
+  public void createAndSubmitCloudlets(DatacenterBroker broker) {
+    cloudletList.addAll(engine.createCloudlets(vmList, broker));
+    resultSink.attach(cloudletList, resultOptions.dropFinished());
+    final List<Cloudlet> list = checkpoint == null ? cloudletList : checkpoint.resumeCloudlets(cloudletList);
+
+    broker.submitCloudletList(list);
+    if (!journal.isQuiet())
+      System.out.println("Created " + list.size() + " cloudlets (including high-utilization ones to trigger migrations)");
+  }
+
+  public void createAndSubmitVms(DatacenterBroker broker) {
+    final List<Vm> list = engine.createVms();
+
+    vmList.addAll(list);
+    if (checkpoint != null) {
+      checkpoint.placeVms(list, hostList, allocationPolicy, broker);
+    }
+    broker.submitVmList(list);
+
+    list.forEach(vm -> vm.addOnMigrationStartListener(this::startMigration));
+    SimulationEvents.recordMigrations(list);
+    list.forEach(vm -> vm.addOnMigrationFinishListener(this::finishMigration));
+    list.forEach(vm -> vm.enableUtilizationStats());
+  }
+
+  private Datacenter createDatacenter() {
+    this.hostList = engine.createHosts();
+
+    this.allocationPolicy = engine.createPolicy(definition.policy(), Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION);
+    this.allocationPolicy.setUnderUtilizationThreshold(Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION);
+
+    final DatacenterInstrumented dc = new DatacenterInstrumented(simulation, hostList, allocationPolicy);
+    if (!journal.isQuiet()) {
+      System.out.println();
+      for (Host host : hostList) {
+        System.out.printf(
+            "# Created %s with %.0f MIPS x %d PEs (%.0f total MIPS)%n",
+            host, host.getMips(), host.getPesNumber(), host.getTotalMipsCapacity());
+      }
+    }
+
+    dc.setSchedulingInterval(Config.Scheduling.INTERVAL)
+        .setHostSearchRetryDelay(Config.Host.SEARCH_RETRY_DELAY);
+    if (adaptive) {
+      adaptiveInterval = AdaptiveSchedulingInterval.fromConfig(dc);
+    }
+    if (scenario.isScheduledMigrations()) {
+      migrationScheduler = MigrationScheduler.fromConfig(dc);
+    }
+    if (guarded) {
+      migrationGuard = MigrationGuard.fromConfig(dc, allocationPolicy);
+    }
+    if (scenario.isPowerStates()) {
+      powerController = HostPowerController.fromConfig(dc);
+    }
+    if (selection != null) {
+      selectionPolicy = VmSelectionPolicyRanked.fromConfig(dc, selection);
+      allocationPolicy.setVmSelectionPolicy(selectionPolicy);
+    }
+
+    return dc;
+  }
+
+  private void onVmsCreatedListener(final DatacenterBrokerEventInfo info) {
+    if (!journal.isQuiet())
+      System.out.printf("# All %d VMs submitted to the broker have been created.%n",
+          broker.getVmCreatedList().size());
+
+    if (allocationPolicy instanceof VmAllocationPolicyMigrationIndexedStaticThreshold indexed) {
+      // Report hosts as they cross the over utilization threshold
+      indexed.getLoadDetector().addOnBandChangeListener((time, host, previous, current) -> {
+        if (current == HostLoadDetector.Band.OVERLOADED) {
+          reportOverload(time, host);
+        }
+      });
+    } else {
+      // The stock policies don't track the load of the hosts, so they are checked after the VMs start running
+      simulation.addOnClockTickListener(clock -> {
+        if (clock.getTime() > 0 && clock.getTime() <= 2) {
+          if (!journal.isQuiet())
+            System.out.printf("%.2f: Checking hosts for potential VM migrations...%n", clock.getTime());
+
+          for (Host host : hostList) {
+            if (host.getCpuPercentUtilization() > allocationPolicy.getOverUtilizationThreshold(host)) {
+              reportOverload(clock.getTime(), host);
+            }
+          }
+        }
+      });
+    }
+
+    broker.removeOnVmsCreatedListener(info.getListener());
+    vmList.forEach(vm -> journal.vmCreated(info.getTime(), vm));
+    hostList.forEach(host -> journal.hostAllocation(info.getTime(), host));
+    if (journal.isQuiet()) {
+      return;
+    }
+
+    vmList.forEach(vm -> Shared.showVmAllocatedMips(vm, vm.getHost(), info.getTime()));
+
+    System.out.println();
+    hostList.forEach(host -> Shared.showHostAllocatedMips(info.getTime(), host));
+    System.out.println();
+  }
+
+  private void reportOverload(final double time, final Host host) {
+    journal.hostOverloaded(time, host);
+    if (!journal.isQuiet())
+      System.out.printf("%.2f: Host %d is overloaded with %.1f%% CPU utilization (threshold: %.1f%%)%n",
+          time, host.getId(), host.getCpuPercentUtilization() * 100,
+          allocationPolicy.getOverUtilizationThreshold(host) * 100);
+  }
+}
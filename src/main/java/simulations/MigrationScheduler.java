@@ -0,0 +1,311 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostAbstract;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Queues the VM migrations requested to a {@link DatacenterInstrumented} and starts their transfers when
+ * the links of both hosts have room, instead of transferring all of them at once with the full migration
+ * bandwidth of the target host.
+ *
+ * <p>Each host has a link with its bandwidth times the datacenter's bandwidth percent for migration, and
+ * at most {@link Config.Migration#MAX_TRANSFERS_PER_LINK} transfers leave or enter it at a time. A transfer
+ * gets the share of the links of its hosts it finds when it starts, which it keeps until it finishes. Its time
+ * follows pre-copy live migration: the whole RAM is sent first, then each round sends the pages the VM dirtied
+ * during the previous one, until they're below {@link Config.Migration#STOP_COPY_SIZE} (or stop shrinking),
+ * and the VM is paused to send the rest (its downtime). The VM dirties its RAM at a rate proportional
+ * to its CPU utilization.</p>
+ *
+ * <p>Waiting migrations start shortest transfer first, which minimises the total time migrations take
+ * to finish on a single link. A migration reserves its target host and counts as migrating out of its
+ * source as soon as it's requested, so policies don't select it again while it waits, and the VM pays
+ * the CPU overhead of migrating from then on. Migrations to a host that is waking up wait until it's active.</p>
+ */
+public class MigrationScheduler {
+  private record Pending(Vm vm, Host source, Host target, double requestTime, double estimate) {
+  }
+
+  private record Transfer(Host source, Host target, double requestTime, double startTime, double duration,
+      double downtime, int rounds) {
+  }
+
+  private final DatacenterInstrumented datacenter;
+  private final int maxTransfersPerLink;
+  private final double dirtyRate;
+  private final double stopCopySize;
+  private final int maxRounds;
+
+  /* Waiting migrations, shortest estimated transfer first */
+  private final List<Pending> queue = new ArrayList<>();
+  private final Map<Vm, Transfer> transfers = new IdentityHashMap<>();
+  private final Map<Host, Integer> outgoing = new IdentityHashMap<>();
+  private final Map<Host, Integer> incoming = new IdentityHashMap<>();
+
+  private long started;
+  private long finished;
+  private long queued;
+  private long abandoned;
+  private double totalWait;
+  private double totalTransfer;
+  private double totalDowntime;
+  private long totalRounds;
+  private double lastFinish;
+
+  /**
+   * @param maxTransfersPerLink the most transfers that leave or enter a host at a time
+   * @param dirtyRate the fraction of its RAM a VM dirties per second at 100% CPU utilization
+   * @param stopCopySize the most dirty memory (MB) the VM is paused to send
+   * @param maxRounds the most pre-copy rounds (after the first full copy) before the VM is paused
+   */
+  public MigrationScheduler(final DatacenterInstrumented datacenter, final int maxTransfersPerLink,
+      final double dirtyRate, final double stopCopySize, final int maxRounds) {
+    if (maxTransfersPerLink < 1) {
+      throw new IllegalArgumentException("The maximum number of transfers per link must be at least 1.");
+    }
+    if (dirtyRate < 0 || stopCopySize < 0 || maxRounds < 0) {
+      throw new IllegalArgumentException("The dirty rate, stop-and-copy size and maximum rounds must not be negative.");
+    }
+
+    this.datacenter = datacenter;
+    this.maxTransfersPerLink = maxTransfersPerLink;
+    this.dirtyRate = dirtyRate;
+    this.stopCopySize = stopCopySize;
+    this.maxRounds = maxRounds;
+    datacenter.setMigrationScheduler(this);
+  }
+
+  public static MigrationScheduler fromConfig(final DatacenterInstrumented datacenter) {
+    return new MigrationScheduler(datacenter, Config.Migration.MAX_TRANSFERS_PER_LINK,
+        Config.Migration.DIRTY_RATE, Config.Migration.STOP_COPY_SIZE, Config.Migration.MAX_ROUNDS);
+  }
+
+  /**
+   * Queues the migration of a VM whose target host has already been reserved, starting it if the links allow.
+   */
+  public void enqueue(final Vm vm, final Host source, final Host target) {
+    final double now = datacenter.getSimulation().clock();
+    final double estimate = precopy(vm, Math.min(getLinkBandwidth(source), getLinkBandwidth(target)))[0];
+    final Pending pending = new Pending(vm, source, target, now, estimate);
+    int position = queue.size();
+    while (position > 0 && queue.get(position - 1).estimate() > estimate) {
+      position--;
+    }
+    queue.add(position, pending);
+    dispatch();
+    if (!transfers.containsKey(vm)) {
+      queued++;
+      MetricsRegistry.global().increment("migrations.queued");
+    }
+  }
+
+  /**
+   * Restarts a migration of a resumed simulation, either as a transfer that ends at a given time
+   * or, when that time is NaN, as a waiting migration.
+   */
+  public void resume(final Vm vm, final Host source, final Host target, final double end) {
+    if (Double.isNaN(end)) {
+      enqueue(vm, source, target);
+      return;
+    }
+
+    final double now = datacenter.getSimulation().clock();
+    final double delay = Math.max(0, end - now);
+    transfers.put(vm, new Transfer(source, target, now, now, delay, 0, 0));
+    outgoing.merge(source, 1, Integer::sum);
+    incoming.merge(target, 1, Integer::sum);
+    started++;
+    datacenter.getSimulation().send(datacenter, datacenter, delay, CloudSimTag.VM_MIGRATE,
+        new TreeMap.SimpleEntry<>(vm, target));
+  }
+
+  /**
+   * Frees the links of a finished migration and starts the waiting ones that now fit.
+   */
+  public void finish(final Vm vm) {
+    final Transfer transfer = transfers.remove(vm);
+    if (transfer == null) {
+      return;
+    }
+
+    release(outgoing, transfer.source());
+    release(incoming, transfer.target());
+    finished++;
+    totalWait += transfer.startTime() - transfer.requestTime();
+    totalTransfer += transfer.duration();
+    totalDowntime += transfer.downtime();
+    totalRounds += transfer.rounds();
+    lastFinish = datacenter.getSimulation().clock();
+    MetricsRegistry.global().increment("migrations.transferred");
+
+    final SimulationEvents.MigrationTransfer event = new SimulationEvents.MigrationTransfer();
+    if (event.shouldCommit()) {
+      event.simulationTime = lastFinish;
+      event.vmId = vm.getId();
+      event.sourceHostId = transfer.source().getId();
+      event.targetHostId = transfer.target().getId();
+      event.waitTime = transfer.startTime() - transfer.requestTime();
+      event.transferTime = transfer.duration();
+      event.downtime = transfer.downtime();
+      event.rounds = transfer.rounds();
+      event.commit();
+    }
+
+    dispatch();
+  }
+
+  /**
+   * Starts the waiting migrations that now fit, such as those whose target host has just woken up.
+   */
+  public void dispatch() {
+    for (var iterator = queue.iterator(); iterator.hasNext(); ) {
+      final Pending pending = iterator.next();
+      if (!pending.vm().isCreated()) {
+        iterator.remove();
+        abandon(pending);
+        continue;
+      }
+
+      final int out = outgoing.getOrDefault(pending.source(), 0);
+      final int in = incoming.getOrDefault(pending.target(), 0);
+      if (out >= maxTransfersPerLink || in >= maxTransfersPerLink || !pending.target().isActive()) {
+        continue;
+      }
+
+      iterator.remove();
+      start(pending, out + 1, in + 1);
+    }
+  }
+
+  private void start(final Pending pending, final int out, final int in) {
+    final double bandwidth = Math.min(getLinkBandwidth(pending.source()) / out, getLinkBandwidth(pending.target()) / in);
+    final double[] precopy = precopy(pending.vm(), bandwidth);
+    final double now = datacenter.getSimulation().clock();
+    transfers.put(pending.vm(), new Transfer(pending.source(), pending.target(), pending.requestTime(), now,
+        precopy[0], precopy[1], (int) precopy[2]));
+    outgoing.merge(pending.source(), 1, Integer::sum);
+    incoming.merge(pending.target(), 1, Integer::sum);
+    started++;
+    datacenter.getSimulation().send(datacenter, datacenter, precopy[0], CloudSimTag.VM_MIGRATE,
+        new TreeMap.SimpleEntry<>(pending.vm(), pending.target()));
+  }
+
+  /**
+   * Releases the target host reserved for a VM that was destroyed while its migration waited,
+   * such as an idle VM the broker destroyed.
+   */
+  private void abandon(final Pending pending) {
+    ((HostAbstract) pending.target()).destroyTemporaryVm(pending.vm());
+    pending.target().removeMigratingInVm(pending.vm());
+    pending.source().removeVmMigratingOut(pending.vm());
+    abandoned++;
+  }
+
+  /**
+   * Estimates the time to migrate a VM away from a host if its transfer started now,
+   * with the share of the host's link it would get next to the transfers leaving the host.
+   */
+  public double estimateMigrationTime(final Vm vm, final Host source) {
+    final int out = Math.min(maxTransfersPerLink, outgoing.getOrDefault(source, 0) + 1);
+    return precopy(vm, getLinkBandwidth(source) / out)[0];
+  }
+
+  /**
+   * Computes the time to migrate a VM with pre-copy over a given bandwidth.
+   *
+   * @param bandwidth the bandwidth of the transfer (MB/s)
+   * @return the total time, the downtime (both in seconds) and the number of pre-copy rounds after the first copy
+   */
+  private double[] precopy(final Vm vm, final double bandwidth) {
+    final double ram = vm.getRam().getAllocatedResource();
+    final double dirtyPerSecond = ram * dirtyRate * Math.min(1, vm.getCpuPercentUtilization());
+    double toSend = ram;
+    double time = 0;
+    int rounds = 0;
+    while (true) {
+      final double roundTime = toSend / bandwidth;
+      time += roundTime;
+      final double dirty = Math.min(ram, dirtyPerSecond * roundTime);
+      // The VM is paused once what's left is small enough, stops shrinking or there are no rounds left
+      final boolean converging = dirty < toSend;
+      toSend = dirty;
+      if (dirty <= stopCopySize || !converging || rounds == maxRounds) {
+        break;
+      }
+      rounds++;
+    }
+
+    final double downtime = toSend / bandwidth;
+    return new double[]{time + downtime, downtime, rounds};
+  }
+
+  /**
+   * Gets the bandwidth (MB/s) of a host link that migrations may use.
+   */
+  private double getLinkBandwidth(final Host host) {
+    return host.getBw().getCapacity() * datacenter.getBandwidthPercentForMigration() / 8.0;
+  }
+
+  private static void release(final Map<Host, Integer> transfersByHost, final Host host) {
+    transfersByHost.computeIfPresent(host, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * Gets the number of migrations waiting for room in the links of their hosts.
+   */
+  public int getWaiting() {
+    return queue.size();
+  }
+
+  /**
+   * Gets the number of transfers in progress.
+   */
+  public int getTransferring() {
+    return transfers.size();
+  }
+
+  /**
+   * Gets the number of migrations that had to wait before their transfer started.
+   */
+  public long getQueued() {
+    return queued;
+  }
+
+  /**
+   * Gets the number of migrations dropped because their VM was destroyed while they waited.
+   */
+  public long getAbandoned() {
+    return abandoned;
+  }
+
+  public long getFinished() {
+    return finished;
+  }
+
+  /**
+   * Gets the time (s) finished migrations took, from request to finish, added up.
+   */
+  public double getTotalMigrationTime() {
+    return totalWait + totalTransfer;
+  }
+
+  public void printReport() {
+    System.out.printf(
+        "Migration scheduler (%d transfers per link): %d migrations started, %d finished, %d queued, %d abandoned, "
+            + "%.2f s mean wait, %.2f s mean transfer, %.1f mean pre-copy rounds, %.0f ms mean downtime, "
+            + "%.2f s total migration time, last one finished at %.2f s%n",
+        maxTransfersPerLink, started, finished, queued, abandoned,
+        finished == 0 ? 0 : totalWait / finished, finished == 0 ? 0 : totalTransfer / finished,
+        finished == 0 ? 0 : totalRounds / (double) finished, finished == 0 ? 0 : totalDowntime * 1000 / finished,
+        getTotalMigrationTime(), lastFinish);
+  }
+}
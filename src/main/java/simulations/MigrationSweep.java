@@ -0,0 +1,422 @@
+package simulations;
+
+import ch.qos.logback.classic.Level;
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationBestFitStaticThreshold;
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationFirstFitStaticThreshold;
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicyMinimumUtilization;
+import org.cloudsimplus.util.Log;
+import org.cloudsimplus.vms.Vm;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleFunction;
+
+/**
+ * Runs a grid of migration policy x over/under threshold x host search retry delay x scheduling interval
+ * x adaptive interval bound x error tolerance inside a single JVM. Every point is an isolated {@link CloudSimPlus} instance executed on a bounded
+ * thread pool, and results are streamed into one combined CSV table as soon as each point finishes.
+ *
+ * <p>Usage: {@code MigrationSweep --policies=first-fit,best-fit --over=0.7,0.8 --under=0.1,0.2
+ * --retry-delay=60 --interval=1 --max-interval=1,60 --tolerance=0.01 --guard=off,on --selection=min-utilization,cost
+ * --threads=32 --hosts=10000 --vms=100000 --power=spec --power-states=on --migration-scheduler=on --trace=traces/azure.utr
+ * --fork=migrations_results/migration_best_fit.checkpoint --metrics=migrations_results/metrics.csv --metrics-interval=10
+ * --output=migrations_results/migration_sweep.csv}</p>
+ *
+ * <p>A point uses an {@link AdaptiveSchedulingInterval} between its scheduling interval and max interval,
+ * or a fixed interval when the max interval (the scheduling interval by default) isn't greater than it, and a
+ * {@link MigrationGuard} when it's guarded; points swept both with and without the guard are compared once the sweep finishes,
+ * and so are points swept with a {@link VmSelectionPolicyRanked ranked VM selection} and with {@code min-utilization},
+ * the selection policy of the runners.
+ * With {@code --power-states=on}, a {@link HostPowerController} puts idle hosts to sleep in every point.
+ * With {@code --migration-scheduler=on}, a {@link MigrationScheduler} queues the migrations of every point behind
+ * the hosts' links.
+ * With {@code --fork}, every point resumes from the same {@link SimulationCheckpoint}, so policies are
+ * compared from a warmed-up datacenter instead of an empty one.</p>
+ */
+public final class MigrationSweep {
+  public static final Map<String, DoubleFunction<VmAllocationPolicyMigrationStaticThreshold>> POLICIES =
+      new LinkedHashMap<>();
+
+  /*
+   * Host.getMigratableVms() returns an immutable list that VmAllocationPolicyMigrationAbstract sorts in place
+   * when it consolidates underloaded hosts, so higher under-utilization thresholds would crash the stock policies.
+   * The overrides hand it a mutable copy instead.
+   */
+  static {
+    POLICIES.put("first-fit", over -> new VmAllocationPolicyMigrationFirstFitStaticThreshold(
+        new VmSelectionPolicyMinimumUtilization(), over) {
+      @Override
+      protected List<? extends Vm> getVmsToMigrateFromUnderUtilizedHost(final Host host) {
+        return new ArrayList<>(host.getMigratableVms());
+      }
+    });
+    POLICIES.put("best-fit", over -> new VmAllocationPolicyMigrationBestFitStaticThreshold(
+        new VmSelectionPolicyMinimumUtilization(), over) {
+      @Override
+      protected List<? extends Vm> getVmsToMigrateFromUnderUtilizedHost(final Host host) {
+        return new ArrayList<>(host.getMigratableVms());
+      }
+    });
+    POLICIES.put("first-fit-indexed", over -> new VmAllocationPolicyMigrationFirstFitIndexed(
+        new VmSelectionPolicyMinimumUtilization(), over));
+    POLICIES.put("best-fit-indexed", over -> new VmAllocationPolicyMigrationBestFitIndexed(
+        new VmSelectionPolicyMinimumUtilization(), over));
+    POLICIES.put("min-power", over -> new VmAllocationPolicyMigrationMinPowerIndexed(
+        new VmSelectionPolicyMinimumUtilization(), over));
+    // The over threshold of the dynamic policies is used until a host has enough utilization samples
+    for (VmAllocationPolicyMigrationDynamicThresholdIndexed.Method method
+        : VmAllocationPolicyMigrationDynamicThresholdIndexed.Method.values()) {
+      POLICIES.put(method.getShortName(), over -> new VmAllocationPolicyMigrationDynamicThresholdIndexed(
+          new VmSelectionPolicyMinimumUtilization(), method, over));
+    }
+  }
+
+  private static final String HEADER =
+      "Point,Policy,OverThreshold,UnderThreshold,SearchRetryDelay,SchedulingInterval,MaxInterval,Tolerance,Guard,Selection,"
+          + "Migrations,Suppressed,MigrationTime(s),FinishedCloudlets,SimulationTime(s),TotalEnergyConsumption(Wh),"
+          + "EnergyPerWork(J/GI),OverloadTime(s),Updates,WallTime(ms),Status";
+  private static final String GUARD_HEADER =
+      "Point,Policy,Suppressed,Migrations,UnguardedMigrations,Energy(Wh),UnguardedEnergy(Wh),EnergyChange(%),"
+          + "OverloadTime(s),UnguardedOverloadTime(s),OverloadTimeChange(s)";
+  private static final String SELECTION_HEADER =
+      "Point,Policy,Selection,Migrations,BaseMigrations,MigrationTime(s),BaseMigrationTime(s),MigrationTimeSaved(s),"
+          + "Energy(Wh),BaseEnergy(Wh),OverloadTime(s),BaseOverloadTime(s)";
+
+  public record Point(int index, String policy, double overThreshold, double underThreshold,
+      int searchRetryDelay, double schedulingInterval, double maxInterval, double tolerance, boolean guarded,
+      String selection) {
+    public boolean isAdaptive() {
+      return maxInterval > schedulingInterval;
+    }
+
+    /**
+     * Gets this point with or without a {@link MigrationGuard}, keeping its index.
+     */
+    public Point withGuard(final boolean guarded) {
+      return new Point(index, policy, overThreshold, underThreshold, searchRetryDelay, schedulingInterval,
+          maxInterval, tolerance, guarded, selection);
+    }
+  }
+
+  /**
+   * @param suppressed the number of migrations vetoed by the {@link MigrationGuard} (0 without it)
+   * @param migrationTime the time the finished migrations took, from request to finish, added up
+   *                      (from start to finish without a {@link MigrationScheduler})
+   * @param energyPerWork the energy consumed per unit of work done by the finished cloudlets (joules per billion instructions)
+   * @param makespan the time the last cloudlet finished
+   * @param serverClasses the number of PEs of each server class
+   * @param serverClassEnergyWattHour the energy consumed by the hosts of each server class
+   */
+  public record Result(Point point, int migrations, long suppressed, double migrationTime, int finishedCloudlets,
+      double simulationTime, double energyWattHour, double energyPerWork, double overloadSeconds, long updates,
+      long wallTimeMillis, String status, double makespan, long[] serverClasses, double[] serverClassEnergyWattHour) {
+    public String toCsvRow() {
+      return String.format("%d,%s,%.2f,%.2f,%d,%.2f,%.2f,%.3f,%s,%s,%d,%d,%.2f,%d,%.2f,%.2f,%.4f,%.2f,%d,%d,%s",
+          point.index(), point.policy(), point.overThreshold(), point.underThreshold(),
+          point.searchRetryDelay(), point.schedulingInterval(), point.maxInterval(), point.tolerance(),
+          point.guarded() ? "on" : "off", point.selection(), migrations, suppressed, migrationTime, finishedCloudlets,
+          simulationTime, energyWattHour, energyPerWork, overloadSeconds, updates, wallTimeMillis, status);
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    final Map<String, String> options = parseOptions(args);
+    final List<String> policies = Arrays.asList(options.getOrDefault("policies", String.join(",", POLICIES.keySet())).split(","));
+    final double[] overThresholds = parseDoubles(options.getOrDefault("over",
+        String.valueOf(Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION)));
+    final double[] underThresholds = parseDoubles(options.getOrDefault("under",
+        String.valueOf(Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION)));
+    final double[] retryDelays = parseDoubles(options.getOrDefault("retry-delay",
+        String.valueOf(Config.Host.SEARCH_RETRY_DELAY)));
+    final double[] intervals = parseDoubles(options.getOrDefault("interval",
+        String.valueOf(Config.Scheduling.INTERVAL)));
+    // Points use the fixed interval unless a greater max interval is swept
+    final double[] maxIntervals = parseDoubles(options.getOrDefault("max-interval",
+        String.valueOf(Config.Scheduling.INTERVAL)));
+    final double[] tolerances = parseDoubles(options.getOrDefault("tolerance",
+        String.valueOf(Config.Scheduling.ERROR_TOLERANCE)));
+    final List<Boolean> guards = Arrays.stream(options.getOrDefault("guard", "off").split(","))
+        .map(MigrationSweep::parseSwitch).toList();
+    final List<String> selections =
+        Arrays.asList(options.getOrDefault("selection", VmSelectionPolicyRanked.MIN_UTILIZATION).split(","));
+    final int threads = Integer.parseInt(options.getOrDefault("threads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())));
+    final String output = options.getOrDefault("output", "migrations_results/migration_sweep.csv");
+    Scenario scenario = Scenario.fromConfig();
+    scenario = scenario.withSize(
+        Integer.parseInt(options.getOrDefault("hosts", String.valueOf(scenario.getHostCount()))),
+        Integer.parseInt(options.getOrDefault("vms", String.valueOf(scenario.getVmCount()))));
+    if (options.containsKey("trace")) {
+      scenario = scenario.withTrace(new UtilizationTrace(Path.of(options.get("trace"))));
+    }
+    scenario = scenario.withSpecPower(parsePowerModel(options.getOrDefault("power", "linear")))
+        .withPowerStates(parseSwitch(options.getOrDefault("power-states", "off")))
+        .withScheduledMigrations(parseSwitch(options.getOrDefault("migration-scheduler", "off")));
+
+    for (String policy : policies) {
+      if (!POLICIES.containsKey(policy)) {
+        throw new IllegalArgumentException("Unknown policy '" + policy + "'. Available: " + POLICIES.keySet());
+      }
+    }
+
+    for (String selection : selections) {
+      if (!selection.equals(VmSelectionPolicyRanked.MIN_UTILIZATION)) {
+        VmSelectionPolicyRanked.Criterion.fromShortName(selection);
+      }
+    }
+
+    final List<Point> grid = new ArrayList<>();
+    for (String policy : policies) {
+      for (double over : overThresholds) {
+        for (double under : underThresholds) {
+          for (double retryDelay : retryDelays) {
+            for (double interval : intervals) {
+              for (double maxInterval : maxIntervals) {
+                for (double tolerance : tolerances) {
+                  for (boolean guarded : guards) {
+                    for (String selection : selections) {
+                      grid.add(new Point(grid.size(), policy, over, under, (int) retryDelay, interval, maxInterval,
+                          tolerance, guarded, selection));
+                    }
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+
+    final SimulationCheckpoint fork = options.containsKey("fork") ? SimulationCheckpoint.read(Path.of(options.get("fork"))) : null;
+    final MetricsRegistry metrics = MetricsRegistry.global();
+    if (options.containsKey("metrics")) {
+      metrics.startDumping(Path.of(options.get("metrics")), Double.parseDouble(
+          options.getOrDefault("metrics-interval", String.valueOf(Config.Metrics.DUMP_INTERVAL))));
+    }
+
+    try {
+      new MigrationSweep(scenario, fork).run(grid, threads, new File(output));
+    } finally {
+      metrics.close();
+    }
+  }
+
+  /* Builds the scenario once for all the points */
+  private final ScenarioEngine engine;
+  private final SimulationCheckpoint fork;
+
+  public MigrationSweep(final Scenario scenario) {
+    this(scenario, null);
+  }
+
+  /**
+   * @param fork the checkpoint every point resumes from, or null to start them from scratch
+   */
+  public MigrationSweep(final Scenario scenario, final SimulationCheckpoint fork) {
+    this.engine = new ScenarioEngine(scenario);
+    this.fork = fork;
+  }
+
+  public void run(final List<Point> grid, final int threads, final File output) throws IOException, InterruptedException {
+    Log.setLevel(Level.OFF);
+    if (output.getParentFile() != null) {
+      output.getParentFile().mkdirs();
+    }
+
+    System.out.printf("Running %d sweep points on %d threads (%s)%n", grid.size(), threads, engine.getScenario());
+    if (fork != null) {
+      System.out.printf("Every point resumes from the checkpoint at %.2f s%n", fork.getTime());
+    }
+    System.out.println(HEADER);
+
+    final long start = System.nanoTime();
+    final List<Result> results = new ArrayList<>(grid.size());
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try (BufferedWriter out = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+      out.write(HEADER);
+      out.newLine();
+
+      final CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+      grid.forEach(point -> completion.submit(() -> runPoint(engine, point, fork)));
+
+      // Rows are written in completion order, so long-running points don't hold back the table
+      for (int i = 0; i < grid.size(); i++) {
+        final Result result = completion.take().get();
+        results.add(result);
+        final String row = result.toCsvRow();
+        out.write(row);
+        out.newLine();
+        out.flush();
+        System.out.println(row);
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Sweep point failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    System.out.printf("Sweep of %d points finished in %.2f s. Results written to %s%n",
+        grid.size(), (System.nanoTime() - start) / 1e9, output);
+    engine.printReport();
+    printGuardComparison(results);
+    printSelectionComparison(results);
+  }
+
+  /**
+   * Prints how the {@link MigrationGuard} changed the migrations, energy and overload time of each point
+   * swept both with and without it, leaving out the pairs where either point failed.
+   */
+  static void printGuardComparison(final List<Result> results) {
+    final Map<List<Object>, Result> unguarded = new HashMap<>();
+    for (Result result : results) {
+      if (!result.point().guarded() && result.status().equals("OK")) {
+        unguarded.put(settings(result.point(), result.point().selection()), result);
+      }
+    }
+
+    final List<Result> guarded = results.stream()
+        .filter(result -> result.point().guarded() && result.status().equals("OK"))
+        .sorted(Comparator.comparingInt(result -> result.point().index())).toList();
+    boolean header = true;
+    for (Result result : guarded) {
+      final Result base = unguarded.get(settings(result.point(), result.point().selection()));
+      if (base == null) {
+        continue;
+      }
+
+      if (header) {
+        System.out.printf("%nMigration guard compared with the same points without it%n%s%n", GUARD_HEADER);
+        header = false;
+      }
+      System.out.printf("%d,%s,%d,%d,%d,%.2f,%.2f,%+.2f,%.2f,%.2f,%+.2f%n",
+          result.point().index(), result.point().policy(), result.suppressed(), result.migrations(), base.migrations(),
+          result.energyWattHour(), base.energyWattHour(),
+          base.energyWattHour() == 0 ? 0 : (result.energyWattHour() - base.energyWattHour()) * 100 / base.energyWattHour(),
+          result.overloadSeconds(), base.overloadSeconds(), result.overloadSeconds() - base.overloadSeconds());
+    }
+  }
+
+  /**
+   * Prints how much migration time each ranked VM selection policy saved compared with the minimum utilization
+   * policy of CloudSim Plus on the same points, leaving out the pairs where either point failed.
+   */
+  static void printSelectionComparison(final List<Result> results) {
+    final Map<List<Object>, Result> minUtilization = new HashMap<>();
+    for (Result result : results) {
+      if (result.point().selection().equals(VmSelectionPolicyRanked.MIN_UTILIZATION) && result.status().equals("OK")) {
+        minUtilization.put(settings(result.point(), result.point().guarded()), result);
+      }
+    }
+
+    final List<Result> ranked = results.stream()
+        .filter(result -> !result.point().selection().equals(VmSelectionPolicyRanked.MIN_UTILIZATION)
+            && result.status().equals("OK"))
+        .sorted(Comparator.comparingInt(result -> result.point().index())).toList();
+    boolean header = true;
+    for (Result result : ranked) {
+      final Result base = minUtilization.get(settings(result.point(), result.point().guarded()));
+      if (base == null) {
+        continue;
+      }
+
+      if (header) {
+        System.out.printf("%nVM selection policies compared with %s on the same points%n%s%n",
+            VmSelectionPolicyRanked.MIN_UTILIZATION, SELECTION_HEADER);
+        header = false;
+      }
+      System.out.printf("%d,%s,%s,%d,%d,%.2f,%.2f,%+.2f,%.2f,%.2f,%.2f,%.2f%n",
+          result.point().index(), result.point().policy(), result.point().selection(), result.migrations(),
+          base.migrations(), result.migrationTime(), base.migrationTime(), base.migrationTime() - result.migrationTime(),
+          result.energyWattHour(), base.energyWattHour(), result.overloadSeconds(), base.overloadSeconds());
+    }
+  }
+
+  /**
+   * Gets the settings of a point besides its index, guard and VM selection, plus the one that isn't compared.
+   */
+  private static List<Object> settings(final Point point, final Object other) {
+    return List.of(point.policy(), point.overThreshold(), point.underThreshold(), point.searchRetryDelay(),
+        point.schedulingInterval(), point.maxInterval(), point.tolerance(), other);
+  }
+
+  public static Result runPoint(final Scenario scenario, final Point point) {
+    return runPoint(scenario, point, null);
+  }
+
+  /**
+   * Runs a point from a checkpoint, which is only read, so the same one can be shared by concurrent points.
+   *
+   * @param fork the checkpoint to resume from, or null to start from scratch
+   */
+  public static Result runPoint(final Scenario scenario, final Point point, final SimulationCheckpoint fork) {
+    return runPoint(new ScenarioEngine(scenario), point, fork);
+  }
+
+  /**
+   * Runs a point on the topology of an engine, returning the PE lists of its hosts to the engine's pool when it's over.
+   */
+  public static Result runPoint(final ScenarioEngine engine, final Point point, final SimulationCheckpoint fork) {
+    final PointSimulation simulation = new PointSimulation(engine, point, fork);
+    final Result result = simulation.run();
+    simulation.release();
+    return result;
+  }
+
+  static Map<String, String> parseOptions(final String[] args) {
+    final Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Invalid argument '" + arg + "'. Expected --name=value.");
+      }
+
+      final int separator = arg.indexOf('=');
+      options.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+
+    return options;
+  }
+
+  static boolean parseSwitch(final String value) {
+    return switch (value.trim()) {
+      case "on", "true" -> true;
+      case "off", "false" -> false;
+      default -> throw new IllegalArgumentException("Invalid switch '" + value + "'. Expected on or off.");
+    };
+  }
+
+  /**
+   * Parses a power model option: {@code linear} or {@code spec} (SPECpower curves), returning whether it's the latter.
+   */
+  static boolean parsePowerModel(final String value) {
+    return switch (value.trim()) {
+      case "spec" -> true;
+      case "linear" -> false;
+      default -> throw new IllegalArgumentException("Invalid power model '" + value + "'. Expected linear or spec.");
+    };
+  }
+
+  static double[] parseDoubles(final String values) {
+    return Arrays.stream(values.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray();
+  }
+}
@@ -0,0 +1,404 @@
+package simulations;
+
+import ch.qos.logback.classic.Level;
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.util.Log;
+import org.cloudsimplus.vms.Vm;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a scenario split into independent clusters, each one a {@link Scenario#withPartition partition} of its hosts
+ * and VMs with its own {@link PointSimulation} (simulation, datacenter, policy and broker), on a bounded thread pool.
+ *
+ * <p>Partitions run in lockstep through conservative time windows: every partition processes its events up to
+ * the end of a window, and none starts the next window before all of them are there. With the channel on, VMs
+ * cross partitions at those synchronisation points only: a host still overloaded at the end of a window with
+ * no VM migrating out hands one VM to the next partition (in partition order) with an awake host where the VM fits
+ * below its over threshold, up to {@link Config.Partition#CHANNEL_CAPACITY} VMs per partition and window
+ * (a VM crosses partitions at most once, so VMs don't bounce between them, and only if it would still be running
+ * when it gets there).
+ * The VM stops at the synchronisation point, and its cloudlet resumes with the rest of its length on the other
+ * partition once the VM's RAM is sent over its host's migration link, so nothing ever arrives in the past of
+ * a partition, whatever the window. Since VMs are exchanged in partition order, results don't depend on the
+ * number of threads.</p>
+ *
+ * <p>Energy, migrations and cloudlets of the partitions are merged once they all finish.</p>
+ *
+ * <p>Usage: {@code PartitionedSimulation --partitions=4 --window=10 --channel=on --threads=4 --policy=best-fit-indexed
+ * --over=0.8 --under=0.2 --retry-delay=60 --interval=1 --max-interval=60 --tolerance=0.01 --guard=off
+ * --selection=min-utilization --hosts=20000 --vms=30000 --power=spec --power-states=on --migration-scheduler=on
+ * --trace=traces/azure.utr --compare=on --output=migrations_results/migration_partitioned.csv}</p>
+ */
+public final class PartitionedSimulation {
+  public static final String HEADER = "Partition,Hosts,VMs,Migrations,VmsSent,VmsReceived,MigrationTime(s),"
+      + "FinishedCloudlets,SimulationTime(s),TotalEnergyConsumption(Wh),EnergyPerWork(J/GI),OverloadTime(s),WallTime(ms),Status";
+
+  private static final class Partition {
+    private final int index;
+    private final Scenario scenario;
+    private final PointSimulation simulation;
+    /* The index in the whole scenario of each VM, which picks its cloudlet's length and utilization */
+    private final Map<Vm, Integer> vmIndexes = new IdentityHashMap<>();
+    /* VMs received from other partitions, which don't move again */
+    private final Set<Vm> arrived = Collections.newSetFromMap(new IdentityHashMap<>());
+    /* The CPU ramps of the cloudlets received from other partitions */
+    private final UtilizationEngine engine;
+    private int sent;
+    private int received;
+
+    private Partition(final int index, final Scenario scenario, final MigrationSweep.Point point) {
+      this.index = index;
+      this.scenario = scenario;
+      this.simulation = new PointSimulation(scenario, point, null);
+      this.engine = new UtilizationEngine(Config.Partition.CHANNEL_CAPACITY);
+      final List<Vm> vmList = simulation.getVmList();
+      for (int i = 0; i < vmList.size(); i++) {
+        vmIndexes.put(vmList.get(i), scenario.getGlobalIndex(i));
+      }
+    }
+  }
+
+  private final Scenario scenario;
+  private final MigrationSweep.Point point;
+  private final int partitionCount;
+  private final double window;
+  private final boolean channel;
+
+  private final List<Partition> partitions = new ArrayList<>();
+  private final List<MigrationSweep.Result> results = new ArrayList<>();
+  private MigrationSweep.Result merged;
+  private long windows;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    final Map<String, String> options = MigrationSweep.parseOptions(args);
+    final String policy = options.getOrDefault("policy", "best-fit-indexed");
+    if (!MigrationSweep.POLICIES.containsKey(policy)) {
+      throw new IllegalArgumentException("Unknown policy '" + policy + "'. Available: " + MigrationSweep.POLICIES.keySet());
+    }
+
+    Scenario scenario = Scenario.fromConfig();
+    scenario = scenario.withSize(
+        Integer.parseInt(options.getOrDefault("hosts", String.valueOf(scenario.getHostCount()))),
+        Integer.parseInt(options.getOrDefault("vms", String.valueOf(scenario.getVmCount()))));
+    if (options.containsKey("trace")) {
+      scenario = scenario.withTrace(new UtilizationTrace(Path.of(options.get("trace"))));
+    }
+    scenario = scenario.withSpecPower(MigrationSweep.parsePowerModel(options.getOrDefault("power", "linear")))
+        .withPowerStates(MigrationSweep.parseSwitch(options.getOrDefault("power-states", "off")))
+        .withScheduledMigrations(MigrationSweep.parseSwitch(options.getOrDefault("migration-scheduler", "off")));
+
+    final MigrationSweep.Point point = new MigrationSweep.Point(0, policy,
+        Double.parseDouble(options.getOrDefault("over", String.valueOf(Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION))),
+        Double.parseDouble(options.getOrDefault("under", String.valueOf(Config.Host.UNDER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION))),
+        Integer.parseInt(options.getOrDefault("retry-delay", String.valueOf(Config.Host.SEARCH_RETRY_DELAY))),
+        Double.parseDouble(options.getOrDefault("interval", String.valueOf(Config.Scheduling.INTERVAL))),
+        Double.parseDouble(options.getOrDefault("max-interval",
+            options.getOrDefault("interval", String.valueOf(Config.Scheduling.INTERVAL)))),
+        Double.parseDouble(options.getOrDefault("tolerance", String.valueOf(Config.Scheduling.ERROR_TOLERANCE))),
+        MigrationSweep.parseSwitch(options.getOrDefault("guard", "off")),
+        options.getOrDefault("selection", VmSelectionPolicyRanked.MIN_UTILIZATION));
+
+    final int partitionCount = Integer.parseInt(options.getOrDefault("partitions", String.valueOf(Config.Partition.COUNT)));
+    final PartitionedSimulation partitioned = new PartitionedSimulation(scenario, point, partitionCount,
+        Double.parseDouble(options.getOrDefault("window", String.valueOf(Config.Partition.WINDOW))),
+        MigrationSweep.parseSwitch(options.getOrDefault("channel", "off")));
+    partitioned.run(Integer.parseInt(options.getOrDefault("threads",
+        String.valueOf(Math.min(partitionCount, Runtime.getRuntime().availableProcessors())))));
+    partitioned.export(Path.of(options.getOrDefault("output", "migrations_results/migration_partitioned.csv")));
+
+    if (MigrationSweep.parseSwitch(options.getOrDefault("compare", "off"))) {
+      partitioned.compareWithWhole();
+    }
+  }
+
+  /**
+   * @param window the simulated seconds partitions run between two synchronisation points
+   * @param channel whether VMs of overloaded hosts may move to other partitions at the synchronisation points
+   */
+  public PartitionedSimulation(final Scenario scenario, final MigrationSweep.Point point, final int partitionCount,
+      final double window, final boolean channel) {
+    if (partitionCount < 1) {
+      throw new IllegalArgumentException("There must be at least one partition.");
+    }
+    if (window <= 0) {
+      throw new IllegalArgumentException("The synchronisation window must be greater than 0.");
+    }
+
+    this.scenario = scenario;
+    this.point = point;
+    this.partitionCount = partitionCount;
+    this.window = window;
+    this.channel = channel;
+  }
+
+  public void run(final int threads) throws InterruptedException {
+    Log.setLevel(Level.OFF);
+    System.out.printf("Running %d partitions in %.2f s windows%s on %d threads (%s)%n", partitionCount, window,
+        channel ? " with a migration channel" : "", threads, scenario);
+    final long start = System.nanoTime();
+    final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+    try {
+      final List<Callable<Partition>> builds = new ArrayList<>(partitionCount);
+      for (int p = 0; p < partitionCount; p++) {
+        final int index = p;
+        builds.add(() -> new Partition(index, scenario.withPartition(index, partitionCount), point));
+      }
+      for (Future<Partition> future : executor.invokeAll(builds)) {
+        partitions.add(future.get());
+      }
+
+      for (double time = window; isAnyRunning(); time += window) {
+        final double until = time;
+        final List<Callable<Boolean>> steps = new ArrayList<>(partitionCount);
+        for (Partition partition : partitions) {
+          if (!partition.simulation.isFinished()) {
+            steps.add(() -> partition.simulation.runUntil(until));
+          }
+        }
+        // Waiting for every step is the barrier between windows
+        for (Future<Boolean> future : executor.invokeAll(steps)) {
+          future.get();
+        }
+        windows++;
+
+        if (channel) {
+          exchange();
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Partition failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    partitions.forEach(partition -> results.add(partition.simulation.getResult()));
+    merged = merge(results, (System.nanoTime() - start) / 1_000_000);
+    System.out.printf("%d partitions finished after %d windows in %.2f s%n", partitionCount, windows,
+        (System.nanoTime() - start) / 1e9);
+    print(System.out);
+    for (int k = 0; k < merged.serverClasses().length; k++) {
+      System.out.printf("Server class %d PEs - Energy: %.2f Wh%n", merged.serverClasses()[k],
+          merged.serverClassEnergyWattHour()[k]);
+    }
+  }
+
+  private boolean isAnyRunning() {
+    for (Partition partition : partitions) {
+      if (!partition.simulation.isFinished()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Moves VMs from the hosts the partitions couldn't relieve to other partitions, while all of them are
+   * at the same synchronisation point.
+   */
+  private void exchange() {
+    for (Partition source : partitions) {
+      if (source.simulation.isFinished()) {
+        continue;
+      }
+
+      final VmAllocationPolicyMigrationStaticThreshold policy = source.simulation.getAllocationPolicy();
+      int capacity = Config.Partition.CHANNEL_CAPACITY;
+      for (Host host : source.simulation.getHostList()) {
+        if (capacity == 0) {
+          break;
+        }
+        if (!host.isActive() || !host.getVmsMigratingOut().isEmpty() || !policy.isOverloaded(host)) {
+          continue;
+        }
+
+        final Optional<Vm> selected = policy.getVmSelectionPolicy().getVmToMigrate(host);
+        if (selected.isEmpty() || source.arrived.contains(selected.get())
+            || selected.get().getCloudletScheduler().getCloudletExecList().isEmpty()) {
+          continue;
+        }
+
+        final Vm vm = selected.get();
+        final Cloudlet cloudlet = vm.getCloudletScheduler().getCloudletExecList().get(0).getCloudlet();
+        final double transferTime = vm.getRam().getCapacity()
+            / (host.getBw().getCapacity() * source.simulation.getDatacenter().getBandwidthPercentForMigration() / 8.0);
+        // A VM that would finish before its RAM gets to the other partition stays
+        if ((cloudlet.getLength() - cloudlet.getFinishedLengthSoFar()) / vm.getTotalMipsCapacity() <= transferTime) {
+          continue;
+        }
+
+        final Partition target = findTarget(source, vm);
+        if (target != null) {
+          move(source, target, vm, cloudlet, transferTime);
+          capacity--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the next partition after a source one that has an awake host where a VM fits below the over threshold.
+   */
+  private Partition findTarget(final Partition source, final Vm vm) {
+    final double mips = vm.getCurrentRequestedMips().totalMips();
+    for (int i = 1; i < partitions.size(); i++) {
+      final Partition target = partitions.get((source.index + i) % partitions.size());
+      if (target.simulation.isFinished()) {
+        continue;
+      }
+
+      final VmAllocationPolicyMigrationStaticThreshold policy = target.simulation.getAllocationPolicy();
+      for (Host host : target.simulation.getHostList()) {
+        if (host.isActive() && host.isSuitableForVm(vm)
+            && (host.getCpuMipsUtilization() + mips) / host.getTotalMipsCapacity() <= policy.getOverUtilizationThreshold(host)) {
+          return target;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Stops a VM in its partition and submits a copy of it to another one, with its cloudlet's remaining length.
+   */
+  private void move(final Partition source, final Partition target, final Vm vm, final Cloudlet cloudlet,
+      final double transferTime) {
+    final long remaining = Math.max(1, cloudlet.getLength() - cloudlet.getFinishedLengthSoFar());
+    final int index = source.vmIndexes.remove(vm);
+
+    vm.getCloudletScheduler().cloudletCancel(cloudlet);
+    vm.shutdown();
+    source.sent++;
+
+    final Vm copy = Shared.createVm((int) vm.getPesNumber(), vm.getRam().getCapacity());
+    copy.setSubmissionDelay(transferTime);
+    final Cloudlet resumed = target.scenario.createCloudlet(index, copy, target.simulation.getBroker(), target.engine)
+        .setLength(remaining);
+    resumed.setSubmissionDelay(transferTime);
+    target.simulation.submit(copy, resumed);
+    target.vmIndexes.put(copy, index);
+    target.arrived.add(copy);
+    target.received++;
+  }
+
+  /**
+   * Adds up the results of the partitions, which share the point and the simulation time.
+   */
+  private static MigrationSweep.Result merge(final List<MigrationSweep.Result> results, final long wallTimeMillis) {
+    int migrations = 0;
+    long suppressed = 0;
+    double migrationTime = 0;
+    int finished = 0;
+    double simulationTime = 0;
+    double energy = 0;
+    double work = 0;
+    double overload = 0;
+    long updates = 0;
+    double makespan = 0;
+    String status = "OK";
+    final Map<Long, Double> serverClassEnergy = new TreeMap<>();
+    for (MigrationSweep.Result result : results) {
+      migrations += result.migrations();
+      suppressed += result.suppressed();
+      migrationTime += result.migrationTime();
+      finished += result.finishedCloudlets();
+      simulationTime = Math.max(simulationTime, result.simulationTime());
+      energy += result.energyWattHour();
+      // Joules per billion instructions back to millions of instructions
+      work += result.energyPerWork() == 0 ? 0 : result.energyWattHour() * 3600 / result.energyPerWork() * 1000;
+      overload += result.overloadSeconds();
+      updates += result.updates();
+      makespan = Math.max(makespan, result.makespan());
+      if (status.equals("OK")) {
+        status = result.status();
+      }
+      for (int k = 0; k < result.serverClasses().length; k++) {
+        serverClassEnergy.merge(result.serverClasses()[k], result.serverClassEnergyWattHour()[k], Double::sum);
+      }
+    }
+
+    final long[] serverClasses = serverClassEnergy.keySet().stream().mapToLong(Long::longValue).toArray();
+    final double[] energyByClass = serverClassEnergy.values().stream().mapToDouble(Double::doubleValue).toArray();
+    return new MigrationSweep.Result(results.get(0).point(), migrations, suppressed, migrationTime, finished,
+        simulationTime, energy, work == 0 ? 0 : energy * 3600 / (work / 1000), overload, updates, wallTimeMillis,
+        status, makespan, serverClasses, energyByClass);
+  }
+
+  public List<MigrationSweep.Result> getResults() {
+    return results;
+  }
+
+  public MigrationSweep.Result getMergedResult() {
+    return merged;
+  }
+
+  public void print(final PrintStream out) {
+    out.println(HEADER);
+    int sent = 0;
+    int received = 0;
+    for (int p = 0; p < partitions.size(); p++) {
+      final Partition partition = partitions.get(p);
+      printRow(out, String.valueOf(p), partition.simulation.getHostList().size(), partition.vmIndexes.size(),
+          partition.sent, partition.received, results.get(p));
+      sent += partition.sent;
+      received += partition.received;
+    }
+    printRow(out, "all", scenario.getHostCount(), scenario.getVmCount(), sent, received, merged);
+  }
+
+  private static void printRow(final PrintStream out, final String partition, final int hosts, final int vms,
+      final int sent, final int received, final MigrationSweep.Result result) {
+    out.printf("%s,%d,%d,%d,%d,%d,%.2f,%d,%.2f,%.2f,%.4f,%.2f,%d,%s%n", partition, hosts, vms, result.migrations(),
+        sent, received, result.migrationTime(), result.finishedCloudlets(), result.simulationTime(),
+        result.energyWattHour(), result.energyPerWork(), result.overloadSeconds(), result.wallTimeMillis(), result.status());
+  }
+
+  public void export(final Path file) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+
+    try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+      print(out);
+    }
+    System.out.println("Partition results written to " + file);
+  }
+
+  /**
+   * Runs the whole scenario as a single simulation and prints how the partitioned run differs from it.
+   */
+  public void compareWithWhole() {
+    final MigrationSweep.Result whole = MigrationSweep.runPoint(scenario, point);
+    System.out.printf("%nWhole scenario on one simulation: %d migrations, %d finished cloudlets, %.2f Wh, "
+            + "makespan %.2f s, overload %.2f s, %d ms, %s%n", whole.migrations(), whole.finishedCloudlets(),
+        whole.energyWattHour(), whole.makespan(), whole.overloadSeconds(), whole.wallTimeMillis(), whole.status());
+    System.out.printf("Partitioned: %d migrations, %d finished cloudlets, %.2f Wh (%+.2f%%), makespan %.2f s, "
+            + "overload %.2f s, %d ms (%.2fx speedup)%n", merged.migrations(), merged.finishedCloudlets(),
+        merged.energyWattHour(), whole.energyWattHour() == 0 ? 0
+            : (merged.energyWattHour() - whole.energyWattHour()) * 100 / whole.energyWattHour(),
+        merged.makespan(), merged.overloadSeconds(), merged.wallTimeMillis(),
+        merged.wallTimeMillis() == 0 ? 0 : (double) whole.wallTimeMillis() / merged.wallTimeMillis());
+  }
+}
@@ -0,0 +1,261 @@
+package simulations;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The simulation of a {@link MigrationSweep.Point} on a scenario: a {@link DatacenterInstrumented} with the point's
+ * policy and settings, and a broker with the scenario's VMs and cloudlets. It's built up front, so it can run to
+ * its end at once ({@link #run()}) or window by window ({@link #runUntil(double)}), as the partitions of a
+ * {@link PartitionedSimulation} do.
+ */
+public final class PointSimulation {
+  private final ScenarioEngine engine;
+  private final MigrationSweep.Point point;
+  private final long start = System.nanoTime();
+  private final CloudSimPlus simulation = new CloudSimPlus();
+  private final List<Host> hostList;
+  private final VmAllocationPolicyMigrationStaticThreshold allocationPolicy;
+  private final DatacenterInstrumented datacenter;
+  private final MigrationScheduler migrationScheduler;
+  private final MigrationGuard guard;
+  private final AdaptiveSchedulingInterval adaptiveInterval;
+  private final DatacenterBrokerSimple broker;
+  private final List<Vm> vmList;
+  private final EnergyMeter energyMeter;
+  /* Start times of the migrations in progress, when they aren't scheduled */
+  private final Map<Vm, Double> migrationStarts = new HashMap<>();
+  private long updates;
+  private int migrations;
+  private double migrationTime;
+  private boolean started;
+
+  /* A failing simulation is reported in its result instead of aborting the ones running along */
+  private String status = "OK";
+
+  /**
+   * @param fork the checkpoint to resume from, or null to start from scratch. It's only read,
+   *             so the same one can be shared by concurrent simulations.
+   */
+  public PointSimulation(final Scenario scenario, final MigrationSweep.Point point, final SimulationCheckpoint fork) {
+    this(new ScenarioEngine(scenario), point, fork);
+  }
+
+  /**
+   * Creates the simulation from the topology of an engine, which can be shared with other simulations.
+   *
+   * @param fork the checkpoint to resume from, or null to start from scratch
+   */
+  public PointSimulation(final ScenarioEngine engine, final MigrationSweep.Point point, final SimulationCheckpoint fork) {
+    this.engine = engine;
+    this.point = point;
+    this.hostList = engine.createHosts();
+
+    allocationPolicy = engine.createPolicy(point.policy(), point.overThreshold());
+    allocationPolicy.setUnderUtilizationThreshold(point.underThreshold());
+
+    datacenter = new DatacenterInstrumented(simulation, hostList, allocationPolicy);
+    datacenter.setSchedulingInterval(point.schedulingInterval())
+        .setHostSearchRetryDelay(point.searchRetryDelay());
+    migrationScheduler = engine.getScenario().isScheduledMigrations() ? MigrationScheduler.fromConfig(datacenter) : null;
+    if (!point.selection().equals(VmSelectionPolicyRanked.MIN_UTILIZATION)) {
+      allocationPolicy.setVmSelectionPolicy(VmSelectionPolicyRanked.fromConfig(datacenter,
+          VmSelectionPolicyRanked.Criterion.fromShortName(point.selection())));
+    }
+    guard = point.guarded() ? MigrationGuard.fromConfig(datacenter, allocationPolicy) : null;
+    if (engine.getScenario().isPowerStates()) {
+      HostPowerController.fromConfig(datacenter);
+    }
+    adaptiveInterval = point.isAdaptive()
+        ? new AdaptiveSchedulingInterval(datacenter, point.schedulingInterval(), point.maxInterval(), point.tolerance())
+        : null;
+    if (adaptiveInterval == null && !hostList.isEmpty()) {
+      final double[] lastUpdate = {-1};
+      hostList.get(0).addOnUpdateProcessingListener(info -> {
+        if (simulation.clock() != lastUpdate[0]) {
+          lastUpdate[0] = simulation.clock();
+          updates++;
+        }
+      });
+    }
+
+    broker = new DatacenterBrokerSimple(simulation);
+    vmList = engine.createVms();
+    for (Vm vm : vmList) {
+      track(vm);
+    }
+    SimulationEvents.recordMigrations(vmList);
+    if (fork != null) {
+      fork.placeVms(vmList, hostList, allocationPolicy, broker);
+      migrations = fork.getMigrations();
+    }
+    broker.submitVmList(vmList);
+
+    final List<Cloudlet> cloudletList = engine.createCloudlets(vmList, broker);
+    broker.submitCloudletList(fork == null ? cloudletList : fork.resumeCloudlets(cloudletList));
+
+    energyMeter = new EnergyMeter(simulation, hostList);
+    if (fork != null) {
+      fork.restoreEnergy(energyMeter);
+    }
+  }
+
+  /**
+   * Runs the simulation to its end.
+   */
+  public MigrationSweep.Result run() {
+    try {
+      started = true;
+      simulation.start();
+    } catch (RuntimeException e) {
+      status = "FAILED: " + e.getClass().getSimpleName();
+    }
+
+    return getResult();
+  }
+
+  /**
+   * Processes the events up to a time (inclusive), leaving the clock there if the simulation isn't over.
+   *
+   * @return whether the simulation still has events to process
+   */
+  public boolean runUntil(final double time) {
+    try {
+      if (!started) {
+        started = true;
+        simulation.startSync();
+      }
+
+      while (simulation.isRunning() && simulation.clock() < time) {
+        // Without events left, the simulation ends now instead of at the end of the window
+        simulation.runFor(simulation.isThereAnyFutureEvt(evt -> true) ? time - simulation.clock() : 0);
+      }
+    } catch (RuntimeException e) {
+      status = "FAILED: " + e.getClass().getSimpleName();
+      simulation.abort();
+    }
+
+    return !isFinished();
+  }
+
+  /**
+   * Submits a VM and its cloudlet while the simulation runs, tracking the VM's migrations as the scenario's.
+   */
+  public void submit(final Vm vm, final Cloudlet cloudlet) {
+    track(vm);
+    SimulationEvents.recordMigrations(List.of(vm));
+    vmList.add(vm);
+    broker.submitVm(vm);
+    broker.submitCloudlet(cloudlet);
+  }
+
+  /**
+   * Counts the migrations of a VM and, without a scheduler, adds up their time from their start and finish.
+   */
+  private void track(final Vm vm) {
+    vm.addOnMigrationStartListener(info -> migrations++);
+    if (migrationScheduler == null) {
+      vm.addOnMigrationStartListener(info -> migrationStarts.put(info.getVm(), info.getTime()));
+      vm.addOnMigrationFinishListener(info -> {
+        final Double startTime = migrationStarts.remove(info.getVm());
+        if (startTime != null) {
+          migrationTime += info.getTime() - startTime;
+        }
+      });
+    }
+    vm.enableUtilizationStats();
+  }
+
+  /**
+   * Checks whether the simulation started and has no events left to process (or was aborted).
+   */
+  public boolean isFinished() {
+    return started && (!simulation.isRunning() || simulation.isAbortRequested());
+  }
+
+  public CloudSimPlus getSimulation() {
+    return simulation;
+  }
+
+  public List<Host> getHostList() {
+    return hostList;
+  }
+
+  public List<Vm> getVmList() {
+    return vmList;
+  }
+
+  public VmAllocationPolicyMigrationStaticThreshold getAllocationPolicy() {
+    return allocationPolicy;
+  }
+
+  public DatacenterInstrumented getDatacenter() {
+    return datacenter;
+  }
+
+  public DatacenterBrokerSimple getBroker() {
+    return broker;
+  }
+
+  /**
+   * Gets the scheduler of the migrations, or null when the scenario doesn't {@link Scenario#isScheduledMigrations
+   * schedule} them.
+   */
+  public MigrationScheduler getMigrationScheduler() {
+    return migrationScheduler;
+  }
+
+  public EnergyMeter getEnergyMeter() {
+    return energyMeter;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * Gets the work done by the finished cloudlets (MI).
+   */
+  public double getFinishedWork() {
+    return broker.getCloudletFinishedList().stream().mapToDouble(Cloudlet::getFinishedLengthSoFar).sum();
+  }
+
+  /**
+   * Returns the PE lists of the hosts to the engine the simulation was created from, once its results have been read.
+   * The simulation must not be used afterwards.
+   */
+  public void release() {
+    engine.release(hostList);
+  }
+
+  /**
+   * Gets the results of the simulation so far, closing its energy meter.
+   */
+  public MigrationSweep.Result getResult() {
+    energyMeter.finish();
+
+    final long[] serverClasses = energyMeter.getServerClasses();
+    final double[] serverClassEnergy = new double[serverClasses.length];
+    for (int k = 0; k < serverClasses.length; k++) {
+      serverClassEnergy[k] = energyMeter.getServerClassEnergyWattHour(k);
+    }
+    final double makespan = broker.getCloudletFinishedList().stream().mapToDouble(Cloudlet::getFinishTime).max().orElse(0);
+    final double work = getFinishedWork();
+    final double energyPerWork = work == 0 ? 0 : energyMeter.getTotalEnergyWattHour() * 3600 / (work / 1000);
+
+    return new MigrationSweep.Result(point, migrations, guard == null ? 0 : guard.getSuppressed(),
+        migrationScheduler == null ? migrationTime : migrationScheduler.getTotalMigrationTime(),
+        broker.getCloudletFinishedList().size(), simulation.clock(),
+        energyMeter.getTotalEnergyWattHour(), energyPerWork, energyMeter.getTotalOverloadSeconds(),
+        adaptiveInterval == null ? updates : adaptiveInterval.getUpdates(),
+        (System.nanoTime() - start) / 1_000_000, status, makespan, serverClasses, serverClassEnergy);
+  }
+}
@@ -0,0 +1,102 @@
+package simulations;
+
+import org.cloudsimplus.power.models.PowerModelHost;
+
+/**
+ * Power drawn by a host along its CPU utilization, precomputed into a lookup table at fixed utilization
+ * steps, so the power at any utilization is found with two table reads and a linear interpolation.
+ *
+ * <p>A curve is built from SPECpower-style measurements (the power at equally spaced loads, from idle
+ * to 100%) or by sampling any {@link PowerModelHost}. Curves are immutable, so hosts of the same server
+ * class share one, and they can be read from several threads.</p>
+ */
+public final class PowerCurve {
+  private final double[] table;
+  private final int steps;
+
+  private PowerCurve(final double[] table) {
+    this.table = table;
+    this.steps = table.length - 1;
+  }
+
+  /**
+   * Builds a curve from the power measured at equally spaced loads, linear between the measurements.
+   *
+   * @param watts the power at 0%, ..., 100% load (e.g. 11 values, every 10%)
+   * @param steps the number of utilization steps of the table
+   */
+  public static PowerCurve fromSpec(final double[] watts, final int steps) {
+    if (watts.length < 2) {
+      throw new IllegalArgumentException("A power curve needs the power at 0% and 100% load at least.");
+    }
+    if (steps < 1) {
+      throw new IllegalArgumentException("A power curve needs at least 1 utilization step.");
+    }
+    for (double power : watts) {
+      if (power < 0 || Double.isNaN(power)) {
+        throw new IllegalArgumentException("The power of a curve must not be negative.");
+      }
+    }
+
+    final int segments = watts.length - 1;
+    final double[] table = new double[steps + 1];
+    for (int i = 0; i <= steps; i++) {
+      final double position = (double) i * segments / steps;
+      final int segment = Math.min((int) position, segments - 1);
+      table[i] = watts[segment] + (position - segment) * (watts[segment + 1] - watts[segment]);
+    }
+
+    return new PowerCurve(table);
+  }
+
+  /**
+   * Builds a curve by sampling the power of a model at each utilization step.
+   */
+  public static PowerCurve of(final PowerModelHost model, final int steps) {
+    if (steps < 1) {
+      throw new IllegalArgumentException("A power curve needs at least 1 utilization step.");
+    }
+
+    final double[] table = new double[steps + 1];
+    for (int i = 0; i <= steps; i++) {
+      table[i] = model.getPower((double) i / steps);
+    }
+
+    return new PowerCurve(table);
+  }
+
+  /**
+   * Gets the power (W) at a CPU utilization, which is clamped to [0, 1].
+   */
+  public double getPower(final double utilization) {
+    if (!(utilization > 0)) {
+      return table[0];
+    }
+    if (utilization >= 1) {
+      return table[steps];
+    }
+
+    final double position = utilization * steps;
+    final int step = (int) position;
+    return table[step] + (position - step) * (table[step + 1] - table[step]);
+  }
+
+  /**
+   * Gets how much more power (W) a host draws at one utilization than at another.
+   */
+  public double getPowerIncrease(final double fromUtilization, final double toUtilization) {
+    return getPower(toUtilization) - getPower(fromUtilization);
+  }
+
+  public double getIdlePower() {
+    return table[0];
+  }
+
+  public double getMaxPower() {
+    return table[steps];
+  }
+
+  public int getSteps() {
+    return steps;
+  }
+}
@@ -0,0 +1,38 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.power.PowerMeasurement;
+import org.cloudsimplus.power.models.PowerModelHostAbstract;
+
+/**
+ * Host power model that reads the power from a {@link PowerCurve} lookup table, such as one built from
+ * the SPECpower curve of the host's server class. Unlike {@link org.cloudsimplus.power.models.PowerModelHostSpec},
+ * it interpolates between the points of the curve instead of rounding to the nearest one.
+ */
+public class PowerModelHostLookup extends PowerModelHostAbstract {
+  private final PowerCurve curve;
+
+  public PowerModelHostLookup(final PowerCurve curve) {
+    this.curve = curve;
+  }
+
+  public PowerCurve getCurve() {
+    return curve;
+  }
+
+  @Override
+  public PowerMeasurement getPowerMeasurement() {
+    final Host host = getHost();
+    if (!host.isActive()) {
+      return new PowerMeasurement();
+    }
+
+    final double power = curve.getPower(host.getCpuMipsUtilization() / host.getTotalMipsCapacity());
+    return new PowerMeasurement(curve.getIdlePower(), power - curve.getIdlePower());
+  }
+
+  @Override
+  protected double getPowerInternal(final double utilizationFraction) {
+    return curve.getPower(utilizationFraction);
+  }
+}
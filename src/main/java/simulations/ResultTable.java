@@ -0,0 +1,415 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a table of results (per cloudlet, VM, host or tick) to a columnar binary file, that {@link ResultTableReader}
+ * and the scripts in the {@code analysis} directory load without parsing text.
+ *
+ * <p>Each column holds primitives of one type. Values are appended to a chunk of {@link Config.Results#CHUNK_ROWS}
+ * rows per column. A full chunk is encoded (deflated, when the table is compressed) and spilled to a temporary file of
+ * its column. When the table is closed, the columns are copied one after another into the file, followed by a footer
+ * with the schema and the offset of every chunk. So an uncompressed column is a single little-endian array that can
+ * be memory-mapped, and a compressed one can be inflated chunk by chunk. Strings (such as statuses) are stored as
+ * codes of a dictionary kept in the footer.</p>
+ *
+ * <p>Layout (little-endian, see the README): the magic {@code RTAB} and the version (4 bytes each), the columns,
+ * each one starting at a multiple of 8 bytes, the footer, and a trailer with the offset (8 bytes) and length
+ * (4 bytes) of the footer and the magic again.</p>
+ */
+public class ResultTable implements AutoCloseable {
+  public static final int MAGIC = 0x42415452; // "RTAB" in little-endian byte order
+  public static final int VERSION = 1;
+  public static final String EXTENSION = ".rtab";
+  public static final int HEADER_SIZE = 2 * Integer.BYTES;
+  public static final int TRAILER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+  public enum Type {
+    INT32(Integer.BYTES), INT64(Long.BYTES), FLOAT64(Double.BYTES),
+    /** Codes (INT32) of the strings in the dictionary of the column */
+    CATEGORY(Integer.BYTES);
+
+    private final int width;
+
+    Type(final int width) {
+      this.width = width;
+    }
+
+    public int getWidth() {
+      return width;
+    }
+  }
+
+  public enum Compression {
+    NONE("none"), DEFLATE("deflate");
+
+    private final String shortName;
+
+    Compression(final String shortName) {
+      this.shortName = shortName;
+    }
+
+    public String getShortName() {
+      return shortName;
+    }
+
+    public static Compression fromShortName(final String shortName) {
+      for (Compression compression : values()) {
+        if (compression.shortName.equalsIgnoreCase(shortName)) {
+          return compression;
+        }
+      }
+
+      throw new IllegalArgumentException("Unknown compression '" + shortName + "'. Available: none, deflate");
+    }
+  }
+
+  /**
+   * Options of the result files of a runner: {@code --format=csv|columnar} and {@code --compression=none|deflate}
+   * (of the columnar files).
+   */
+  public record Options(boolean columnar, Compression compression) {
+    public static final Options CSV = new Options(false, Compression.NONE);
+
+    /**
+     * Parses the result format options, removing them from the argument list.
+     */
+    public static Options parse(final List<String> args) {
+      boolean columnar = false;
+      Compression compression = Compression.NONE;
+      for (var iterator = args.iterator(); iterator.hasNext(); ) {
+        final String arg = iterator.next();
+        if (arg.startsWith("--format=")) {
+          final String format = arg.substring("--format=".length());
+          if (!format.equals("csv") && !format.equals("columnar")) {
+            throw new IllegalArgumentException("Unknown result format '" + format + "'. Available: csv, columnar");
+          }
+          columnar = format.equals("columnar");
+        } else if (arg.startsWith("--compression=")) {
+          compression = Compression.fromShortName(arg.substring("--compression=".length()));
+        } else {
+          continue;
+        }
+        iterator.remove();
+      }
+
+      return new Options(columnar, compression);
+    }
+
+    /**
+     * Gets the extension of the result files, with the dot.
+     */
+    public String extension() {
+      return columnar ? EXTENSION : ".csv";
+    }
+  }
+
+  private static final class Column {
+    private final String name;
+    private final Type type;
+    private final String unit;
+    private final ByteBuffer chunk;
+    private final List<long[]> chunks = new ArrayList<>();
+    private final Map<String, Integer> dictionary;
+    private final List<String> values;
+    private long rows;
+    private Path spoolFile;
+    private FileChannel spool;
+    private long spooled;
+
+    private Column(final String name, final Type type, final String unit, final int chunkRows) {
+      this.name = name;
+      this.type = type;
+      this.unit = unit;
+      this.chunk = ByteBuffer.allocate(chunkRows * type.getWidth()).order(ByteOrder.LITTLE_ENDIAN);
+      this.dictionary = type == Type.CATEGORY ? new HashMap<>() : null;
+      this.values = type == Type.CATEGORY ? new ArrayList<>() : null;
+    }
+  }
+
+  private final Path file;
+  private final String name;
+  private final Compression compression;
+  private final int chunkRows;
+  private final List<Column> columns = new ArrayList<>();
+  private final Deflater deflater;
+  private ByteBuffer encoded = ByteBuffer.allocate(0);
+  private long rows;
+
+  public ResultTable(final Path file, final String name, final Compression compression) {
+    this(file, name, compression, Config.Results.CHUNK_ROWS);
+  }
+
+  /**
+   * @param name the name of the table (such as "cloudlets"), stored in its footer
+   * @param chunkRows the rows of a column encoded together
+   */
+  public ResultTable(final Path file, final String name, final Compression compression, final int chunkRows) {
+    if (chunkRows < 1) {
+      throw new IllegalArgumentException("A chunk must have at least 1 row.");
+    }
+
+    this.file = file;
+    this.name = name;
+    this.compression = compression;
+    // An even number of rows keeps full INT32 chunks a multiple of 8 bytes long
+    this.chunkRows = chunkRows + chunkRows % 2;
+    this.deflater = compression == Compression.DEFLATE ? new Deflater(Deflater.BEST_SPEED) : null;
+  }
+
+  public ResultTable addColumn(final String name, final Type type, final String unit) {
+    if (rows > 0 || columns.stream().anyMatch(column -> column.rows > 0)) {
+      throw new IllegalStateException("Columns must be added before the first row.");
+    }
+
+    columns.add(new Column(name, type, unit, chunkRows));
+    return this;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public ResultTable putInt(final int column, final int value) {
+    column(column, Type.INT32).chunk.putInt(value);
+    return this;
+  }
+
+  public ResultTable putLong(final int column, final long value) {
+    column(column, Type.INT64).chunk.putLong(value);
+    return this;
+  }
+
+  public ResultTable putDouble(final int column, final double value) {
+    column(column, Type.FLOAT64).chunk.putDouble(value);
+    return this;
+  }
+
+  public ResultTable putCategory(final int column, final String value) {
+    final Column target = column(column, Type.CATEGORY);
+    Integer code = target.dictionary.get(value);
+    if (code == null) {
+      code = target.values.size();
+      target.dictionary.put(value, code);
+      target.values.add(value);
+    }
+    target.chunk.putInt(code);
+    return this;
+  }
+
+  private Column column(final int index, final Type type) {
+    final Column column = columns.get(index);
+    if (column.type != type) {
+      throw new IllegalArgumentException("Column " + column.name + " holds " + column.type + ", not " + type);
+    }
+    if (column.rows > rows) {
+      throw new IllegalStateException("Column " + column.name + " already has a value in row " + rows);
+    }
+
+    column.rows++;
+    return column;
+  }
+
+  /**
+   * Finishes the current row, once every column has a value, spilling the chunks that got full.
+   */
+  public void endRow() {
+    rows++;
+    for (Column column : columns) {
+      if (column.rows != rows) {
+        throw new IllegalStateException("Column " + column.name + " has no value in row " + (rows - 1));
+      }
+      if (!column.chunk.hasRemaining()) {
+        spill(column);
+      }
+    }
+  }
+
+  private void spill(final Column column) {
+    try {
+      if (column.spool == null) {
+        column.spoolFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".column");
+        column.spool = FileChannel.open(column.spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+
+      write(column.spool, encodeChunk(column));
+      column.chunk.clear();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing result table " + file, e);
+    }
+  }
+
+  /**
+   * Encodes the chunk of a column, adding it to the chunks of the column after the ones spilled. The chunk must be
+   * cleared once the encoded bytes are written, since they're the chunk itself when the table isn't compressed.
+   */
+  private ByteBuffer encodeChunk(final Column column) {
+    final int chunkRows = column.chunk.position() / column.type.getWidth();
+    final ByteBuffer bytes = encode(column.chunk);
+    column.chunks.add(new long[]{column.spooled, bytes.remaining(), chunkRows});
+    column.spooled += bytes.remaining();
+    return bytes;
+  }
+
+  /**
+   * Encodes the values of a chunk, returning them in a buffer ready to be written.
+   */
+  private ByteBuffer encode(final ByteBuffer chunk) {
+    chunk.flip();
+    if (deflater == null) {
+      return chunk;
+    }
+
+    deflater.reset();
+    deflater.setInput(chunk);
+    deflater.finish();
+    encoded.clear();
+    while (!deflater.finished()) {
+      if (!encoded.hasRemaining()) {
+        encoded = ByteBuffer.allocate(Math.max(1024, encoded.capacity() * 2)).put(encoded.flip());
+      }
+      deflater.deflate(encoded);
+    }
+
+    return encoded.flip();
+  }
+
+  /**
+   * Writes the columns and the footer to the file, deleting the spilled chunks.
+   */
+  @Override
+  public void close() {
+    final SimulationEvents.CsvExport event = new SimulationEvents.CsvExport();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+    try {
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+
+      try (FileChannel out = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        write(out, ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN).putInt(MAGIC).putInt(VERSION).flip());
+        for (Column column : columns) {
+          // Columns start at multiples of 8 bytes, so they can be mapped as arrays of any type
+          write(out, ByteBuffer.allocate((int) ((8 - out.position() % 8) % 8)));
+          final long base = out.position();
+          for (long copied = 0; column.spool != null && copied < column.spooled; ) {
+            copied += column.spool.transferTo(copied, column.spooled - copied, out);
+          }
+          if (column.chunk.position() > 0) {
+            write(out, encodeChunk(column));
+            column.chunk.clear();
+          }
+          column.chunks.forEach(chunk -> chunk[0] += base);
+        }
+
+        final long footerOffset = out.position();
+        final ByteBuffer footer = footer();
+        final int footerLength = footer.remaining();
+        write(out, footer);
+        write(out, ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            .putLong(footerOffset).putInt(footerLength).putInt(MAGIC).flip());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing result table " + file, e);
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+      for (Column column : columns) {
+        deleteSpool(column);
+      }
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.table = name;
+      event.rows = (int) rows;
+      event.commit();
+    }
+    MetricsRegistry.global().stopTimer("table.export", start);
+  }
+
+  private static void write(final FileChannel out, final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  private static void deleteSpool(final Column column) {
+    if (column.spool == null) {
+      return;
+    }
+
+    try {
+      column.spool.close();
+      Files.deleteIfExists(column.spoolFile);
+    } catch (IOException e) {
+      column.spoolFile.toFile().deleteOnExit();
+    }
+  }
+
+  /**
+   * Encodes the footer: the table name, rows, compression and the name, unit, type, chunks ({@code offset},
+   * {@code bytes}, {@code rows}) and dictionary of each column. Strings are UTF-8 bytes after their length (INT32).
+   */
+  private ByteBuffer footer() {
+    final List<byte[]> strings = new ArrayList<>();
+    int size = Integer.BYTES + Long.BYTES + 1 + Integer.BYTES;
+    strings.add(name.getBytes(StandardCharsets.UTF_8));
+    for (Column column : columns) {
+      strings.add(column.name.getBytes(StandardCharsets.UTF_8));
+      strings.add(column.unit.getBytes(StandardCharsets.UTF_8));
+      size += 1 + 2 * Integer.BYTES + column.chunks.size() * (Long.BYTES + 2 * Integer.BYTES);
+      if (column.values != null) {
+        column.values.forEach(value -> strings.add(value.getBytes(StandardCharsets.UTF_8)));
+      }
+    }
+    for (byte[] string : strings) {
+      size += Integer.BYTES + string.length;
+    }
+
+    final ByteBuffer footer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    int next = 0;
+    putString(footer, strings.get(next++));
+    footer.putLong(rows).put((byte) compression.ordinal()).putInt(columns.size());
+    for (Column column : columns) {
+      putString(footer, strings.get(next++));
+      putString(footer, strings.get(next++));
+      footer.put((byte) column.type.ordinal()).putInt(column.chunks.size());
+      for (long[] chunk : column.chunks) {
+        footer.putLong(chunk[0]).putInt((int) chunk[1]).putInt((int) chunk[2]);
+      }
+      footer.putInt(column.values == null ? 0 : column.values.size());
+      for (int i = 0; column.values != null && i < column.values.size(); i++) {
+        putString(footer, strings.get(next++));
+      }
+    }
+
+    return footer.flip();
+  }
+
+  private static void putString(final ByteBuffer buffer, final byte[] string) {
+    buffer.putInt(string.length).put(string);
+  }
+}
@@ -0,0 +1,314 @@
+package simulations;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a {@link ResultTable} file: its schema from the footer, and whole columns as primitive arrays, one chunk at
+ * a time.
+ *
+ * <p>Usage: {@code ResultTableReader <table file> [<csv file>]} converts a table to CSV. When the CSV file is omitted,
+ * it's written next to the table with the {@code .csv} extension. {@code ResultTableReader --schema <table file>}
+ * prints the columns of a table instead.</p>
+ */
+public final class ResultTableReader implements AutoCloseable {
+  /**
+   * A column of the table, with the offset, length (bytes) and rows of each of its chunks.
+   *
+   * @param dictionary the strings of a {@link ResultTable.Type#CATEGORY} column, by code (empty for other types)
+   */
+  public record Column(String name, String unit, ResultTable.Type type, long[] chunkOffsets, int[] chunkBytes,
+      int[] chunkRows, List<String> dictionary) {
+  }
+
+  private final Path file;
+  private final FileChannel channel;
+  private final String name;
+  private final long rows;
+  private final ResultTable.Compression compression;
+  private final List<Column> columns;
+
+  public ResultTableReader(final Path file) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file);
+    try {
+      final long size = channel.size();
+      final ByteBuffer header = read(0, ResultTable.HEADER_SIZE);
+      if (size < ResultTable.HEADER_SIZE + ResultTable.TRAILER_SIZE || header.getInt() != ResultTable.MAGIC) {
+        throw new IOException(file + " is not a result table");
+      }
+      if (header.getInt() > ResultTable.VERSION) {
+        throw new IOException(file + " was written by a newer version");
+      }
+
+      final ByteBuffer trailer = read(size - ResultTable.TRAILER_SIZE, ResultTable.TRAILER_SIZE);
+      final long footerOffset = trailer.getLong();
+      final int footerLength = trailer.getInt();
+      if (trailer.getInt() != ResultTable.MAGIC) {
+        throw new IOException(file + " is truncated");
+      }
+
+      final ByteBuffer footer = read(footerOffset, footerLength);
+      this.name = getString(footer);
+      this.rows = footer.getLong();
+      this.compression = ResultTable.Compression.values()[footer.get()];
+      final ResultTable.Type[] types = ResultTable.Type.values();
+      final int count = footer.getInt();
+      final List<Column> list = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        final String columnName = getString(footer);
+        final String unit = getString(footer);
+        final ResultTable.Type type = types[footer.get()];
+        final int chunks = footer.getInt();
+        final long[] offsets = new long[chunks];
+        final int[] bytes = new int[chunks];
+        final int[] chunkRows = new int[chunks];
+        for (int k = 0; k < chunks; k++) {
+          offsets[k] = footer.getLong();
+          bytes[k] = footer.getInt();
+          chunkRows[k] = footer.getInt();
+        }
+        final int entries = footer.getInt();
+        final List<String> dictionary = new ArrayList<>(entries);
+        for (int k = 0; k < entries; k++) {
+          dictionary.add(getString(footer));
+        }
+        list.add(new Column(columnName, unit, type, offsets, bytes, chunkRows, Collections.unmodifiableList(dictionary)));
+      }
+      this.columns = Collections.unmodifiableList(list);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 2 && args[0].equals("--schema")) {
+      try (ResultTableReader reader = new ResultTableReader(Path.of(args[1]))) {
+        reader.printSchema();
+      }
+      return;
+    }
+    if (args.length < 1) {
+      System.err.println("Usage: ResultTableReader <table file> [<csv file>] | --schema <table file>");
+      System.exit(1);
+    }
+
+    final Path csv = args.length > 1 ? Path.of(args[1]) : Path.of(args[0].replaceFirst("\\.[^./]*$", "") + ".csv");
+    try (ResultTableReader reader = new ResultTableReader(Path.of(args[0]));
+        BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+      reader.toCsv(out);
+      System.out.printf("%d rows of %s written to %s%n", reader.getRows(), reader.getName(), csv);
+    }
+  }
+
+  private ByteBuffer read(final long position, final int length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException(file + " is truncated");
+      }
+    }
+
+    return buffer.flip();
+  }
+
+  private static String getString(final ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public ResultTable.Compression getCompression() {
+    return compression;
+  }
+
+  public List<Column> getColumns() {
+    return columns;
+  }
+
+  public Column getColumn(final String name) {
+    for (Column column : columns) {
+      if (column.name().equals(name)) {
+        return column;
+      }
+    }
+
+    throw new IllegalArgumentException("Table " + this.name + " has no column " + name);
+  }
+
+  /**
+   * Reads a column of INT64 or FLOAT64 values.
+   */
+  public double[] getDoubles(final String name) throws IOException {
+    final Column column = getColumn(name);
+    final double[] values = new double[rowCount()];
+    int next = 0;
+    for (int k = 0; k < column.chunkOffsets().length; k++) {
+      final ByteBuffer chunk = readChunk(column, k);
+      for (int i = 0; i < column.chunkRows()[k]; i++) {
+        values[next++] = switch (column.type()) {
+          case FLOAT64 -> chunk.getDouble();
+          case INT64 -> chunk.getLong();
+          default -> chunk.getInt();
+        };
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Reads a column of integers (the codes of a CATEGORY column).
+   */
+  public long[] getLongs(final String name) throws IOException {
+    final Column column = getColumn(name);
+    if (column.type() == ResultTable.Type.FLOAT64) {
+      throw new IllegalArgumentException("Column " + name + " holds " + column.type());
+    }
+
+    final long[] values = new long[rowCount()];
+    int next = 0;
+    for (int k = 0; k < column.chunkOffsets().length; k++) {
+      final ByteBuffer chunk = readChunk(column, k);
+      if (column.type() == ResultTable.Type.INT64) {
+        chunk.asLongBuffer().get(values, next, column.chunkRows()[k]);
+        next += column.chunkRows()[k];
+      } else {
+        for (int i = 0; i < column.chunkRows()[k]; i++) {
+          values[next++] = chunk.getInt();
+        }
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Reads the strings of a CATEGORY column.
+   */
+  public String[] getStrings(final String name) throws IOException {
+    final Column column = getColumn(name);
+    if (column.type() != ResultTable.Type.CATEGORY) {
+      throw new IllegalArgumentException("Column " + name + " holds " + column.type());
+    }
+
+    final long[] codes = getLongs(name);
+    final String[] values = new String[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      values[i] = column.dictionary().get((int) codes[i]);
+    }
+
+    return values;
+  }
+
+  private int rowCount() {
+    if (rows > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Table " + name + " has too many rows for an array");
+    }
+
+    return (int) rows;
+  }
+
+  /**
+   * Reads and decodes a chunk of a column, returning its values in a little-endian buffer.
+   */
+  private ByteBuffer readChunk(final Column column, final int chunk) throws IOException {
+    final ByteBuffer stored = read(column.chunkOffsets()[chunk], column.chunkBytes()[chunk]);
+    if (compression == ResultTable.Compression.NONE) {
+      return stored;
+    }
+
+    final ByteBuffer values = ByteBuffer.allocate(column.chunkRows()[chunk] * column.type().getWidth())
+        .order(ByteOrder.LITTLE_ENDIAN);
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(stored);
+      while (values.hasRemaining() && !inflater.finished()) {
+        if (inflater.inflate(values) == 0 && inflater.needsInput()) {
+          throw new IOException(file + " has a truncated chunk in column " + column.name());
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(file + " has a corrupted chunk in column " + column.name(), e);
+    } finally {
+      inflater.end();
+    }
+
+    return values.flip();
+  }
+
+  /**
+   * Writes the table as CSV, with a header of the column names and doubles at full precision.
+   */
+  public void toCsv(final Writer out) throws IOException {
+    final Object[] values = new Object[columns.size()];
+    for (int c = 0; c < columns.size(); c++) {
+      final Column column = columns.get(c);
+      values[c] = switch (column.type()) {
+        case FLOAT64 -> getDoubles(column.name());
+        case CATEGORY -> getStrings(column.name());
+        default -> getLongs(column.name());
+      };
+      out.write((c == 0 ? "" : ",") + column.name());
+    }
+    out.write('\n');
+
+    final StringBuilder row = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      row.setLength(0);
+      for (int c = 0; c < values.length; c++) {
+        if (c > 0) {
+          row.append(',');
+        }
+        if (values[c] instanceof double[] doubles) {
+          row.append(doubles[i]);
+        } else if (values[c] instanceof long[] longs) {
+          row.append(longs[i]);
+        } else {
+          row.append(((String[]) values[c])[i]);
+        }
+      }
+      row.append('\n');
+      out.write(row.toString());
+    }
+  }
+
+  public void printSchema() {
+    System.out.printf("%s: %d rows, %s compression%n", name, rows, compression.getShortName());
+    for (Column column : columns) {
+      long bytes = 0;
+      for (int size : column.chunkBytes()) {
+        bytes += size;
+      }
+      System.out.printf("  %s (%s%s): %d chunks, %d bytes%s%n", column.name(), column.type(),
+          column.unit().isEmpty() ? "" : ", " + column.unit(), column.chunkOffsets().length, bytes,
+          column.dictionary().isEmpty() ? "" : ", values " + column.dictionary());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,88 @@
+package simulations;
+
+/**
+ * Mean and variance of a stream of values, updated one value at a time with Welford's algorithm,
+ * so replications can be aggregated as they finish without keeping their results.
+ */
+public class RunningStatistics {
+  /* Two-sided 97.5% quantiles of Student's t distribution for 1 to 30 degrees of freedom */
+  private static final double[] T_975 = {
+      12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+      2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+      2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+  private static final double Z_975 = 1.959964;
+
+  private long count;
+  private double mean;
+  private double m2;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  public void add(final double value) {
+    count++;
+    final double delta = value - mean;
+    mean += delta / count;
+    m2 += delta * (value - mean);
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return count == 0 ? Double.NaN : mean;
+  }
+
+  /**
+   * Gets the sample variance (with Bessel's correction), or NaN with fewer than 2 values.
+   */
+  public double getVariance() {
+    return count < 2 ? Double.NaN : m2 / (count - 1);
+  }
+
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  public double getMin() {
+    return count == 0 ? Double.NaN : min;
+  }
+
+  public double getMax() {
+    return count == 0 ? Double.NaN : max;
+  }
+
+  /**
+   * Gets the half width of the 95% confidence interval of the mean, from Student's t distribution,
+   * or NaN with fewer than 2 values.
+   */
+  public double getConfidenceHalfWidth() {
+    if (count < 2) {
+      return Double.NaN;
+    }
+
+    return t975(count - 1) * getStandardDeviation() / Math.sqrt(count);
+  }
+
+  /**
+   * Checks if the 95% confidence interval of the mean is at most {@code relativeWidth} times the mean wide.
+   * A constant stream is always precise enough.
+   */
+  public boolean isPrecise(final double relativeWidth) {
+    final double halfWidth = getConfidenceHalfWidth();
+    return halfWidth == 0 || 2 * halfWidth <= relativeWidth * Math.abs(getMean());
+  }
+
+  private static double t975(final long degreesOfFreedom) {
+    if (degreesOfFreedom <= T_975.length) {
+      return T_975[(int) degreesOfFreedom - 1];
+    }
+
+    // Cornish-Fisher expansion, within 0.001 of the exact quantile past 30 degrees of freedom
+    final double z = Z_975;
+    final double v = degreesOfFreedom;
+    return z + (z * z * z + z) / (4 * v) + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96 * v * v);
+  }
+}
@@ -0,0 +1,602 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.utilizationmodels.UtilizationModelDynamic;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parametric description of a datacenter and its workload: a server class mix, a VM size mix,
+ * the RAM per vCPU and a mix of CPU utilization profiles, scaled to any number of hosts and VMs.
+ *
+ * <p>Nothing is stored per host or VM. Each class gets a contiguous range of indexes (so hosts and
+ * VMs are laid out in class order, like the old literal config arrays) and the utilization profile
+ * of a VM is derived from a hash of its index and the seed. Hosts and VMs are only built when
+ * {@link #createHosts()} and {@link #createVms()} are called.</p>
+ *
+ * <p>A scenario can be perturbed for Monte Carlo replications: the weights of the VM classes, the initial
+ * utilization of each VM and the length of each cloudlet are scaled by a factor drawn uniformly from
+ * {@code [1 - jitter, 1 + jitter]}, again by a hash of the seed and the index, so a replication
+ * is fully defined by its seed. Without jitter (the default), the seed only picks the profiles.</p>
+ *
+ * <p>When a {@link UtilizationTrace} is set, cloudlets replay the CPU, RAM and BW series of the trace VMs
+ * (reused in a loop if the trace has fewer VMs) instead of the utilization profiles.</p>
+ *
+ * <p>A scenario can also be a {@link #withPartition partition} of a larger one, which only creates the hosts
+ * and VMs whose index is the partition modulo the number of partitions. Each partition keeps the class mixes,
+ * and a host or VM is the same in a partition as in the whole scenario.</p>
+ */
+public final class Scenario {
+  /* Independent hash streams of the seed */
+  private static final long PROFILE_STREAM = 0;
+  private static final long VM_MIX_STREAM = 1;
+  private static final long UTILIZATION_STREAM = 2;
+  private static final long LENGTH_STREAM = 3;
+
+  private final int[] hostPes;
+  private final long[] hostRam;
+  private final double[] hostWeight;
+  private final int[] hostClassEnd;
+
+  private final int[] vmPes;
+  private final double[] vmWeight;
+  private final int[] vmClassEnd;
+  private final long ramPerVcpu;
+
+  private final double[] profileInitial;
+  private final double[] profileMax;
+  private final double[] profileIncrement;
+  private final double[] profileCumulativeWeight;
+  private final long seed;
+  private final double vmMixJitter;
+  private final double utilizationJitter;
+  private final double lengthJitter;
+  private final UtilizationTrace trace;
+  private final boolean specPower;
+  private final boolean powerStates;
+  private final boolean scheduledMigrations;
+  private final int partition;
+  private final int partitions;
+
+  private Scenario(final Builder builder, final int hosts, final int vms) {
+    this.hostPes = builder.hostPes.clone();
+    this.hostRam = builder.hostRam.clone();
+    this.hostWeight = builder.hostWeight.clone();
+    this.hostClassEnd = apportion(hostWeight, hosts);
+    this.vmPes = builder.vmPes.clone();
+    this.vmWeight = builder.vmWeight.clone();
+    this.seed = builder.seed;
+    this.vmMixJitter = builder.vmMixJitter;
+    this.utilizationJitter = builder.utilizationJitter;
+    this.lengthJitter = builder.lengthJitter;
+    final double[] perturbedVmWeight = vmWeight.clone();
+    for (int k = 0; vmMixJitter > 0 && k < perturbedVmWeight.length; k++) {
+      perturbedVmWeight[k] *= jitter(VM_MIX_STREAM, k, vmMixJitter);
+    }
+    this.vmClassEnd = apportion(perturbedVmWeight, vms);
+    this.ramPerVcpu = builder.ramPerVcpu;
+    this.profileInitial = builder.profileInitial.clone();
+    this.profileMax = builder.profileMax.clone();
+    this.profileIncrement = builder.profileIncrement.clone();
+    this.profileCumulativeWeight = new double[builder.profileWeight.length];
+    double total = 0;
+    for (int i = 0; i < profileCumulativeWeight.length; i++) {
+      total += builder.profileWeight[i];
+      profileCumulativeWeight[i] = total;
+    }
+    for (int i = 0; i < profileCumulativeWeight.length; i++) {
+      profileCumulativeWeight[i] /= total;
+    }
+    this.trace = builder.trace;
+    this.specPower = builder.specPower;
+    this.powerStates = builder.powerStates;
+    this.scheduledMigrations = builder.scheduledMigrations;
+    this.partition = builder.partition;
+    this.partitions = builder.partitions;
+  }
+
+  /**
+   * The scenario defined in {@link Config}: 100 hosts of 4 server classes and 150 VMs of 7 sizes.
+   */
+  public static Scenario fromConfig() {
+    final Builder builder = new Builder();
+    for (int i = 0; i < Config.Host.CLASS_PES.length; i++) {
+      builder.serverClass(Config.Host.CLASS_PES[i], Config.Host.CLASS_RAM[i], Config.Host.CLASS_COUNT[i]);
+    }
+    for (int i = 0; i < Config.VM.CLASS_PES.length; i++) {
+      builder.vmClass(Config.VM.CLASS_PES[i], Config.VM.CLASS_COUNT[i]);
+    }
+
+    return builder
+        .utilizationProfile(Config.Cloudlet.INITIAL_CPU_PERCENTAGE, 1, Config.Cloudlet.CPU_INCREMENT_PER_SECOND, 1)
+        .build();
+  }
+
+  /**
+   * Distributes {@code total} indexes among classes proportionally to their weights
+   * (largest remainder method), returning the exclusive end index of each class.
+   */
+  private static int[] apportion(final double[] weights, final int total) {
+    final double sum = Arrays.stream(weights).sum();
+    if (sum <= 0 && total > 0) {
+      throw new IllegalArgumentException("At least one class weight must be greater than 0.");
+    }
+
+    final int[] counts = new int[weights.length];
+    final double[] remainders = new double[weights.length];
+    int assigned = 0;
+    for (int i = 0; i < weights.length; i++) {
+      final double exact = weights[i] / sum * total;
+      counts[i] = (int) exact;
+      remainders[i] = exact - counts[i];
+      assigned += counts[i];
+    }
+
+    for (; assigned < total; assigned++) {
+      int largest = 0;
+      for (int i = 1; i < remainders.length; i++) {
+        if (remainders[i] > remainders[largest]) {
+          largest = i;
+        }
+      }
+      counts[largest]++;
+      remainders[largest] = -1;
+    }
+
+    final int[] ends = new int[counts.length];
+    int end = 0;
+    for (int i = 0; i < counts.length; i++) {
+      end += counts[i];
+      ends[i] = end;
+    }
+
+    return ends;
+  }
+
+  private static int classOf(final int[] classEnd, final int index) {
+    final int position = Arrays.binarySearch(classEnd, index);
+    // The index belongs to the first class whose end is greater than it (skipping empty classes)
+    int k = position >= 0 ? position + 1 : -position - 1;
+    while (k < classEnd.length - 1 && classEnd[k] == index) {
+      k++;
+    }
+
+    return k;
+  }
+
+  /**
+   * Same class and profile mixes with a different number of hosts and VMs.
+   */
+  public Scenario withSize(final int hosts, final int vms) {
+    return toBuilder().build(hosts, vms);
+  }
+
+  /**
+   * Same scenario with cloudlets replaying a utilization trace (or the utilization profiles when null).
+   */
+  public Scenario withTrace(final UtilizationTrace trace) {
+    return toBuilder().trace(trace).build(getHostCount(), getVmCount());
+  }
+
+  /**
+   * Same scenario with hosts drawing power along the SPECpower curves of their tiers, or linearly.
+   */
+  public Scenario withSpecPower(final boolean specPower) {
+    return toBuilder().specPower(specPower).build(getHostCount(), getVmCount());
+  }
+
+  /**
+   * Same scenario with hosts put to sleep and woken up by a {@link HostPowerController}, or always awake.
+   */
+  public Scenario withPowerStates(final boolean powerStates) {
+    return toBuilder().powerStates(powerStates).build(getHostCount(), getVmCount());
+  }
+
+  /**
+   * Same scenario with migrations queued behind the hosts' links by a {@link MigrationScheduler}, or started
+   * as soon as the policy picks them, as CloudSim Plus does.
+   */
+  public Scenario withScheduledMigrations(final boolean scheduledMigrations) {
+    return toBuilder().scheduledMigrations(scheduledMigrations).build(getHostCount(), getVmCount());
+  }
+
+  /**
+   * Same scenario restricted to the hosts and VMs whose index modulo {@code partitions} is {@code partition}.
+   */
+  public Scenario withPartition(final int partition, final int partitions) {
+    return toBuilder().partition(partition, partitions).build(getHostCount(), getVmCount());
+  }
+
+  /**
+   * Same scenario perturbed by another seed, for a Monte Carlo replication.
+   *
+   * @param vmMixJitter relative change of the VM class weights
+   * @param utilizationJitter relative change of the initial CPU utilization of each VM
+   * @param lengthJitter relative change of the length of each cloudlet
+   */
+  public Scenario withReplication(final long seed, final double vmMixJitter, final double utilizationJitter,
+      final double lengthJitter) {
+    return toBuilder().seed(seed).jitter(vmMixJitter, utilizationJitter, lengthJitter)
+        .build(getHostCount(), getVmCount());
+  }
+
+  private Builder toBuilder() {
+    final Builder builder = new Builder().seed(seed).ramPerVcpu(ramPerVcpu).trace(trace).specPower(specPower)
+        .powerStates(powerStates).scheduledMigrations(scheduledMigrations).partition(partition, partitions)
+        .jitter(vmMixJitter, utilizationJitter, lengthJitter);
+    for (int i = 0; i < hostPes.length; i++) {
+      builder.serverClass(hostPes[i], hostRam[i], hostWeight[i]);
+    }
+    for (int i = 0; i < vmPes.length; i++) {
+      builder.vmClass(vmPes[i], vmWeight[i]);
+    }
+    for (int i = 0; i < profileInitial.length; i++) {
+      builder.utilizationProfile(profileInitial[i], profileMax[i], profileIncrement[i],
+          profileCumulativeWeight[i] - (i == 0 ? 0 : profileCumulativeWeight[i - 1]));
+    }
+
+    return builder;
+  }
+
+  public int getHostCount() {
+    return hostClassEnd.length == 0 ? 0 : hostClassEnd[hostClassEnd.length - 1];
+  }
+
+  public int getVmCount() {
+    return vmClassEnd.length == 0 ? 0 : vmClassEnd[vmClassEnd.length - 1];
+  }
+
+  public int getHostPes(final int index) {
+    return hostPes[classOf(hostClassEnd, index)];
+  }
+
+  public long getHostRam(final int index) {
+    return hostRam[classOf(hostClassEnd, index)];
+  }
+
+  public int getVmPes(final int index) {
+    return vmPes[classOf(vmClassEnd, index)];
+  }
+
+  public long getVmRam(final int index) {
+    return ramPerVcpu > 0 ? ramPerVcpu * getVmPes(index) : Config.VM.RAM;
+  }
+
+  public int getPartition() {
+    return partition;
+  }
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * Gets the index in the whole scenario of the i-th host or VM of this partition.
+   */
+  public int getGlobalIndex(final int i) {
+    return partition + i * partitions;
+  }
+
+  public boolean isSpecPower() {
+    return specPower;
+  }
+
+  public boolean isPowerStates() {
+    return powerStates;
+  }
+
+  public boolean isScheduledMigrations() {
+    return scheduledMigrations;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public int getProfileCount() {
+    return profileInitial.length;
+  }
+
+  /**
+   * Gets the utilization profile of a VM, drawn from the profile mix by a hash of the VM index and the seed.
+   */
+  public int getVmProfile(final int index) {
+    if (profileCumulativeWeight.length == 1) {
+      return 0;
+    }
+
+    final double u = uniform(PROFILE_STREAM, index);
+    for (int k = 0; k < profileCumulativeWeight.length - 1; k++) {
+      if (u < profileCumulativeWeight[k]) {
+        return k;
+      }
+    }
+
+    return profileCumulativeWeight.length - 1;
+  }
+
+  /**
+   * Gets the initial CPU utilization of the profile of a VM, perturbed by the utilization jitter.
+   */
+  public double getVmInitialUtilization(final int index) {
+    final int profile = getVmProfile(index);
+    if (utilizationJitter <= 0) {
+      return profileInitial[profile];
+    }
+
+    return Math.min(profileMax[profile], profileInitial[profile] * jitter(UTILIZATION_STREAM, index, utilizationJitter));
+  }
+
+  /**
+   * Gets the length (MI) of the cloudlet of a VM, perturbed by the length jitter.
+   */
+  public long getCloudletLength(final int index) {
+    if (lengthJitter <= 0) {
+      return Config.Cloudlet.LENGTH;
+    }
+
+    return Math.max(1, Math.round(Config.Cloudlet.LENGTH * jitter(LENGTH_STREAM, index, lengthJitter)));
+  }
+
+  /**
+   * Uniform number in [0, 1) from a hash of the seed, a stream and an index.
+   */
+  private double uniform(final long stream, final int index) {
+    // SplitMix64 finalizer
+    long z = seed + stream * 0xD1B54A32D192ED03L + (index + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z ^= z >>> 31;
+    return (z >>> 11) * 0x1.0p-53;
+  }
+
+  private double jitter(final long stream, final int index, final double jitter) {
+    return 1 + jitter * (2 * uniform(stream, index) - 1);
+  }
+
+  public Host createHost(final int index) {
+    return Shared.createHost(getHostPes(index), getHostRam(index), specPower);
+  }
+
+  /**
+   * Creates the hosts of this partition (all of them, unless it's a {@link #withPartition partition}).
+   */
+  public List<Host> createHosts() {
+    final List<Host> list = new ArrayList<>(getHostCount() / partitions + 1);
+    for (int i = partition; i < getHostCount(); i += partitions) {
+      list.add(createHost(i));
+    }
+
+    return list;
+  }
+
+  public Vm createVm(final int index) {
+    return Shared.createVm(getVmPes(index), getVmRam(index));
+  }
+
+  /**
+   * Creates the VMs of this partition (all of them, unless it's a {@link #withPartition partition}).
+   */
+  public List<Vm> createVms() {
+    final List<Vm> list = new ArrayList<>(getVmCount() / partitions + 1);
+    for (int i = partition; i < getVmCount(); i += partitions) {
+      list.add(createVm(i));
+    }
+
+    return list;
+  }
+
+  /**
+   * Creates one cloudlet for each VM created by {@link #createVms()}. Without a trace, the CPU utilization
+   * of every cloudlet is a ramp of its VM profile in a shared {@link UtilizationEngine}.
+   */
+  public List<Cloudlet> createCloudlets(final List<Vm> vmList, final DatacenterBroker broker) {
+    final List<Cloudlet> list = new ArrayList<>(vmList.size());
+    final UtilizationEngine engine = trace == null ? new UtilizationEngine(vmList.size()) : null;
+    for (int i = 0; i < vmList.size(); i++) {
+      list.add(createCloudlet(getGlobalIndex(i), vmList.get(i), broker, engine));
+    }
+
+    return list;
+  }
+
+  /**
+   * Creates the cloudlet of the VM at an index of the whole scenario.
+   *
+   * @param engine the engine the CPU ramp of the cloudlet is added to (unused with a trace)
+   */
+  public Cloudlet createCloudlet(final int index, final Vm vm, final DatacenterBroker broker, final UtilizationEngine engine) {
+    if (trace != null) {
+      final int traceVm = index % trace.getVmCount();
+      final Cloudlet cloudlet = Shared.createCloudlet(vm, broker, trace.createModel(traceVm, UtilizationTrace.CPU));
+      return cloudlet.setUtilizationModelRam(trace.createModel(traceVm, UtilizationTrace.RAM))
+          .setUtilizationModelBw(trace.createModel(traceVm, UtilizationTrace.BW))
+          .setLength(getCloudletLength(index));
+    }
+
+    final int profile = getVmProfile(index);
+    return Shared.createCloudlet(vm, broker, engine.add(getVmInitialUtilization(index), profileMax[profile], profileIncrement[profile]))
+        .setLength(getCloudletLength(index));
+  }
+
+  public UtilizationModelDynamic createCpuUtilizationModel(final int profile) {
+    return Shared.createCpuUtilizationModel(profileInitial[profile], profileMax[profile], profileIncrement[profile]);
+  }
+
+  public UtilizationEngine.View createCpuUtilizationModel(final UtilizationEngine engine, final int profile) {
+    return engine.add(profileInitial[profile], profileMax[profile], profileIncrement[profile]);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Scenario with %d hosts (%d server classes, %s power%s%s) and %d VMs (%d sizes, %s)%s",
+        getHostCount(), hostPes.length, specPower ? "SPECpower" : "linear", powerStates ? ", sleep states" : "",
+        scheduledMigrations ? ", scheduled migrations" : "", getVmCount(), vmPes.length,
+        trace == null ? profileInitial.length + " utilization profiles" : trace,
+        partitions > 1 ? String.format(", partition %d of %d", partition, partitions) : "");
+  }
+
+  /**
+   * Builds a {@link Scenario} from class mixes. Weights can be counts or fractions: when the number
+   * of hosts or VMs isn't given, it's the sum of the weights.
+   */
+  public static final class Builder {
+    private int[] hostPes = new int[0];
+    private long[] hostRam = new long[0];
+    private double[] hostWeight = new double[0];
+    private int[] vmPes = new int[0];
+    private double[] vmWeight = new double[0];
+    private long ramPerVcpu;
+    private double[] profileInitial = new double[0];
+    private double[] profileMax = new double[0];
+    private double[] profileIncrement = new double[0];
+    private double[] profileWeight = new double[0];
+    private long seed;
+    private double vmMixJitter;
+    private double utilizationJitter;
+    private double lengthJitter;
+    private UtilizationTrace trace;
+    private boolean specPower;
+    private boolean powerStates;
+    private boolean scheduledMigrations;
+    private int partition;
+    private int partitions = 1;
+
+    public Builder serverClass(final int pes, final long ram, final double weight) {
+      final int n = hostPes.length;
+      hostPes = Arrays.copyOf(hostPes, n + 1);
+      hostRam = Arrays.copyOf(hostRam, n + 1);
+      hostWeight = Arrays.copyOf(hostWeight, n + 1);
+      hostPes[n] = pes;
+      hostRam[n] = ram;
+      hostWeight[n] = weight;
+      return this;
+    }
+
+    public Builder vmClass(final int pes, final double weight) {
+      final int n = vmPes.length;
+      vmPes = Arrays.copyOf(vmPes, n + 1);
+      vmWeight = Arrays.copyOf(vmWeight, n + 1);
+      vmPes[n] = pes;
+      vmWeight[n] = weight;
+      return this;
+    }
+
+    /**
+     * Sets the VM RAM (MB) per vCPU. When 0 (the default), every VM gets {@link Config.VM#RAM}.
+     */
+    public Builder ramPerVcpu(final long ramPerVcpu) {
+      this.ramPerVcpu = ramPerVcpu;
+      return this;
+    }
+
+    public Builder utilizationProfile(final double initial, final double max, final double incrementPerSecond,
+        final double weight) {
+      final int n = profileInitial.length;
+      profileInitial = Arrays.copyOf(profileInitial, n + 1);
+      profileMax = Arrays.copyOf(profileMax, n + 1);
+      profileIncrement = Arrays.copyOf(profileIncrement, n + 1);
+      profileWeight = Arrays.copyOf(profileWeight, n + 1);
+      profileInitial[n] = initial;
+      profileMax[n] = max;
+      profileIncrement[n] = incrementPerSecond;
+      profileWeight[n] = weight;
+      return this;
+    }
+
+    public Builder seed(final long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Sets how much the seed perturbs the scenario (see {@link Scenario#withReplication}).
+     */
+    public Builder jitter(final double vmMixJitter, final double utilizationJitter, final double lengthJitter) {
+      if (vmMixJitter < 0 || vmMixJitter >= 1 || utilizationJitter < 0 || utilizationJitter >= 1
+          || lengthJitter < 0 || lengthJitter >= 1) {
+        throw new IllegalArgumentException("Jitters must be between 0 (inclusive) and 1 (exclusive).");
+      }
+
+      this.vmMixJitter = vmMixJitter;
+      this.utilizationJitter = utilizationJitter;
+      this.lengthJitter = lengthJitter;
+      return this;
+    }
+
+    public Builder trace(final UtilizationTrace trace) {
+      if (trace != null && trace.getVmCount() == 0) {
+        throw new IllegalArgumentException("The utilization trace has no VMs.");
+      }
+
+      this.trace = trace;
+      return this;
+    }
+
+    /**
+     * Sets whether hosts draw power along the SPECpower curves of their tiers (see {@link Shared#createHost(int, long, boolean)}).
+     */
+    public Builder specPower(final boolean specPower) {
+      this.specPower = specPower;
+      return this;
+    }
+
+    /**
+     * Sets whether idle hosts may sleep or be switched off (see {@link HostPowerController}).
+     */
+    public Builder powerStates(final boolean powerStates) {
+      this.powerStates = powerStates;
+      return this;
+    }
+
+    /**
+     * Sets whether migrations wait for a transfer slot on the hosts' links (see {@link MigrationScheduler}).
+     */
+    public Builder scheduledMigrations(final boolean scheduledMigrations) {
+      this.scheduledMigrations = scheduledMigrations;
+      return this;
+    }
+
+    /**
+     * Sets the partition of the scenario to build (see {@link Scenario#withPartition}).
+     */
+    public Builder partition(final int partition, final int partitions) {
+      if (partitions < 1 || partition < 0 || partition >= partitions) {
+        throw new IllegalArgumentException("The partition must be between 0 and the number of partitions (at least 1).");
+      }
+
+      this.partition = partition;
+      this.partitions = partitions;
+      return this;
+    }
+
+    public Scenario build() {
+      return build((int) Math.round(Arrays.stream(hostWeight).sum()), (int) Math.round(Arrays.stream(vmWeight).sum()));
+    }
+
+    public Scenario build(final int hosts, final int vms) {
+      if (hostPes.length == 0 || vmPes.length == 0) {
+        throw new IllegalStateException("A scenario needs at least one server class and one VM class.");
+      }
+      if (hosts < 0 || vms < 0) {
+        throw new IllegalArgumentException("The number of hosts and VMs cannot be negative.");
+      }
+      if (Arrays.stream(hostWeight).anyMatch(w -> w < 0) || Arrays.stream(vmWeight).anyMatch(w -> w < 0)
+          || Arrays.stream(profileWeight).anyMatch(w -> w < 0)) {
+        throw new IllegalArgumentException("Class and profile weights cannot be negative.");
+      }
+      if (profileInitial.length == 0) {
+        utilizationProfile(Config.Cloudlet.INITIAL_CPU_PERCENTAGE, 1, Config.Cloudlet.CPU_INCREMENT_PER_SECOND, 1);
+      }
+
+      return new Scenario(this, hosts, vms);
+    }
+  }
+}
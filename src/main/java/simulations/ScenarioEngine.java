@@ -0,0 +1,142 @@
+package simulations;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.resources.Pe;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleFunction;
+
+/**
+ * Builds the topology of a {@link Scenario} once (the PEs and RAM of every host and the size of every VM) and
+ * creates fresh simulation object graphs from it, with any policy of the {@link MigrationSweep#POLICIES registry},
+ * so comparing policies on a scenario doesn't build it again for each one.
+ *
+ * <p>The PE lists of the hosts of a finished simulation can be {@link #release released} to a pool, from which
+ * the hosts of the next graphs take them instead of allocating new PEs. A PE keeps the MIPS allocated to VMs,
+ * so it's reset when its list is taken. Power models keep their host and the times it was switched on and off,
+ * so every host gets its own, sharing the immutable SPECpower curves. An engine can be shared by simulations
+ * running concurrently.</p>
+ */
+public final class ScenarioEngine {
+  private final Scenario scenario;
+  private final int[] hostPes;
+  private final long[] hostRam;
+  private final int[] vmPes;
+  private final long[] vmRam;
+
+  /* Released PE lists by number of PEs */
+  private final Map<Integer, Queue<List<Pe>>> pePool = new ConcurrentHashMap<>();
+  private final AtomicLong graphs = new AtomicLong();
+  private final AtomicLong createdPeLists = new AtomicLong();
+  private final AtomicLong reusedPeLists = new AtomicLong();
+
+  public ScenarioEngine(final Scenario scenario) {
+    this.scenario = scenario;
+    final int partitions = scenario.getPartitions();
+    hostPes = new int[count(scenario.getHostCount(), scenario.getPartition(), partitions)];
+    hostRam = new long[hostPes.length];
+    for (int i = 0; i < hostPes.length; i++) {
+      hostPes[i] = scenario.getHostPes(scenario.getGlobalIndex(i));
+      hostRam[i] = scenario.getHostRam(scenario.getGlobalIndex(i));
+    }
+
+    vmPes = new int[count(scenario.getVmCount(), scenario.getPartition(), partitions)];
+    vmRam = new long[vmPes.length];
+    for (int i = 0; i < vmPes.length; i++) {
+      vmPes[i] = scenario.getVmPes(scenario.getGlobalIndex(i));
+      vmRam[i] = scenario.getVmRam(scenario.getGlobalIndex(i));
+    }
+  }
+
+  /**
+   * Counts the indexes below {@code total} whose remainder modulo {@code partitions} is {@code partition}.
+   */
+  private static int count(final int total, final int partition, final int partitions) {
+    return Math.max(0, (total - partition + partitions - 1) / partitions);
+  }
+
+  public Scenario getScenario() {
+    return scenario;
+  }
+
+  /**
+   * Creates a policy of the {@link MigrationSweep#POLICIES registry}.
+   */
+  public VmAllocationPolicyMigrationStaticThreshold createPolicy(final String name, final double overThreshold) {
+    final DoubleFunction<VmAllocationPolicyMigrationStaticThreshold> factory = MigrationSweep.POLICIES.get(name);
+    if (factory == null) {
+      throw new IllegalArgumentException("Unknown policy '" + name + "'. Available: " + MigrationSweep.POLICIES.keySet());
+    }
+
+    return factory.apply(overThreshold);
+  }
+
+  /**
+   * Creates the hosts of the scenario, taking their PE lists from the pool when there are some.
+   */
+  public List<Host> createHosts() {
+    graphs.incrementAndGet();
+    final List<Host> list = new ArrayList<>(hostPes.length);
+    for (int i = 0; i < hostPes.length; i++) {
+      list.add(Shared.createHost(takePeList(hostPes[i]), hostRam[i], scenario.isSpecPower()));
+    }
+
+    return list;
+  }
+
+  public List<Vm> createVms() {
+    final List<Vm> list = new ArrayList<>(vmPes.length);
+    for (int i = 0; i < vmPes.length; i++) {
+      list.add(Shared.createVm(vmPes[i], vmRam[i]));
+    }
+
+    return list;
+  }
+
+  /**
+   * Creates one cloudlet for each VM created by {@link #createVms()} (see {@link Scenario#createCloudlets}).
+   */
+  public List<Cloudlet> createCloudlets(final List<Vm> vmList, final DatacenterBroker broker) {
+    return scenario.createCloudlets(vmList, broker);
+  }
+
+  private List<Pe> takePeList(final int pes) {
+    final Queue<List<Pe>> pool = pePool.get(pes);
+    final List<Pe> peList = pool == null ? null : pool.poll();
+    if (peList == null) {
+      createdPeLists.incrementAndGet();
+      return Shared.createPeList(pes);
+    }
+
+    reusedPeLists.incrementAndGet();
+    // The VMs of a simulation that failed may still hold MIPS of the PEs (the host sets them free)
+    peList.forEach(Pe::deallocateAllResources);
+    return peList;
+  }
+
+  /**
+   * Returns the PE lists of hosts created by this engine to the pool, once their simulation is over and its results
+   * have been read. The hosts must not be used afterwards.
+   */
+  public void release(final List<Host> hostList) {
+    for (Host host : hostList) {
+      final List<Pe> peList = host.getPeList();
+      pePool.computeIfAbsent(peList.size(), pes -> new ConcurrentLinkedQueue<>()).add(peList);
+    }
+  }
+
+  public void printReport() {
+    System.out.printf("Scenario engine: %d simulation graphs of %d hosts and %d VMs, %d PE lists created, %d reused%n",
+        graphs.get(), hostPes.length, vmPes.length, createdPeLists.get(), reusedPeLists.get());
+  }
+}
@@ -4,6 +4,7 @@ import org.cloudsimplus.brokers.DatacenterBroker;
 import org.cloudsimplus.cloudlets.Cloudlet;
 import org.cloudsimplus.cloudlets.CloudletSimple;
 import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.Datacenter;
 import org.cloudsimplus.hosts.Host;
 import org.cloudsimplus.hosts.HostSimple;
 import org.cloudsimplus.resources.Pe;
@@ -21,18 +22,34 @@ import org.cloudsimplus.builders.tables.HostHistoryTableBuilder;
 import org.cloudsimplus.listeners.VmHostEventInfo;
 import org.cloudsimplus.power.models.PowerModelHost;
 import org.cloudsimplus.power.models.PowerModelHostSimple;
-import org.cloudsimplus.vms.HostResourceStats;
 import org.cloudsimplus.vms.VmResourceStats;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Shared {
+  /* The lookup tables are shared by all the hosts of a tier */
+  private static final PowerCurve[] SPEC_POWER_CURVES = {
+      PowerCurve.fromSpec(Config.Power.SMALL_SPEC_POWER, Config.Power.LOOKUP_STEPS),
+      PowerCurve.fromSpec(Config.Power.MEDIUM_SPEC_POWER, Config.Power.LOOKUP_STEPS),
+      PowerCurve.fromSpec(Config.Power.LARGE_SPEC_POWER, Config.Power.LOOKUP_STEPS),
+      PowerCurve.fromSpec(Config.Power.XLARGE_SPEC_POWER, Config.Power.LOOKUP_STEPS)
+  };
+
   public static final class Config {
     public static final class Scheduling {
       public static final int INTERVAL = 1;
+
+      // Bounds of the AdaptiveSchedulingInterval: the interval grows up to MAX_INTERVAL while no host
+      // utilization is expected to move by more than ERROR_TOLERANCE (0.01 = 1% CPU) or cross a threshold
+      public static final int MAX_INTERVAL = 60;
+      public static final double ERROR_TOLERANCE = 0.01;
     }
 
     public static final class Host {
@@ -42,86 +59,43 @@ public class Shared {
       public static final long BW = 16_000L; // Mb/s
       public static final int MIPS = 3000; // for each PE
 
-      // Define different server types with their respective RAM and PEs
+      // Server classes (see Scenario), with the number of hosts of each class:
       // Small servers (64GB RAM, 16 cores) - 40 instances
       // Medium servers (128GB RAM, 32 cores) - 30 instances
       // Large servers (256GB RAM, 64 cores) - 20 instances
       // Very Large servers (512GB RAM, 128 cores) - 10 instances
-
-      public static final long RAM[] = {
-          // 40 small servers
-          64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000,
-          64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000,
-          64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000,
-          64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000, 64_000,
-
-          // 30 medium servers
-          128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000,
-          128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000,
-          128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000, 128_000,
-
-          // 20 large servers
-          256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000,
-          256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000, 256_000,
-
-          // 10 very large servers
-          512_000, 512_000, 512_000, 512_000, 512_000, 512_000, 512_000, 512_000, 512_000, 512_000
-      }; // host memory (MB)
-
-      public static final int PES[] = {
-          // 40 small servers
-          16, 16, 16, 16, 16, 16, 16, 16, 16, 16,
-          16, 16, 16, 16, 16, 16, 16, 16, 16, 16,
-          16, 16, 16, 16, 16, 16, 16, 16, 16, 16,
-          16, 16, 16, 16, 16, 16, 16, 16, 16, 16,
-
-          // 30 medium servers
-          32, 32, 32, 32, 32, 32, 32, 32, 32, 32,
-          32, 32, 32, 32, 32, 32, 32, 32, 32, 32,
-          32, 32, 32, 32, 32, 32, 32, 32, 32, 32,
-
-          // 20 large servers
-          64, 64, 64, 64, 64, 64, 64, 64, 64, 64,
-          64, 64, 64, 64, 64, 64, 64, 64, 64, 64,
-
-          // 10 very large servers
-          128, 128, 128, 128, 128, 128, 128, 128, 128, 128
-      };
+      public static final int CLASS_PES[] = {16, 32, 64, 128};
+      public static final long CLASS_RAM[] = {64_000, 128_000, 256_000, 512_000}; // host memory (MB)
+      public static final int CLASS_COUNT[] = {40, 30, 20, 10};
 
       public static final long STORAGE = 4_000_000; // 4TB storage per host
-    }
-
-    public static final class VM {
-      // VM sizes based on real data center configurations (number of PEs/vCPUs)
-      // Each array element creates one VM instance, so we need multiple entries
-      // of each type to create enough VMs relative to the number of hosts
-      public static final int PES[] = {
-          // Create 30 small VMs (1 PE)
-          1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
 
-          // Create 30 small VMs (2 PEs)
-          2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+      // State history kept by the HostHistoryRecorder (samples per host and host updates between samples)
+      public static final int HISTORY_CAPACITY = 4096;
+      public static final int HISTORY_STRIDE = 1;
 
-          // Create 30 medium VMs (4 PEs)
-          4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4,
+      // Sliding windows of the dynamic threshold policies: samples per host, and samples needed
+      // before the dynamic threshold replaces the static OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION
+      public static final int UTILIZATION_WINDOW = 30;
+      public static final int UTILIZATION_WINDOW_MIN_SAMPLES = 10;
 
-          // Create 25 large VMs (8 PEs)
-          8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-
-          // Create 20 xlarge VMs (16 PEs)
-          16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16, 16,
-
-          // Create 10 high-memory VMs (32 PEs)
-          32, 32, 32, 32, 32, 32, 32, 32, 32, 32,
+      // Number of hosts from which the migration target scoring of the indexed policies is split
+      // across the ForkJoin common pool (smaller datacenters are scored on the simulation thread)
+      public static final int PLANNING_PARALLEL_THRESHOLD = 2048;
+    }
 
-          // Create 5 very large VMs (64 PEs)
-          64, 64, 64, 64, 64
-      };
+    public static final class VM {
+      // VM sizes based on real data center configurations (number of PEs/vCPUs), with the number of VMs of each size:
+      // 30 small VMs (1 PE), 30 small VMs (2 PEs), 30 medium VMs (4 PEs), 25 large VMs (8 PEs),
+      // 20 xlarge VMs (16 PEs), 10 high-memory VMs (32 PEs) and 5 very large VMs (64 PEs)
+      public static final int CLASS_PES[] = {1, 2, 4, 8, 16, 32, 64};
+      public static final int CLASS_COUNT[] = {30, 30, 30, 25, 20, 10, 5};
+      public static final int COUNT = Arrays.stream(CLASS_COUNT).sum();
 
       public static final int MIPS = 2000; // for each PE
       public static final long SIZE = 1000; // image size (MB)
       public static final int RAM = 16_000; // VM memory (MB)
-      public static final double BW = Config.Host.BW / (double) PES.length;
+      public static final double BW = Config.Host.BW / (double) COUNT;
     }
 
     public static final class Cloudlet {
@@ -130,6 +104,27 @@ public class Shared {
       public static final long OUTPUTSIZE = 300;
       public static final double INITIAL_CPU_PERCENTAGE = 0.8;
       public static final double CPU_INCREMENT_PER_SECOND = 0.04;
+      // Rows sorted in memory before they're spilled to disk, when cloudlet results are sorted
+      public static final int RESULT_RUN_SIZE = 100_000;
+    }
+
+    public static final class Migration {
+      // Transfers that leave or enter a host at a time, sharing its migration bandwidth
+      public static final int MAX_TRANSFERS_PER_LINK = 2;
+      // Fraction of its RAM a VM dirties per second at 100% CPU utilization
+      public static final double DIRTY_RATE = 0.02;
+      // Dirty memory (MB) small enough to pause the VM and send it, and the most pre-copy rounds before that
+      public static final double STOP_COPY_SIZE = 64;
+      public static final int MAX_ROUNDS = 30;
+      // Migration guard: hysteresis band around the thresholds (CPU utilization), seconds a migrated VM stays put,
+      // seconds during which a VM can't go back to the host it left, and migrations per host in a budget window (s)
+      public static final double HYSTERESIS_BAND = 0.02;
+      public static final double MIN_RESIDENCY = 300;
+      public static final double PING_PONG_WINDOW = 1800;
+      public static final int HOST_BUDGET = 4;
+      public static final double BUDGET_WINDOW = 600;
+      // Samples of the load of each VM and of the rest of its host that ranked VM selection correlates
+      public static final int CORRELATION_WINDOW = 30;
     }
 
     public static final class Power {
@@ -144,6 +139,67 @@ public class Shared {
 
       public static final double XLARGE_STATIC_POWER = 280;
       public static final int XLARGE_MAX_POWER = 400;
+
+      // SPECpower-style curves of each tier (watts at 0%, 10%, ..., 100% load), between its static and max power
+      public static final double SMALL_SPEC_POWER[] = {35, 38.5, 40.5, 42, 43.3, 44.5, 45.6, 46.7, 47.8, 48.9, 50};
+      public static final double MEDIUM_SPEC_POWER[] = {70, 76, 80, 83, 86, 88.5, 91, 93.5, 96, 98, 100};
+      public static final double LARGE_SPEC_POWER[] = {140, 148, 156, 163, 170, 176, 181, 186, 191, 196, 200};
+      public static final double XLARGE_SPEC_POWER[] = {280, 292, 303, 314, 326, 338, 350, 362, 375, 388, 400};
+      // Utilization steps of the power lookup tables built from the curves
+      public static final int LOOKUP_STEPS = 100;
+
+      // Power drawn by sleeping (suspended to RAM) and switched off hosts, as fractions of their idle power
+      public static final double SLEEP_POWER_FRACTION = 0.1;
+      public static final double OFF_POWER_FRACTION = 0.02;
+      // Seconds a host takes to wake up from sleep and to boot when switched off
+      public static final double SLEEP_WAKE_LATENCY = 8;
+      public static final double OFF_WAKE_LATENCY = 120;
+      // Seconds a host stays idle before it's put to sleep, and sleeps before it's switched off
+      public static final double IDLE_TIMEOUT = 10;
+      public static final double SLEEP_TIMEOUT = 300;
+      // Idle hosts kept awake per server class, as a fraction of its active hosts (and at least the minimum)
+      public static final double RESERVE_FRACTION = 0.1;
+      public static final int RESERVE_MIN = 1;
+
+      // Rolling power time series kept by the EnergyMeter (window length in seconds and number of windows)
+      public static final double SERIES_RESOLUTION = 5;
+      public static final int SERIES_CAPACITY = 1440;
+    }
+
+    public static final class Checkpoint {
+      // Seconds of simulation between the checkpoints written by the runners (0 disables them)
+      public static final double INTERVAL = 3600;
+    }
+
+    public static final class Replication {
+      public static final int MIN = 10;
+      public static final int MAX = 100;
+      // Replications stop once the 95% confidence interval of the mean is this fraction of it
+      public static final double TARGET_WIDTH = 0.02;
+      // Relative perturbation of the VM class weights, initial VM utilization and cloudlet lengths
+      public static final double VM_MIX_JITTER = 0.1;
+      public static final double UTILIZATION_JITTER = 0.1;
+      public static final double LENGTH_JITTER = 0.1;
+    }
+
+    public static final class Partition {
+      public static final int COUNT = 4;
+      // Simulated seconds partitions run between two synchronisation points
+      public static final double WINDOW = 10;
+      // Most VMs an overloaded partition hands to the others at a synchronisation point
+      public static final int CHANNEL_CAPACITY = 8;
+    }
+
+    public static final class Metrics {
+      // Wall-clock seconds between the dumps of the metrics registry
+      public static final double DUMP_INTERVAL = 10;
+    }
+
+    public static final class Results {
+      // Rows of a column of a columnar result table encoded (and indexed in its footer) together
+      public static final int CHUNK_ROWS = 64 * 1024;
+      // Bytes buffered before they're written to a result file
+      public static final int BUFFER_SIZE = 64 * 1024;
     }
   }
 
@@ -166,6 +222,10 @@ public class Shared {
     new HostHistoryTableBuilder(host).setTitle(host.toString()).build();
   }
 
+  public static void printHostStateHistory(final HostHistoryRecorder recorder, final Host host) {
+    recorder.newTableBuilder(host).setTitle(host.toString()).build();
+  }
+
   public static Cloudlet createCloudlet(Vm vm, DatacenterBroker broker, UtilizationModel cpuUtilizationModel) {
     final UtilizationModel utilizationModelFull = new UtilizationModelFull();
 
@@ -181,9 +241,13 @@ public class Shared {
   }
 
   public static Vm createVm(final int pes) {
+    return createVm(pes, Config.VM.RAM);
+  }
+
+  public static Vm createVm(final int pes, final long ram) {
     Vm vm = new VmSimple(Config.VM.MIPS, pes);
     vm
-        .setRam(Config.VM.RAM).setBw((long) Config.VM.BW).setSize(Config.VM.SIZE)
+        .setRam(ram).setBw((long) Config.VM.BW).setSize(Config.VM.SIZE)
         .setCloudletScheduler(new CloudletSchedulerTimeShared());
 
     return vm;
@@ -191,6 +255,12 @@ public class Shared {
 
   public static UtilizationModelDynamic createCpuUtilizationModel(double initialCpuUsagePercent,
       double maxCpuUsagePercentage) {
+    return createCpuUtilizationModel(initialCpuUsagePercent, maxCpuUsagePercentage,
+        Config.Cloudlet.CPU_INCREMENT_PER_SECOND);
+  }
+
+  public static UtilizationModelDynamic createCpuUtilizationModel(double initialCpuUsagePercent,
+      double maxCpuUsagePercentage, double cpuIncrementPerSecond) {
     if (maxCpuUsagePercentage < initialCpuUsagePercent) {
       throw new IllegalArgumentException("Max CPU usage must be equal or greater than the initial CPU usage.");
     }
@@ -201,7 +271,7 @@ public class Shared {
     if (initialCpuUsagePercent < maxCpuUsagePercentage) {
       utilizationModel = new UtilizationModelDynamic(initialCpuUsagePercent)
           .setUtilizationUpdateFunction(util ->
-              util.getUtilization() + util.getTimeSpan() * Config.Cloudlet.CPU_INCREMENT_PER_SECOND);
+              util.getUtilization() + util.getTimeSpan() * cpuIncrementPerSecond);
     } else
       utilizationModel = new UtilizationModelDynamic(initialCpuUsagePercent);
 
@@ -210,26 +280,48 @@ public class Shared {
   }
 
   public static Host createHost(final int pesNumber, final long ram) {
-    final List<Pe> peList = createPeList(pesNumber);
+    return createHost(pesNumber, ram, false);
+  }
+
+  /**
+   * @param specPower whether the host draws power along the SPECpower curve of its tier
+   *                  (through a {@link PowerModelHostLookup}) instead of linearly
+   */
+  public static Host createHost(final int pesNumber, final long ram, final boolean specPower) {
+    return createHost(createPeList(pesNumber), ram, specPower);
+  }
+
+  /**
+   * Creates a host on a list of PEs no other host of a running simulation uses (such as one from a {@link ScenarioEngine} pool).
+   */
+  public static Host createHost(final List<Pe> peList, final long ram, final boolean specPower) {
     final Host host = new HostSimple(ram, Config.Host.BW, Config.Host.STORAGE, peList);
     host.setVmScheduler(new VmSchedulerTimeShared());
-    host.enableUtilizationStats();
-    host.setStateHistoryEnabled(true);
+    host.setPowerModel(createPowerModel(peList.size(), specPower));
 
-    PowerModelHost powerModel;
-    if (pesNumber <= 16) {
+    return host;
+  }
+
+  /**
+   * Creates the power model of a host of the tier of its number of PEs. Power models keep their host and the
+   * times it was switched on and off, so each host needs its own, but the SPECpower curves are shared.
+   */
+  public static PowerModelHost createPowerModel(final int pesNumber, final boolean specPower) {
+    final int tier = pesNumber <= 16 ? 0 : pesNumber <= 32 ? 1 : pesNumber <= 64 ? 2 : 3;
+    final PowerModelHost powerModel;
+    if (specPower) {
+      powerModel = new PowerModelHostLookup(SPEC_POWER_CURVES[tier]);
+    } else if (tier == 0) {
       powerModel = new PowerModelHostSimple(Config.Power.SMALL_MAX_POWER, Config.Power.SMALL_STATIC_POWER);
-    } else if (pesNumber <= 32) {
+    } else if (tier == 1) {
       powerModel = new PowerModelHostSimple(Config.Power.MEDIUM_MAX_POWER, Config.Power.MEDIUM_STATIC_POWER);
-    } else if (pesNumber <= 64) {
+    } else if (tier == 2) {
       powerModel = new PowerModelHostSimple(Config.Power.LARGE_MAX_POWER, Config.Power.LARGE_STATIC_POWER);
     } else {
       powerModel = new PowerModelHostSimple(Config.Power.XLARGE_MAX_POWER, Config.Power.XLARGE_STATIC_POWER);
     }
 
-    host.setPowerModel(powerModel);
-
-    return host;
+    return powerModel;
   }
 
   public static List<Pe> createPeList(final int pesNumber) {
@@ -241,115 +333,198 @@ public class Shared {
     return list;
   }
 
-  public static void exportPowerConsumptionToCsv(List<Host> hostList, CloudSimPlus simulation, CsvTable csv, String policyName) {
+  public static void exportPowerConsumptionToCsv(EnergyMeter energyMeter, CsvTable csv, String policyName) {
+    final SimulationEvents.CsvExport event = new SimulationEvents.CsvExport();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
     csv.setTitle("Power Consumption Data - " + policyName + " Migration Policy");
 
     PrintStream out = csv.getPrintStream();
     out.println("Host,CPUUtilization,PowerConsumption(W),TotalEnergyConsumption(Wh)");
 
     double totalPower = 0;
-    double totalEnergy = 0;
-
-    for (Host host : hostList) {
-      final HostResourceStats cpuStats = host.getCpuUtilizationStats();
-      final double utilizationPercentMean = cpuStats.getMean();
-      final double watts = host.getPowerModel().getPower(utilizationPercentMean);
-      final double energyWattHour = watts * (simulation.clock() / 3600.0); // Convert to Watt-hour
-
+    final List<Host> hostList = energyMeter.getHostList();
+    for (int i = 0; i < hostList.size(); i++) {
+      final double watts = energyMeter.getHostMeanPower(i);
       out.printf("%d,%.2f,%.2f,%.2f%n",
-          host.getId(),
-          utilizationPercentMean * 100,
+          hostList.get(i).getId(),
+          energyMeter.getHostMeanCpuUtilization(i) * 100,
           watts,
-          energyWattHour);
+          energyMeter.getHostEnergyWattHour(i));
 
       totalPower += watts;
-      totalEnergy += energyWattHour;
     }
 
-    out.printf("Total,,%.2f,%.2f%n", totalPower, totalEnergy);
+    out.printf("Total,,%.2f,%.2f%n", totalPower, energyMeter.getTotalEnergyWattHour());
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.table = "power";
+      event.rows = hostList.size() + 1;
+      event.commit();
+    }
+    MetricsRegistry.global().stopTimer("csv.export", start);
   }
 
-  public static void printPowerConsumptionSummary(List<Host> hostList, CloudSimPlus simulation) {
+  public static void printPowerConsumptionSummary(EnergyMeter energyMeter) {
     System.out.println("\n---------- POWER CONSUMPTION SUMMARY ----------");
     double totalPower = 0;
-    double totalEnergy = 0;
-
-    for (Host host : hostList) {
-      final HostResourceStats cpuStats = host.getCpuUtilizationStats();
-      final double utilizationPercentMean = cpuStats.getMean();
-      final double watts = host.getPowerModel().getPower(utilizationPercentMean);
-      final double energyWattHour = watts * (simulation.clock() / 3600.0); // Convert to Watt-hour
 
+    final List<Host> hostList = energyMeter.getHostList();
+    for (int i = 0; i < hostList.size(); i++) {
+      final double watts = energyMeter.getHostMeanPower(i);
       System.out.printf("Host %d - CPU Utilization: %.2f%% - Power: %.2f W - Energy: %.2f Wh\n",
-          host.getId(), utilizationPercentMean * 100, watts, energyWattHour);
+          hostList.get(i).getId(), energyMeter.getHostMeanCpuUtilization(i) * 100, watts,
+          energyMeter.getHostEnergyWattHour(i));
 
       totalPower += watts;
-      totalEnergy += energyWattHour;
+    }
+
+    System.out.println();
+    final long[] serverClasses = energyMeter.getServerClasses();
+    for (int k = 0; k < serverClasses.length; k++) {
+      System.out.printf("Server class %d PEs - Energy: %.2f Wh\n", serverClasses[k],
+          energyMeter.getServerClassEnergyWattHour(k));
+    }
+    for (Datacenter datacenter : energyMeter.getDatacenters()) {
+      System.out.printf("%s - Energy: %.2f Wh\n", datacenter, energyMeter.getDatacenterEnergyWattHour(datacenter));
     }
 
     System.out.printf("\nTotal Datacenter Power: %.2f W\n", totalPower);
-    System.out.printf("Total Energy Consumption: %.2f Wh\n", totalEnergy);
+    System.out.printf("Total Energy Consumption: %.2f Wh\n", energyMeter.getTotalEnergyWattHour());
+    System.out.printf("Host time at 100%% CPU: %.2f s\n", energyMeter.getTotalOverloadSeconds());
     System.out.println("------------------------------------------------");
   }
 
-  public static void exportVmStatsToCsv(List<Vm> vmList, String filename) throws IOException {
-    PrintStream out = new PrintStream(new java.io.File(filename));
-    out.println("VM ID,Host ID,VM PEs,CPU Usage Mean (%),Power Consumption (W),Status");
+  /**
+   * Opens a CSV file for printing, through a buffer of {@link Config.Results#BUFFER_SIZE} bytes.
+   */
+  public static PrintStream openCsv(final String filename) throws IOException {
+    return new PrintStream(new BufferedOutputStream(Files.newOutputStream(Path.of(filename)), Config.Results.BUFFER_SIZE));
+  }
 
-    for (Vm vm : vmList) {
-      String status = "UNKNOWN";
-      double cpuUsagePercent = 0.0;
-      double power = 0.0;
-      int hostId = -1;
+  /**
+   * Exports the hosts of {@link #exportPowerConsumptionToCsv} to a columnar table with the same column names, without
+   * the total row.
+   */
+  public static void exportPowerConsumptionToTable(EnergyMeter energyMeter, Path file,
+      ResultTable.Compression compression) {
+    final List<Host> hostList = energyMeter.getHostList();
+    try (ResultTable table = new ResultTable(file, "power", compression)
+        .addColumn("Host", ResultTable.Type.INT64, "ID")
+        .addColumn("CPUUtilization", ResultTable.Type.FLOAT64, "%")
+        .addColumn("PowerConsumption(W)", ResultTable.Type.FLOAT64, "W")
+        .addColumn("TotalEnergyConsumption(Wh)", ResultTable.Type.FLOAT64, "Wh")) {
+      for (int i = 0; i < hostList.size(); i++) {
+        table.putLong(0, hostList.get(i).getId())
+            .putDouble(1, energyMeter.getHostMeanCpuUtilization(i) * 100)
+            .putDouble(2, energyMeter.getHostMeanPower(i))
+            .putDouble(3, energyMeter.getHostEnergyWattHour(i))
+            .endRow();
+      }
+    }
+  }
 
-      if (vm.getHost() == Host.NULL || !vm.isCreated()) {
-        status = "NOT_ALLOCATED";
-      } else {
-        status = "RUNNING";
-        hostId = (int)vm.getHost().getId();
-
-        final VmResourceStats cpuStats = vm.getCpuUtilizationStats();
-        if (cpuStats != null) {
-          final double cpuMean = cpuStats.getMean();
-          if (!Double.isNaN(cpuMean) && !vm.getHost().getVmCreatedList().isEmpty()) {
-            cpuUsagePercent = cpuMean * 100;
-
-            try {
-              final var powerModel = vm.getHost().getPowerModel();
-              if (powerModel != null) {
-                final double hostStaticPower = powerModel instanceof PowerModelHostSimple powerModelHost
-                    ? powerModelHost.getStaticPower()
-                    : 0;
-                final double hostStaticPowerByVm = hostStaticPower / Math.max(1, vm.getHost().getVmCreatedList().size());
-                final double vmRelativeCpuUtilization = cpuMean / Math.max(1, vm.getHost().getVmCreatedList().size());
-                power = powerModel.getPower(vmRelativeCpuUtilization) - hostStaticPower + hostStaticPowerByVm;
-              }
-            } catch (Exception e) {
-              status = "ERROR: " + e.getMessage();
+  private record VmStats(long vm, long host, long pes, double cpuUsagePercent, double power, String status) {
+  }
+
+  private static VmStats vmStats(final Vm vm) {
+    String status = "UNKNOWN";
+    double cpuUsagePercent = 0.0;
+    double power = 0.0;
+    int hostId = -1;
+
+    if (vm.getHost() == Host.NULL || !vm.isCreated()) {
+      status = "NOT_ALLOCATED";
+    } else {
+      status = "RUNNING";
+      hostId = (int)vm.getHost().getId();
+
+      final VmResourceStats cpuStats = vm.getCpuUtilizationStats();
+      if (cpuStats != null) {
+        final double cpuMean = cpuStats.getMean();
+        if (!Double.isNaN(cpuMean) && !vm.getHost().getVmCreatedList().isEmpty()) {
+          cpuUsagePercent = cpuMean * 100;
+
+          try {
+            final var powerModel = vm.getHost().getPowerModel();
+            if (powerModel != null) {
+              final double hostStaticPower = powerModel instanceof PowerModelHostSimple powerModelHost
+                  ? powerModelHost.getStaticPower()
+                  : powerModel instanceof PowerModelHostLookup lookup ? lookup.getCurve().getIdlePower() : 0;
+              final double hostStaticPowerByVm = hostStaticPower / Math.max(1, vm.getHost().getVmCreatedList().size());
+              final double vmRelativeCpuUtilization = cpuMean / Math.max(1, vm.getHost().getVmCreatedList().size());
+              power = powerModel.getPower(vmRelativeCpuUtilization) - hostStaticPower + hostStaticPowerByVm;
             }
+          } catch (Exception e) {
+            status = "ERROR: " + e.getMessage();
           }
         }
       }
+    }
 
-      out.printf("%d,%d,%d,%.2f,%.2f,%s%n",
-          vm.getId(), hostId, vm.getPesNumber(), cpuUsagePercent, power, status);
+    return new VmStats(vm.getId(), hostId, vm.getPesNumber(), cpuUsagePercent, power, status);
+  }
+
+  public static void exportVmStatsToCsv(List<Vm> vmList, String filename) throws IOException {
+    final SimulationEvents.CsvExport event = new SimulationEvents.CsvExport();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+    try (PrintStream out = openCsv(filename)) {
+      out.println("VM ID,Host ID,VM PEs,CPU Usage Mean (%),Power Consumption (W),Status");
+      for (Vm vm : vmList) {
+        final VmStats stats = vmStats(vm);
+        out.printf("%d,%d,%d,%.2f,%.2f,%s%n",
+            stats.vm(), stats.host(), stats.pes(), stats.cpuUsagePercent(), stats.power(), stats.status());
+      }
     }
 
-    out.close();
+    event.end();
+    if (event.shouldCommit()) {
+      event.table = "vm-stats";
+      event.rows = vmList.size();
+      event.commit();
+    }
+    MetricsRegistry.global().stopTimer("csv.export", start);
     System.out.println("VM statistics exported to " + filename);
   }
 
-  public static void startMigration(int[] migrationsNumber, CloudSimPlus simulation, VmHostEventInfo info) {
+  /**
+   * Exports the statistics of {@link #exportVmStatsToCsv} to a columnar table with the same column names.
+   */
+  public static void exportVmStatsToTable(List<Vm> vmList, Path file, ResultTable.Compression compression) {
+    try (ResultTable table = new ResultTable(file, "vm-stats", compression)
+        .addColumn("VM ID", ResultTable.Type.INT64, "ID")
+        .addColumn("Host ID", ResultTable.Type.INT64, "ID")
+        .addColumn("VM PEs", ResultTable.Type.INT64, "CPU cores")
+        .addColumn("CPU Usage Mean (%)", ResultTable.Type.FLOAT64, "%")
+        .addColumn("Power Consumption (W)", ResultTable.Type.FLOAT64, "W")
+        .addColumn("Status", ResultTable.Type.CATEGORY, "")) {
+      for (Vm vm : vmList) {
+        final VmStats stats = vmStats(vm);
+        table.putLong(0, stats.vm()).putLong(1, stats.host()).putLong(2, stats.pes())
+            .putDouble(3, stats.cpuUsagePercent()).putDouble(4, stats.power()).putCategory(5, stats.status())
+            .endRow();
+      }
+    }
+    System.out.println("VM statistics exported to " + file);
+  }
+
+  public static void startMigration(EventJournal journal, int[] migrationsNumber, CloudSimPlus simulation,
+      VmHostEventInfo info) {
     final Vm vm = info.getVm();
     final Host targetHost = info.getHost();
-    System.out.printf(
-        "# %.2f: %s started migrating to %s (you can perform any operation you want here)%n",
-        info.getTime(), vm, targetHost);
-    showVmAllocatedMips(vm, targetHost, info.getTime());
-
-    showHostAllocatedMips(info.getTime(), vm.getHost());
-    showHostAllocatedMips(info.getTime(), targetHost);
-    System.out.println();
+    journal.migrationStarted(info.getTime(), vm, vm.getHost(), targetHost);
+    if (!journal.isQuiet()) {
+      System.out.printf(
+          "# %.2f: %s started migrating to %s (you can perform any operation you want here)%n",
+          info.getTime(), vm, targetHost);
+      showVmAllocatedMips(vm, targetHost, info.getTime());
+
+      showHostAllocatedMips(info.getTime(), vm.getHost());
+      showHostAllocatedMips(info.getTime(), targetHost);
+      System.out.println();
+    }
 
     migrationsNumber[0]++;
     if (migrationsNumber[0] > 1) {
@@ -358,13 +533,21 @@ public class Shared {
 
     // After the first VM starts being migrated, tracks some metrics along simulation time
     simulation.addOnClockTickListener(clock -> {
-      if (clock.getTime() <= 2 || (clock.getTime() >= 11 && clock.getTime() <= 15))
-        showVmAllocatedMips(vm, targetHost, clock.getTime());
+      if (clock.getTime() <= 2 || (clock.getTime() >= 11 && clock.getTime() <= 15)) {
+        journal.vmAllocation(clock.getTime(), vm, targetHost);
+        if (!journal.isQuiet())
+          showVmAllocatedMips(vm, targetHost, clock.getTime());
+      }
     });
   }
 
-  public static void finishMigration(List<Host> hostList, VmHostEventInfo info) {
+  public static void finishMigration(EventJournal journal, List<Host> hostList, VmHostEventInfo info) {
     final Host host = info.getHost();
+    journal.migrationFinished(info.getTime(), info.getVm(), host);
+    if (journal.isQuiet()) {
+      return;
+    }
+
     System.out.printf(
         "# %.2f: %s finished migrating to %s (you can perform any operation you want here)%n",
         info.getTime(), info.getVm(), host);
@@ -373,4 +556,34 @@ public class Shared {
     System.out.print("\t\t");
     showHostAllocatedMips(info.getTime(), host);
   }
+
+  /**
+   * Creates the event journal for a runner from its command line arguments:
+   * {@code --quiet} turns off all console output and {@code --journal=<file>} changes
+   * where events are written ({@code --journal=none} disables the journal).
+   */
+  public static EventJournal createEventJournal(String[] args, String defaultFile) {
+    boolean quiet = false;
+    String file = defaultFile;
+    for (String arg : args) {
+      if (arg.equals("--quiet")) {
+        quiet = true;
+      } else if (arg.startsWith("--journal=")) {
+        file = arg.substring("--journal=".length());
+      } else {
+        throw new IllegalArgumentException("Unknown option: " + arg);
+      }
+    }
+
+    if (file.equals("none")) {
+      return new EventJournal(null, quiet);
+    }
+
+    final java.io.File journalFile = new java.io.File(file);
+    if (journalFile.getParentFile() != null) {
+      journalFile.getParentFile().mkdirs();
+    }
+
+    return new EventJournal(journalFile.toPath(), quiet);
+  }
 }
@@ -0,0 +1,386 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.Simulation;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of a running simulation, written to a compact binary file, from which a new simulation
+ * of the same {@link Scenario} can resume, possibly with another allocation policy (a fork).
+ *
+ * <p>A checkpoint has the host of each VM, the MI each cloudlet has left to execute, the number of migrations
+ * and the {@link EnergyMeter} accumulators. CloudSim Plus entities and their event queue can't be saved,
+ * so a resumed simulation is built from scratch: VMs are submitted with a delay equal to the checkpoint
+ * time and placed on their hosts, and cloudlets only execute their remaining length. The clock keeps
+ * its absolute value, which is all the utilization models need, since the ramps of {@link UtilizationEngine}
+ * and the series of {@link UtilizationTrace} are functions of time. Migrations in progress are started
+ * again once the VMs are created, finishing when they would have, and the state of the allocation policy
+ * (load detection, utilization windows) and of the adaptive scheduling interval is rebuilt as the
+ * resumed simulation runs.</p>
+ *
+ * <p>File layout (big endian): magic, version, time, migrations, host, VM and cloudlet counts;
+ * for each VM, the position of its host (-1 when not placed), of the host it's migrating to (-1 if none)
+ * and the time the migration finishes (NaN if its transfer hadn't started); for each cloudlet, the MI it has left and a finished flag;
+ * and the length-prefixed state of the energy meter.</p>
+ */
+public final class SimulationCheckpoint {
+  public static final int MAGIC = 0x434B5031; // "CKP1"
+  public static final int VERSION = 1;
+
+  private final double time;
+  private final int migrations;
+  private final int hostCount;
+  private final int[] vmHosts;
+  private final int[] vmTargets;
+  private final double[] vmMigrationEnds;
+  private final long[] cloudletRemainingLength;
+  private final boolean[] cloudletFinished;
+  private final byte[] energyState;
+
+  private SimulationCheckpoint(final double time, final int migrations, final int hostCount, final int[] vmHosts,
+      final int[] vmTargets, final double[] vmMigrationEnds, final long[] cloudletRemainingLength, final boolean[] cloudletFinished,
+      final byte[] energyState) {
+    this.time = time;
+    this.migrations = migrations;
+    this.hostCount = hostCount;
+    this.vmHosts = vmHosts;
+    this.vmTargets = vmTargets;
+    this.vmMigrationEnds = vmMigrationEnds;
+    this.cloudletRemainingLength = cloudletRemainingLength;
+    this.cloudletFinished = cloudletFinished;
+    this.energyState = energyState;
+  }
+
+  /**
+   * Captures the state of a simulation. It must be called right after the hosts are updated
+   * (see {@link #scheduleEvery}), so the progress of every cloudlet is current.
+   */
+  public static SimulationCheckpoint capture(final Simulation simulation, final List<Host> hostList, final List<Vm> vmList,
+      final List<Cloudlet> cloudletList, final EnergyMeter energyMeter, final int migrations) {
+    final Map<Host, Integer> positions = new IdentityHashMap<>(hostList.size());
+    for (int i = 0; i < hostList.size(); i++) {
+      positions.put(hostList.get(i), i);
+    }
+
+    final Map<Vm, Integer> targets = new IdentityHashMap<>();
+    for (int i = 0; i < hostList.size(); i++) {
+      for (Vm vm : hostList.get(i).getVmsMigratingIn()) {
+        targets.put(vm, i);
+      }
+    }
+
+    // The end of a migration is the time of its pending VM_MIGRATE event (NaN while it waits for a MigrationScheduler)
+    final Map<Vm, Double> migrationEnds = new IdentityHashMap<>();
+    simulation.isThereAnyFutureEvt(evt -> {
+      if (evt.getTag() == CloudSimTag.VM_MIGRATE && evt.getData() instanceof Map.Entry<?, ?> entry
+          && entry.getKey() instanceof Vm vm) {
+        migrationEnds.put(vm, evt.getTime());
+      }
+      return false;
+    });
+
+    final int[] vmHosts = new int[vmList.size()];
+    final int[] vmTargets = new int[vmList.size()];
+    final double[] vmMigrationEnds = new double[vmList.size()];
+    for (int i = 0; i < vmHosts.length; i++) {
+      final Vm vm = vmList.get(i);
+      vmHosts[i] = positions.getOrDefault(vm.getHost(), -1);
+      vmTargets[i] = targets.getOrDefault(vm, -1);
+      vmMigrationEnds[i] = migrationEnds.getOrDefault(vm, Double.NaN);
+    }
+
+    // Remaining lengths, so a simulation resumed from a resumed one still gets the right ones
+    final long[] remainingLength = new long[cloudletList.size()];
+    final boolean[] finished = new boolean[cloudletList.size()];
+    for (int i = 0; i < remainingLength.length; i++) {
+      final Cloudlet cloudlet = cloudletList.get(i);
+      remainingLength[i] = cloudlet.getLength() - cloudlet.getFinishedLengthSoFar();
+      // Cloudlets dropped from the list once finished are Cloudlet.NULL, which has nothing left
+      finished[i] = cloudlet == Cloudlet.NULL || cloudlet.isFinished();
+    }
+
+    final ByteArrayOutputStream energy = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(energy)) {
+      energyMeter.writeState(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    // Migrations in progress are counted again when they're restarted
+    return new SimulationCheckpoint(simulation.clock(), migrations - targets.size(), hostList.size(), vmHosts,
+        vmTargets, vmMigrationEnds, remainingLength, finished, energy.toByteArray());
+  }
+
+  /**
+   * Captures and writes a checkpoint every {@code interval} seconds of simulation, right after
+   * the last host of the list is updated. Each checkpoint replaces the previous one, and the first one
+   * is only taken an interval after the first update, so a resumed simulation doesn't rewrite its checkpoint.
+   * Nothing is written once every cloudlet has finished, since there's nothing left to resume.
+   */
+  public static void scheduleEvery(final List<Host> hostList, final double interval, final Path file,
+      final Supplier<SimulationCheckpoint> capture) {
+    if (interval <= 0 || hostList.isEmpty()) {
+      return;
+    }
+
+    final Host lastHost = hostList.get(hostList.size() - 1);
+    final double[] next = {Double.NaN};
+    lastHost.addOnUpdateProcessingListener(info -> {
+      if (info.getTime() < next[0]) {
+        return;
+      }
+
+      if (!Double.isNaN(next[0])) {
+        final SimulationCheckpoint checkpoint = capture.get();
+        if (!checkpoint.isFinished()) {
+          checkpoint.write(file);
+        }
+      }
+      next[0] = (Math.floor(info.getTime() / interval) + 1) * interval;
+    });
+  }
+
+  public double getTime() {
+    return time;
+  }
+
+  public int getMigrations() {
+    return migrations;
+  }
+
+  /**
+   * Checks if every cloudlet had finished at the checkpoint time.
+   */
+  public boolean isFinished() {
+    for (int i = 0; i < cloudletFinished.length; i++) {
+      if (!cloudletFinished[i] && cloudletRemainingLength[i] > 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Makes VMs that are about to be submitted be created at the checkpoint time, on the hosts they were on,
+   * and starts the migrations that were in progress again once they're all created. These are live migrations
+   * between hosts of the same datacenter, so they're started as {@link org.cloudsimplus.datacenters.Datacenter#requestVmMigration}
+   * does, but only for the time they had left.
+   */
+  public void placeVms(final List<Vm> vmList, final List<Host> hostList, final VmAllocationPolicy allocationPolicy,
+      final DatacenterBroker broker) {
+    if (vmList.size() != vmHosts.length || hostList.size() != hostCount) {
+      throw new IllegalArgumentException(String.format(
+          "The checkpoint has %d hosts and %d VMs, but the scenario has %d hosts and %d VMs.",
+          hostCount, vmHosts.length, hostList.size(), vmList.size()));
+    }
+
+    final Map<Vm, Integer> indexes = new IdentityHashMap<>(vmList.size());
+    for (int i = 0; i < vmList.size(); i++) {
+      indexes.put(vmList.get(i), i);
+      vmList.get(i).setSubmissionDelay(time);
+    }
+
+    allocationPolicy.setFindHostForVmFunction((policy, vm) -> {
+      final Integer index = indexes.get(vm);
+      return index == null || vmHosts[index] < 0 ? Optional.empty() : Optional.of(hostList.get(vmHosts[index]));
+    });
+
+    // VMs created after that (if any) are placed by the policy
+    broker.addOnVmsCreatedListener(info -> {
+      allocationPolicy.setFindHostForVmFunction(null);
+      broker.removeOnVmsCreatedListener(info.getListener());
+      for (int i = 0; i < vmList.size(); i++) {
+        final Vm vm = vmList.get(i);
+        final Host target = vmTargets[i] < 0 ? Host.NULL : hostList.get(vmTargets[i]);
+        if (vm.isCreated() && !vm.isInMigration() && target.addMigratingInVm(vm)) {
+          vm.getHost().addVmMigratingOut(vm);
+          final var datacenter = vm.getHost().getDatacenter();
+          if (datacenter instanceof DatacenterInstrumented instrumented) {
+            instrumented.resumeVmMigration(vm, target, vmMigrationEnds[i]);
+            continue;
+          }
+
+          final double end = vmMigrationEnds[i];
+          final double delay = Double.isNaN(end) ? 0 : Math.max(0, end - vm.getSimulation().clock());
+          vm.getSimulation().send(datacenter, datacenter, delay, CloudSimTag.VM_MIGRATE,
+              new TreeMap.SimpleEntry<>(vm, target));
+        }
+      }
+    });
+  }
+
+  /**
+   * Shortens cloudlets that are about to be submitted to the length they had left at the checkpoint time.
+   *
+   * @return the cloudlets that hadn't finished yet, which are the ones to submit
+   */
+  public List<Cloudlet> resumeCloudlets(final List<Cloudlet> cloudletList) {
+    if (cloudletList.size() != cloudletFinished.length) {
+      throw new IllegalArgumentException(String.format(
+          "The checkpoint has %d cloudlets, but the scenario has %d.", cloudletFinished.length, cloudletList.size()));
+    }
+
+    final List<Cloudlet> unfinished = new ArrayList<>(cloudletList.size());
+    for (int i = 0; i < cloudletList.size(); i++) {
+      final Cloudlet cloudlet = cloudletList.get(i);
+      if (cloudletFinished[i] || cloudletRemainingLength[i] <= 0) {
+        continue;
+      }
+
+      cloudlet.setLength(cloudletRemainingLength[i]);
+      unfinished.add(cloudlet);
+    }
+
+    return unfinished;
+  }
+
+  public void restoreEnergy(final EnergyMeter energyMeter) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(energyState))) {
+      energyMeter.readState(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file that then replaces the given one,
+   * so a crash while writing never leaves a broken checkpoint behind.
+   */
+  public void write(final Path file) {
+    final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeDouble(time);
+        out.writeInt(migrations);
+        out.writeInt(hostCount);
+        out.writeInt(vmHosts.length);
+        out.writeInt(cloudletFinished.length);
+        for (int i = 0; i < vmHosts.length; i++) {
+          out.writeInt(vmHosts[i]);
+          out.writeInt(vmTargets[i]);
+          out.writeDouble(vmMigrationEnds[i]);
+        }
+        for (int i = 0; i < cloudletFinished.length; i++) {
+          out.writeLong(cloudletRemainingLength[i]);
+          out.writeBoolean(cloudletFinished[i]);
+        }
+        out.writeInt(energyState.length);
+        out.write(energyState);
+      }
+
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing checkpoint " + file, e);
+    }
+  }
+
+  public static SimulationCheckpoint read(final Path file) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IllegalArgumentException(file + " is not a simulation checkpoint.");
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported checkpoint version " + version + " in " + file);
+      }
+
+      final double time = in.readDouble();
+      final int migrations = in.readInt();
+      final int hostCount = in.readInt();
+      final int[] vmHosts = new int[in.readInt()];
+      final int[] vmTargets = new int[vmHosts.length];
+      final double[] vmMigrationEnds = new double[vmHosts.length];
+      final int cloudlets = in.readInt();
+      for (int i = 0; i < vmHosts.length; i++) {
+        vmHosts[i] = in.readInt();
+        vmTargets[i] = in.readInt();
+        vmMigrationEnds[i] = in.readDouble();
+      }
+
+      final long[] remainingLength = new long[cloudlets];
+      final boolean[] finished = new boolean[cloudlets];
+      for (int i = 0; i < cloudlets; i++) {
+        remainingLength[i] = in.readLong();
+        finished[i] = in.readBoolean();
+      }
+
+      final byte[] energyState = new byte[in.readInt()];
+      in.readFully(energyState);
+      return new SimulationCheckpoint(time, migrations, hostCount, vmHosts, vmTargets, vmMigrationEnds, remainingLength, finished,
+          energyState);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error reading checkpoint " + file, e);
+    }
+  }
+
+  /**
+   * Checkpoint options of the runners: {@code --checkpoint=<file>} changes where checkpoints are written,
+   * {@code --checkpoint-interval=<seconds>} how often (0 disables them) and {@code --resume[=<file>]}
+   * resumes from the checkpoint file (or from another one, to fork a simulation).
+   *
+   * @param resumeFrom the checkpoint to resume from, or null to start from scratch
+   */
+  public record Options(Path file, double interval, Path resumeFrom) {
+    /**
+     * Parses the checkpoint options, removing them from the argument list.
+     */
+    public static Options parse(final List<String> args, final String defaultFile) {
+      Path file = Path.of(defaultFile);
+      double interval = Config.Checkpoint.INTERVAL;
+      String resume = null;
+      for (var iterator = args.iterator(); iterator.hasNext(); ) {
+        final String arg = iterator.next();
+        if (arg.startsWith("--checkpoint=")) {
+          file = Path.of(arg.substring("--checkpoint=".length()));
+        } else if (arg.startsWith("--checkpoint-interval=")) {
+          interval = Double.parseDouble(arg.substring("--checkpoint-interval=".length()));
+        } else if (arg.equals("--resume")) {
+          resume = "";
+        } else if (arg.startsWith("--resume=")) {
+          resume = arg.substring("--resume=".length());
+        } else {
+          continue;
+        }
+        iterator.remove();
+      }
+
+      return new Options(file, interval, resume == null ? null : resume.isEmpty() ? file : Path.of(resume));
+    }
+
+    public SimulationCheckpoint readResumeCheckpoint() {
+      return resumeFrom == null ? null : read(resumeFrom);
+    }
+  }
+}
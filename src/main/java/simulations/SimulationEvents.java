@@ -0,0 +1,211 @@
+package simulations;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java Flight Recorder events for the internals of the simulations, recorded with
+ * {@code jcmd <pid> JFR.start} or {@code -XX:StartFlightRecording} and shown under "Simulations".
+ *
+ * <p>An event that isn't enabled costs one branch, since {@link Event#shouldCommit()} is false
+ * and the JIT removes the rest, so the instrumented code can create them unconditionally.
+ * Times named "simulation" are in seconds of simulation; the duration of the events themselves
+ * is wall-clock time. Each event is also counted (and timed, when it has a duration) in the
+ * {@link MetricsRegistry#global() global metrics registry}, if it's enabled.</p>
+ */
+public final class SimulationEvents {
+  private SimulationEvents() {/**/}
+
+  @Name("simulations.MigrationStarted")
+  @Label("Migration Started")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class MigrationStarted extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("VM")
+    long vmId;
+    @Label("Source Host")
+    long sourceHostId;
+    @Label("Target Host")
+    long targetHostId;
+    @Label("VM PEs")
+    long vmPes;
+    @Label("VM RAM")
+    @DataAmount(DataAmount.BYTES)
+    long vmRam;
+  }
+
+  @Name("simulations.MigrationFinished")
+  @Label("Migration Finished")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class MigrationFinished extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("VM")
+    long vmId;
+    @Label("Source Host")
+    long sourceHostId;
+    @Label("Target Host")
+    long targetHostId;
+    @Label("VM PEs")
+    long vmPes;
+    @Label("VM RAM")
+    @DataAmount(DataAmount.BYTES)
+    long vmRam;
+    @Label("Simulation Duration (s)")
+    double simulationDuration;
+  }
+
+  @Name("simulations.MigrationTransfer")
+  @Label("Migration Transfer")
+  @Description("Transfer of the memory of a VM by the migration scheduler, recorded when it finishes")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class MigrationTransfer extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("VM")
+    long vmId;
+    @Label("Source Host")
+    long sourceHostId;
+    @Label("Target Host")
+    long targetHostId;
+    @Label("Wait Time (s)")
+    @Description("Simulation time the migration waited for room in the links of its hosts")
+    double waitTime;
+    @Label("Transfer Time (s)")
+    double transferTime;
+    @Label("Downtime (s)")
+    double downtime;
+    @Label("Pre-copy Rounds")
+    int rounds;
+  }
+
+  @Name("simulations.Tick")
+  @Label("Datacenter Tick")
+  @Description("Update of the processing of every host of a datacenter")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class Tick extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("Hosts")
+    int hosts;
+  }
+
+  @Name("simulations.HostOverloaded")
+  @Label("Host Overloaded")
+  @Description("A host went above its over utilization threshold")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class HostOverloaded extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("Host")
+    long hostId;
+    @Label("CPU Utilization")
+    double cpuUtilization;
+    @Label("Threshold")
+    double threshold;
+  }
+
+  @Name("simulations.PlacementSearch")
+  @Label("Placement Search")
+  @Description("Search of a host for a VM by the allocation policy")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class PlacementSearch extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("VM")
+    long vmId;
+    @Label("Host")
+    @Description("The host found, or -1 if none is suitable")
+    long hostId;
+    @Label("Migration Search")
+    @Description("If the VM is placed while migrations are searched")
+    boolean migration;
+  }
+
+  @Name("simulations.MigrationSearch")
+  @Label("Migration Search")
+  @Description("Search for the VMs to migrate and their target hosts")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class MigrationSearch extends Event {
+    @Label("Simulation Time (s)")
+    double simulationTime;
+    @Label("Overloaded Hosts")
+    int overloadedHosts;
+    @Label("Migrations")
+    int migrations;
+  }
+
+  @Name("simulations.CsvExport")
+  @Label("CSV Export")
+  @Category("Simulations")
+  @StackTrace(false)
+  public static final class CsvExport extends Event {
+    @Label("Table")
+    String table;
+    @Label("Rows")
+    int rows;
+  }
+
+  /**
+   * Records the start and finish of the migrations of the VMs, which must belong to the same simulation.
+   */
+  public static void recordMigrations(final List<? extends Vm> vmList) {
+    final MetricsRegistry metrics = MetricsRegistry.global();
+    // Source hosts and start times of the migrations in progress, which the VM doesn't keep
+    final Map<Vm, double[]> starts = new IdentityHashMap<>();
+    for (Vm vm : vmList) {
+      vm.addOnMigrationStartListener(info -> {
+        final Host source = info.getVm().getHost();
+        starts.put(info.getVm(), new double[]{info.getTime(), source.getId()});
+        metrics.increment("migrations.started");
+
+        final MigrationStarted event = new MigrationStarted();
+        if (event.shouldCommit()) {
+          event.simulationTime = info.getTime();
+          event.vmId = info.getVm().getId();
+          event.sourceHostId = source.getId();
+          event.targetHostId = info.getHost().getId();
+          event.vmPes = info.getVm().getPesNumber();
+          event.vmRam = info.getVm().getRam().getCapacity() * 1024 * 1024;
+          event.commit();
+        }
+      });
+
+      vm.addOnMigrationFinishListener(info -> {
+        final double[] start = starts.remove(info.getVm());
+        metrics.increment("migrations.finished");
+
+        final MigrationFinished event = new MigrationFinished();
+        if (event.shouldCommit()) {
+          event.simulationTime = info.getTime();
+          event.vmId = info.getVm().getId();
+          event.sourceHostId = start == null ? -1 : (long) start[1];
+          event.targetHostId = info.getHost().getId();
+          event.vmPes = info.getVm().getPesNumber();
+          event.vmRam = info.getVm().getRam().getCapacity() * 1024 * 1024;
+          event.simulationDuration = start == null ? Double.NaN : info.getTime() - start[0];
+          event.commit();
+        }
+      });
+    }
+  }
+}
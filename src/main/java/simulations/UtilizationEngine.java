@@ -0,0 +1,209 @@
+package simulations;
+
+import org.cloudsimplus.utilizationmodels.UtilizationModel;
+import org.cloudsimplus.utilizationmodels.UtilizationModelAbstract;
+import org.cloudsimplus.utilizationmodels.UtilizationModelDynamic;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Linear CPU utilization ramps (the ones built by {@link Shared#createCpuUtilizationModel(double, double, double)})
+ * for many cloudlets, kept in primitive arrays and advanced all at once.
+ *
+ * <p>A ramp starts at its initial utilization at time 0 and grows by its increment per second up to
+ * its max utilization, which gives the same values as a {@link UtilizationModelDynamic} with
+ * {@code util.getUtilization() + util.getTimeSpan() * increment}, but with no update function, boxing or
+ * model copy per call. The first {@link View} queried at a new time advances the ramps in a single
+ * loop over the arrays, and the others just read their value.</p>
+ *
+ * <p>Slots are ordered by the time their ramp reaches the max utilization, so the ramps still growing
+ * at any time are a contiguous range at the end of the slots. The loop only runs over that range,
+ * which is empty once every ramp is flat.</p>
+ */
+public final class UtilizationEngine {
+  private double[] initial;
+  private double[] max;
+  private double[] increment;
+  private double[] current;
+  private int size;
+
+  /* The ramps ordered by saturation time, rebuilt on the first advance after a ramp is added */
+  private int[] indexOf = new int[0];
+  private double[] slotInitial = new double[0];
+  private double[] slotMax = new double[0];
+  private double[] slotIncrement = new double[0];
+  private double[] saturation = new double[0];
+  private int firstRamping;
+  private boolean sorted = true;
+
+  private double time = Double.NaN;
+  private long advances;
+
+  public UtilizationEngine(final int capacity) {
+    this.initial = new double[Math.max(capacity, 1)];
+    this.max = new double[initial.length];
+    this.increment = new double[initial.length];
+    this.current = new double[initial.length];
+  }
+
+  /**
+   * Adds a ramp and gets the {@link UtilizationModel} that reads it.
+   *
+   * @param initialUtilization utilization at time 0 (from 0 to 1)
+   * @param maxUtilization utilization where the ramp stops (from 0 to 1)
+   * @param incrementPerSecond utilization added per second of simulation
+   */
+  public View add(double initialUtilization, double maxUtilization, final double incrementPerSecond) {
+    if (maxUtilization < initialUtilization) {
+      throw new IllegalArgumentException("Max CPU usage must be equal or greater than the initial CPU usage.");
+    }
+    if (initialUtilization < 0 || incrementPerSecond < 0) {
+      throw new IllegalArgumentException("Initial CPU usage and CPU increment cannot be negative.");
+    }
+
+    initialUtilization = Math.min(initialUtilization, 1);
+    maxUtilization = Math.min(maxUtilization, 1);
+    if (size == initial.length) {
+      final int capacity = size * 2;
+      initial = Arrays.copyOf(initial, capacity);
+      max = Arrays.copyOf(max, capacity);
+      increment = Arrays.copyOf(increment, capacity);
+      current = Arrays.copyOf(current, capacity);
+    }
+
+    // A ramp that can't grow is flat at its initial utilization
+    final boolean growing = initialUtilization < maxUtilization && incrementPerSecond > 0;
+    initial[size] = initialUtilization;
+    max[size] = growing ? maxUtilization : initialUtilization;
+    increment[size] = growing ? incrementPerSecond : 0;
+    current[size] = initialUtilization;
+    sorted = false;
+    time = Double.NaN;
+    return new View(size++);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of times the ramps were advanced.
+   */
+  public long getAdvances() {
+    return advances;
+  }
+
+  /**
+   * Gets the number of ramps that were still growing at the last advance.
+   */
+  public int getGrowingCount() {
+    return saturation.length - firstRamping;
+  }
+
+  public double getUtilization(final int index, final double time) {
+    if (time != this.time) {
+      advance(time);
+    }
+
+    return current[index];
+  }
+
+  /**
+   * Computes the utilization of every ramp at a given time, which may be earlier than the last one.
+   */
+  public void advance(final double time) {
+    if (!sorted) {
+      sort();
+    }
+    if (time < this.time) {
+      // Going back in time, the ramps that saturated since then are growing again
+      firstRamping = 0;
+    }
+
+    // Ramps that reached their max since the last advance stay there
+    final int first = firstRamping(time);
+    for (int s = firstRamping; s < first; s++) {
+      current[indexOf[s]] = slotMax[s];
+    }
+    firstRamping = first;
+
+    final int[] indexOf = this.indexOf;
+    final double[] slotInitial = this.slotInitial;
+    final double[] slotMax = this.slotMax;
+    final double[] slotIncrement = this.slotIncrement;
+    final double[] current = this.current;
+    for (int s = first; s < indexOf.length; s++) {
+      current[indexOf[s]] = Math.min(slotMax[s], slotInitial[s] + slotIncrement[s] * time);
+    }
+
+    this.time = time;
+    advances++;
+  }
+
+  /**
+   * Gets the first slot whose ramp is still growing at a given time.
+   */
+  private int firstRamping(final double time) {
+    int low = 0;
+    int high = saturation.length;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (saturation[middle] <= time) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+
+    return low;
+  }
+
+  private void sort() {
+    final double[] saturationOf = new double[size];
+    for (int i = 0; i < size; i++) {
+      saturationOf[i] = increment[i] == 0 ? 0 : (max[i] - initial[i]) / increment[i];
+    }
+
+    indexOf = IntStream.range(0, size).boxed()
+        .sorted(Comparator.comparingDouble(i -> saturationOf[i]))
+        .mapToInt(Integer::intValue)
+        .toArray();
+    slotInitial = new double[size];
+    slotMax = new double[size];
+    slotIncrement = new double[size];
+    saturation = new double[size];
+    for (int s = 0; s < size; s++) {
+      final int i = indexOf[s];
+      slotInitial[s] = initial[i];
+      slotMax[s] = max[i];
+      slotIncrement[s] = increment[i];
+      saturation[s] = saturationOf[i];
+    }
+
+    // Every slot is recomputed by the next advance
+    firstRamping = 0;
+    sorted = true;
+  }
+
+  /**
+   * The {@link UtilizationModel} of a single ramp.
+   */
+  public final class View extends UtilizationModelAbstract {
+    private final int index;
+
+    private View(final int index) {
+      this.index = index;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    @Override
+    protected double getUtilizationInternal(final double time) {
+      return UtilizationEngine.this.getUtilization(index, time);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package simulations;
+
+import org.cloudsimplus.utilizationmodels.UtilizationModel;
+import org.cloudsimplus.utilizationmodels.UtilizationModelAbstract;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Per-VM CPU, RAM and BW utilization series read from a binary trace file (see {@link UtilizationTraceConverter})
+ * through memory-mapped buffers. Samples are never copied to the heap: each lookup reads a single value
+ * straight from the mapped file, so traces larger than the heap can drive any number of cloudlets.
+ *
+ * <p>File layout (little-endian):</p>
+ * <pre>
+ * header  int magic ("UTR1"), int version, int number of VMs, int reserved, double sample interval (s), long data offset
+ * index   for each VM: long first sample, int number of samples
+ * data    for each sample: unsigned short CPU, RAM and BW utilization, where {@link #FULL} means 100%
+ * </pre>
+ *
+ * <p>A series covers {@code samples * interval} seconds from time 0 and is replayed in a loop after that.</p>
+ */
+public final class UtilizationTrace {
+  public static final int MAGIC = 0x31525455; // "UTR1"
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 4 * Integer.BYTES + Double.BYTES + Long.BYTES;
+  public static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+  public static final int CPU = 0;
+  public static final int RAM = 1;
+  public static final int BW = 2;
+  public static final int RESOURCES = 3;
+  public static final int SAMPLE_SIZE = RESOURCES * Short.BYTES;
+
+  /** Stored value for 100% utilization. 0xFFFF is reserved to mark missing samples while converting. */
+  public static final int FULL = 0xFFFE;
+
+  /** Samples per mapped segment, so a segment stays below the 2 GB limit of a {@link MappedByteBuffer}. */
+  static final int SEGMENT_SHIFT = 28;
+  static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  private final int vmCount;
+  private final double interval;
+  private final long[] firstSample;
+  private final int[] samples;
+  private final ByteBuffer[] segments;
+
+  public UtilizationTrace(final Path file) {
+    try (FileChannel channel = FileChannel.open(file)) {
+      final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IllegalArgumentException(file + " is not a utilization trace (version " + VERSION + ")");
+      }
+
+      this.vmCount = header.getInt();
+      header.getInt();
+      this.interval = header.getDouble();
+      final long dataOffset = header.getLong();
+
+      this.firstSample = new long[vmCount];
+      this.samples = new int[vmCount];
+      final ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) vmCount * INDEX_ENTRY_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      for (int vm = 0; vm < vmCount; vm++) {
+        firstSample[vm] = index.getLong();
+        samples[vm] = index.getInt();
+      }
+
+      this.segments = map(channel, FileChannel.MapMode.READ_ONLY, dataOffset, (channel.size() - dataOffset) / SAMPLE_SIZE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error opening utilization trace " + file, e);
+    }
+  }
+
+  static ByteBuffer[] map(final FileChannel channel, final FileChannel.MapMode mode, final long dataOffset,
+      final long totalSamples) throws IOException {
+    final ByteBuffer[] segments = new ByteBuffer[(int) ((totalSamples + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+    for (int i = 0; i < segments.length; i++) {
+      final long first = (long) i << SEGMENT_SHIFT;
+      final long count = Math.min(SEGMENT_MASK + 1, totalSamples - first);
+      segments[i] = channel.map(mode, dataOffset + first * SAMPLE_SIZE, count * SAMPLE_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    return segments;
+  }
+
+  static int position(final long sample, final int resource) {
+    return (int) (sample & SEGMENT_MASK) * SAMPLE_SIZE + resource * Short.BYTES;
+  }
+
+  public int getVmCount() {
+    return vmCount;
+  }
+
+  public double getInterval() {
+    return interval;
+  }
+
+  public int getSamples(final int vm) {
+    return samples[vm];
+  }
+
+  /**
+   * Gets the utilization (from 0 to 1) of a resource of a trace VM at a given simulation time.
+   *
+   * @param resource {@link #CPU}, {@link #RAM} or {@link #BW}
+   */
+  public double getUtilization(final int vm, final int resource, final double time) {
+    final int count = samples[vm];
+    if (count == 0) {
+      return 0;
+    }
+
+    final long sample = firstSample[vm] + (long) (time / interval) % count;
+    return segments[(int) (sample >>> SEGMENT_SHIFT)].getChar(position(sample, resource)) / (double) FULL;
+  }
+
+  /**
+   * Creates a {@link UtilizationModel} that replays a resource of a trace VM.
+   */
+  public UtilizationModel createModel(final int vm, final int resource) {
+    if (vm < 0 || vm >= vmCount) {
+      throw new IndexOutOfBoundsException("The trace has no VM " + vm);
+    }
+
+    return new UtilizationModelAbstract() {
+      @Override
+      protected double getUtilizationInternal(final double time) {
+        return UtilizationTrace.this.getUtilization(vm, resource, time);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Utilization trace with %d VMs sampled every %.0f s", vmCount, interval);
+  }
+}
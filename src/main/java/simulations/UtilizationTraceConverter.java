@@ -0,0 +1,267 @@
+package simulations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One-time converter from a CSV trace with one row per VM sample (such as the Azure or Google cluster traces)
+ * to the binary format read by {@link UtilizationTrace}.
+ *
+ * <p>Usage: {@code UtilizationTraceConverter <csv file> <trace file> [--vm=vm_id] [--time=timestamp] [--cpu=cpu]
+ * [--ram=ram] [--bw=bw] [--interval=300] [--time-unit=1] [--scale=1]}</p>
+ *
+ * <p>Columns are given by header name. RAM and BW columns are optional (missing ones are replayed as 100%).
+ * {@code --time-unit} converts timestamps to seconds (e.g. 1e-6 for microseconds) and utilization values are
+ * divided by {@code --scale} (e.g. 100 for percentages). Rows don't need to be sorted: the CSV is read twice,
+ * first to find the time span of each VM and then to write every sample straight to its slot in the mapped
+ * output file, so memory only depends on the number of VMs. Missing samples repeat the previous one.
+ * Trace VMs are numbered in order of first appearance.</p>
+ */
+public final class UtilizationTraceConverter {
+  private static final char MISSING = 0xFFFF;
+
+  private final Path csv;
+  private final int[] columns = new int[UtilizationTrace.RESOURCES];
+  private int vmColumn;
+  private int timeColumn;
+  private final double interval;
+  private final double timeUnit;
+  private final double scale;
+
+  private final Map<String, Integer> vmIds = new HashMap<>();
+  private double[] minTime = new double[1024];
+  private double[] maxTime = new double[1024];
+
+  private UtilizationTraceConverter(final Path csv, final Map<String, String> options) {
+    this.csv = csv;
+    this.interval = Double.parseDouble(options.getOrDefault("interval", "300"));
+    this.timeUnit = Double.parseDouble(options.getOrDefault("time-unit", "1"));
+    this.scale = Double.parseDouble(options.getOrDefault("scale", "1"));
+    if (interval <= 0 || timeUnit <= 0 || scale <= 0) {
+      throw new IllegalArgumentException("--interval, --time-unit and --scale must be greater than 0.");
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: UtilizationTraceConverter <csv file> <trace file> [--vm=vm_id] [--time=timestamp] "
+          + "[--cpu=cpu] [--ram=ram] [--bw=bw] [--interval=300] [--time-unit=1] [--scale=1]");
+      System.exit(1);
+    }
+
+    final Map<String, String> options = new LinkedHashMap<>();
+    for (int i = 2; i < args.length; i++) {
+      if (!args[i].startsWith("--") || !args[i].contains("=")) {
+        throw new IllegalArgumentException("Invalid option: " + args[i]);
+      }
+      options.put(args[i].substring(2, args[i].indexOf('=')), args[i].substring(args[i].indexOf('=') + 1));
+    }
+
+    final long start = System.nanoTime();
+    final UtilizationTraceConverter converter = new UtilizationTraceConverter(Path.of(args[0]), options);
+    converter.readHeader(options);
+    final long samples = converter.convert(Path.of(args[1]));
+    System.out.printf("Converted %d samples of %d VMs to %s in %.2f s%n",
+        samples, converter.vmIds.size(), args[1], (System.nanoTime() - start) / 1e9);
+  }
+
+  private void readHeader(final Map<String, String> options) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+      final String header = reader.readLine();
+      if (header == null) {
+        throw new IllegalArgumentException(csv + " is empty");
+      }
+
+      final String[] names = header.split(",");
+      vmColumn = column(names, options.getOrDefault("vm", "vm_id"), true);
+      timeColumn = column(names, options.getOrDefault("time", "timestamp"), true);
+      columns[UtilizationTrace.CPU] = column(names, options.getOrDefault("cpu", "cpu"), true);
+      columns[UtilizationTrace.RAM] = column(names, options.getOrDefault("ram", "ram"), options.containsKey("ram"));
+      columns[UtilizationTrace.BW] = column(names, options.getOrDefault("bw", "bw"), options.containsKey("bw"));
+    }
+  }
+
+  private int column(final String[] names, final String name, final boolean required) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].trim().equals(name)) {
+        return i;
+      }
+    }
+
+    if (required) {
+      throw new IllegalArgumentException("Column '" + name + "' not found in " + csv + ": " + Arrays.toString(names));
+    }
+
+    return -1;
+  }
+
+  private long convert(final Path output) throws IOException {
+    // First pass: time span of each VM
+    final String[] fields = new String[maxColumn() + 1];
+    try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+      reader.readLine();
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (split(line, fields)) {
+          final int vm = vmIndex(fields[vmColumn]);
+          final double time = Double.parseDouble(fields[timeColumn]) * timeUnit;
+          minTime[vm] = Math.min(minTime[vm], time);
+          maxTime[vm] = Math.max(maxTime[vm], time);
+        }
+      }
+    }
+
+    final int vmCount = vmIds.size();
+    final long[] firstSample = new long[vmCount];
+    final int[] samples = new int[vmCount];
+    long totalSamples = 0;
+    for (int vm = 0; vm < vmCount; vm++) {
+      firstSample[vm] = totalSamples;
+      samples[vm] = (int) Math.round((maxTime[vm] - minTime[vm]) / interval) + 1;
+      totalSamples += samples[vm];
+    }
+
+    final long dataOffset = UtilizationTrace.HEADER_SIZE + (long) vmCount * UtilizationTrace.INDEX_ENTRY_SIZE;
+    try (RandomAccessFile file = new RandomAccessFile(output.toFile(), "rw");
+        FileChannel channel = file.getChannel()) {
+      file.setLength(0);
+      file.setLength(dataOffset + totalSamples * UtilizationTrace.SAMPLE_SIZE);
+      final ByteBuffer[] segments = UtilizationTrace.map(channel, FileChannel.MapMode.READ_WRITE, dataOffset, totalSamples);
+      final byte[] missing = new byte[64 * 1024];
+      Arrays.fill(missing, (byte) 0xFF);
+      for (ByteBuffer segment : segments) {
+        while (segment.hasRemaining()) {
+          segment.put(missing, 0, Math.min(missing.length, segment.remaining()));
+        }
+      }
+
+      // Second pass: every sample goes straight to its slot
+      try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+        reader.readLine();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          if (!split(line, fields)) {
+            continue;
+          }
+
+          final int vm = vmIds.get(fields[vmColumn]);
+          final double time = Double.parseDouble(fields[timeColumn]) * timeUnit;
+          final long sample = firstSample[vm] + Math.round((time - minTime[vm]) / interval);
+          for (int resource = 0; resource < UtilizationTrace.RESOURCES; resource++) {
+            final double utilization = columns[resource] < 0 ? 1 : Double.parseDouble(fields[columns[resource]]) / scale;
+            put(segments, sample, resource, (char) Math.round(Math.min(1, Math.max(0, utilization)) * UtilizationTrace.FULL));
+          }
+        }
+      }
+
+      fillMissingSamples(segments, firstSample, samples);
+
+      final ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN)
+          .putInt(UtilizationTrace.MAGIC)
+          .putInt(UtilizationTrace.VERSION)
+          .putInt(vmCount)
+          .putInt(0)
+          .putDouble(interval)
+          .putLong(dataOffset);
+      for (int vm = 0; vm < vmCount; vm++) {
+        header.putLong(firstSample[vm]).putInt(samples[vm]);
+      }
+      header.flip();
+      long position = 0;
+      while (header.hasRemaining()) {
+        position += channel.write(header, position);
+      }
+    }
+
+    return totalSamples;
+  }
+
+  private static void fillMissingSamples(final ByteBuffer[] segments, final long[] firstSample, final int[] samples) {
+    for (int vm = 0; vm < samples.length; vm++) {
+      for (int resource = 0; resource < UtilizationTrace.RESOURCES; resource++) {
+        final long end = firstSample[vm] + samples[vm];
+        char previous = 0;
+        for (long sample = firstSample[vm]; sample < end; sample++) {
+          final char value = get(segments, sample, resource);
+          if (value != MISSING) {
+            previous = value;
+            break;
+          }
+        }
+
+        for (long sample = firstSample[vm]; sample < end; sample++) {
+          final char value = get(segments, sample, resource);
+          if (value == MISSING) {
+            put(segments, sample, resource, previous);
+          } else {
+            previous = value;
+          }
+        }
+      }
+    }
+  }
+
+  private static char get(final ByteBuffer[] segments, final long sample, final int resource) {
+    return segments[(int) (sample >>> UtilizationTrace.SEGMENT_SHIFT)].getChar(UtilizationTrace.position(sample, resource));
+  }
+
+  private static void put(final ByteBuffer[] segments, final long sample, final int resource, final char value) {
+    segments[(int) (sample >>> UtilizationTrace.SEGMENT_SHIFT)].putChar(UtilizationTrace.position(sample, resource), value);
+  }
+
+  private int vmIndex(final String id) {
+    final Integer index = vmIds.get(id);
+    if (index != null) {
+      return index;
+    }
+
+    final int vm = vmIds.size();
+    vmIds.put(id, vm);
+    if (vm == minTime.length) {
+      minTime = Arrays.copyOf(minTime, vm * 2);
+      maxTime = Arrays.copyOf(maxTime, vm * 2);
+    }
+    minTime[vm] = Double.POSITIVE_INFINITY;
+    maxTime[vm] = Double.NEGATIVE_INFINITY;
+    return vm;
+  }
+
+  private int maxColumn() {
+    int max = Math.max(vmColumn, timeColumn);
+    for (int column : columns) {
+      max = Math.max(max, column);
+    }
+
+    return max;
+  }
+
+  /**
+   * Splits the first fields of a CSV line, returning false for blank or short lines.
+   */
+  private static boolean split(final String line, final String[] fields) {
+    int start = 0;
+    for (int i = 0; i < fields.length; i++) {
+      if (start > line.length()) {
+        return false;
+      }
+
+      int end = line.indexOf(',', start);
+      if (end < 0) {
+        end = line.length();
+      }
+      fields[i] = line.substring(start, end).trim();
+      start = end + 1;
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,85 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicy;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Indexed version of {@link org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationBestFitStaticThreshold}.
+ *
+ * <p>The CPU MIPS utilization used to rank hosts changes on every clock tick, so it can't be kept sorted
+ * by the index. Instead, the index returns only the hosts with enough free PEs, MIPS, RAM and BW,
+ * and the (expensive) placement predicate is evaluated on them from the most to the least used one,
+ * stopping at the first match. Ties are broken by host list order, like the stock policy.</p>
+ *
+ * <p>While migrations are searched, the most used host that passes the {@link MigrationPlanner} checks
+ * is found in parallel instead, and the next one is only looked for if the predicate rejects it.</p>
+ */
+public class VmAllocationPolicyMigrationBestFitIndexed extends VmAllocationPolicyMigrationIndexedStaticThreshold {
+  public VmAllocationPolicyMigrationBestFitIndexed(
+      final VmSelectionPolicy vmSelectionPolicy,
+      final double overUtilizationThreshold) {
+    super(vmSelectionPolicy, overUtilizationThreshold);
+  }
+
+  @Override
+  protected Optional<Host> findIndexedHostForVm(final Vm vm, final Predicate<Host> predicate) {
+    if (isPlanning()) {
+      return findPlannedHostForVm(vm, predicate);
+    }
+
+    final HostIndex index = getHostIndex();
+    int[] candidates = new int[16];
+    double[] utilization = new double[16];
+    int count = 0;
+    for (int position = index.nextCandidate(vm, 0); position >= 0; position = index.nextCandidate(vm, position + 1)) {
+      if (count == candidates.length) {
+        candidates = Arrays.copyOf(candidates, count * 2);
+        utilization = Arrays.copyOf(utilization, count * 2);
+      }
+      candidates[count] = position;
+      utilization[count++] = index.getHost(position).getCpuMipsUtilization();
+    }
+
+    final int[] positions = candidates;
+    final double[] mips = utilization;
+    final int[] order = IntStream.range(0, count).boxed()
+        .sorted((a, b) -> {
+          final int byUtilization = Double.compare(mips[b], mips[a]);
+          return byUtilization != 0 ? byUtilization : Integer.compare(positions[a], positions[b]);
+        })
+        .mapToInt(Integer::intValue)
+        .toArray();
+
+    for (int i : order) {
+      final Host host = index.getHost(positions[i]);
+      if (predicate.test(host)) {
+        return Optional.of(host);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  private Optional<Host> findPlannedHostForVm(final Vm vm, final Predicate<Host> predicate) {
+    final MigrationPlanner planner = getPlanner();
+    final BitSet rejected = new BitSet(planner.size());
+    for (int position = planner.best(vm, MigrationPlanner::getCpuMipsUtilization, rejected);
+        position >= 0;
+        position = planner.best(vm, MigrationPlanner::getCpuMipsUtilization, rejected)) {
+      final Host host = planner.getHost(position);
+      if (predicate.test(host)) {
+        return Optional.of(host);
+      }
+      rejected.set(position);
+    }
+
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,170 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicy;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Indexed best-fit migration policy whose over utilization threshold is computed for each host from
+ * its recent CPU utilization, using one of the methods by Beloglazov and Buyya: Local Regression (LR),
+ * Median Absolute Deviation (MAD) or Interquartile Range (IQR).
+ *
+ * <p>The samples come from {@link HostUtilizationWindows}, which keeps the statistics up to date as
+ * hosts are updated, and the threshold of a host is only computed again when its window changes.
+ * Hosts with fewer than {@code minSamples} samples use the static threshold given to the constructor,
+ * which plays the part of the fallback policy in CloudSim Plus'
+ * {@link org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationDynamicUpperThreshold}.</p>
+ */
+public class VmAllocationPolicyMigrationDynamicThresholdIndexed extends VmAllocationPolicyMigrationBestFitIndexed {
+  public enum Method {
+    /**
+     * The host is overloaded when its utilization predicted one sample ahead by the least squares line
+     * of its window, multiplied by the safety parameter, reaches 100%. The line is fitted over the sample
+     * times, since the scheduling interval may change while the simulation runs, and without the tricube
+     * weights of the original method, so it can be slid in O(1).
+     */
+    LOCAL_REGRESSION("lr", 1.2),
+    /** The threshold is 1 - safety x the median absolute deviation of the window. */
+    MEDIAN_ABSOLUTE_DEVIATION("mad", 2.5),
+    /** The threshold is 1 - safety x the interquartile range of the window. */
+    INTERQUARTILE_RANGE("iqr", 1.5);
+
+    private final String shortName;
+    private final double defaultSafetyParameter;
+
+    Method(final String shortName, final double defaultSafetyParameter) {
+      this.shortName = shortName;
+      this.defaultSafetyParameter = defaultSafetyParameter;
+    }
+
+    public String getShortName() {
+      return shortName;
+    }
+
+    public double getDefaultSafetyParameter() {
+      return defaultSafetyParameter;
+    }
+
+    public static Method fromShortName(final String shortName) {
+      for (Method method : values()) {
+        if (method.shortName.equalsIgnoreCase(shortName)) {
+          return method;
+        }
+      }
+
+      throw new IllegalArgumentException("Unknown dynamic threshold method '" + shortName + "'. Available: lr, mad, iqr");
+    }
+  }
+
+  private final Method method;
+  private final double safetyParameter;
+  private final int windowCapacity;
+  private final int minSamples;
+
+  private HostUtilizationWindows windows;
+  private HostLoadDetector loadDetector;
+  private double[] thresholds = new double[0];
+  private long[] thresholdVersions = new long[0];
+
+  /**
+   * Creates a policy with the default safety parameter of the method and the window sizes in {@link Config.Host}.
+   */
+  public VmAllocationPolicyMigrationDynamicThresholdIndexed(
+      final VmSelectionPolicy vmSelectionPolicy,
+      final Method method,
+      final double fallbackOverUtilizationThreshold) {
+    this(vmSelectionPolicy, method, method.getDefaultSafetyParameter(), fallbackOverUtilizationThreshold,
+        Config.Host.UTILIZATION_WINDOW, Config.Host.UTILIZATION_WINDOW_MIN_SAMPLES);
+  }
+
+  public VmAllocationPolicyMigrationDynamicThresholdIndexed(
+      final VmSelectionPolicy vmSelectionPolicy,
+      final Method method,
+      final double safetyParameter,
+      final double fallbackOverUtilizationThreshold,
+      final int windowCapacity,
+      final int minSamples) {
+    super(vmSelectionPolicy, fallbackOverUtilizationThreshold);
+    if (safetyParameter <= 0) {
+      throw new IllegalArgumentException("The safety parameter must be greater than 0.");
+    }
+    if (minSamples < 2 || minSamples > windowCapacity) {
+      throw new IllegalArgumentException("The minimum number of samples must be between 2 and the window capacity.");
+    }
+
+    this.method = method;
+    this.safetyParameter = safetyParameter;
+    this.windowCapacity = windowCapacity;
+    this.minSamples = minSamples;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public double getSafetyParameter() {
+    return safetyParameter;
+  }
+
+  public HostUtilizationWindows getUtilizationWindows() {
+    final List<Host> hostList = getHostList();
+    if (windows == null || thresholds.length != hostList.size()) {
+      windows = new HostUtilizationWindows(hostList, windowCapacity);
+      thresholds = new double[hostList.size()];
+      thresholdVersions = new long[hostList.size()];
+      Arrays.fill(thresholdVersions, -1);
+    }
+
+    return windows;
+  }
+
+  @Override
+  public HostLoadDetector getLoadDetector() {
+    // The windows must take the new sample of a host before the detector evaluates it
+    getUtilizationWindows();
+    final HostLoadDetector detector = super.getLoadDetector();
+    if (detector != loadDetector) {
+      detector.setHostOverUtilizationThreshold(this::getOverUtilizationThreshold);
+      loadDetector = detector;
+    }
+
+    return detector;
+  }
+
+  /**
+   * Gets the threshold computed from the window of a host,
+   * or the static one if there aren't enough samples yet.
+   */
+  @Override
+  public double getOverUtilizationThreshold(final Host host) {
+    final int slot = windows == null ? -1 : windows.getSlot(host);
+    if (slot < 0 || windows.size(slot) < minSamples) {
+      return super.getOverUtilizationThreshold(host);
+    }
+
+    final long version = windows.getVersion(slot);
+    if (thresholdVersions[slot] != version) {
+      thresholds[slot] = computeThreshold(slot);
+      thresholdVersions[slot] = version;
+    }
+
+    return thresholds[slot];
+  }
+
+  private double computeThreshold(final int slot) {
+    return switch (method) {
+      // safety x predicted >= 1, written as a threshold on the current utilization
+      case LOCAL_REGRESSION -> {
+        final double last = windows.getLastUtilization(slot);
+        final double predicted = windows.predict(slot, windows.getLastTime(slot) + windows.getMeanSampleInterval(slot));
+        yield 1 / safetyParameter - (predicted - last);
+      }
+      case MEDIAN_ABSOLUTE_DEVIATION -> 1 - safetyParameter * windows.medianAbsoluteDeviation(slot);
+      case INTERQUARTILE_RANGE -> 1 - safetyParameter * windows.interquartileRange(slot);
+    };
+  }
+}
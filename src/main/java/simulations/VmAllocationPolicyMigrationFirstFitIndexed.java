@@ -0,0 +1,50 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicy;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Indexed version of {@link org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationFirstFitStaticThreshold}.
+ * It walks the host list circularly from the last selected host, but jumps straight to the next host
+ * that has enough free PEs, MIPS, RAM and BW, so it picks exactly the same host as the stock policy.
+ */
+public class VmAllocationPolicyMigrationFirstFitIndexed extends VmAllocationPolicyMigrationIndexedStaticThreshold {
+  private int lastHostIndex;
+
+  public VmAllocationPolicyMigrationFirstFitIndexed(
+      final VmSelectionPolicy vmSelectionPolicy,
+      final double overUtilizationThreshold) {
+    super(vmSelectionPolicy, overUtilizationThreshold);
+  }
+
+  @Override
+  protected Optional<Host> findIndexedHostForVm(final Vm vm, final Predicate<Host> predicate) {
+    final HostIndex index = getHostIndex();
+    if (index.size() == 0) {
+      return Optional.empty();
+    }
+
+    lastHostIndex %= index.size();
+    final Optional<Host> host = findFrom(index, vm, predicate, lastHostIndex, index.size());
+    return host.isPresent() ? host : findFrom(index, vm, predicate, 0, lastHostIndex);
+  }
+
+  private Optional<Host> findFrom(final HostIndex index, final Vm vm, final Predicate<Host> predicate,
+      final int from, final int to) {
+    for (int position = index.nextCandidate(vm, from);
+        position >= 0 && position < to;
+        position = index.nextCandidate(vm, position + 1)) {
+      final Host host = index.getHost(position);
+      if (predicate.test(host)) {
+        lastHostIndex = position;
+        return Optional.of(host);
+      }
+    }
+
+    return Optional.empty();
+  }
+}
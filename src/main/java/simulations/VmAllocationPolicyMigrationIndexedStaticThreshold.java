@@ -0,0 +1,368 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostAbstract;
+import org.cloudsimplus.hosts.HostSuitability;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicy;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.vms.VmAbstract;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Static threshold migration policy that searches target hosts through a {@link HostIndex}
+ * instead of a linear pass over the host list. The index is kept up to date when VMs are
+ * allocated, deallocated or migrated, and subclasses only need to define in which order the
+ * candidates it returns are tested.
+ *
+ * <p>The migrations are searched here, following the same steps as the super class, but going over
+ * hosts and VMs in host list order instead of the order of hash sets and maps of hosts and VMs,
+ * which changes from one run to the next. This way, a simulation always issues the same migrations,
+ * in the same order. Unlike the super class, underloaded hosts are also consolidated when no host is
+ * overloaded, a case where the super class fails adding their VMs to the immutable empty map it uses.</p>
+ *
+ * <p>Over and underloaded hosts are tracked by a {@link HostLoadDetector}, so the periodic search for
+ * migrations is skipped without looking at every host when no host is in either band.</p>
+ *
+ * <p>While migrations are searched, subclasses may rank target hosts through a {@link MigrationPlanner},
+ * which scores them in parallel from a snapshot of their state. The snapshot is taken again once VMs are
+ * removed from overloaded hosts and once they're restored, hosts picked as targets are refreshed before
+ * it's used again, and it also answers {@link #isUnderloaded(Host)} while underloaded hosts are consolidated.</p>
+ *
+ * <p>When the datacenter has a {@link HostPowerController}, hosts that are asleep or switched off are only
+ * picked when no awake host fits the VM, and a host that gets a VM is woken up.</p>
+ */
+public abstract class VmAllocationPolicyMigrationIndexedStaticThreshold extends VmAllocationPolicyMigrationStaticThreshold {
+  private HostIndex hostIndex;
+  private HostLoadDetector loadDetector;
+  private MigrationPlanner planner;
+  private boolean planning;
+  private boolean overloaded;
+  private boolean consolidated;
+  private Predicate<Host> targetPredicate;
+
+  public VmAllocationPolicyMigrationIndexedStaticThreshold(
+      final VmSelectionPolicy vmSelectionPolicy,
+      final double overUtilizationThreshold) {
+    super(vmSelectionPolicy, overUtilizationThreshold);
+  }
+
+  protected HostIndex getHostIndex() {
+    final List<Host> hostList = getHostList();
+    if (hostIndex == null || hostIndex.size() != hostList.size()) {
+      hostIndex = new HostIndex(hostList);
+    }
+
+    return hostIndex;
+  }
+
+  protected MigrationPlanner getPlanner() {
+    final List<Host> hostList = getHostList();
+    if (planner == null || planner.size() != hostList.size()) {
+      planner = new MigrationPlanner(hostList, getHostIndex(), this::getOverUtilizationThreshold,
+          ForkJoinPool.commonPool(), Config.Host.PLANNING_PARALLEL_THRESHOLD);
+    }
+
+    return planner;
+  }
+
+  /**
+   * Checks if migrations are being searched, when target hosts can be ranked by the {@link #getPlanner() planner}.
+   */
+  protected boolean isPlanning() {
+    return planning;
+  }
+
+  public HostLoadDetector getLoadDetector() {
+    final List<Host> hostList = getHostList();
+    if (loadDetector == null || loadDetector.size() != hostList.size()) {
+      loadDetector = new HostLoadDetector(hostList, getOverUtilizationThreshold(Host.NULL), getUnderUtilizationThreshold());
+    } else {
+      loadDetector.setThresholds(getOverUtilizationThreshold(Host.NULL), getUnderUtilizationThreshold());
+    }
+
+    return loadDetector;
+  }
+
+  @Override
+  public HostSuitability allocateHostForVm(final Vm vm, final Host host) {
+    final HostSuitability suitability = super.allocateHostForVm(vm, host);
+    final HostPowerController powerController = getPowerController();
+    if (powerController != null && suitability.fully()) {
+      powerController.wake(host);
+    }
+    getHostIndex().markDirty(host);
+    getLoadDetector().markDirty(host);
+    return suitability;
+  }
+
+  @Override
+  public void deallocateHostForVm(final Vm vm) {
+    final Host host = vm.getHost();
+    super.deallocateHostForVm(vm);
+    getHostIndex().markDirty(host);
+    getLoadDetector().markDirty(host);
+  }
+
+  @Override
+  public Map<Vm, Host> getOptimizedAllocationMap(final List<? extends Vm> vmList) {
+    final HostLoadDetector detector = getLoadDetector();
+    final Set<Host> overloadedHosts = detector.getOverloadedCandidates();
+    overloaded = !overloadedHosts.isEmpty();
+    consolidated = false;
+    if (!overloaded && !detector.hasUnderloadedCandidates()) {
+      MetricsRegistry.global().increment("migration.search.skipped");
+      return new LinkedHashMap<>();
+    }
+
+    final SimulationEvents.MigrationSearch event = new SimulationEvents.MigrationSearch();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+
+    // VMs are temporarily removed from overloaded hosts while the migration map is built
+    final HostIndex index = getHostIndex();
+    overloadedHosts.forEach(index::pin);
+
+    planning = true;
+    try {
+      final Map<Vm, Host> migrationMap = overloaded
+          ? getMigrationMapFromOverloadedHosts(overloadedHosts)
+          : new LinkedHashMap<>();
+      final Set<Host> ignoredHosts = new LinkedHashSet<>(overloadedHosts);
+      ignoredHosts.addAll(migrationMap.values());
+      getPlanner().beginWave();
+      migrationMap.putAll(getMigrationMapFromUnderloadedHosts(ignoredHosts));
+      migrationMap.values().forEach(index::markDirty);
+
+      event.end();
+      if (event.shouldCommit()) {
+        event.simulationTime = getDatacenter().getSimulation().clock();
+        event.overloadedHosts = overloadedHosts.size();
+        event.migrations = migrationMap.size();
+        event.commit();
+      }
+      return migrationMap;
+    } finally {
+      planning = false;
+      index.unpinAll();
+      MetricsRegistry.global().stopTimer("migration.search", start);
+    }
+  }
+
+  @Override
+  public boolean isUnderloaded(final Host host) {
+    final MigrationPlanner planner = getPlanner();
+    if (!planning || planner.getPosition(host) < 0) {
+      return super.isUnderloaded(host);
+    }
+
+    return planner.getCpuPercentRequested(host) < getUnderUtilizationThreshold();
+  }
+
+  /*
+   * The super class flags are never updated, since it doesn't search for migrations.
+   */
+  @Override
+  public boolean isUnderOrOverloaded() {
+    return overloaded || consolidated;
+  }
+
+  /**
+   * Moves VMs away from overloaded hosts until they aren't overloaded anymore, from the most used VM,
+   * as the super class does, then restores the allocation changed while the targets were searched.
+   */
+  private Map<Vm, Host> getMigrationMapFromOverloadedHosts(final Set<Host> overloadedHosts) {
+    final Map<Vm, Host> migrationMap = new LinkedHashMap<>();
+    final Map<Vm, Host> savedAllocation = saveAllocation();
+    try {
+      final List<Vm> vmsToMigrate = new ArrayList<>();
+      for (Host host : overloadedHosts) {
+        vmsToMigrate.addAll(getVmsToMigrateFromOverloadedHost(host));
+      }
+
+      final double time = getDatacenter().getSimulation().clock();
+      vmsToMigrate.sort(Comparator.comparingDouble((Vm vm) -> vm.getTotalCpuMipsUtilization(time)).reversed());
+      getPlanner().beginWave();
+      for (Vm vm : vmsToMigrate) {
+        findHostForVm(vm).ifPresent(targetHost -> {
+          // Makes the target account for this VM when the next ones are placed
+          targetHost.createTemporaryVm(vm);
+          migrationMap.put(vm, targetHost);
+        });
+      }
+    } finally {
+      restoreAllocation(savedAllocation);
+    }
+
+    return migrationMap;
+  }
+
+  /**
+   * Temporarily removes the VMs selected to migrate from an overloaded host until it isn't overloaded anymore.
+   */
+  private List<Vm> getVmsToMigrateFromOverloadedHost(final Host host) {
+    final List<Vm> vmsToMigrate = new ArrayList<>();
+    for (Optional<Vm> vm = getVmSelectionPolicy().getVmToMigrate(host); vm.isPresent();
+        vm = getVmSelectionPolicy().getVmToMigrate(host)) {
+      vmsToMigrate.add(vm.get());
+      ((HostAbstract) host).destroyTemporaryVm(vm.get());
+      if (!isOverloaded(host)) {
+        break;
+      }
+    }
+
+    return vmsToMigrate;
+  }
+
+  private Map<Vm, Host> saveAllocation() {
+    final Map<Vm, Host> allocation = new LinkedHashMap<>();
+    for (Host host : getHostList()) {
+      for (Vm vm : host.getVmList()) {
+        if (!host.getVmsMigratingIn().contains(vm)) {
+          allocation.put(vm, host);
+        }
+      }
+    }
+
+    return allocation;
+  }
+
+  private void restoreAllocation(final Map<Vm, Host> allocation) {
+    for (HostAbstract host : this.<HostAbstract>getHostList()) {
+      host.destroyAllVms();
+      host.reallocateMigratingInVms();
+    }
+
+    allocation.forEach((vm, host) -> {
+      if (host.createTemporaryVm(vm).fully()) {
+        ((VmAbstract) vm).setCreated(true);
+      } else {
+        LOGGER.error("{}: VmAllocationPolicy: Couldn't restore {} on {}", getDatacenter().getSimulation().clockStr(), vm, host);
+      }
+    });
+  }
+
+  /**
+   * Moves the VMs away from underloaded hosts, from the least used one, while there's room for all
+   * the VMs of a host on hosts that aren't underloaded, as the super class does.
+   *
+   * @param ignoredHosts the overloaded hosts and the targets of their VMs, which aren't consolidated
+   */
+  private Map<Vm, Host> getMigrationMapFromUnderloadedHosts(final Set<Host> ignoredHosts) {
+    final Map<Vm, Host> migrationMap = new LinkedHashMap<>();
+    ignoredHosts.addAll(getSwitchedOffHosts());
+    final double time = getDatacenter().getSimulation().clock();
+
+    /*
+     * Only the hosts selected as targets change during the search, and they're ignored from then on,
+     * so a single (stable) sort gives the same hosts in the same order as looking for the least used one
+     * each time, without going over all the candidates again for every host consolidated.
+     */
+    final List<Host> candidates = new ArrayList<>(getLoadDetector().getHosts(HostLoadDetector.Band.UNDERLOADED));
+    final Map<Host, Double> utilization = new HashMap<>(candidates.size() * 2);
+    candidates.forEach(host -> utilization.put(host, host.getCpuPercentUtilization()));
+    candidates.sort(Comparator.comparingDouble(utilization::get));
+    for (Host underloadedHost : candidates) {
+      if (ignoredHosts.contains(underloadedHost)
+          || !underloadedHost.isActive()
+          || !isUnderloaded(underloadedHost)
+          || !underloadedHost.getVmsMigratingIn().isEmpty()
+          || underloadedHost.getVmList().stream().allMatch(Vm::isInMigration)) {
+        continue;
+      }
+
+      consolidated = true;
+      ignoredHosts.add(underloadedHost);
+      final List<? extends Vm> vmsToMigrate = getVmsToMigrateFromUnderUtilizedHost(underloadedHost);
+      vmsToMigrate.sort(Comparator.comparingDouble((Vm vm) -> vm.getTotalCpuMipsUtilization(time)).reversed());
+
+      final Map<Vm, Host> placement = new LinkedHashMap<>();
+      targetPredicate = host -> !isUnderloaded(host);
+      try {
+        for (Vm vm : vmsToMigrate) {
+          final Optional<Host> targetHost = defaultFindHostForVm(vm);
+          if (targetHost.isEmpty()) {
+            placement.clear();
+            break;
+          }
+
+          // Makes the target account for this VM when the next ones are placed
+          targetHost.get().createTemporaryVm(vm);
+          placement.put(vm, targetHost.get());
+        }
+      } finally {
+        targetPredicate = null;
+      }
+
+      ignoredHosts.addAll(placement.values());
+      migrationMap.putAll(placement);
+    }
+
+    return migrationMap;
+  }
+
+  @Override
+  protected final Optional<Host> findHostForVmInternal(final Vm vm, final Predicate<Host> predicate) {
+    getHostIndex().refreshAt(getDatacenter().getSimulation().clock());
+    final SimulationEvents.PlacementSearch event = new SimulationEvents.PlacementSearch();
+    final long start = MetricsRegistry.global().startTimer();
+    event.begin();
+    final Predicate<Host> candidatePredicate = targetPredicate == null ? predicate : predicate.and(targetPredicate);
+    final HostPowerController powerController = getPowerController();
+    // Sleeping hosts are the last resort, so they're only searched when no awake host fits
+    Optional<Host> optionalHost = findIndexedHostForVm(vm,
+        powerController == null ? candidatePredicate : candidatePredicate.and(powerController::isAwake));
+    if (optionalHost.isEmpty() && powerController != null) {
+      optionalHost = findIndexedHostForVm(vm, candidatePredicate.and(host -> !powerController.isAwake(host)));
+    }
+    event.end();
+    MetricsRegistry.global().stopTimer("placement.search", start);
+    if (event.shouldCommit()) {
+      event.simulationTime = vm.getSimulation().clock();
+      event.vmId = vm.getId();
+      event.hostId = optionalHost.map(Host::getId).orElse(-1L);
+      event.migration = planning;
+      event.commit();
+    }
+
+    optionalHost.ifPresent(host -> {
+      // The caller may create a temporary VM on the selected host right after it's returned
+      if (planning) {
+        getHostIndex().pin(host);
+        getPlanner().markStale(host);
+      } else {
+        getHostIndex().markDirty(host);
+      }
+    });
+
+    return optionalHost;
+  }
+
+  protected abstract Optional<Host> findIndexedHostForVm(Vm vm, Predicate<Host> predicate);
+
+  private HostPowerController getPowerController() {
+    return getDatacenter() instanceof DatacenterInstrumented datacenter ? datacenter.getPowerController() : null;
+  }
+
+  /*
+   * Host.getMigratableVms() returns an immutable list, which is sorted in place
+   * when underloaded hosts are consolidated.
+   */
+  @Override
+  protected List<? extends Vm> getVmsToMigrateFromUnderUtilizedHost(final Host host) {
+    return new ArrayList<>(host.getMigratableVms());
+  }
+}
@@ -0,0 +1,126 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.power.models.PowerModelHost;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicy;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Static threshold migration policy that places each VM (new or migrating) on the host whose power
+ * increases the least when the VM's requested MIPS are added to its CPU utilization. Ties go to the first
+ * host in host list order.
+ *
+ * <p>The power increase is read from the {@link PowerCurve} of each host: the curve of a
+ * {@link PowerModelHostLookup}, or a curve sampled once per server class from the power model of its
+ * first host. Curves and MIPS capacities are kept in arrays by {@link HostIndex} position, so scoring a
+ * candidate costs two table lookups, and only the hosts the index finds with room for the VM are scored.
+ * While migrations are searched, the {@link MigrationPlanner} scores them in parallel, from its snapshot
+ * of the MIPS used by each host.</p>
+ */
+public class VmAllocationPolicyMigrationMinPowerIndexed extends VmAllocationPolicyMigrationIndexedStaticThreshold {
+  private PowerCurve[] curves;
+  private double[] mipsCapacity;
+
+  public VmAllocationPolicyMigrationMinPowerIndexed(
+      final VmSelectionPolicy vmSelectionPolicy,
+      final double overUtilizationThreshold) {
+    super(vmSelectionPolicy, overUtilizationThreshold);
+  }
+
+  private void buildCurves() {
+    final HostIndex index = getHostIndex();
+    if (curves != null && curves.length == index.size()) {
+      return;
+    }
+
+    curves = new PowerCurve[index.size()];
+    mipsCapacity = new double[index.size()];
+    final Map<Long, PowerCurve> serverClassCurves = new HashMap<>();
+    for (int position = 0; position < index.size(); position++) {
+      final Host host = index.getHost(position);
+      final PowerModelHost model = host.getPowerModel();
+      curves[position] = model instanceof PowerModelHostLookup lookup
+          ? lookup.getCurve()
+          : serverClassCurves.computeIfAbsent(host.getPesNumber(), pes -> PowerCurve.of(model, Config.Power.LOOKUP_STEPS));
+      mipsCapacity[position] = host.getTotalMipsCapacity();
+    }
+  }
+
+  /**
+   * Gets how much more power (W) the host at a position would draw with some more MIPS in use.
+   */
+  private double getPowerIncrease(final int position, final double usedMips, final double mips) {
+    final double capacity = mipsCapacity[position];
+    return curves[position].getPowerIncrease(usedMips / capacity, (usedMips + mips) / capacity);
+  }
+
+  @Override
+  protected Optional<Host> findIndexedHostForVm(final Vm vm, final Predicate<Host> predicate) {
+    buildCurves();
+    final double mips = vm.getCurrentRequestedMips().totalMips();
+    if (isPlanning()) {
+      return findPlannedHostForVm(vm, mips, predicate);
+    }
+
+    final HostIndex index = getHostIndex();
+    int[] candidates = new int[16];
+    double[] increase = new double[16];
+    int count = 0;
+    for (int position = index.nextCandidate(vm, 0); position >= 0; position = index.nextCandidate(vm, position + 1)) {
+      if (count == candidates.length) {
+        candidates = Arrays.copyOf(candidates, count * 2);
+        increase = Arrays.copyOf(increase, count * 2);
+      }
+      candidates[count] = position;
+      increase[count++] = getPowerIncrease(position, index.getHost(position).getCpuMipsUtilization(), mips);
+    }
+
+    final int[] positions = candidates;
+    final double[] watts = increase;
+    final int[] order = IntStream.range(0, count).boxed()
+        .sorted((a, b) -> {
+          final int byIncrease = Double.compare(watts[a], watts[b]);
+          return byIncrease != 0 ? byIncrease : Integer.compare(positions[a], positions[b]);
+        })
+        .mapToInt(Integer::intValue)
+        .toArray();
+
+    for (int i : order) {
+      final Host host = index.getHost(positions[i]);
+      if (predicate.test(host)) {
+        return Optional.of(host);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  private Optional<Host> findPlannedHostForVm(final Vm vm, final double mips, final Predicate<Host> predicate) {
+    final MigrationPlanner planner = getPlanner();
+    final BitSet rejected = new BitSet(planner.size());
+    // The planner and the index both keep hosts at their host list positions
+    final MigrationPlanner.Ranking leastIncrease = (snapshot, position) ->
+        -getPowerIncrease(position, snapshot.getCpuMipsUtilization(position), mips);
+    for (int position = planner.best(vm, leastIncrease, rejected);
+        position >= 0;
+        position = planner.best(vm, leastIncrease, rejected)) {
+      final Host host = planner.getHost(position);
+      if (predicate.test(host)) {
+        return Optional.of(host);
+      }
+      rejected.set(position);
+    }
+
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,182 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sliding windows with the last {@code capacity} samples of the CPU MIPS each VM requests and of the MIPS
+ * the other VMs of its host request, taken on every host update, to tell how much a VM's load follows
+ * the load of its host.
+ *
+ * <p>Samples live in per-VM primitive ring buffers, and the sums of their Pearson correlation are slid
+ * in O(1) (and rebuilt once every {@code capacity} samples so rounding errors don't pile up). A VM's window
+ * starts over when it moves to another host. VMs get a window the first time their host is updated.</p>
+ */
+public class VmLoadCorrelations {
+  /* Fewest samples a correlation is computed from */
+  private static final int MIN_SAMPLES = 3;
+
+  private final int capacity;
+  private final Map<Vm, Integer> slots = new IdentityHashMap<>();
+
+  private Host[] hosts = new Host[0];
+  private double[] lastTime = new double[0];
+  private double[] vmLoad = new double[0];
+  private double[] hostLoad = new double[0];
+  private int[] size = new int[0];
+  private long[] recorded = new long[0];
+  private int[] slides = new int[0];
+  private double[] sumVm = new double[0];
+  private double[] sumHost = new double[0];
+  private double[] sumVmSquared = new double[0];
+  private double[] sumHostSquared = new double[0];
+  private double[] sumProduct = new double[0];
+  private double[] mips = new double[16];
+
+  public VmLoadCorrelations(final Collection<? extends Host> hostList, final int capacity) {
+    if (capacity < MIN_SAMPLES) {
+      throw new IllegalArgumentException("The window capacity must be at least " + MIN_SAMPLES + ".");
+    }
+
+    this.capacity = capacity;
+    hostList.forEach(host -> host.addOnUpdateProcessingListener(this::onUpdateProcessing));
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  private void onUpdateProcessing(final HostUpdatesVmsProcessingEventInfo info) {
+    final Host host = info.getHost();
+    final double now = host.getSimulation().clock();
+    final List<Vm> vmList = host.getVmList();
+    if (mips.length < vmList.size()) {
+      mips = new double[vmList.size() * 2];
+    }
+
+    double total = 0;
+    for (int i = 0; i < vmList.size(); i++) {
+      mips[i] = vmList.get(i).getTotalCpuMipsUtilization(now);
+      total += mips[i];
+    }
+    for (int i = 0; i < vmList.size(); i++) {
+      add(getSlot(vmList.get(i)), host, now, mips[i], total - mips[i]);
+    }
+  }
+
+  private int getSlot(final Vm vm) {
+    final Integer slot = slots.get(vm);
+    if (slot != null) {
+      return slot;
+    }
+
+    final int newSlot = slots.size();
+    if (newSlot == hosts.length) {
+      grow(Math.max(16, newSlot * 2));
+    }
+    slots.put(vm, newSlot);
+    return newSlot;
+  }
+
+  private void grow(final int vms) {
+    hosts = Arrays.copyOf(hosts, vms);
+    lastTime = Arrays.copyOf(lastTime, vms);
+    vmLoad = Arrays.copyOf(vmLoad, vms * capacity);
+    hostLoad = Arrays.copyOf(hostLoad, vms * capacity);
+    size = Arrays.copyOf(size, vms);
+    recorded = Arrays.copyOf(recorded, vms);
+    slides = Arrays.copyOf(slides, vms);
+    sumVm = Arrays.copyOf(sumVm, vms);
+    sumHost = Arrays.copyOf(sumHost, vms);
+    sumVmSquared = Arrays.copyOf(sumVmSquared, vms);
+    sumHostSquared = Arrays.copyOf(sumHostSquared, vms);
+    sumProduct = Arrays.copyOf(sumProduct, vms);
+  }
+
+  /**
+   * Adds a sample to the window of a VM, removing the oldest one if it's full.
+   * A sample at the same time as the last one replaces it.
+   */
+  private void add(final int slot, final Host host, final double now, final double vmMips, final double hostMips) {
+    if (hosts[slot] != host) {
+      hosts[slot] = host;
+      size[slot] = 0;
+      recorded[slot] = 0;
+      slides[slot] = 0;
+      sumVm[slot] = sumHost[slot] = sumVmSquared[slot] = sumHostSquared[slot] = sumProduct[slot] = 0;
+    }
+
+    final int base = slot * capacity;
+    if (size[slot] > 0 && lastTime[slot] == now) {
+      final int index = base + (int) ((recorded[slot] - 1) % capacity);
+      accumulate(slot, vmLoad[index], hostLoad[index], -1);
+      vmLoad[index] = vmMips;
+      hostLoad[index] = hostMips;
+      accumulate(slot, vmMips, hostMips, 1);
+      return;
+    }
+
+    final int index = base + (int) (recorded[slot] % capacity);
+    if (size[slot] == capacity) {
+      accumulate(slot, vmLoad[index], hostLoad[index], -1);
+    } else {
+      size[slot]++;
+    }
+
+    vmLoad[index] = vmMips;
+    hostLoad[index] = hostMips;
+    lastTime[slot] = now;
+    recorded[slot]++;
+    if (++slides[slot] >= capacity) {
+      rebuildSums(slot);
+    } else {
+      accumulate(slot, vmMips, hostMips, 1);
+    }
+  }
+
+  private void accumulate(final int slot, final double x, final double y, final int sign) {
+    sumVm[slot] += sign * x;
+    sumHost[slot] += sign * y;
+    sumVmSquared[slot] += sign * x * x;
+    sumHostSquared[slot] += sign * y * y;
+    sumProduct[slot] += sign * x * y;
+  }
+
+  private void rebuildSums(final int slot) {
+    sumVm[slot] = sumHost[slot] = sumVmSquared[slot] = sumHostSquared[slot] = sumProduct[slot] = 0;
+    final int base = slot * capacity;
+    for (int i = 0; i < size[slot]; i++) {
+      accumulate(slot, vmLoad[base + i], hostLoad[base + i], 1);
+    }
+    slides[slot] = 0;
+  }
+
+  /**
+   * Gets the Pearson correlation between the MIPS a VM requested and the MIPS the other VMs of its host
+   * requested over its window, or 0 if it has too few samples or either load didn't change.
+   */
+  public double getCorrelation(final Vm vm) {
+    final Integer slot = slots.get(vm);
+    if (slot == null || size[slot] < MIN_SAMPLES) {
+      return 0;
+    }
+
+    final int n = size[slot];
+    final double covariance = n * sumProduct[slot] - sumVm[slot] * sumHost[slot];
+    final double vmVariance = n * sumVmSquared[slot] - sumVm[slot] * sumVm[slot];
+    final double hostVariance = n * sumHostSquared[slot] - sumHost[slot] * sumHost[slot];
+    // Variances lost to rounding are taken as constant loads
+    if (vmVariance <= 1e-9 * n * sumVmSquared[slot] || hostVariance <= 1e-9 * n * sumHostSquared[slot]) {
+      return 0;
+    }
+
+    return Math.max(-1, Math.min(1, covariance / Math.sqrt(vmVariance * hostVariance)));
+  }
+}
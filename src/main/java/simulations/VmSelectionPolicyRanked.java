@@ -0,0 +1,224 @@
+package simulations;
+
+import simulations.Shared.Config;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicy;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Selects the VM to migrate away from a host by how expensive it is to move, from a ranking of the VMs
+ * of each host kept between calls, instead of going over all the VMs of the host on every call as
+ * {@link org.cloudsimplus.selectionpolicies.VmSelectionPolicyMinimumUtilization} does.
+ *
+ * <p>A ranking is refreshed when the simulation clock advances or the number of VMs of its host changes:
+ * every VM is scored again, but only the VMs whose score or placement changed are moved in it. Within
+ * the same time, the VM selected is dropped from the ranking, expecting the caller to remove it from the
+ * host, as the migration policies do while they pick the VMs of an overloaded host one by one. So picking
+ * {@code k} VMs from a host of {@code n} VMs costs O(n + k log n) instead of O(k n).</p>
+ */
+public class VmSelectionPolicyRanked implements VmSelectionPolicy {
+  /**
+   * The name of the selection policy of CloudSim Plus that the runners use by default.
+   */
+  public static final String MIN_UTILIZATION = "min-utilization";
+
+  public enum Criterion {
+    /**
+     * Shortest estimated migration time first: the pre-copy of the VM's RAM, dirtied at a rate that follows its
+     * CPU utilization, over the share of its host's link a new transfer would get (see {@link MigrationScheduler}).
+     */
+    MIN_MIGRATION_TIME("min-migration-time"),
+    /**
+     * Highest correlation of the VM's load with the load of the other VMs of its host first (see
+     * {@link VmLoadCorrelations}), so the VMs that make up the host's peaks leave it.
+     */
+    MAX_CORRELATION("max-correlation"),
+    /**
+     * Shortest migration time per MIPS taken off the host first, with the MIPS of a VM whose load follows
+     * its host's load counting up to twice.
+     */
+    COST("cost");
+
+    private final String shortName;
+
+    Criterion(final String shortName) {
+      this.shortName = shortName;
+    }
+
+    public String getShortName() {
+      return shortName;
+    }
+
+    public static Criterion fromShortName(final String shortName) {
+      for (Criterion criterion : values()) {
+        if (criterion.shortName.equalsIgnoreCase(shortName)) {
+          return criterion;
+        }
+      }
+
+      throw new IllegalArgumentException("Unknown VM selection criterion '" + shortName
+          + "'. Available: min-migration-time, max-correlation, cost");
+    }
+  }
+
+  private static final class Entry {
+    private double score;
+    private long stamp;
+  }
+
+  private static final class Ranking {
+    private final Map<Vm, Entry> entries = new IdentityHashMap<>();
+    private final TreeSet<Vm> order = new TreeSet<>(
+        Comparator.comparingDouble((Vm vm) -> entries.get(vm).score).thenComparingLong(Vm::getId));
+    private double time = -1;
+    private int size = -1;
+    private long stamp;
+  }
+
+  private final DatacenterInstrumented datacenter;
+  private final Criterion criterion;
+  private final VmLoadCorrelations correlations;
+  private final Map<Host, Ranking> rankings = new IdentityHashMap<>();
+
+  private long selected;
+  private long refreshes;
+  private long rescored;
+
+  /**
+   * @param correlationWindow the samples of the VM and host loads that are correlated
+   *                          (unused when ranking by migration time only)
+   */
+  public VmSelectionPolicyRanked(final DatacenterInstrumented datacenter, final Criterion criterion,
+      final int correlationWindow) {
+    this.datacenter = datacenter;
+    this.criterion = criterion;
+    this.correlations = criterion == Criterion.MIN_MIGRATION_TIME
+        ? null
+        : new VmLoadCorrelations(datacenter.getHostList(), correlationWindow);
+  }
+
+  public static VmSelectionPolicyRanked fromConfig(final DatacenterInstrumented datacenter, final Criterion criterion) {
+    return new VmSelectionPolicyRanked(datacenter, criterion, Config.Migration.CORRELATION_WINDOW);
+  }
+
+  /**
+   * Parses the {@code --selection} option, removing it from the argument list.
+   *
+   * @return the criterion to rank VMs by, or null for {@link #MIN_UTILIZATION} (the default)
+   */
+  public static Criterion parse(final List<String> args) {
+    Criterion criterion = null;
+    for (var iterator = args.iterator(); iterator.hasNext(); ) {
+      final String arg = iterator.next();
+      if (arg.startsWith("--selection=")) {
+        final String name = arg.substring("--selection=".length());
+        criterion = name.equals(MIN_UTILIZATION) ? null : Criterion.fromShortName(name);
+        iterator.remove();
+      }
+    }
+
+    return criterion;
+  }
+
+  public Criterion getCriterion() {
+    return criterion;
+  }
+
+  @Override
+  public Optional<Vm> getVmToMigrate(final Host host) {
+    final Ranking ranking = rankings.computeIfAbsent(host, key -> new Ranking());
+    final double now = datacenter.getSimulation().clock();
+    if (ranking.time != now || ranking.size != host.getVmList().size()) {
+      refresh(ranking, host, now);
+    }
+
+    for (var iterator = ranking.order.iterator(); iterator.hasNext(); ) {
+      final Vm vm = iterator.next();
+      if (!vm.isCreated() || vm.isInMigration()) {
+        continue;
+      }
+
+      iterator.remove();
+      ranking.entries.remove(vm);
+      ranking.size--;
+      selected++;
+      return Optional.of(vm);
+    }
+
+    return Optional.empty();
+  }
+
+  private void refresh(final Ranking ranking, final Host host, final double now) {
+    final List<Vm> vmList = host.getVmList();
+    final long stamp = ++ranking.stamp;
+    refreshes++;
+    for (Vm vm : vmList) {
+      final double score = score(vm, host, now);
+      Entry entry = ranking.entries.get(vm);
+      if (entry == null) {
+        entry = new Entry();
+        entry.score = score;
+        ranking.entries.put(vm, entry);
+        ranking.order.add(vm);
+        rescored++;
+      } else if (entry.score != score) {
+        // Removed with the score it was sorted by
+        ranking.order.remove(vm);
+        entry.score = score;
+        ranking.order.add(vm);
+        rescored++;
+      }
+      entry.stamp = stamp;
+    }
+
+    if (ranking.entries.size() > vmList.size()) {
+      for (var iterator = ranking.entries.entrySet().iterator(); iterator.hasNext(); ) {
+        final Map.Entry<Vm, Entry> entry = iterator.next();
+        if (entry.getValue().stamp != stamp) {
+          ranking.order.remove(entry.getKey());
+          iterator.remove();
+        }
+      }
+    }
+
+    ranking.time = now;
+    ranking.size = vmList.size();
+  }
+
+  /**
+   * Scores a VM of a host, the lowest score being the first VM to migrate.
+   */
+  private double score(final Vm vm, final Host host, final double now) {
+    return switch (criterion) {
+      case MIN_MIGRATION_TIME -> getMigrationTime(vm, host);
+      case MAX_CORRELATION -> -correlations.getCorrelation(vm);
+      case COST -> {
+        final double mips = vm.getTotalCpuMipsUtilization(now) * (1 + Math.max(0, correlations.getCorrelation(vm)));
+        yield mips > 0 ? getMigrationTime(vm, host) / mips : Double.MAX_VALUE;
+      }
+    };
+  }
+
+  private double getMigrationTime(final Vm vm, final Host host) {
+    final MigrationScheduler scheduler = datacenter.getMigrationScheduler();
+    if (scheduler != null) {
+      return scheduler.estimateMigrationTime(vm, host);
+    }
+
+    // Without a scheduler, the whole RAM goes over the host's migration bandwidth at once
+    return vm.getRam().getAllocatedResource() / (host.getBw().getCapacity() * datacenter.getBandwidthPercentForMigration() / 8.0);
+  }
+
+  public void printReport() {
+    System.out.printf("VM selection (%s): %d VMs selected, %d rankings refreshed, %d VM scores updated%n",
+        criterion.getShortName(), selected, refreshes, rescored);
+  }
+}
@@ -0,0 +1,140 @@
+package simulations;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostSimple;
+import org.cloudsimplus.resources.PeSimple;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the windows against a brute-force computation over a plain list of the last samples,
+ * with samples that replace the last one and windows that slide past their capacity.
+ */
+public class HostUtilizationWindowsTest {
+  private static final double DELTA = 1e-9;
+
+  private record Sample(double time, double value) {
+  }
+
+  @Test
+  public void matchesBruteForceOverRandomSamples() {
+    final int capacity = 7;
+    final List<Host> hosts = List.of(createHost(0), createHost(1), createHost(2));
+    final HostUtilizationWindows windows = new HostUtilizationWindows(hosts, capacity);
+    final List<Deque<Sample>> expected = new ArrayList<>();
+    hosts.forEach(host -> expected.add(new ArrayDeque<>()));
+    assertEquals(List.of(0, 1, 2), hosts.stream().map(windows::getSlot).toList());
+
+    final Random random = new Random(42);
+    final double[] clock = new double[hosts.size()];
+    for (int i = 0; i < 2000; i++) {
+      final int slot = windows.getSlot(hosts.get(random.nextInt(hosts.size())));
+      // Some samples come at the same time as the last one, and some values repeat
+      if (random.nextInt(4) > 0) {
+        clock[slot] += 1 + random.nextInt(5);
+      }
+      final double value = random.nextInt(3) == 0 ? random.nextInt(4) / 4.0 : random.nextDouble();
+
+      final long version = windows.getVersion(slot);
+      windows.add(slot, clock[slot], value);
+      add(expected.get(slot), capacity, clock[slot], value);
+
+      assertEquals(version + 1, windows.getVersion(slot));
+      assertWindow(windows, slot, expected.get(slot));
+    }
+  }
+
+  @Test
+  public void emptyWindowHasNoStatistics() {
+    final Host host = createHost(0);
+    final HostUtilizationWindows windows = new HostUtilizationWindows(List.of(host), 4);
+    final int slot = windows.getSlot(host);
+
+    assertEquals(0, windows.size(slot));
+    assertEquals(-1, windows.getLastTime(slot), DELTA);
+    assertEquals(0, windows.median(slot), DELTA);
+    assertEquals(0, windows.medianAbsoluteDeviation(slot), DELTA);
+    assertEquals(0, windows.predict(slot, 10), DELTA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsWindowsOfOneSample() {
+    new HostUtilizationWindows(List.of(createHost(0)), 1);
+  }
+
+  private static void add(final Deque<Sample> window, final int capacity, final double time, final double value) {
+    if (!window.isEmpty() && window.peekLast().time() == time) {
+      window.pollLast();
+    } else if (window.size() == capacity) {
+      window.pollFirst();
+    }
+    window.addLast(new Sample(time, value));
+  }
+
+  private static void assertWindow(final HostUtilizationWindows windows, final int slot, final Deque<Sample> window) {
+    final int n = window.size();
+    final double[] values = window.stream().mapToDouble(Sample::value).sorted().toArray();
+    assertEquals(n, windows.size(slot));
+    assertEquals(window.peekLast().value(), windows.getLastUtilization(slot), DELTA);
+    assertEquals(window.peekLast().time(), windows.getLastTime(slot), DELTA);
+    assertEquals(n < 2 ? 0 : (window.peekLast().time() - window.peekFirst().time()) / (n - 1),
+        windows.getMeanSampleInterval(slot), DELTA);
+
+    for (double p : new double[]{0, 0.1, 0.25, 0.5, 0.75, 0.9, 1}) {
+      assertEquals("quantile " + p, quantile(values, p), windows.quantile(slot, p), DELTA);
+    }
+    assertEquals(quantile(values, 0.75) - quantile(values, 0.25), windows.interquartileRange(slot), DELTA);
+
+    final double median = quantile(values, 0.5);
+    final double[] deviations = Arrays.stream(values).map(value -> Math.abs(value - median)).sorted().toArray();
+    assertEquals(quantile(deviations, 0.5), windows.medianAbsoluteDeviation(slot), DELTA);
+
+    final double at = window.peekLast().time() + 3;
+    assertEquals(predict(window, at), windows.predict(slot, at), 1e-6);
+  }
+
+  private static double quantile(final double[] sorted, final double p) {
+    final double position = p * (sorted.length - 1);
+    final int lower = (int) position;
+    if (lower + 1 >= sorted.length) {
+      return sorted[sorted.length - 1];
+    }
+
+    return sorted[lower] + (position - lower) * (sorted[lower + 1] - sorted[lower]);
+  }
+
+  /**
+   * Predicts a value from the least squares line of a window, with the mean of the times as origin.
+   */
+  private static double predict(final Deque<Sample> window, final double at) {
+    final int n = window.size();
+    final double meanTime = window.stream().mapToDouble(Sample::time).sum() / n;
+    final double meanValue = window.stream().mapToDouble(Sample::value).sum() / n;
+    double covariance = 0;
+    double variance = 0;
+    for (Sample sample : window) {
+      covariance += (sample.time() - meanTime) * (sample.value() - meanValue);
+      variance += (sample.time() - meanTime) * (sample.time() - meanTime);
+    }
+
+    final double slope = variance <= 0 ? 0 : covariance / variance;
+    return meanValue + slope * (at - meanTime);
+  }
+
+  /**
+   * Creates a host with its own id, since hosts are told apart by id.
+   */
+  private static Host createHost(final int id) {
+    final Host host = new HostSimple(List.of(new PeSimple(1000)));
+    host.setId(id);
+    return host;
+  }
+}
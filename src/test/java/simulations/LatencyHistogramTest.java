@@ -0,0 +1,74 @@
+package simulations;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+  @Test
+  public void emptyHistogramHasNoValues() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMean(), 0);
+    assertEquals(0, histogram.getValueAtPercentile(50));
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int value = 0; value < 32; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(0, histogram.getValueAtPercentile(0));
+    assertEquals(15, histogram.getValueAtPercentile(50));
+    assertEquals(31, histogram.getValueAtPercentile(100));
+    assertEquals(15.5, histogram.getMean(), 1e-9);
+  }
+
+  @Test
+  public void negativeValuesAreRecordedAsZero() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void percentilesAreWithinTheRelativeError() {
+    final Random random = new Random(11);
+    final long[] values = new long[10_000];
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < values.length; i++) {
+      // Latencies spread over many powers of two, from nanoseconds to seconds
+      values[i] = (long) Math.exp(random.nextDouble() * Math.log(2e9));
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertEquals(values.length, histogram.getCount());
+    assertEquals(values[values.length - 1], histogram.getMax());
+    assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+    for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9}) {
+      final long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      final long value = histogram.getValueAtPercentile(percentile);
+      assertTrue(percentile + "th percentile " + value + " below " + exact, value >= exact);
+      assertTrue(percentile + "th percentile " + value + " too far above " + exact, value <= exact + exact / 32);
+    }
+  }
+
+  @Test
+  public void concurrentRecordsAreCounted() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    IntStream.range(0, 100_000).parallel().forEach(histogram::record);
+    assertEquals(100_000, histogram.getCount());
+    assertEquals(99_999, histogram.getMax());
+    assertEquals(49_999.5, histogram.getMean(), 1e-6);
+  }
+}
@@ -0,0 +1,121 @@
+package simulations;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes tables spanning several chunks and reads them back, with and without compression.
+ */
+public class ResultTableTest {
+  private static final int ROWS = 1001;
+  private static final String[] STATUSES = {"SUCCESS", "FAILED", "CANCELED"};
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTripUncompressed() throws IOException {
+    roundTrip(ResultTable.Compression.NONE);
+  }
+
+  @Test
+  public void roundTripDeflated() throws IOException {
+    roundTrip(ResultTable.Compression.DEFLATE);
+  }
+
+  @Test
+  public void emptyTableHasColumnsButNoRows() throws IOException {
+    final Path file = folder.getRoot().toPath().resolve("empty" + ResultTable.EXTENSION);
+    try (ResultTable table = new ResultTable(file, "empty", ResultTable.Compression.DEFLATE)) {
+      table.addColumn("Id", ResultTable.Type.INT32, "");
+    }
+
+    try (ResultTableReader reader = new ResultTableReader(file)) {
+      assertEquals(0, reader.getRows());
+      assertEquals(1, reader.getColumns().size());
+      assertEquals(0, reader.getLongs("Id").length);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rowsNeedEveryColumn() throws IOException {
+    final Path file = folder.getRoot().toPath().resolve("partial" + ResultTable.EXTENSION);
+    try (ResultTable table = new ResultTable(file, "partial", ResultTable.Compression.NONE)) {
+      table.addColumn("Id", ResultTable.Type.INT32, "").addColumn("Time", ResultTable.Type.FLOAT64, "s");
+      table.putInt(0, 1);
+      table.endRow();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void valuesMustMatchTheColumnType() throws IOException {
+    final Path file = folder.getRoot().toPath().resolve("typed" + ResultTable.EXTENSION);
+    try (ResultTable table = new ResultTable(file, "typed", ResultTable.Compression.NONE)) {
+      table.addColumn("Id", ResultTable.Type.INT32, "");
+      table.putDouble(0, 1);
+    }
+  }
+
+  private void roundTrip(final ResultTable.Compression compression) throws IOException {
+    final Path file = folder.getRoot().toPath().resolve("cloudlets-" + compression.getShortName() + ResultTable.EXTENSION);
+    final int[] ids = new int[ROWS];
+    final long[] lengths = new long[ROWS];
+    final double[] times = new double[ROWS];
+    final String[] statuses = new String[ROWS];
+    // An odd number of rows per chunk and in total leaves a partial last chunk
+    try (ResultTable table = new ResultTable(file, "cloudlets", compression, 63)) {
+      table.addColumn("Id", ResultTable.Type.INT32, "")
+          .addColumn("Length", ResultTable.Type.INT64, "MI")
+          .addColumn("FinishTime", ResultTable.Type.FLOAT64, "s")
+          .addColumn("Status", ResultTable.Type.CATEGORY, "");
+      for (int i = 0; i < ROWS; i++) {
+        ids[i] = i - 10;
+        lengths[i] = 10_000_000_000L + i;
+        times[i] = i / 3.0;
+        statuses[i] = STATUSES[i * i % STATUSES.length];
+        table.putInt(0, ids[i]).putLong(1, lengths[i]).putDouble(2, times[i]).putCategory(3, statuses[i]);
+        table.endRow();
+      }
+      assertEquals(ROWS, table.getRows());
+    }
+
+    try (var files = Files.list(folder.getRoot().toPath())) {
+      assertEquals("The spilled chunks are deleted", 1, files.filter(path -> path.toString().endsWith(".column")
+          || path.equals(file)).count());
+    }
+
+    try (ResultTableReader reader = new ResultTableReader(file)) {
+      assertEquals("cloudlets", reader.getName());
+      assertEquals(ROWS, reader.getRows());
+      assertEquals(compression, reader.getCompression());
+      assertEquals(4, reader.getColumns().size());
+      assertEquals("MI", reader.getColumn("Length").unit());
+      assertEquals(ResultTable.Type.CATEGORY, reader.getColumn("Status").type());
+
+      final long[] readIds = reader.getLongs("Id");
+      for (int i = 0; i < ROWS; i++) {
+        assertEquals(ids[i], readIds[i]);
+      }
+      assertArrayEquals(lengths, reader.getLongs("Length"));
+      assertArrayEquals(times, reader.getDoubles("FinishTime"), 0);
+      assertArrayEquals(statuses, reader.getStrings("Status"));
+
+      final StringWriter csv = new StringWriter();
+      reader.toCsv(csv);
+      final String[] lines = csv.toString().split("\n");
+      assertEquals(ROWS + 1, lines.length);
+      assertEquals("Id,Length,FinishTime,Status", lines[0]);
+      assertTrue(lines[2].startsWith("-9,10000000001,"));
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package simulations;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunningStatisticsTest {
+  private static final double DELTA = 1e-9;
+
+  @Test
+  public void emptyStreamHasNoStatistics() {
+    final RunningStatistics statistics = new RunningStatistics();
+    assertEquals(0, statistics.getCount());
+    assertTrue(Double.isNaN(statistics.getMean()));
+    assertTrue(Double.isNaN(statistics.getVariance()));
+    assertTrue(Double.isNaN(statistics.getMin()));
+    assertTrue(Double.isNaN(statistics.getMax()));
+    assertTrue(Double.isNaN(statistics.getConfidenceHalfWidth()));
+  }
+
+  @Test
+  public void singleValueHasNoVariance() {
+    final RunningStatistics statistics = new RunningStatistics();
+    statistics.add(3);
+    assertEquals(3, statistics.getMean(), DELTA);
+    assertEquals(3, statistics.getMin(), DELTA);
+    assertEquals(3, statistics.getMax(), DELTA);
+    assertTrue(Double.isNaN(statistics.getVariance()));
+  }
+
+  @Test
+  public void matchesTwoPassStatistics() {
+    final Random random = new Random(7);
+    final double[] values = new double[1000];
+    final RunningStatistics statistics = new RunningStatistics();
+    for (int i = 0; i < values.length; i++) {
+      // A large offset, as with energy in Wh, makes the naive sum of squares lose precision
+      values[i] = 1e6 + random.nextGaussian();
+      statistics.add(values[i]);
+    }
+
+    double mean = 0;
+    for (double value : values) {
+      mean += value / values.length;
+    }
+    double squares = 0;
+    for (double value : values) {
+      squares += (value - mean) * (value - mean);
+    }
+
+    assertEquals(values.length, statistics.getCount());
+    assertEquals(mean, statistics.getMean(), 1e-6);
+    assertEquals(squares / (values.length - 1), statistics.getVariance(), 1e-6);
+  }
+
+  @Test
+  public void confidenceIntervalUsesStudentsT() {
+    final RunningStatistics statistics = new RunningStatistics();
+    statistics.add(1);
+    statistics.add(3);
+    // Standard deviation sqrt(2), 1 degree of freedom
+    assertEquals(12.706 * Math.sqrt(2) / Math.sqrt(2), statistics.getConfidenceHalfWidth(), 1e-3);
+    assertFalse(statistics.isPrecise(0.05));
+  }
+
+  @Test
+  public void confidenceIntervalApproachesNormal() {
+    final RunningStatistics statistics = new RunningStatistics();
+    for (int i = 0; i < 10_000; i++) {
+      statistics.add(i % 2);
+    }
+
+    final double normal = 1.959964 * statistics.getStandardDeviation() / Math.sqrt(statistics.getCount());
+    assertEquals(normal, statistics.getConfidenceHalfWidth(), normal * 1e-3);
+  }
+
+  @Test
+  public void constantStreamIsPrecise() {
+    final RunningStatistics statistics = new RunningStatistics();
+    statistics.add(0);
+    statistics.add(0);
+    assertEquals(0, statistics.getConfidenceHalfWidth(), DELTA);
+    assertTrue(statistics.isPrecise(0.01));
+  }
+
+  @Test
+  public void precisionIsRelativeToTheMean() {
+    final RunningStatistics statistics = new RunningStatistics();
+    for (int i = 0; i < 100; i++) {
+      statistics.add(100 + i % 2);
+    }
+
+    final double relativeWidth = 2 * statistics.getConfidenceHalfWidth() / statistics.getMean();
+    assertTrue(statistics.isPrecise(relativeWidth * 1.01));
+    assertFalse(statistics.isPrecise(relativeWidth * 0.99));
+  }
+}
@@ -0,0 +1,131 @@
+package simulations;
+
+import ch.qos.logback.classic.Level;
+import simulations.Shared.Config;
+
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationBestFitStaticThreshold;
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationFirstFitStaticThreshold;
+import org.cloudsimplus.allocationpolicies.migration.VmAllocationPolicyMigrationStaticThreshold;
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.DatacenterSimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.selectionpolicies.VmSelectionPolicyMinimumUtilization;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.util.Log;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Places the VMs of the built-in scenario with a stock policy and its indexed version, in two identical simulations,
+ * then migrates random VMs in both while the simulations run and checks that every target search
+ * returns the same host.
+ */
+public class VmAllocationPolicyMigrationIndexedStaticThresholdTest {
+  private static final double OVER = Config.Host.OVER_UTILIZATION_THRESHOLD_FOR_VM_MIGRATION;
+  private static final int MOVES = 1000;
+  /** How many VMs are moved before both simulations advance, so migrations start and finish between searches. */
+  private static final int MOVES_PER_INTERVAL = 100;
+  /** How many times the VMs of the scenario are created, so that some hosts get close to the threshold. */
+  private static final int COPIES = 2;
+
+  @BeforeClass
+  public static void disableLogging() {
+    Log.setLevel(Level.OFF);
+  }
+
+  @Test
+  public void firstFitPicksTheStockHosts() {
+    assertSamePlacement(
+        new VmAllocationPolicyMigrationFirstFitStaticThreshold(new VmSelectionPolicyMinimumUtilization(), OVER),
+        new VmAllocationPolicyMigrationFirstFitIndexed(new VmSelectionPolicyMinimumUtilization(), OVER));
+  }
+
+  @Test
+  public void bestFitPicksTheStockHosts() {
+    assertSamePlacement(
+        new VmAllocationPolicyMigrationBestFitStaticThreshold(new VmSelectionPolicyMinimumUtilization(), OVER),
+        new VmAllocationPolicyMigrationBestFitIndexed(new VmSelectionPolicyMinimumUtilization(), OVER));
+  }
+
+  private static void assertSamePlacement(final VmAllocationPolicyMigrationStaticThreshold stock,
+      final VmAllocationPolicyMigrationStaticThreshold indexed) {
+    final List<Vm> stockVms = simulate(stock);
+    final List<Vm> indexedVms = simulate(indexed);
+    assertTrue(stockVms.stream().allMatch(Vm::isCreated));
+    assertEquals(getHostIds(stockVms), getHostIds(indexedVms));
+
+    // Targets above the threshold after the allocation must be skipped
+    assertTrue(stock.getHostList().stream().anyMatch(host -> host.getCpuPercentUtilization() > OVER));
+
+    final Random random = new Random(5);
+    for (int i = 0; i < MOVES; i++) {
+      if (i > 0 && i % MOVES_PER_INTERVAL == 0) {
+        stock.getDatacenter().getSimulation().runFor(Config.Scheduling.INTERVAL);
+        indexed.getDatacenter().getSimulation().runFor(Config.Scheduling.INTERVAL);
+      }
+
+      final int vm = random.nextInt(stockVms.size());
+      final Optional<Host> stockHost = move(stock, stockVms.get(vm));
+      final Optional<Host> indexedHost = move(indexed, indexedVms.get(vm));
+      assertEquals("Move " + i + " of Vm " + vm, stockHost.map(Host::getId), indexedHost.map(Host::getId));
+    }
+
+    assertEquals(getHostIds(stockVms), getHostIds(indexedVms));
+  }
+
+  /**
+   * Runs the scenario for a few seconds without migrations, while the CPU load of the cloudlets ramps up.
+   */
+  private static List<Vm> simulate(final VmAllocationPolicyMigrationStaticThreshold policy) {
+    final Scenario scenario = Scenario.fromConfig();
+    final CloudSimPlus simulation = new CloudSimPlus();
+    new DatacenterSimple(simulation, scenario.createHosts(), policy).disableMigrations()
+        .setSchedulingInterval(Config.Scheduling.INTERVAL);
+
+    final DatacenterBroker broker = new DatacenterBrokerSimple(simulation);
+    final List<Vm> vms = new ArrayList<>(COPIES * scenario.getVmCount());
+    for (int copy = 0; copy < COPIES; copy++) {
+      for (int i = 0; i < scenario.getVmCount(); i++) {
+        final Vm vm = scenario.createVm(i);
+        vms.add(vm);
+        broker.submitVm(vm);
+        broker.submitCloudlet(Shared.createCloudlet(vm, broker,
+            Shared.createCpuUtilizationModel(Config.Cloudlet.INITIAL_CPU_PERCENTAGE, 1)));
+      }
+    }
+
+    // Stops in the middle of the run, so the VMs stay on their hosts
+    simulation.startSync();
+    while (simulation.clock() < 5) {
+      simulation.runFor(Config.Scheduling.INTERVAL);
+    }
+    return vms;
+  }
+
+  /**
+   * Migrates a VM to the host the policy finds for it, if any and if it isn't migrating yet.
+   */
+  private static Optional<Host> move(final VmAllocationPolicyMigrationStaticThreshold policy, final Vm vm) {
+    if (vm.isInMigration()) {
+      return Optional.empty();
+    }
+
+    final Optional<Host> host = policy.findHostForVm(vm);
+    host.ifPresent(target -> policy.getDatacenter().requestVmMigration(vm, target));
+    return host;
+  }
+
+  private static List<Long> getHostIds(final List<Vm> vms) {
+    return vms.stream().map(vm -> vm.getHost().getId()).toList();
+  }
+}
@@ -0,0 +1,92 @@
+package simulations;
+
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.DatacenterSimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.utilizationmodels.UtilizationModel;
+import org.cloudsimplus.utilizationmodels.UtilizationModelAbstract;
+import org.cloudsimplus.vms.Vm;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs a host with VMs whose CPU load follows functions of time, sampled every second, and checks the correlation
+ * of each VM with the rest of its host.
+ */
+public class VmLoadCorrelationsTest {
+  private static final double DELTA = 1e-6;
+  private static final DoubleUnaryOperator WAVE = time -> 0.5 + 0.4 * Math.sin(time / 3);
+
+  @Test
+  public void vmsFollowingTheirHostAreCorrelated() {
+    final List<Vm> vms = new ArrayList<>();
+    final VmLoadCorrelations correlations = simulate(vms, 10, WAVE, WAVE, time -> 0.5);
+
+    assertEquals(1, correlations.getCorrelation(vms.get(0)), DELTA);
+    assertEquals(1, correlations.getCorrelation(vms.get(1)), DELTA);
+    // A constant load correlates with nothing
+    assertEquals(0, correlations.getCorrelation(vms.get(2)), DELTA);
+  }
+
+  @Test
+  public void vmsOpposingTheirHostAreAnticorrelated() {
+    final List<Vm> vms = new ArrayList<>();
+    final VmLoadCorrelations correlations = simulate(vms, 10, WAVE, time -> 1 - WAVE.applyAsDouble(time));
+
+    assertEquals(-1, correlations.getCorrelation(vms.get(0)), DELTA);
+    assertEquals(-1, correlations.getCorrelation(vms.get(1)), DELTA);
+  }
+
+  @Test
+  public void vmsWithoutSamplesAreUncorrelated() {
+    final List<Vm> vms = new ArrayList<>();
+    final VmLoadCorrelations correlations = simulate(vms, 3, WAVE, WAVE);
+
+    assertEquals(0, correlations.getCorrelation(Shared.createVm(1)), DELTA);
+    assertEquals(3, correlations.getCapacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsWindowsTooShortForACorrelation() {
+    new VmLoadCorrelations(List.of(), 2);
+  }
+
+  /**
+   * Runs a one-host simulation for 40 seconds, with a VM for each CPU load function.
+   */
+  private static VmLoadCorrelations simulate(final List<Vm> vms, final int capacity, final DoubleUnaryOperator... loads) {
+    final CloudSimPlus simulation = new CloudSimPlus();
+    final Host host = Shared.createHost(4, 4 * Shared.Config.VM.RAM);
+    new DatacenterSimple(simulation, List.of(host)).setSchedulingInterval(1);
+    final VmLoadCorrelations correlations = new VmLoadCorrelations(List.of(host), capacity);
+
+    final DatacenterBroker broker = new DatacenterBrokerSimple(simulation);
+    for (DoubleUnaryOperator load : loads) {
+      final Vm vm = Shared.createVm(1);
+      vms.add(vm);
+      broker.submitVm(vm);
+      // Long enough to outlast the simulation
+      broker.submitCloudlet(Shared.createCloudlet(vm, broker, createModel(load)).setLength(1_000_000_000));
+    }
+
+    simulation.terminateAt(40);
+    simulation.start();
+    return correlations;
+  }
+
+  private static UtilizationModel createModel(final DoubleUnaryOperator load) {
+    return new UtilizationModelAbstract() {
+      @Override
+      protected double getUtilizationInternal(final double time) {
+        return load.applyAsDouble(time);
+      }
+    };
+  }
+}